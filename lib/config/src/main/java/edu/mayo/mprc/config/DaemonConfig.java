@@ -21,6 +21,8 @@ public final class DaemonConfig implements ResourceConfig, NamedResource {
 	public static final String TEMP_FOLDER_PATH = "tempFolderPath";
 	public static final String DUMP_ERRORS = "dumpErrors";
 	public static final String DUMP_FOLDER_PATH = "dumpFolderPath";
+	public static final String CORES = "cores";
+	public static final String MEMORY = "memory";
 	public static final String SERVICES = "services";
 	public static final String RESOURCES = "resources";
 	public static final String TYPE = "daemon";
@@ -54,6 +56,16 @@ public final class DaemonConfig implements ResourceConfig, NamedResource {
 	 */
 	private String logOutputFolder = DEFAULT_LOG_FOLDER;
 
+	/**
+	 * How many cores can the requests processed by this daemon use at once. 0 means no limit.
+	 */
+	private int cores;
+
+	/**
+	 * How many megabytes of memory can the requests processed by this daemon use at once. 0 means no limit.
+	 */
+	private int memory;
+
 	// Services this daemon provides
 	private List<ServiceConfig> services = new ArrayList<ServiceConfig>();
 
@@ -168,6 +180,22 @@ public final class DaemonConfig implements ResourceConfig, NamedResource {
 		this.logOutputFolder = logOutputFolder;
 	}
 
+	public int getCores() {
+		return cores;
+	}
+
+	public void setCores(final int cores) {
+		this.cores = cores;
+	}
+
+	public int getMemory() {
+		return memory;
+	}
+
+	public void setMemory(final int memory) {
+		this.memory = memory;
+	}
+
 	public List<ServiceConfig> getServices() {
 		return services;
 	}
@@ -259,6 +287,8 @@ public final class DaemonConfig implements ResourceConfig, NamedResource {
 		writer.put(DUMP_ERRORS, isDumpErrors(), "When true, failing SGE work packets will get kept around in the dump folder for a day");
 		writer.put(DUMP_FOLDER_PATH, getDumpFolderPath(), "Dump folder location for failing SGE work packets");
 		writer.put(RunnerConfig.LOG_OUTPUT_FOLDER, getLogOutputFolder(), "Shared log folder to be used as a default for all services");
+		writer.put(CORES, getCores(), 0, "How many cores can the requests use at once, 0 for no limit");
+		writer.put(MEMORY, getMemory(), 0, "How many megabytes of memory can the requests use at once, 0 for no limit");
 
 		// It is important to save the resources before the services.
 		// There are unstated dependencies between the resources and the services
@@ -295,6 +325,8 @@ public final class DaemonConfig implements ResourceConfig, NamedResource {
 		dumpErrors = reader.getBoolean(DUMP_ERRORS);
 		dumpFolderPath = reader.get(DUMP_FOLDER_PATH);
 		logOutputFolder = reader.get(RunnerConfig.LOG_OUTPUT_FOLDER);
+		cores = reader.getInteger(CORES, 0);
+		memory = reader.getInteger(MEMORY, 0);
 
 		{
 			final List<? extends ResourceConfig> resourcesList = reader.getResourceList(RESOURCES);
@@ -35,6 +35,11 @@ public abstract class AbstractRunner implements Checkable, Installable, Lifecycl
 	private ExecutorService executorService;
 	private SynchronousRequestReceiver receiver;
 	private DaemonLoggerFactory daemonLoggerFactory;
+	/**
+	 * How many requests to take from the queue at once. The requests the broker already prefetched for us
+	 * are taken without waiting, so a burst of small requests does not cost a receive call each.
+	 */
+	private int receiveBatchSize = 1;
 
 	public abstract boolean isEnabled();
 
@@ -170,9 +175,15 @@ public abstract class AbstractRunner implements Checkable, Installable, Lifecycl
 		public void run() {
 			getDaemonConnection().start();
 			while (keepRunning) {
-				final DaemonRequest request = getDaemonConnection().receiveDaemonRequest(5000);
-				if (request != null) {
-					requestReceived(request);
+				if (receiveBatchSize > 1) {
+					for (final DaemonRequest request : getDaemonConnection().receiveDaemonRequests(receiveBatchSize, 5000)) {
+						requestReceived(request);
+					}
+				} else {
+					final DaemonRequest request = getDaemonConnection().receiveDaemonRequest(5000);
+					if (request != null) {
+						requestReceived(request);
+					}
 				}
 			}
 
@@ -200,6 +211,14 @@ public abstract class AbstractRunner implements Checkable, Installable, Lifecycl
 		this.daemon = daemon;
 	}
 
+	public int getReceiveBatchSize() {
+		return receiveBatchSize;
+	}
+
+	public void setReceiveBatchSize(final int receiveBatchSize) {
+		this.receiveBatchSize = receiveBatchSize;
+	}
+
 	public DaemonLoggerFactory getDaemonLoggerFactory() {
 		return daemonLoggerFactory;
 	}
@@ -0,0 +1,52 @@
+package edu.mayo.mprc.daemon;
+
+/**
+ * Limits on how much a {@link WorkCache} can hold. A limit of zero means "unlimited".
+ * <ul>
+ * <li>{@link #getMaxBytes()} - total size of all cached files</li>
+ * <li>{@link #getMaxEntries()} - number of cached results</li>
+ * <li>{@link #getMaxAgeMillis()} - how long after being published is a result kept</li>
+ * </ul>
+ * When the size or entry count is exceeded, the least recently used entries go first.
+ *
+ * @author Roman Zenka
+ */
+public final class CacheEvictionPolicy {
+	public static final CacheEvictionPolicy NONE = new CacheEvictionPolicy(0, 0, 0);
+
+	private final long maxBytes;
+	private final int maxEntries;
+	private final long maxAgeMillis;
+
+	public CacheEvictionPolicy(final long maxBytes, final int maxEntries, final long maxAgeMillis) {
+		this.maxBytes = maxBytes;
+		this.maxEntries = maxEntries;
+		this.maxAgeMillis = maxAgeMillis;
+	}
+
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+
+	public int getMaxEntries() {
+		return maxEntries;
+	}
+
+	public long getMaxAgeMillis() {
+		return maxAgeMillis;
+	}
+
+	/**
+	 * @return True if there is at least one limit to enforce.
+	 */
+	public boolean isEnabled() {
+		return maxBytes > 0 || maxEntries > 0 || maxAgeMillis > 0;
+	}
+
+	@Override
+	public String toString() {
+		return "max bytes: " + (maxBytes > 0 ? maxBytes : "unlimited")
+				+ ", max entries: " + (maxEntries > 0 ? maxEntries : "unlimited")
+				+ ", max age: " + (maxAgeMillis > 0 ? maxAgeMillis + " ms" : "unlimited");
+	}
+}
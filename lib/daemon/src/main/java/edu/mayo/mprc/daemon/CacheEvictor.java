@@ -0,0 +1,165 @@
+package edu.mayo.mprc.daemon;
+
+import edu.mayo.mprc.utilities.FileUtilities;
+import org.apache.log4j.Logger;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Enforces {@link CacheEvictionPolicy} on a {@link CacheIndex}.
+ * <p/>
+ * Each {@link #sweep} does a bounded amount of work - it measures the size of at most {@link #MEASURE_BATCH}
+ * entries and evicts at most {@link #EVICT_BATCH} entries, so it can run periodically in the background
+ * without stalling the cache. Pinned entries and entries whose task is being worked on are never evicted.
+ * <p/>
+ * An entry is published as soon as its outputs exist. An output folder can still be filling up at that point,
+ * so entries holding folders are measured again whenever the batch has room left.
+ *
+ * @author Roman Zenka
+ */
+final class CacheEvictor {
+	private static final Logger LOGGER = Logger.getLogger(CacheEvictor.class);
+
+	static final int MEASURE_BATCH = 100;
+	static final int EVICT_BATCH = 100;
+
+	private final CacheIndex index;
+	private final CacheEvictionPolicy policy;
+	private final CacheStatistics statistics;
+
+	CacheEvictor(final CacheIndex index, final CacheEvictionPolicy policy, final CacheStatistics statistics) {
+		this.index = index;
+		this.policy = policy;
+		this.statistics = statistics;
+	}
+
+	/**
+	 * @param busyDigests Digests of tasks currently being worked on. These must not be evicted.
+	 * @return Number of entries evicted.
+	 */
+	public int sweep(final Set<String> busyDigests) {
+		final List<CacheIndex.Entry> entries = index.getEntries();
+		measureSizes(entries);
+
+		final List<Candidate> candidates = new ArrayList<Candidate>(entries.size());
+		long totalBytes = 0;
+		for (final CacheIndex.Entry entry : entries) {
+			totalBytes += Math.max(entry.getSize(), 0);
+			if (!entry.isPinned() && !busyDigests.contains(entry.getDigest())) {
+				candidates.add(new Candidate(entry));
+			}
+		}
+		// Least recently used go first
+		Collections.sort(candidates);
+
+		final long now = System.currentTimeMillis();
+		int totalEntries = entries.size();
+		final List<CacheIndex.Entry> victims = new ArrayList<CacheIndex.Entry>();
+		for (final Candidate candidate : candidates) {
+			final CacheIndex.Entry entry = candidate.entry;
+			if (victims.size() >= EVICT_BATCH) {
+				break;
+			}
+			final boolean expired = policy.getMaxAgeMillis() > 0 && now - entry.getPublished() > policy.getMaxAgeMillis();
+			final boolean tooMany = policy.getMaxEntries() > 0 && totalEntries > policy.getMaxEntries();
+			final boolean tooBig = policy.getMaxBytes() > 0 && totalBytes > policy.getMaxBytes();
+			if ((expired || tooMany || tooBig) && index.evict(entry)) {
+				victims.add(entry);
+				totalEntries--;
+				totalBytes -= Math.max(entry.getSize(), 0);
+			}
+		}
+
+		// The entries are no longer in the index, nobody can obtain them anymore - safe to delete outside the lock
+		for (final CacheIndex.Entry entry : victims) {
+			final File folder = index.getFolder(entry);
+			final long size = entry.getSize() >= 0 ? entry.getSize() : sizeOf(folder);
+			LOGGER.debug("Cache evicting " + folder.getAbsolutePath());
+			FileUtilities.deleteNow(folder);
+			statistics.evicted(size);
+		}
+		return victims.size();
+	}
+
+	/**
+	 * Measure a batch of entries whose size is not known yet. Use the rest of the batch to measure again
+	 * the entries holding folders, the ones measured longest ago first.
+	 */
+	private void measureSizes(final List<CacheIndex.Entry> entries) {
+		int measured = 0;
+		final List<CacheIndex.Entry> withFolders = new ArrayList<CacheIndex.Entry>();
+		for (final CacheIndex.Entry entry : entries) {
+			if (entry.getSize() < 0) {
+				if (measured < MEASURE_BATCH) {
+					measure(entry);
+					measured++;
+				}
+			} else if (entry.hasFolders()) {
+				withFolders.add(entry);
+			}
+		}
+		if (measured >= MEASURE_BATCH || withFolders.isEmpty()) {
+			return;
+		}
+		Collections.sort(withFolders, new Comparator<CacheIndex.Entry>() {
+			@Override
+			public int compare(final CacheIndex.Entry o1, final CacheIndex.Entry o2) {
+				return o1.getMeasured() < o2.getMeasured() ? -1 : (o1.getMeasured() == o2.getMeasured() ? 0 : 1);
+			}
+		});
+		for (final CacheIndex.Entry entry : withFolders) {
+			if (measured >= MEASURE_BATCH) {
+				break;
+			}
+			measure(entry);
+			measured++;
+		}
+	}
+
+	private void measure(final CacheIndex.Entry entry) {
+		final File[] files = index.getFolder(entry).listFiles();
+		long size = 0;
+		boolean hasFolders = false;
+		if (files != null) {
+			for (final File file : files) {
+				if (file.isDirectory()) {
+					hasFolders = true;
+					size += FileUtilities.sizeOfDirectory(file);
+				} else {
+					size += file.length();
+				}
+			}
+		}
+		entry.setSize(size, hasFolders);
+	}
+
+	private static long sizeOf(final File folder) {
+		if (!folder.isDirectory()) {
+			return 0;
+		}
+		return FileUtilities.sizeOfDirectory(folder);
+	}
+
+	/**
+	 * Entry with its last use time frozen, so the sort is not confused by concurrent hits.
+	 */
+	private static final class Candidate implements Comparable<Candidate> {
+		private final CacheIndex.Entry entry;
+		private final long lastUsed;
+
+		private Candidate(final CacheIndex.Entry entry) {
+			this.entry = entry;
+			lastUsed = entry.getLastUsed();
+		}
+
+		@Override
+		public int compareTo(final Candidate o) {
+			return lastUsed < o.lastUsed ? -1 : (lastUsed == o.lastUsed ? 0 : 1);
+		}
+	}
+}
@@ -1,7 +1,5 @@
 package edu.mayo.mprc.daemon;
 
-import com.google.common.base.Charsets;
-import com.google.common.io.Files;
 import edu.mayo.mprc.MprcException;
 import edu.mayo.mprc.utilities.FileUtilities;
 import edu.mayo.mprc.utilities.StringUtilities;
@@ -11,6 +9,7 @@ import java.io.File;
 import java.io.FilenameFilter;
 import java.text.MessageFormat;
 import java.util.List;
+import java.util.Set;
 import java.util.regex.Pattern;
 
 /**
@@ -21,6 +20,9 @@ import java.util.regex.Pattern;
  * <li>{@link #makeWorkFolder} will create a work folder for new packets</li>
  * <li>{@link #insert} will take the work folder and make it a proper member of the cache</li>
  * </ul>
+ * The published entries are tracked by {@link CacheIndex}, so a lookup resolves to a folder without listing
+ * the cache contents.
+ * <p/>
  * Warning - always use {@link #makeWorkFolder} and {@link #insert} in tandem. The work folder is created in such
  * way for {@code insert} to work properly. They do not work independently.
  *
@@ -30,6 +32,7 @@ public final class CacheFolder {
 	private static final Logger LOGGER = Logger.getLogger(CacheFolder.class);
 
 	private File cacheFolder;
+	private CacheIndex index;
 
 	// The file that will store the task input parameters
 	private static final String TASK_DESCRIPTION_FILE_NAME = "_task_description";
@@ -46,8 +49,19 @@ public final class CacheFolder {
 		return cacheFolder;
 	}
 
-	public void setCacheFolder(final File cacheFolder) {
+	public synchronized void setCacheFolder(final File cacheFolder) {
 		this.cacheFolder = cacheFolder;
+		index = null;
+	}
+
+	/**
+	 * @return Index of the published cache entries. Loaded (or rebuilt from the folder layout) on first use.
+	 */
+	private synchronized CacheIndex getIndex() {
+		if (index == null) {
+			index = new CacheIndex(cacheFolder, TASK_DESCRIPTION_FILE_NAME);
+		}
+		return index;
 	}
 
 	/**
@@ -98,59 +112,54 @@ public final class CacheFolder {
 	/**
 	 * For a given work packet, find if there is a cache folder that has data for this packet.
 	 * <p/>
-	 * While doing so, delete all matching, yet stale cache entries encountered. If packet is from scratch,
-	 * delete all entries, including the non-stale ones.
+	 * If the matching entry is stale, delete it. If packet is from scratch,
+	 * delete the entry even if it is not stale.
+	 *
+	 * An entry that is returned is protected from eviction until {@link #release} is called.
 	 *
 	 * @param cachableWorkPacket Work packet to find folder with data for.
-	 * @return The folder containing all the cached work data stored for the work package or {@code null}
-	 * if no such folder exists.
+	 * @return The entry whose folder ({@link #getFolder}) contains all the cached work data stored for the work package
+	 * or {@code null} if no such entry exists.
 	 */
-	public File lookup(final CachableWorkPacket cachableWorkPacket) {
-		// Now we check the cache.
-		// There can be multiple files of the same name in the same cache bucket.
-		// We pick the one which has a corresponding file that matches our params
-		// We go through all subfolders of the output folder
+	CacheIndex.Entry lookup(final CachableWorkPacket cachableWorkPacket) {
+		// The index knows the only folder that can hold data for our task description.
+		// We never list the cache folders, we only check that the entry is still intact.
 		final String taskDescription = cachableWorkPacket.getStringDescriptionOfTask();
-		final File targetCacheFolder = getTargetFolder(taskDescription);
-		if (!targetCacheFolder.exists()) {
+		final String digest = CacheIndex.digest(taskDescription);
+		final CacheIndex.Entry entry = getIndex().acquire(digest);
+		if (entry == null) {
 			return null;
 		}
-		if (!targetCacheFolder.isDirectory()) {
-			throw new MprcException(MessageFormat.format("Malformed cache. The file {0} is not a directory.", targetCacheFolder.getAbsolutePath()));
-		}
-		final File[] files = targetCacheFolder.listFiles();
+		final File subFolder = getFolder(entry);
 		final List<String> outputFiles = cachableWorkPacket.getOutputFiles();
-		for (final File subFolder : files) {
-			final File taskDescriptionFile = new File(subFolder, TASK_DESCRIPTION_FILE_NAME);
-			if (allFilesExist(subFolder, outputFiles) && taskDescriptionFile.exists()) {
-				// We found an output file with matching file name and a params file!
-				// Check the params file
-				String cachedTaskDescription = null;
-				try {
-					cachedTaskDescription = Files.toString(taskDescriptionFile, Charsets.UTF_8);
-				} catch (final Exception t) {
-					LOGGER.error("Cache cannot read request file " + taskDescriptionFile.getAbsolutePath(), t);
-					continue;
-				}
-				if (taskDescription.equals(cachedTaskDescription)) {
-					// We found a match. Shall we use it? We must not want to process from scratch, and we must not
-					// have stale cache entry.
-					if (!cachableWorkPacket.isFromScratch() && !cachableWorkPacket.cacheIsStale(subFolder, outputFiles)) {
-						return subFolder;
-					} else {
-						// The output is older than the source.
-						// Wipe the cache for the file, continue searching.
-						LOGGER.info("Cache deleting stale entry " +
-								(cachableWorkPacket.isFromScratch() ? "(user requested rerun from scratch)" : "(input is of newer date than the output)") + ": " + subFolder.getAbsolutePath());
-						FileUtilities.deleteNow(subFolder);
-					}
-				}
-			}
+		if (!allFilesExist(subFolder, outputFiles) || !new File(subFolder, TASK_DESCRIPTION_FILE_NAME).exists()) {
+			LOGGER.info("Cache dropping incomplete entry: " + subFolder.getAbsolutePath());
+			release(entry);
+			getIndex().remove(digest);
+			return null;
+		}
+		// We found a match. Shall we use it? We must not want to process from scratch, and we must not
+		// have stale cache entry.
+		if (!cachableWorkPacket.isFromScratch() && !cachableWorkPacket.cacheIsStale(subFolder, outputFiles)) {
+			return entry;
 		}
-		// No match
+		// The output is older than the source.
+		// Wipe the cache for the file.
+		LOGGER.info("Cache deleting stale entry " +
+				(cachableWorkPacket.isFromScratch() ? "(user requested rerun from scratch)" : "(input is of newer date than the output)") + ": " + subFolder.getAbsolutePath());
+		release(entry);
+		getIndex().remove(digest);
+		FileUtilities.deleteNow(subFolder);
 		return null;
 	}
 
+	/**
+	 * @return Folder holding the data of given entry.
+	 */
+	File getFolder(final CacheIndex.Entry entry) {
+		return getIndex().getFolder(entry);
+	}
+
 	/**
 	 * Prepare a work folder for packet that should have data stored in the cache.
 	 *
@@ -209,9 +218,9 @@ public final class CacheFolder {
 	 *
 	 * @param workPacket The work packet that successfully finished processing.
 	 * @param wipFolder  The work in progress folder where the work packet's results are.
-	 * @return The final folder location where the packet results are.
+	 * @return The new entry, its folder ({@link #getFolder}) is where the packet results are. It is protected from eviction until {@link #release} is called.
 	 */
-	public File insert(final CachableWorkPacket workPacket, final File wipFolder) {
+	CacheIndex.Entry insert(final CachableWorkPacket workPacket, final File wipFolder) {
 		final List<String> outputFiles = workPacket.getOutputFiles();
 
 		final File tempTaskDescriptionFile = new File(wipFolder, TASK_DESCRIPTION_FILE_NAME_TEMP);
@@ -239,14 +248,43 @@ public final class CacheFolder {
 		// subsequently.
 		FileUtilities.rename(tempTaskDescriptionFile,
 				new File(wipFolder, TASK_DESCRIPTION_FILE_NAME));
+		return getIndex().put(CacheIndex.digest(workPacket.getStringDescriptionOfTask()), wipFolder);
+	}
+
+	/**
+	 * Let the cache evict the entry returned by {@link #lookup} or {@link #insert} again.
+	 *
+	 * @param entry Entry that is no longer being used.
+	 */
+	void release(final CacheIndex.Entry entry) {
+		getIndex().release(entry);
+	}
 
-		return wipFolder;
+	/**
+	 * Evict a batch of entries that violate given policy.
+	 *
+	 * @param policy      Limits to enforce.
+	 * @param busyDigests Digests (see {@link #digest}) of tasks that are being worked on and must not be evicted.
+	 * @param statistics  Statistics to record the evictions to.
+	 * @return Number of evicted entries.
+	 */
+	public int evict(final CacheEvictionPolicy policy, final Set<String> busyDigests, final CacheStatistics statistics) {
+		return new CacheEvictor(getIndex(), policy, statistics).sweep(busyDigests);
+	}
+
+	/**
+	 * @param taskDescription Task description, as obtained from {@link CachableWorkPacket#getStringDescriptionOfTask()}
+	 * @return Key under which the cache stores the task results.
+	 */
+	public static String digest(final String taskDescription) {
+		return CacheIndex.digest(taskDescription);
 	}
 
 	/**
 	 * Wipe the cache completely.
 	 */
 	public void cleanup() {
+		getIndex().clear();
 		final File[] files = getCacheFolder().listFiles(new CacheFolderFilter());
 		for (final File file : files) {
 			FileUtilities.deleteNow(file);
@@ -0,0 +1,420 @@
+package edu.mayo.mprc.daemon;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import edu.mayo.mprc.MprcException;
+import edu.mayo.mprc.utilities.FileUtilities;
+import edu.mayo.mprc.utilities.StringUtilities;
+import org.apache.log4j.Logger;
+
+import java.io.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory index of the cache entries, keyed by SHA-256 digest of the task description.
+ * <p/>
+ * The index is persisted as an append-only journal in the cache folder. Each line is either
+ * <code>+&lt;TAB&gt;digest&lt;TAB&gt;relative path&lt;TAB&gt;publish time[&lt;TAB&gt;last hit]</code> for an added entry,
+ * <code>*&lt;TAB&gt;digest&lt;TAB&gt;last hit</code> for an entry that was used, or
+ * <code>-&lt;TAB&gt;digest</code> for a removed one. Replaying the journal gives the current state.
+ * When the journal is missing, the index is rebuilt by walking the cache folder and reading
+ * all published task description files, so caches created before the index existed keep working.
+ * <p/>
+ * Once loaded, a lookup does not touch the disk at all.
+ * <p/>
+ * Entries can be pinned while they are being used (reported or copied to the user), so {@link CacheEvictor}
+ * never deletes them from under their users. A pin belongs to the entry instance it was taken on, so releasing it
+ * never unpins an entry that replaced it in the meantime.
+ *
+ * @author Roman Zenka
+ */
+final class CacheIndex {
+	private static final Logger LOGGER = Logger.getLogger(CacheIndex.class);
+
+	public static final String JOURNAL_FILE_NAME = "_cache_index";
+	private static final String JOURNAL_FILE_NAME_TEMP = "_cache_index~";
+
+	private static final String ADD = "+";
+	private static final String REMOVE = "-";
+	private static final String HIT = "*";
+	private static final String SEPARATOR = "\t";
+
+	/**
+	 * When the journal has this many times more lines than live entries, it gets compacted on load.
+	 */
+	private static final int COMPACT_RATIO = 2;
+	private static final int COMPACT_MIN_LINES = 1000;
+
+	/**
+	 * Hits are journaled at most this often per entry, so a popular entry does not flood the journal.
+	 */
+	private static final long HIT_JOURNAL_INTERVAL = 60L * 1000L;
+
+	private final File cacheFolder;
+	private final String taskDescriptionFileName;
+	private final Map<String, Entry> entries = new HashMap<String, Entry>(1000);
+	private boolean loaded;
+
+	/**
+	 * @param cacheFolder             Root of the cache.
+	 * @param taskDescriptionFileName Name of the file that marks a published cache entry and holds its task description.
+	 */
+	CacheIndex(final File cacheFolder, final String taskDescriptionFileName) {
+		this.cacheFolder = cacheFolder;
+		this.taskDescriptionFileName = taskDescriptionFileName;
+	}
+
+	/**
+	 * @param taskDescription Task description, as obtained from {@link CachableWorkPacket#getStringDescriptionOfTask()}
+	 * @return Hex-encoded SHA-256 digest of the task description.
+	 */
+	public static String digest(final String taskDescription) {
+		try {
+			final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			return StringUtilities.toHex(digest.digest(taskDescription.getBytes(Charsets.UTF_8)), "");
+		} catch (NoSuchAlgorithmException e) {
+			throw new MprcException("SHA-256 digest is not supported", e);
+		}
+	}
+
+	/**
+	 * @param digest Digest of the task description.
+	 * @return The cache entry folder for given digest, or null if the cache has no such entry.
+	 */
+	public synchronized File get(final String digest) {
+		load();
+		final Entry entry = entries.get(digest);
+		return entry == null ? null : getFolder(entry);
+	}
+
+	/**
+	 * Same as {@link #get} only the entry is also pinned and marked as just used.
+	 * Pinned entries are never evicted. Every successful call must be paired with {@link #release}.
+	 *
+	 * @param digest Digest of the task description.
+	 * @return The pinned cache entry for given digest (see {@link #getFolder}), or null if the cache has no such entry.
+	 */
+	public synchronized Entry acquire(final String digest) {
+		load();
+		final Entry entry = entries.get(digest);
+		if (entry == null) {
+			return null;
+		}
+		entry.pins++;
+		final long now = System.currentTimeMillis();
+		if (now - entry.lastHit >= HIT_JOURNAL_INTERVAL) {
+			appendToJournal(HIT + SEPARATOR + digest + SEPARATOR + now);
+		}
+		entry.lastHit = now;
+		return entry;
+	}
+
+	/**
+	 * Unpin an entry previously obtained by {@link #acquire} or {@link #put}.
+	 *
+	 * @param entry The entry that was pinned.
+	 */
+	public synchronized void release(final Entry entry) {
+		if (entry.pins > 0) {
+			entry.pins--;
+		}
+	}
+
+	/**
+	 * Record a newly published cache entry. The entry is pinned, call {@link #release} when done with it.
+	 *
+	 * @param digest Digest of the task description.
+	 * @param folder Folder with the published entry. Must be within the cache folder.
+	 * @return The pinned entry.
+	 */
+	public synchronized Entry put(final String digest, final File folder) {
+		load();
+		final long now = System.currentTimeMillis();
+		final Entry entry = new Entry(digest, relativePath(folder), now);
+		entry.lastHit = now;
+		entry.pins = 1;
+		entries.put(digest, entry);
+		appendToJournal(addLine(entry));
+		return entry;
+	}
+
+	/**
+	 * Forget a cache entry. The entry folder itself is not touched.
+	 *
+	 * @param digest Digest of the task description.
+	 */
+	public synchronized void remove(final String digest) {
+		load();
+		if (entries.remove(digest) != null) {
+			appendToJournal(REMOVE + SEPARATOR + digest);
+		}
+	}
+
+	/**
+	 * @return Copy of all the current entries. The entries themselves are live, read them under the index lock.
+	 */
+	synchronized List<Entry> getEntries() {
+		load();
+		return new ArrayList<Entry>(entries.values());
+	}
+
+	/**
+	 * Remove given entry, unless it is pinned or it was replaced in the meantime.
+	 *
+	 * @return True if the entry was removed and its folder can be deleted.
+	 */
+	synchronized boolean evict(final Entry entry) {
+		if (entry.pins > 0 || entries.get(entry.digest) != entry) {
+			return false;
+		}
+		remove(entry.digest);
+		return true;
+	}
+
+	File getFolder(final Entry entry) {
+		return new File(cacheFolder, entry.path);
+	}
+
+	/**
+	 * Forget all the entries and delete the journal.
+	 */
+	public synchronized void clear() {
+		entries.clear();
+		FileUtilities.quietDelete(getJournalFile());
+		loaded = true;
+	}
+
+	public synchronized int size() {
+		load();
+		return entries.size();
+	}
+
+	private File getJournalFile() {
+		return new File(cacheFolder, JOURNAL_FILE_NAME);
+	}
+
+	/**
+	 * Load the journal, or rebuild the index from the folder layout if there is no journal yet.
+	 */
+	private void load() {
+		if (loaded) {
+			return;
+		}
+		final File journal = getJournalFile();
+		if (journal.exists()) {
+			final int lines = replayJournal(journal);
+			if (lines >= COMPACT_MIN_LINES && lines > COMPACT_RATIO * entries.size()) {
+				writeJournal();
+			}
+		} else if (cacheFolder.isDirectory()) {
+			LOGGER.info("Rebuilding cache index for " + cacheFolder.getAbsolutePath());
+			rebuild(cacheFolder);
+			writeJournal();
+			LOGGER.info("Cache index rebuilt with " + entries.size() + " entries");
+		}
+		loaded = true;
+	}
+
+	/**
+	 * @return Number of lines read from the journal.
+	 */
+	private int replayJournal(final File journal) {
+		int lineNumber = 0;
+		final BufferedReader reader = FileUtilities.getReader(journal);
+		try {
+			while (true) {
+				final String line = reader.readLine();
+				if (line == null) {
+					break;
+				}
+				lineNumber++;
+				final String[] parts = line.split(SEPARATOR);
+				if ((parts.length == 4 || parts.length == 5 && isNumber(parts[4])) && ADD.equals(parts[0]) && isNumber(parts[3])) {
+					final Entry entry = new Entry(parts[1], parts[2], Long.parseLong(parts[3]));
+					if (parts.length == 5) {
+						entry.lastHit = Long.parseLong(parts[4]);
+					}
+					entries.put(parts[1], entry);
+				} else if (parts.length == 3 && HIT.equals(parts[0]) && isNumber(parts[2])) {
+					final Entry entry = entries.get(parts[1]);
+					if (entry != null) {
+						entry.lastHit = Math.max(entry.lastHit, Long.parseLong(parts[2]));
+					}
+				} else if (parts.length == 2 && REMOVE.equals(parts[0])) {
+					entries.remove(parts[1]);
+				} else {
+					LOGGER.warn("Skipping malformed line " + lineNumber + " of cache index " + journal.getAbsolutePath());
+				}
+			}
+		} catch (IOException e) {
+			throw new MprcException("Could not read cache index " + journal.getAbsolutePath(), e);
+		} finally {
+			FileUtilities.closeQuietly(reader);
+		}
+		return lineNumber;
+	}
+
+	/**
+	 * Find all published entries under given folder. A folder containing the task description file is an entry,
+	 * we do not descend into it.
+	 */
+	private void rebuild(final File folder) {
+		final File[] files = folder.listFiles();
+		if (files == null) {
+			return;
+		}
+		for (final File file : files) {
+			if (!file.isDirectory()) {
+				continue;
+			}
+			final File taskDescriptionFile = new File(file, taskDescriptionFileName);
+			if (taskDescriptionFile.isFile()) {
+				try {
+					final String taskDescription = Files.toString(taskDescriptionFile, Charsets.UTF_8);
+					final String digest = digest(taskDescription);
+					entries.put(digest, new Entry(digest, relativePath(file), taskDescriptionFile.lastModified()));
+				} catch (final Exception t) {
+					LOGGER.error("Cache cannot read request file " + taskDescriptionFile.getAbsolutePath(), t);
+				}
+			} else {
+				rebuild(file);
+			}
+		}
+	}
+
+	/**
+	 * Write the entire index as a fresh journal, replacing the old one atomically.
+	 */
+	private void writeJournal() {
+		final File temp = new File(cacheFolder, JOURNAL_FILE_NAME_TEMP);
+		final BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(FileUtilities.getOutputStream(temp), Charsets.UTF_8));
+		try {
+			for (final Entry entry : entries.values()) {
+				writer.write(addLine(entry));
+				writer.write('\n');
+			}
+		} catch (IOException e) {
+			throw new MprcException("Could not write cache index " + temp.getAbsolutePath(), e);
+		} finally {
+			FileUtilities.closeQuietly(writer);
+		}
+		FileUtilities.rename(temp, getJournalFile());
+	}
+
+	private static boolean isNumber(final String s) {
+		if (s.isEmpty()) {
+			return false;
+		}
+		for (int i = 0; i < s.length(); i++) {
+			if (!Character.isDigit(s.charAt(i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static String addLine(final Entry entry) {
+		final String line = ADD + SEPARATOR + entry.digest + SEPARATOR + entry.path + SEPARATOR + entry.published;
+		return entry.lastHit == 0 ? line : line + SEPARATOR + entry.lastHit;
+	}
+
+	private void appendToJournal(final String line) {
+		final File journal = getJournalFile();
+		Writer writer = null;
+		try {
+			writer = new OutputStreamWriter(new FileOutputStream(journal, true), Charsets.UTF_8);
+			writer.write(line);
+			writer.write('\n');
+		} catch (IOException e) {
+			throw new MprcException("Could not append to cache index " + journal.getAbsolutePath(), e);
+		} finally {
+			FileUtilities.closeQuietly(writer);
+		}
+	}
+
+	/**
+	 * @return Path of the folder relative to the cache, always using forward slashes.
+	 */
+	private String relativePath(final File folder) {
+		final String base = cacheFolder.getAbsolutePath() + File.separator;
+		final String path = folder.getAbsolutePath();
+		if (!path.startsWith(base)) {
+			throw new MprcException("The folder " + path + " is not within the cache " + cacheFolder.getAbsolutePath());
+		}
+		return path.substring(base.length()).replace(File.separatorChar, '/');
+	}
+
+	/**
+	 * A single published cache entry. The size and pins live only in memory.
+	 */
+	static final class Entry {
+		private final String digest;
+		private final String path;
+		private final long published;
+		/**
+		 * Last time the entry was used, 0 if it was never used.
+		 */
+		private volatile long lastHit;
+		/**
+		 * Total size of the entry files in bytes, -1 if not yet measured.
+		 */
+		private volatile long size = -1;
+		/**
+		 * True if the entry holds folders, whose contents can keep arriving after the entry was published.
+		 */
+		private volatile boolean hasFolders;
+		/**
+		 * When was the size measured.
+		 */
+		private volatile long measured;
+		private int pins;
+
+		Entry(final String digest, final String path, final long published) {
+			this.digest = digest;
+			this.path = path;
+			this.published = published;
+		}
+
+		String getDigest() {
+			return digest;
+		}
+
+		long getPublished() {
+			return published;
+		}
+
+		/**
+		 * @return Last time the entry was used, or the time it got published if it was not used yet.
+		 */
+		long getLastUsed() {
+			return lastHit == 0 ? published : lastHit;
+		}
+
+		long getSize() {
+			return size;
+		}
+
+		boolean hasFolders() {
+			return hasFolders;
+		}
+
+		long getMeasured() {
+			return measured;
+		}
+
+		void setSize(final long size, final boolean hasFolders) {
+			this.size = size;
+			this.hasFolders = hasFolders;
+			measured = System.currentTimeMillis();
+		}
+
+		boolean isPinned() {
+			return pins > 0;
+		}
+	}
+}
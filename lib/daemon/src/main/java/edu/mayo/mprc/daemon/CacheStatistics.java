@@ -0,0 +1,55 @@
+package edu.mayo.mprc.daemon;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters describing how well a {@link WorkCache} performs.
+ *
+ * @author Roman Zenka
+ */
+public final class CacheStatistics {
+	private final AtomicLong hits = new AtomicLong(0);
+	private final AtomicLong misses = new AtomicLong(0);
+	private final AtomicLong evictedEntries = new AtomicLong(0);
+	private final AtomicLong evictedBytes = new AtomicLong(0);
+
+	public CacheStatistics() {
+	}
+
+	void hit() {
+		hits.incrementAndGet();
+	}
+
+	void miss() {
+		misses.incrementAndGet();
+	}
+
+	void evicted(final long bytes) {
+		evictedEntries.incrementAndGet();
+		evictedBytes.addAndGet(bytes);
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+
+	public long getEvictedEntries() {
+		return evictedEntries.get();
+	}
+
+	public long getEvictedBytes() {
+		return evictedBytes.get();
+	}
+
+	@Override
+	public String toString() {
+		return "hits: " + getHits()
+				+ ", misses: " + getMisses()
+				+ ", evicted entries: " + getEvictedEntries()
+				+ ", evicted bytes: " + getEvictedBytes();
+	}
+}
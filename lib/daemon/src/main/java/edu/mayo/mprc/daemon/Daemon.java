@@ -51,6 +51,11 @@ public final class Daemon implements Checkable, Installable {
 	 */
 	private File logOutputFolder;
 
+	/**
+	 * Decides when the requests of the runners get to run, given the cores and memory of the node.
+	 */
+	private NodeScheduler nodeScheduler;
+
 	/**
 	 * Holder of a connection that allows us to set the response dispatcher.
 	 */
@@ -230,6 +235,14 @@ public final class Daemon implements Checkable, Installable {
 		this.dumpErrors = dumpErrors;
 	}
 
+	public NodeScheduler getNodeScheduler() {
+		return nodeScheduler;
+	}
+
+	public void setNodeScheduler(final NodeScheduler nodeScheduler) {
+		this.nodeScheduler = nodeScheduler;
+	}
+
 	public File getDumpFolder() {
 		return dumpFolder;
 	}
@@ -352,6 +365,7 @@ public final class Daemon implements Checkable, Installable {
 			getDaemonConnectionFactory().setResponseDispatcher(daemon.getResponseDispatcher());
 
 			daemon.setDumpErrors(config.isDumpErrors());
+			daemon.setNodeScheduler(new NodeScheduler(config.getCores(), config.getMemory()));
 			daemon.setDumpFolder(config.getDumpFolderPath() == null ? null : new File(config.getDumpFolderPath()));
 			if (config.getLogOutputFolder() == null) {
 				daemon.setLogOutputFolder(new File(DaemonConfig.DEFAULT_LOG_FOLDER));
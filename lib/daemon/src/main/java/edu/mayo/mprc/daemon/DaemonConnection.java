@@ -9,6 +9,8 @@ import edu.mayo.mprc.messaging.ResponseListener;
 import edu.mayo.mprc.messaging.Service;
 import edu.mayo.mprc.utilities.progress.ProgressListener;
 
+import java.util.List;
+
 /**
  * A wrapper around {@link Service} that adds the capability to translate {@link FileTokenHolder}
  * object as they go onto and off the wire. This requires the received {@link Request} to be
@@ -54,4 +56,14 @@ public interface DaemonConnection extends Lifecycle {
 	 * @return Requested work + means of reporting progress.
 	 */
 	DaemonRequest receiveDaemonRequest(long timeout);
+
+	/**
+	 * Receive all work that is immediately available, up to given amount of requests.
+	 * Each request has to be processed on its own, see {@link edu.mayo.mprc.messaging.Service#receiveRequests}.
+	 *
+	 * @param maxRequests Maximum amount of requests to receive.
+	 * @param timeout     How long to wait for the first request.
+	 * @return Requested work, empty list if nothing arrived within the timeout.
+	 */
+	List<DaemonRequest> receiveDaemonRequests(int maxRequests, long timeout);
 }
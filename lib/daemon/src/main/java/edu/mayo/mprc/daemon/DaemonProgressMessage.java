@@ -3,18 +3,31 @@ package edu.mayo.mprc.daemon;
 import edu.mayo.mprc.utilities.MonitorUtilities;
 import edu.mayo.mprc.utilities.progress.ProgressInfo;
 
-import java.io.Serializable;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
 
 /**
  * Message about daemon progress.
+ * <p/>
+ * The messages are sent very often, so they write themselves in a compact form
+ * (see {@link edu.mayo.mprc.messaging.QueueSettings#setCompactMessages}).
  */
-public final class DaemonProgressMessage implements Serializable {
-	private static final long serialVersionUID = 20071220L;
+public final class DaemonProgressMessage implements Externalizable {
+	private static final long serialVersionUID = 20141020L;
+	private static final DaemonProgress[] PROGRESS_VALUES = DaemonProgress.values();
 
 	private DaemonProgress progress;
 	private ProgressInfo progressData;
 	private String host;
 
+	/**
+	 * For {@link Externalizable} only.
+	 */
+	public DaemonProgressMessage() {
+	}
+
 	public DaemonProgressMessage(final DaemonProgress progress) {
 		this(progress, null);
 	}
@@ -60,6 +73,20 @@ public final class DaemonProgressMessage implements Serializable {
 		return host;
 	}
 
+	@Override
+	public void writeExternal(final ObjectOutput out) throws IOException {
+		out.writeByte(progress.ordinal());
+		out.writeObject(progressData);
+		out.writeObject(host);
+	}
+
+	@Override
+	public void readExternal(final ObjectInput in) throws IOException, ClassNotFoundException {
+		progress = PROGRESS_VALUES[in.readByte()];
+		progressData = (ProgressInfo) in.readObject();
+		host = (String) in.readObject();
+	}
+
 	@Override
 	public String toString() {
 		return progress.name() + "\t" + (progressData == null ? "" : progressData.toString()) + " on " + getHostString();
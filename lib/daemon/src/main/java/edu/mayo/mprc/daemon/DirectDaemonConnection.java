@@ -10,6 +10,8 @@ import edu.mayo.mprc.messaging.Service;
 import edu.mayo.mprc.utilities.progress.ProgressListener;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -86,14 +88,41 @@ final class DirectDaemonConnection implements DaemonConnection {
 
 		final Request request = service.receiveRequest(timeout);
 		if (request != null) {
-			try {
-				final MyDaemonRequest myRequest = new MyDaemonRequest(request, fileTokenFactory);
-				myRequest.prepareRequest();
-				return myRequest;
-			} catch (Exception e) {
-				request.sendResponse(new MprcException("Failed to process the request on the receiver", e), true);
+			return prepareRequest(request);
+		}
+		return null;
+	}
+
+	@Override
+	public List<DaemonRequest> receiveDaemonRequests(final int maxRequests, final long timeout) {
+		if (!isRunning()) {
+			start();
+		}
+
+		final List<Request> requests = service.receiveRequests(maxRequests, timeout);
+		final List<DaemonRequest> daemonRequests = new ArrayList<DaemonRequest>(requests.size());
+		for (final Request request : requests) {
+			final DaemonRequest daemonRequest = prepareRequest(request);
+			if (daemonRequest != null) {
+				daemonRequests.add(daemonRequest);
 			}
 		}
+		return daemonRequests;
+	}
+
+	/**
+	 * @return Request ready for processing, null if it could not be prepared (the failure is reported to the sender).
+	 */
+	private DaemonRequest prepareRequest(final Request request) {
+		try {
+			final MyDaemonRequest myRequest = new MyDaemonRequest(request, fileTokenFactory);
+			myRequest.prepareRequest();
+			return myRequest;
+		} catch (Exception e) {
+			request.sendResponse(new MprcException("Failed to process the request on the receiver", e), true);
+			// Requests are acknowledged one by one, nobody else would acknowledge this one
+			request.processed();
+		}
 		return null;
 	}
 
@@ -6,6 +6,7 @@ import edu.mayo.mprc.daemon.files.FileDownloader;
 import edu.mayo.mprc.daemon.files.FileToken;
 import edu.mayo.mprc.daemon.transfer.FileTransferChunk;
 import edu.mayo.mprc.daemon.transfer.FileTransferWorkPacket;
+import edu.mayo.mprc.daemon.transfer.FileTransferWorker;
 import edu.mayo.mprc.daemon.worker.log.NewLogFiles;
 import edu.mayo.mprc.utilities.FileUtilities;
 import edu.mayo.mprc.utilities.progress.ProgressInfo;
@@ -13,15 +14,35 @@ import edu.mayo.mprc.utilities.progress.ProgressListener;
 import org.apache.log4j.Logger;
 
 import java.io.File;
+import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.concurrent.CountDownLatch;
 
 /**
+ * Downloads files from other daemons using their {@link edu.mayo.mprc.daemon.transfer.FileTransferWorker}.
+ * <p/>
+ * The file is requested in windows of {@link #WINDOW_SIZE} bytes. Next window is requested only after the previous
+ * one fully arrived, so there is at most one window per download in flight. Each chunk is checksummed and written
+ * directly to its place in the target file. When a window fails, the download resumes from the last
+ * byte successfully written, up to {@link #MAX_RETRIES} times in a row.
+ *
  * @author Roman Zenka
  */
 public final class FileDownloaderImpl implements FileDownloader {
 	private static final Logger LOGGER = Logger.getLogger(FileDownloaderImpl.class);
 
+	/**
+	 * How many bytes to request at once.
+	 */
+	public static final long WINDOW_SIZE = 64L * FileTransferWorker.BUFFER_SIZE;
+
+	/**
+	 * How many times in a row can a window fail before we give up.
+	 */
+	public static final int MAX_RETRIES = 3;
+
 	private DaemonConnectionFactory factory;
 	private DependencyResolver resolver;
 
@@ -35,17 +56,36 @@ public final class FileDownloaderImpl implements FileDownloader {
 		LOGGER.debug("Downloading file from " + fileToken.toString() + " into " + result.getAbsolutePath());
 		FileUtilities.ensureFolderExists(result.getParentFile());
 
+		final ChunkWriter writer = new ChunkWriter(result);
 		try {
 			final DaemonConnection d = getDaemonConnection(fileToken);
-			final FileDownloadListener listener = new FileDownloadListener(result);
-			d.sendWork(new FileTransferWorkPacket(false, fileToken), listener);
-			listener.waitUntilDownloaded();
-			LOGGER.debug("Downloaded file from " + fileToken.toString() + " into " + result.getAbsolutePath());
-			if (listener.getFailure() != null) {
-				throw listener.getFailure();
+			int failures = 0;
+			while (!writer.isComplete()) {
+				final long windowStart = writer.getReceived();
+				final WindowListener listener = new WindowListener(writer);
+				d.sendWork(new FileTransferWorkPacket(false, fileToken, windowStart, WINDOW_SIZE), listener);
+				listener.waitUntilDownloaded();
+
+				Exception failure = listener.getFailure();
+				if (failure == null && !writer.isComplete() && writer.getReceived() == windowStart) {
+					failure = new MprcException("No data received at offset " + windowStart);
+				}
+				if (failure == null) {
+					failures = 0;
+				} else {
+					failures++;
+					if (failures > MAX_RETRIES) {
+						throw failure;
+					}
+					LOGGER.warn("Download of " + fileToken.toString() + " interrupted, resuming from offset " + writer.getReceived(), failure);
+				}
 			}
+			writer.finish();
+			LOGGER.debug("Downloaded file from " + fileToken.toString() + " into " + result.getAbsolutePath());
 		} catch (final Exception e) {
 			throw new MprcException("Failed to write chunks of file", e);
+		} finally {
+			writer.close();
 		}
 		return result;
 	}
@@ -54,26 +94,18 @@ public final class FileDownloaderImpl implements FileDownloader {
 		return factory.create(Daemon.getFileTransferServiceConfig(fileToken.getSourceDaemonConfigInfo().getDaemonId()), resolver);
 	}
 
-	private static class FileDownloadListener implements ProgressListener {
+	/**
+	 * Writes incoming chunks straight to the target file. The chunks must arrive in order.
+	 */
+	static final class ChunkWriter {
 		private final File output;
 		private RandomAccessFile file;
-		private final CountDownLatch latch;
-		private final Object lock = new Object();
-		private Exception failure = null;
+		private FileChannel channel;
+		private long received;
+		private long fileLength = -1;
 
-		public FileDownloadListener(final File output) {
+		ChunkWriter(final File output) {
 			this.output = output;
-			this.latch = new CountDownLatch(1);
-		}
-
-		@Override
-		public void requestEnqueued(final String hostString) {
-
-		}
-
-		@Override
-		public void requestProcessingStarted(final String hostString) {
-			init();
 		}
 
 		private void init() {
@@ -83,11 +115,73 @@ public final class FileDownloaderImpl implements FileDownloader {
 			try {
 				file = new RandomAccessFile(output, "rw");
 				file.setLength(0);
+				channel = file.getChannel();
 			} catch (final Exception e) {
 				throw new MprcException("Could not open " + output.getAbsolutePath(), e);
 			}
 		}
 
+		public synchronized void write(final FileTransferChunk chunk) throws IOException {
+			if (chunk.getOffset() != received) {
+				throw new MprcException("Expected chunk at offset " + received + ", got " + chunk.getOffset());
+			}
+			if (!chunk.isValid()) {
+				throw new MprcException("Checksum mismatch for chunk at offset " + chunk.getOffset());
+			}
+			init();
+			final ByteBuffer buffer = ByteBuffer.wrap(chunk.getChunk());
+			long position = chunk.getOffset();
+			while (buffer.hasRemaining()) {
+				position += channel.write(buffer, position);
+			}
+			received = position;
+			fileLength = chunk.getFileLength();
+		}
+
+		public synchronized long getReceived() {
+			return received;
+		}
+
+		public synchronized boolean isComplete() {
+			return fileLength >= 0 && received >= fileLength;
+		}
+
+		/**
+		 * The transfer is complete - make sure the file is of exactly the right length.
+		 */
+		public synchronized void finish() throws IOException {
+			init();
+			channel.truncate(fileLength);
+		}
+
+		public synchronized void close() {
+			FileUtilities.closeQuietly(file);
+		}
+	}
+
+	/**
+	 * Listens to the transfer of a single window.
+	 */
+	private static final class WindowListener implements ProgressListener {
+		private final ChunkWriter writer;
+		private final CountDownLatch latch;
+		private final Object lock = new Object();
+		private Exception failure = null;
+
+		private WindowListener(final ChunkWriter writer) {
+			this.writer = writer;
+			latch = new CountDownLatch(1);
+		}
+
+		@Override
+		public void requestEnqueued(final String hostString) {
+
+		}
+
+		@Override
+		public void requestProcessingStarted(final String hostString) {
+		}
+
 		public void waitUntilDownloaded() {
 			try {
 				latch.await();
@@ -97,7 +191,6 @@ public final class FileDownloaderImpl implements FileDownloader {
 		}
 
 		private void done() {
-			FileUtilities.closeQuietly(file);
 			latch.countDown();
 		}
 
@@ -109,7 +202,9 @@ public final class FileDownloaderImpl implements FileDownloader {
 
 		public void setFailure(final Exception failure) {
 			synchronized (lock) {
-				this.failure = failure;
+				if (this.failure == null) {
+					this.failure = failure;
+				}
 			}
 		}
 
@@ -120,6 +215,7 @@ public final class FileDownloaderImpl implements FileDownloader {
 
 		@Override
 		public void requestTerminated(final Exception e) {
+			setFailure(e);
 			done();
 		}
 
@@ -129,16 +225,13 @@ public final class FileDownloaderImpl implements FileDownloader {
 				// Do nothing
 				return;
 			}
-			if (progressInfo instanceof FileTransferChunk) {
+			if (progressInfo instanceof FileTransferChunk && getFailure() == null) {
 				final FileTransferChunk chunk = (FileTransferChunk) progressInfo;
 				try {
-					init();
-					file.seek(chunk.getOffset());
-					file.write(chunk.getChunk());
+					writer.write(chunk);
 				} catch (final Exception e) {
-					final MprcException mprcException = new MprcException("Could not write chunk to file", e);
-					setFailure(e);
-					throw mprcException;
+					// SWALLOWED: the rest of the window is ignored, the download resumes from the last good chunk
+					setFailure(new MprcException("Could not write chunk to file", e));
 				}
 			}
 		}
@@ -0,0 +1,261 @@
+package edu.mayo.mprc.daemon;
+
+import edu.mayo.mprc.MprcException;
+import org.apache.log4j.Logger;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides when the requests of all the runners of a daemon get to run.
+ * <p/>
+ * Each runner submits its requests to its own {@link RequestQueue}. The waiting requests of all the queues
+ * are ordered by priority (higher first), then by the time of arrival. A request is admitted when its runner
+ * has a free thread and when the cores and memory it needs fit within the node budget. A request that does not fit
+ * is skipped and smaller requests behind it can run, so a big search does not hold up quick jobs. Once the skipped
+ * request waits longer than {@link #DEFAULT_MAX_BACKFILL_WAIT}, nothing behind it is admitted until it runs.
+ * <p/>
+ * Zero budget means no limit. Requests asking for more than the whole budget are limited to the budget.
+ *
+ * @author Roman Zenka
+ */
+public final class NodeScheduler {
+	private static final Logger LOGGER = Logger.getLogger(NodeScheduler.class);
+	public static final long DEFAULT_MAX_BACKFILL_WAIT = TimeUnit.MINUTES.toNanos(10);
+	private static final String MBEAN_DOMAIN = "edu.mayo.mprc.daemon";
+
+	private final int cores;
+	private final int memoryMegabytes;
+	private final long maxBackfillWaitNanos;
+
+	private int usedCores;
+	private int usedMemoryMegabytes;
+	private long sequence;
+	private final TreeSet<Admission> waiting = new TreeSet<Admission>(new AdmissionComparator());
+
+	/**
+	 * @param cores           How many cores can the requests use at once. 0 for no limit.
+	 * @param memoryMegabytes How much memory can the requests use at once. 0 for no limit.
+	 */
+	public NodeScheduler(final int cores, final int memoryMegabytes) {
+		this(cores, memoryMegabytes, DEFAULT_MAX_BACKFILL_WAIT);
+	}
+
+	NodeScheduler(final int cores, final int memoryMegabytes, final long maxBackfillWaitNanos) {
+		this.cores = Math.max(0, cores);
+		this.memoryMegabytes = Math.max(0, memoryMegabytes);
+		this.maxBackfillWaitNanos = maxBackfillWaitNanos;
+	}
+
+	/**
+	 * Create a queue for a runner. The queue statistics are registered as a JMX bean.
+	 *
+	 * @param name       Name of the queue.
+	 * @param executor   Executor that runs the admitted requests. Must not block - the admitted requests
+	 *                   are submitted from the threads of finishing requests.
+	 * @param maxRunning How many requests can the executor run at once.
+	 */
+	public RequestQueue createQueue(final String name, final Executor executor, final int maxRunning) {
+		final RequestQueue queue = new RequestQueue(name, executor, maxRunning, maxRunning);
+		try {
+			ManagementFactory.getPlatformMBeanServer().registerMBean(queue, getObjectName(queue));
+		} catch (final Exception e) {
+			// SWALLOWED: the queue works without monitoring
+			LOGGER.warn("Could not register JMX bean for request queue " + name + ": " + MprcException.getDetailedMessage(e));
+		}
+		return queue;
+	}
+
+	/**
+	 * Stop monitoring a queue that is no longer used.
+	 */
+	public void removeQueue(final RequestQueue queue) {
+		try {
+			final ObjectName objectName = getObjectName(queue);
+			if (ManagementFactory.getPlatformMBeanServer().isRegistered(objectName)) {
+				ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+			}
+		} catch (final Exception e) {
+			// SWALLOWED: we are shutting down
+			LOGGER.warn("Could not unregister JMX bean for request queue " + queue.getName() + ": " + MprcException.getDetailedMessage(e));
+		}
+	}
+
+	private static ObjectName getObjectName(final RequestQueue queue) throws Exception {
+		return new ObjectName(MBEAN_DOMAIN + ":type=RequestQueue,name=" + ObjectName.quote(queue.getName()));
+	}
+
+	/**
+	 * Submit a request to run. Blocks while the queue is full.
+	 *
+	 * @param queue           Queue of the runner.
+	 * @param task            What to run.
+	 * @param priority        Priority of the request, higher runs first.
+	 * @param requiredCores   How many cores the request needs.
+	 * @param requiredMemory  How many megabytes of memory the request needs.
+	 * @throws InterruptedException When interrupted while waiting for space in the queue.
+	 */
+	public void submit(final RequestQueue queue, final Runnable task, final int priority,
+	                   final int requiredCores, final int requiredMemory) throws InterruptedException {
+		synchronized (this) {
+			while (queue.isFull()) {
+				wait();
+			}
+			final int cappedCores = cores == 0 ? requiredCores : Math.min(Math.max(1, requiredCores), cores);
+			final int cappedMemory = memoryMegabytes == 0 ? requiredMemory : Math.min(Math.max(0, requiredMemory), memoryMegabytes);
+			waiting.add(new Admission(queue, task, priority, cappedCores, cappedMemory, sequence++, System.nanoTime()));
+			queue.enqueued();
+		}
+		dispatch();
+	}
+
+	/**
+	 * Admit all the requests we can and run them.
+	 */
+	private void dispatch() {
+		final List<Admission> admitted = new ArrayList<Admission>(1);
+		synchronized (this) {
+			final long now = System.nanoTime();
+			final Iterator<Admission> iterator = waiting.iterator();
+			while (iterator.hasNext()) {
+				final Admission admission = iterator.next();
+				if (!admission.getQueue().canRun()) {
+					// The runner is busy, its requests do not hold up the others
+					continue;
+				}
+				if (fits(admission)) {
+					iterator.remove();
+					usedCores += admission.getCores();
+					usedMemoryMegabytes += admission.getMemory();
+					admission.getQueue().admitted(now - admission.getSubmitted());
+					admitted.add(admission);
+				} else if (now - admission.getSubmitted() > maxBackfillWaitNanos) {
+					// Keep the resources freeing up for this request
+					break;
+				}
+			}
+			if (!admitted.isEmpty()) {
+				// There is space in the queues now
+				notifyAll();
+			}
+		}
+
+		for (final Admission admission : admitted) {
+			try {
+				admission.getQueue().getExecutor().execute(admission);
+			} catch (final RejectedExecutionException e) {
+				// SWALLOWED: the runner is stopping, the request will not run
+				LOGGER.warn("Request for " + admission.getQueue().getName() + " was rejected: " + MprcException.getDetailedMessage(e));
+				finished(admission);
+			}
+		}
+	}
+
+	private boolean fits(final Admission admission) {
+		return (cores == 0 || usedCores + admission.getCores() <= cores)
+				&& (memoryMegabytes == 0 || usedMemoryMegabytes + admission.getMemory() <= memoryMegabytes);
+	}
+
+	private void finished(final Admission admission) {
+		synchronized (this) {
+			usedCores -= admission.getCores();
+			usedMemoryMegabytes -= admission.getMemory();
+			admission.getQueue().finished();
+		}
+		dispatch();
+	}
+
+	public int getCores() {
+		return cores;
+	}
+
+	public int getMemoryMegabytes() {
+		return memoryMegabytes;
+	}
+
+	public synchronized int getUsedCores() {
+		return usedCores;
+	}
+
+	public synchronized int getUsedMemoryMegabytes() {
+		return usedMemoryMegabytes;
+	}
+
+	/**
+	 * A request waiting for admission. When run, it releases its resources after the task finishes.
+	 */
+	private final class Admission implements Runnable {
+		private final RequestQueue queue;
+		private final Runnable task;
+		private final int priority;
+		private final int cores;
+		private final int memory;
+		private final long sequence;
+		private final long submitted;
+
+		private Admission(final RequestQueue queue, final Runnable task, final int priority, final int cores,
+		                  final int memory, final long sequence, final long submitted) {
+			this.queue = queue;
+			this.task = task;
+			this.priority = priority;
+			this.cores = cores;
+			this.memory = memory;
+			this.sequence = sequence;
+			this.submitted = submitted;
+		}
+
+		@Override
+		public void run() {
+			try {
+				task.run();
+			} finally {
+				finished(this);
+			}
+		}
+
+		public RequestQueue getQueue() {
+			return queue;
+		}
+
+		public int getPriority() {
+			return priority;
+		}
+
+		public int getCores() {
+			return cores;
+		}
+
+		public int getMemory() {
+			return memory;
+		}
+
+		public long getSequence() {
+			return sequence;
+		}
+
+		public long getSubmitted() {
+			return submitted;
+		}
+	}
+
+	/**
+	 * Higher priority first, then the order of submission.
+	 */
+	private static final class AdmissionComparator implements Comparator<Admission> {
+		@Override
+		public int compare(final Admission o1, final Admission o2) {
+			if (o1.getPriority() != o2.getPriority()) {
+				return o1.getPriority() > o2.getPriority() ? -1 : 1;
+			}
+			return o1.getSequence() < o2.getSequence() ? -1 : (o1.getSequence() == o2.getSequence() ? 0 : 1);
+		}
+	}
+}
@@ -0,0 +1,105 @@
+package edu.mayo.mprc.daemon;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Requests of one runner waiting in the {@link NodeScheduler}. The queue knows where to run the admitted
+ * requests, how many of them can run at once and how long they waited.
+ * <p/>
+ * The counters are changed only while holding the scheduler lock, they are volatile so they can be read for monitoring.
+ *
+ * @author Roman Zenka
+ */
+public final class RequestQueue implements RequestQueueMBean {
+	private final String name;
+	private final Executor executor;
+	private final int maxRunning;
+	private final int maxWaiting;
+
+	private volatile int waiting;
+	private volatile int running;
+	private volatile long admitted;
+	private volatile long totalWaitNanos;
+	private volatile long maxWaitNanos;
+
+	/**
+	 * @param name       Name of the queue, for monitoring.
+	 * @param executor   Executor to run the admitted requests.
+	 * @param maxRunning How many requests can run at once - the amount of threads of the executor.
+	 * @param maxWaiting How many requests can wait in the queue before submitting more blocks.
+	 */
+	RequestQueue(final String name, final Executor executor, final int maxRunning, final int maxWaiting) {
+		this.name = name;
+		this.executor = executor;
+		this.maxRunning = Math.max(1, maxRunning);
+		this.maxWaiting = Math.max(1, maxWaiting);
+	}
+
+	Executor getExecutor() {
+		return executor;
+	}
+
+	boolean isFull() {
+		return waiting >= maxWaiting;
+	}
+
+	boolean canRun() {
+		return running < maxRunning;
+	}
+
+	void enqueued() {
+		waiting++;
+	}
+
+	void admitted(final long waitNanos) {
+		waiting--;
+		running++;
+		admitted++;
+		totalWaitNanos += waitNanos;
+		maxWaitNanos = Math.max(maxWaitNanos, waitNanos);
+	}
+
+	void finished() {
+		running--;
+	}
+
+	@Override
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public int getWaitingRequests() {
+		return waiting;
+	}
+
+	@Override
+	public int getRunningRequests() {
+		return running;
+	}
+
+	@Override
+	public long getAdmittedRequests() {
+		return admitted;
+	}
+
+	@Override
+	public double getAverageWaitMillis() {
+		return admitted == 0 ? 0.0 : totalWaitNanos / 1.0e6 / admitted;
+	}
+
+	@Override
+	public long getMaxWaitMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(maxWaitNanos);
+	}
+
+	@Override
+	public String toString() {
+		return name + " - waiting: " + waiting
+				+ ", running: " + running
+				+ ", admitted: " + admitted
+				+ ", average wait: " + String.format("%.1f", getAverageWaitMillis()) + " ms"
+				+ ", max wait: " + getMaxWaitMillis() + " ms";
+	}
+}
@@ -0,0 +1,38 @@
+package edu.mayo.mprc.daemon;
+
+/**
+ * Statistics of a {@link RequestQueue} exported over JMX.
+ *
+ * @author Roman Zenka
+ */
+public interface RequestQueueMBean {
+	/**
+	 * @return Name of the queue - the service the requests are for.
+	 */
+	String getName();
+
+	/**
+	 * @return How many requests wait to be admitted.
+	 */
+	int getWaitingRequests();
+
+	/**
+	 * @return How many requests are running.
+	 */
+	int getRunningRequests();
+
+	/**
+	 * @return How many requests were admitted so far.
+	 */
+	long getAdmittedRequests();
+
+	/**
+	 * @return Average time the admitted requests waited in the queue, in milliseconds.
+	 */
+	double getAverageWaitMillis();
+
+	/**
+	 * @return Longest time an admitted request waited in the queue, in milliseconds.
+	 */
+	long getMaxWaitMillis();
+}
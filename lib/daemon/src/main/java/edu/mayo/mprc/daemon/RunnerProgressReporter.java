@@ -1,22 +1,56 @@
 package edu.mayo.mprc.daemon;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import edu.mayo.mprc.utilities.log.ParentLog;
+import edu.mayo.mprc.utilities.progress.PercentDone;
 import edu.mayo.mprc.utilities.progress.ProgressInfo;
 import edu.mayo.mprc.utilities.progress.ProgressReporter;
 
+import java.io.Serializable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
 /**
  * A progress reporter for runners.
+ * <p/>
+ * Workers can report {@link PercentDone} many times a second. Each report is a message sent over the wire, so
+ * percent done updates arriving sooner than {@link #PERCENT_DONE_INTERVAL} after the last one sent are held back.
+ * Only the newest of them is sent, once the interval passes, unless the request finishes first.
+ * Reaching 100% and all other kinds of progress information are always sent right away.
  *
  * @author Roman Zenka
  */
 public final class RunnerProgressReporter implements ProgressReporter {
+	/**
+	 * Minimum time in milliseconds between two {@link PercentDone} updates.
+	 */
+	public static final long PERCENT_DONE_INTERVAL = 500;
+
+	private static final ScheduledExecutorService PERCENT_DONE_TIMER = Executors.newSingleThreadScheduledExecutor(
+			new ThreadFactoryBuilder()
+					.setDaemon(true)
+					.setNameFormat("percent-done-%d")
+					.build());
+
 	private AbstractRunner runner;
 	private final DaemonRequest request;
 	private ParentLog parentLog;
+	private final long percentDoneInterval;
+	private long lastPercentDone;
+	// Newest percent done that was held back, sent by the timer. Guarded by this, as are the fields below.
+	private PercentDone pendingPercentDone;
+	private boolean flushScheduled;
+	private boolean finished;
 
 	public RunnerProgressReporter(final AbstractRunner runner, final DaemonRequest request) {
+		this(runner, request, PERCENT_DONE_INTERVAL);
+	}
+
+	RunnerProgressReporter(final AbstractRunner runner, final DaemonRequest request, final long percentDoneInterval) {
 		this.runner = runner;
 		this.request = request;
+		this.percentDoneInterval = percentDoneInterval;
 	}
 
 	@Override
@@ -26,17 +60,68 @@ public final class RunnerProgressReporter implements ProgressReporter {
 
 	@Override
 	public void reportProgress(final ProgressInfo progressInfo) {
+		if (progressInfo instanceof PercentDone && !percentDoneDue((PercentDone) progressInfo)) {
+			return;
+		}
+		sendProgress(progressInfo);
+	}
+
+	private void sendProgress(final ProgressInfo progressInfo) {
 		runner.sendResponse(request, new DaemonProgressMessage(DaemonProgress.UserSpecificProgressInfo, progressInfo), false);
 	}
 
+	private synchronized boolean percentDoneDue(final PercentDone percentDone) {
+		final long now = System.currentTimeMillis();
+		if (percentDone.getPercentDone() < 100.0 && lastPercentDone != 0 && now - lastPercentDone < percentDoneInterval) {
+			pendingPercentDone = percentDone;
+			if (!flushScheduled) {
+				flushScheduled = true;
+				PERCENT_DONE_TIMER.schedule(new Runnable() {
+					@Override
+					public void run() {
+						flushPercentDone();
+					}
+				}, percentDoneInterval - (now - lastPercentDone), TimeUnit.MILLISECONDS);
+			}
+			return false;
+		}
+		lastPercentDone = now;
+		pendingPercentDone = null;
+		return true;
+	}
+
+	/**
+	 * Send the percent done that was held back, unless a newer one was sent since.
+	 * Sent under the lock, so it cannot overtake the final response sent by {@link #finish}.
+	 */
+	private synchronized void flushPercentDone() {
+		flushScheduled = false;
+		final PercentDone percentDone = pendingPercentDone;
+		pendingPercentDone = null;
+		if (percentDone == null || finished) {
+			return;
+		}
+		lastPercentDone = System.currentTimeMillis();
+		sendProgress(percentDone);
+	}
+
+	/**
+	 * Send the final response. Nothing held back gets sent after it.
+	 */
+	private synchronized void finish(final Serializable response) {
+		finished = true;
+		pendingPercentDone = null;
+		runner.sendResponse(request, response, true);
+	}
+
 	@Override
 	public void reportSuccess() {
-		runner.sendResponse(request, new DaemonProgressMessage(DaemonProgress.RequestCompleted), true);
+		finish(new DaemonProgressMessage(DaemonProgress.RequestCompleted));
 	}
 
 	@Override
 	public void reportFailure(final Throwable t) {
-		runner.sendResponse(request, t, true);
+		finish(t);
 	}
 
 	public void setParentLog(final ParentLog parentLog) {
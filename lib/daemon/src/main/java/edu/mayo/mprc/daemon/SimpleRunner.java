@@ -5,22 +5,33 @@ import edu.mayo.mprc.config.*;
 import edu.mayo.mprc.config.ui.FactoryDescriptor;
 import edu.mayo.mprc.config.ui.ServiceUiFactory;
 import edu.mayo.mprc.daemon.exception.DaemonException;
+import edu.mayo.mprc.daemon.worker.CoreRequirements;
+import edu.mayo.mprc.daemon.worker.MemoryRequirements;
 import edu.mayo.mprc.daemon.worker.NoLoggingWorker;
+import edu.mayo.mprc.daemon.worker.ReusableWorker;
 import edu.mayo.mprc.daemon.worker.Worker;
 import edu.mayo.mprc.daemon.worker.WorkerFactory;
+import edu.mayo.mprc.daemon.worker.WorkPacket;
 import edu.mayo.mprc.daemon.worker.WorkerFactoryBase;
 import edu.mayo.mprc.utilities.log.ChildLog;
 import edu.mayo.mprc.utilities.log.ParentLog;
 import org.apache.log4j.Logger;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
 
 /**
  * Runs {@link Worker} instances using specified {@link ExecutorService} and
  * {@link WorkerFactory}.
- * A new worker is created for each request.
+ * A new worker is created for each request, unless worker reuse is enabled and the worker is a {@link ReusableWorker}.
+ * In that case each executor thread creates its worker once and keeps it.
+ * <p/>
+ * When the daemon has a {@link NodeScheduler}, the requests wait in its queue until their priority comes up and
+ * the cores and memory they need are available.
  */
 public final class SimpleRunner extends AbstractRunner {
 	private static final Logger LOGGER = Logger.getLogger(SimpleRunner.class);
@@ -36,6 +47,24 @@ public final class SimpleRunner extends AbstractRunner {
 	 */
 	private ResourceConfig config;
 	private DependencyResolver dependencies;
+	/**
+	 * Keep one worker per executor thread instead of creating a new one for every request.
+	 */
+	private boolean reuseWorkers;
+	private final ThreadLocal<Worker> threadWorker = new ThreadLocal<Worker>();
+	/**
+	 * All the workers kept by the executor threads, so we can stop them.
+	 */
+	private final List<Worker> reusedWorkers = new ArrayList<Worker>(1);
+	/**
+	 * Worker kept for {@link #check()} and {@link #install}.
+	 */
+	private Worker utilityWorker;
+	private final WorkerSetupStatistics setupStatistics = new WorkerSetupStatistics();
+	/**
+	 * Our queue in the node scheduler, null if the requests are passed directly to the executor.
+	 */
+	private RequestQueue requestQueue;
 
 	public SimpleRunner() {
 	}
@@ -47,26 +76,159 @@ public final class SimpleRunner extends AbstractRunner {
 
 	@Override
 	protected void processRequest(final DaemonRequest request) {
+		if (isReuseWorkers()) {
+			// The worker is obtained in the executor thread that will keep it
+			execute(new RequestProcessor(null, request), request);
+			return;
+		}
 		final Worker worker;
+		final long setupStart = System.nanoTime();
 		try {
 			worker = getFactory().create(config, dependencies);
 		} catch (final Exception e) {
 			request.sendResponse(e, true);
 			return;
 		}
-		executorService.execute(new RequestProcessor(worker, request));
+		recordSetup(true, System.nanoTime() - setupStart);
+		execute(new RequestProcessor(worker, request), request);
+	}
+
+	/**
+	 * Run the request processor, through the node scheduler if there is one.
+	 */
+	private void execute(final RequestProcessor processor, final DaemonRequest request) {
+		final RequestQueue queue = getRequestQueue();
+		if (queue == null) {
+			executorService.execute(processor);
+			return;
+		}
+		final WorkPacket workPacket = request.getWorkPacket();
+		final int cores = workPacket instanceof CoreRequirements ? ((CoreRequirements) workPacket).getNumRequiredCores() : 1;
+		final int memory = workPacket instanceof MemoryRequirements ? ((MemoryRequirements) workPacket).getRequiredMemoryMegabytes() : 0;
+		try {
+			getDaemon().getNodeScheduler().submit(queue, processor, workPacket.getPriority(), cores, memory);
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			request.sendResponse(new DaemonException("Interrupted while waiting to schedule the request", e), true);
+		}
+	}
+
+	private synchronized RequestQueue getRequestQueue() {
+		if (requestQueue == null && getDaemon() != null && getDaemon().getNodeScheduler() != null) {
+			final int numThreads = executorService instanceof ThreadPoolExecutor ?
+					((ThreadPoolExecutor) executorService).getMaximumPoolSize() : 1;
+			requestQueue = getDaemon().getNodeScheduler().createQueue(
+					getDaemonConnection() == null ? toString() : getDaemonConnection().getConnectionName(),
+					executorService, numThreads);
+		}
+		return requestQueue;
+	}
+
+	/**
+	 * Return the worker of the current thread, creating and starting it if needed.
+	 * Workers that are not {@link ReusableWorker} are not kept.
+	 */
+	private Worker getThreadWorker() {
+		final long setupStart = System.nanoTime();
+		Worker worker = threadWorker.get();
+		final boolean created = worker == null;
+		if (created) {
+			worker = getFactory().create(config, dependencies);
+			if (worker instanceof ReusableWorker) {
+				if (worker instanceof Lifecycle) {
+					((Lifecycle) worker).start();
+				}
+				threadWorker.set(worker);
+				synchronized (reusedWorkers) {
+					reusedWorkers.add(worker);
+				}
+			}
+		} else {
+			((ReusableWorker) worker).reset();
+		}
+		recordSetup(created, System.nanoTime() - setupStart);
+		return worker;
+	}
+
+	private void recordSetup(final boolean created, final long nanos) {
+		setupStatistics.request(created, nanos);
+		if (LOGGER.isDebugEnabled()) {
+			LOGGER.debug((created ? "Created worker" : "Reused worker") + " for " + getFactory().getUserName()
+					+ " in " + String.format("%.3f", nanos / 1.0e6) + " ms (" + setupStatistics + ")");
+		}
+	}
+
+	/**
+	 * @return Worker for {@link #check()} and {@link #install}. Kept if the workers are reused.
+	 */
+	private synchronized Worker getUtilityWorker() {
+		if (!isReuseWorkers()) {
+			return factory.create(config, dependencies);
+		}
+		if (utilityWorker == null) {
+			final Worker worker = factory.create(config, dependencies);
+			if (!(worker instanceof ReusableWorker)) {
+				return worker;
+			}
+			utilityWorker = worker;
+		}
+		return utilityWorker;
 	}
 
 	@Override
 	public String check() {
 		LOGGER.info("Checking worker for " + factory.getUserName());
-		return factory.create(config, dependencies).check();
+		return getUtilityWorker().check();
 	}
 
 	@Override
 	public void stop() {
 		super.stop();
 		executorService.shutdownNow();
+		synchronized (this) {
+			if (requestQueue != null) {
+				LOGGER.info("Request queue " + requestQueue);
+				getDaemon().getNodeScheduler().removeQueue(requestQueue);
+				requestQueue = null;
+			}
+		}
+		stopReusedWorkers();
+		if (factory instanceof WorkCache.Factory) {
+			// The cache is shared by all requests, it lives as long as the runner
+			((WorkCache.Factory) factory).stop();
+		}
+		LOGGER.info("Worker setup for " + factory.getUserName() + ": " + setupStatistics);
+	}
+
+	private void stopReusedWorkers() {
+		synchronized (reusedWorkers) {
+			for (final Worker worker : reusedWorkers) {
+				if (worker instanceof Lifecycle) {
+					try {
+						((Lifecycle) worker).stop();
+					} catch (final Exception e) {
+						// SWALLOWED: we are shutting down, the other workers still need to stop
+						LOGGER.warn("Could not stop worker " + worker, e);
+					}
+				}
+			}
+			reusedWorkers.clear();
+		}
+	}
+
+	public boolean isReuseWorkers() {
+		return reuseWorkers;
+	}
+
+	public void setReuseWorkers(final boolean reuseWorkers) {
+		this.reuseWorkers = reuseWorkers;
+	}
+
+	/**
+	 * @return How much time was spent obtaining workers for the requests.
+	 */
+	public WorkerSetupStatistics getSetupStatistics() {
+		return setupStatistics;
 	}
 
 	public WorkerFactory<ResourceConfig, Worker> getFactory() {
@@ -140,7 +302,7 @@ public final class SimpleRunner extends AbstractRunner {
 		}
 
 		// Check whether the created worker itself needs installing
-		final Worker worker = factory.create(config, dependencies);
+		final Worker worker = getUtilityWorker();
 		if (worker instanceof Installable) {
 			((Installable) worker).install(params);
 		}
@@ -155,7 +317,12 @@ public final class SimpleRunner extends AbstractRunner {
 
 	public static final class Config extends RunnerConfig {
 		public static final int DEFAULT_NUM_THREADS = 1;
+		public static final String REUSE_WORKERS = "reuseWorkers";
+		public static final String RECEIVE_BATCH_SIZE = "receiveBatchSize";
+		public static final int DEFAULT_RECEIVE_BATCH_SIZE = 1;
 		private int numThreads = 1;
+		private boolean reuseWorkers;
+		private int receiveBatchSize = DEFAULT_RECEIVE_BATCH_SIZE;
 
 		public Config() {
 		}
@@ -172,15 +339,38 @@ public final class SimpleRunner extends AbstractRunner {
 			this.numThreads = numThreads;
 		}
 
+		public boolean isReuseWorkers() {
+			return reuseWorkers;
+		}
+
+		public void setReuseWorkers(final boolean reuseWorkers) {
+			this.reuseWorkers = reuseWorkers;
+		}
+
+		/**
+		 * @return How many requests to take from the queue at once. 1 takes the requests one by one.
+		 */
+		public int getReceiveBatchSize() {
+			return receiveBatchSize;
+		}
+
+		public void setReceiveBatchSize(final int receiveBatchSize) {
+			this.receiveBatchSize = receiveBatchSize;
+		}
+
 		@Override
 		public void save(final ConfigWriter writer) {
 			writer.put("numThreads", getNumThreads(), DEFAULT_NUM_THREADS, "Number of threads");
+			writer.put(REUSE_WORKERS, isReuseWorkers(), "Keep one worker per thread instead of creating one for each request");
+			writer.put(RECEIVE_BATCH_SIZE, getReceiveBatchSize(), DEFAULT_RECEIVE_BATCH_SIZE, "How many requests to take from the queue at once");
 			super.save(writer);
 		}
 
 		@Override
 		public void load(final ConfigReader reader) {
 			numThreads = reader.getInteger("numThreads", DEFAULT_NUM_THREADS);
+			reuseWorkers = reader.getBoolean(REUSE_WORKERS, false);
+			receiveBatchSize = reader.getInteger(RECEIVE_BATCH_SIZE, DEFAULT_RECEIVE_BATCH_SIZE);
 			super.load(reader);
 		}
 	}
@@ -199,8 +389,11 @@ public final class SimpleRunner extends AbstractRunner {
 			runner.setFactory(getWorkerFactory(getTable(), workerFactoryConfig));
 			runner.setConfig(workerFactoryConfig);
 			runner.setDependencies(dependencies);
+			runner.setReuseWorkers(config.isReuseWorkers());
 			final int numThreads = config.getNumThreads();
-			runner.setExecutorService(new SimpleThreadPoolExecutor(numThreads, runner.getFactory().getUserName(), true));
+			// The daemon node scheduler limits the running requests, the executor must not block
+			runner.setExecutorService(new SimpleThreadPoolExecutor(numThreads, runner.getFactory().getUserName(), false));
+			runner.setReceiveBatchSize(config.getReceiveBatchSize());
 			runner.setDaemonLoggerFactory(new DaemonLoggerFactory(new File(config.getLogOutputFolder())));
 
 			return runner;
@@ -247,9 +440,16 @@ public final class SimpleRunner extends AbstractRunner {
 	}
 
 	private final class RequestProcessor implements Runnable {
-		private final Worker worker;
+		private Worker worker;
 		private final DaemonRequest request;
+		/**
+		 * The worker is kept by the thread - it is started and stopped only once.
+		 */
+		private boolean reused;
 
+		/**
+		 * @param worker Worker to process the request. If null, the worker of the executor thread is used.
+		 */
 		RequestProcessor(final Worker worker, final DaemonRequest request) {
 			this.worker = worker;
 			this.request = request;
@@ -257,20 +457,30 @@ public final class SimpleRunner extends AbstractRunner {
 
 		@Override
 		public void run() {
+			if (worker == null) {
+				try {
+					worker = getThreadWorker();
+				} catch (final Exception e) {
+					request.sendResponse(e, true);
+					return;
+				}
+				reused = worker instanceof ReusableWorker;
+			}
+
 			// As we run, all that we log via Log4j will be reported within the child log files
 			// We pass the child logger onto the worker, so it can spawn its own children with their own logs
 			final RunnerProgressReporter progressReporter = new RunnerProgressReporter(SimpleRunner.this, request);
 
 			final ChildLog childLog = startLogging(progressReporter);
 			try {
-				if (worker instanceof Lifecycle) {
+				if (!reused && worker instanceof Lifecycle) {
 					((Lifecycle) worker).start();
 				}
 
 				// Set the log in the progress reporter to the newly spawned child
 				progressReporter.setParentLog(childLog);
 				worker.processRequest(request.getWorkPacket(), progressReporter);
-				if (worker instanceof Lifecycle) {
+				if (!reused && worker instanceof Lifecycle) {
 					((Lifecycle) worker).stop();
 				}
 			} catch (final Exception t) {
@@ -1,8 +1,10 @@
 package edu.mayo.mprc.daemon;
 
 import com.google.common.base.Joiner;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import edu.mayo.mprc.MprcException;
 import edu.mayo.mprc.config.*;
+import edu.mayo.mprc.config.ui.UiBuilder;
 import edu.mayo.mprc.daemon.worker.WorkPacket;
 import edu.mayo.mprc.daemon.worker.Worker;
 import edu.mayo.mprc.daemon.worker.WorkerFactoryBase;
@@ -17,6 +19,9 @@ import org.apache.log4j.Logger;
 
 import java.io.File;
 import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Base class for implementing caches. A cache remembers previous work and can provide results fast.
@@ -28,6 +33,9 @@ import java.util.*;
  * When the cache detects a particular work is currently being performed, the new request is queued and response duplicated
  * from the currently running task. E.g. two users running the same search will both
  * have an illusion that a separate search runs for them, although only one search is running.
+ * <p/>
+ * The cache can be bounded by a {@link CacheEvictionPolicy}. The policy is enforced in the background, a small
+ * batch of entries at a time. Entries that are being reported or copied to the user are never evicted.
  *
  * @param <T>
  */
@@ -36,6 +44,14 @@ public abstract class WorkCache<T extends WorkPacket> implements Worker, Install
 	private DaemonConnection daemon;
 	private final Map<String, CacheProgressReporter> workInProgress = new HashMap<String, CacheProgressReporter>(10);
 	private final CacheFolder cacheFolder = new CacheFolder();
+	private final CacheStatistics statistics = new CacheStatistics();
+	private CacheEvictionPolicy evictionPolicy = CacheEvictionPolicy.NONE;
+	private ScheduledExecutorService evictionScheduler;
+
+	/**
+	 * How often to check the cache for entries to evict.
+	 */
+	public static final long EVICTION_PERIOD_SECONDS = 60L;
 
 	public WorkCache() {
 	}
@@ -56,6 +72,75 @@ public abstract class WorkCache<T extends WorkPacket> implements Worker, Install
 		this.daemon = daemon;
 	}
 
+	public final CacheStatistics getStatistics() {
+		return statistics;
+	}
+
+	public final synchronized CacheEvictionPolicy getEvictionPolicy() {
+		return evictionPolicy;
+	}
+
+	/**
+	 * Set the limits for the cache. When the policy has any limits, a background thread
+	 * starts enforcing them every {@link #EVICTION_PERIOD_SECONDS}.
+	 */
+	public final synchronized void setEvictionPolicy(final CacheEvictionPolicy evictionPolicy) {
+		this.evictionPolicy = evictionPolicy;
+		if (evictionPolicy.isEnabled() && evictionScheduler == null) {
+			evictionScheduler = Executors.newSingleThreadScheduledExecutor(
+					new ThreadFactoryBuilder()
+							.setDaemon(true)
+							.setNameFormat("cache-eviction-%d")
+							.build());
+			evictionScheduler.scheduleWithFixedDelay(new Runnable() {
+				@Override
+				public void run() {
+					evict();
+				}
+			}, EVICTION_PERIOD_SECONDS, EVICTION_PERIOD_SECONDS, TimeUnit.SECONDS);
+		}
+	}
+
+	/**
+	 * Stop enforcing the eviction policy in the background. Setting the policy again restarts it.
+	 */
+	public final synchronized void stop() {
+		if (evictionScheduler != null) {
+			evictionScheduler.shutdownNow();
+			evictionScheduler = null;
+		}
+	}
+
+	/**
+	 * Evict one batch of entries violating the eviction policy.
+	 *
+	 * @return Number of entries evicted.
+	 */
+	int evict() {
+		final CacheEvictionPolicy policy = getEvictionPolicy();
+		if (!policy.isEnabled() || getCacheFolder() == null) {
+			return 0;
+		}
+		try {
+			final Set<String> busyDigests;
+			synchronized (workInProgress) {
+				busyDigests = new HashSet<String>(workInProgress.size());
+				for (final String taskDescription : workInProgress.keySet()) {
+					busyDigests.add(CacheFolder.digest(taskDescription));
+				}
+			}
+			final int evicted = cacheFolder.evict(policy, busyDigests, statistics);
+			if (evicted > 0) {
+				LOGGER.info(String.format("Cache %s evicted %d entries (%s)", getCacheFolder().getAbsolutePath(), evicted, statistics));
+			}
+			return evicted;
+		} catch (final Exception e) {
+			// SWALLOWED: We must not kill the scheduler, we will try again next time
+			LOGGER.error("Cache eviction failed for " + getCacheFolder().getAbsolutePath(), e);
+			return 0;
+		}
+	}
+
 	public void userProgressInformation(final File wipFolder, final ProgressInfo progressInfo) {
 		// Do nothing
 	}
@@ -127,13 +212,20 @@ public abstract class WorkCache<T extends WorkPacket> implements Worker, Install
 		}
 
 		// Find existing cache subfolder with data matching the work packet.
-		final File existingEntry = cacheFolder.lookup(lookupPacket);
+		final CacheIndex.Entry existingEntry = cacheFolder.lookup(lookupPacket);
 
 		if (existingEntry != null) {
-			LOGGER.info(String.format("Found existing entry in cache: %s", existingEntry.getAbsolutePath()));
-			reportCachedValues(progressReporter, originalPacket, lookupPacket, existingEntry);
+			statistics.hit();
+			final File existingFolder = cacheFolder.getFolder(existingEntry);
+			LOGGER.info(String.format("Found existing entry in cache: %s", existingFolder.getAbsolutePath()));
+			try {
+				reportCachedValues(progressReporter, originalPacket, lookupPacket, existingFolder);
+			} finally {
+				cacheFolder.release(existingEntry);
+			}
 			return;
 		}
+		statistics.miss();
 
 		// A string describing the request. If two descriptions are the same,
 		// the tasks are the same
@@ -276,11 +368,16 @@ public abstract class WorkCache<T extends WorkPacket> implements Worker, Install
 							return;
 						}
 
-						File target = cacheFolder.insert(workPacket, wipFolder);
+						final CacheIndex.Entry entry = cacheFolder.insert(workPacket, wipFolder);
+						final File target = cacheFolder.getFolder(entry);
 
-						// Now we only need to notify the requestor that the output file was produced elsewhere
-						workPacket.reportCachedResult(reporter, target, outputFiles);
-						publishResultFiles(target, outputFiles, originalPacket);
+						try {
+							// Now we only need to notify the requestor that the output file was produced elsewhere
+							workPacket.reportCachedResult(reporter, target, outputFiles);
+							publishResultFiles(target, outputFiles, originalPacket);
+						} finally {
+							cacheFolder.release(entry);
+						}
 					} catch (final Exception t) {
 						reporter.reportFailure(t);
 						return;
@@ -327,10 +424,21 @@ public abstract class WorkCache<T extends WorkPacket> implements Worker, Install
 				cache = createCache(config, dependencies);
 				cache.setCacheFolder(new File(config.getCacheFolder()).getAbsoluteFile());
 				cache.setDaemon((DaemonConnection) dependencies.createSingleton(config.getService()));
+				cache.setEvictionPolicy(config.getEvictionPolicy());
 			}
 			return cache;
 		}
 
+		/**
+		 * Stop the cache created by this factory. The next {@link #create} makes a new one.
+		 */
+		public synchronized void stop() {
+			if (cache != null) {
+				cache.stop();
+				cache = null;
+			}
+		}
+
 		public abstract WorkCache createCache(S config, DependencyResolver dependencies);
 	}
 
@@ -340,8 +448,16 @@ public abstract class WorkCache<T extends WorkPacket> implements Worker, Install
 	public static class CacheConfig implements ResourceConfig {
 		public static final String CACHE_FOLDER = "cacheFolder";
 		public static final String SERVICE = "service";
+		public static final String MAX_SIZE_MB = "maxSizeMb";
+		public static final String MAX_ENTRIES = "maxEntries";
+		public static final String MAX_AGE_DAYS = "maxAgeDays";
+		private static final long BYTES_IN_MB = 1024L * 1024L;
+		private static final long MILLIS_IN_DAY = 24L * 60L * 60L * 1000L;
 		private String cacheFolder;
 		private ServiceConfig service;
+		private int maxSizeMb;
+		private int maxEntries;
+		private int maxAgeDays;
 
 		public void setService(final ServiceConfig service) {
 			this.service = service;
@@ -359,16 +475,71 @@ public abstract class WorkCache<T extends WorkPacket> implements Worker, Install
 			return service;
 		}
 
+		public int getMaxSizeMb() {
+			return maxSizeMb;
+		}
+
+		public void setMaxSizeMb(final int maxSizeMb) {
+			this.maxSizeMb = maxSizeMb;
+		}
+
+		public int getMaxEntries() {
+			return maxEntries;
+		}
+
+		public void setMaxEntries(final int maxEntries) {
+			this.maxEntries = maxEntries;
+		}
+
+		public int getMaxAgeDays() {
+			return maxAgeDays;
+		}
+
+		public void setMaxAgeDays(final int maxAgeDays) {
+			this.maxAgeDays = maxAgeDays;
+		}
+
+		public CacheEvictionPolicy getEvictionPolicy() {
+			return new CacheEvictionPolicy(maxSizeMb * BYTES_IN_MB, maxEntries, maxAgeDays * MILLIS_IN_DAY);
+		}
+
 		@Override
 		public void save(final ConfigWriter writer) {
 			writer.put(CACHE_FOLDER, getCacheFolder(), "Where to cache files");
 			writer.put(SERVICE, writer.save(getService()), "Service being cached");
+			writer.put(MAX_SIZE_MB, getMaxSizeMb(), 0, "Maximum total size of the cached files in megabytes, 0 for unlimited");
+			writer.put(MAX_ENTRIES, getMaxEntries(), 0, "Maximum number of cached results, 0 for unlimited");
+			writer.put(MAX_AGE_DAYS, getMaxAgeDays(), 0, "Maximum age of cached results in days, 0 for unlimited");
 		}
 
 		@Override
 		public void load(final ConfigReader reader) {
 			cacheFolder = reader.get(CACHE_FOLDER);
 			service = (ServiceConfig) reader.getObject(SERVICE);
+			maxSizeMb = reader.getInteger(MAX_SIZE_MB, 0);
+			maxEntries = reader.getInteger(MAX_ENTRIES, 0);
+			maxAgeDays = reader.getInteger(MAX_AGE_DAYS, 0);
+		}
+
+		/**
+		 * Add the eviction limits to the UI of a cache.
+		 */
+		public static UiBuilder evictionUi(final UiBuilder builder) {
+			return builder
+					.property(MAX_SIZE_MB, "Maximum size (MB)", "When the cached files take more space than this, the least recently used results are deleted. "
+							+ "<p>0 means the cache can grow without limits.</p>")
+					.integerValue(0, null)
+					.defaultValue("0")
+
+					.property(MAX_ENTRIES, "Maximum results", "When the cache holds more results than this, the least recently used ones are deleted. "
+							+ "<p>0 means unlimited.</p>")
+					.integerValue(0, null)
+					.defaultValue("0")
+
+					.property(MAX_AGE_DAYS, "Maximum age (days)", "Results older than this many days are deleted from the cache. "
+							+ "<p>0 means the results are kept forever.</p>")
+					.integerValue(0, null)
+					.defaultValue("0");
 		}
 
 		@Override
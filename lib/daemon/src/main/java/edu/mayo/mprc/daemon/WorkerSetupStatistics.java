@@ -0,0 +1,63 @@
+package edu.mayo.mprc.daemon;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters describing how much time {@link SimpleRunner} spends obtaining workers for its requests.
+ *
+ * @author Roman Zenka
+ */
+public final class WorkerSetupStatistics {
+	private final AtomicLong requests = new AtomicLong(0);
+	private final AtomicLong workersCreated = new AtomicLong(0);
+	private final AtomicLong setupNanos = new AtomicLong(0);
+
+	public WorkerSetupStatistics() {
+	}
+
+	void request(final boolean created, final long nanos) {
+		requests.incrementAndGet();
+		if (created) {
+			workersCreated.incrementAndGet();
+		}
+		setupNanos.addAndGet(nanos);
+	}
+
+	/**
+	 * @return How many requests got a worker.
+	 */
+	public long getRequests() {
+		return requests.get();
+	}
+
+	/**
+	 * @return How many workers had to be created. Equals {@link #getRequests()} unless the workers are reused.
+	 */
+	public long getWorkersCreated() {
+		return workersCreated.get();
+	}
+
+	/**
+	 * @return Total time spent creating, starting and resetting the workers, in milliseconds.
+	 */
+	public long getSetupMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(setupNanos.get());
+	}
+
+	/**
+	 * @return Average setup time per request in milliseconds.
+	 */
+	public double getAverageSetupMillis() {
+		final long count = getRequests();
+		return count == 0 ? 0.0 : setupNanos.get() / 1.0e6 / count;
+	}
+
+	@Override
+	public String toString() {
+		return "requests: " + getRequests()
+				+ ", workers created: " + getWorkersCreated()
+				+ ", setup time: " + getSetupMillis() + " ms"
+				+ ", average setup time: " + String.format("%.3f", getAverageSetupMillis()) + " ms";
+	}
+}
@@ -2,16 +2,29 @@ package edu.mayo.mprc.daemon.transfer;
 
 import edu.mayo.mprc.utilities.progress.ProgressInfo;
 
+import java.util.zip.CRC32;
+
 /**
+ * One piece of a transferred file.
+ * <p/>
+ * Besides the data, each chunk knows where in the file it belongs, the CRC32 checksum of its data
+ * and the total length of the file, so the receiver can tell when the transfer is complete.
+ *
  * @author Roman Zenka
  */
 public final class FileTransferChunk implements ProgressInfo {
+	private static final long serialVersionUID = -3181537394462935736L;
+
 	private byte[] chunk;
 	private long offset;
+	private long checksum;
+	private long fileLength;
 
-	public FileTransferChunk(byte[] chunk, long offset) {
+	public FileTransferChunk(final byte[] chunk, final long offset, final long fileLength) {
 		this.chunk = chunk;
 		this.offset = offset;
+		this.fileLength = fileLength;
+		checksum = checksum(chunk);
 	}
 
 	public byte[] getChunk() {
@@ -21,4 +34,28 @@ public final class FileTransferChunk implements ProgressInfo {
 	public long getOffset() {
 		return offset;
 	}
+
+	public long getChecksum() {
+		return checksum;
+	}
+
+	/**
+	 * @return Length of the entire file at the time the chunk was read.
+	 */
+	public long getFileLength() {
+		return fileLength;
+	}
+
+	/**
+	 * @return True if the data match the checksum.
+	 */
+	public boolean isValid() {
+		return chunk != null && checksum(chunk) == checksum;
+	}
+
+	private static long checksum(final byte[] data) {
+		final CRC32 crc = new CRC32();
+		crc.update(data);
+		return crc.getValue();
+	}
 }
@@ -5,18 +5,47 @@ import edu.mayo.mprc.daemon.worker.WorkPacketBase;
 
 /**
  * A request for file download from a particular server.
+ * <p/>
+ * The request asks for a window of the file - up to {@link #getLength()} bytes starting at {@link #getOffset()}.
+ * The receiver asks for the next window only once the previous one arrived, which keeps the sender from flooding
+ * the broker, and lets an interrupted transfer resume from the last received byte.
  *
  * @author Roman Zenka
  */
 public final class FileTransferWorkPacket extends WorkPacketBase {
+	private static final long serialVersionUID = 2830357815290530372L;
+
 	private FileToken fileToken;
+	private long offset;
+	private long length;
 
+	/**
+	 * Request the entire file.
+	 */
 	public FileTransferWorkPacket(final boolean fromScratch, final FileToken fileToken) {
+		this(fromScratch, fileToken, 0, Long.MAX_VALUE);
+	}
+
+	/**
+	 * @param offset Where in the file to start.
+	 * @param length How many bytes to send at most.
+	 */
+	public FileTransferWorkPacket(final boolean fromScratch, final FileToken fileToken, final long offset, final long length) {
 		super(fromScratch);
 		this.fileToken = fileToken;
+		this.offset = offset;
+		this.length = length;
 	}
 
 	public FileToken getFileToken() {
 		return fileToken;
 	}
+
+	public long getOffset() {
+		return offset;
+	}
+
+	public long getLength() {
+		return length;
+	}
 }
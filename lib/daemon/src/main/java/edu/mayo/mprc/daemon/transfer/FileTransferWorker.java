@@ -17,6 +17,9 @@ import org.springframework.stereotype.Component;
 import javax.annotation.Resource;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.Arrays;
 
 /**
@@ -37,27 +40,49 @@ public final class FileTransferWorker extends WorkerBase implements NoLoggingWor
 	public void process(final WorkPacket workPacket, final File tempWorkFolder, final UserProgressReporter reporter) {
 		if (workPacket instanceof FileTransferWorkPacket) {
 			final FileTransferWorkPacket fileTransfer = (FileTransferWorkPacket) workPacket;
-			LOGGER.debug("Uploading "+((FileTransferWorkPacket) workPacket).getFileToken().toString());
+			LOGGER.debug("Uploading " + fileTransfer.getFileToken().toString() + " from offset " + fileTransfer.getOffset());
 			final File file = fileTokenFactory.getFile(fileTransfer.getFileToken());
 			if (!file.exists()) {
 				throw new MprcException("The requested file does not exist: " + file.getAbsolutePath());
 			}
 			final FileInputStream stream = FileUtilities.getInputStream(file);
-			final byte[] buffer = new byte[BUFFER_SIZE];
-			long offset = 0;
 			try {
-				final int numRead = stream.read(buffer);
-				final byte[] chunk = buffer.length == numRead ? buffer : Arrays.copyOfRange(buffer, 0, numRead);
-				reporter.reportProgress(new FileTransferChunk(chunk, offset));
-				offset += numRead;
+				sendChunks(stream.getChannel(), fileTransfer.getOffset(), fileTransfer.getLength(), reporter);
 			} catch (final Exception e) {
+				throw new MprcException("Could not read file: " + file.getAbsolutePath(), e);
+			} finally {
 				FileUtilities.closeQuietly(stream);
-				throw new MprcException("Could not read file: " + file.getAbsolutePath());
 			}
-			LOGGER.debug("Uploaded "+((FileTransferWorkPacket) workPacket).getFileToken().toString());
+			LOGGER.debug("Uploaded " + fileTransfer.getFileToken().toString());
 		}
 	}
 
+	/**
+	 * Report the requested window of the file as a sequence of chunks of at most {@link #BUFFER_SIZE} bytes.
+	 * An empty file (or window past the end of file) produces a single empty chunk, so the receiver learns the file length.
+	 */
+	public static void sendChunks(final FileChannel channel, final long offset, final long length, final UserProgressReporter reporter) throws IOException {
+		final long fileLength = channel.size();
+		final long end = Math.min(fileLength, offset + Math.min(length, Long.MAX_VALUE - offset));
+		final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+		long position = offset;
+		do {
+			buffer.clear();
+			buffer.limit((int) Math.min(BUFFER_SIZE, Math.max(end - position, 0)));
+			while (buffer.hasRemaining()) {
+				if (channel.read(buffer, position + buffer.position()) < 0) {
+					break;
+				}
+			}
+			final byte[] chunk = Arrays.copyOf(buffer.array(), buffer.position());
+			reporter.reportProgress(new FileTransferChunk(chunk, position, fileLength));
+			position += chunk.length;
+			if (chunk.length == 0) {
+				break;
+			}
+		} while (position < end);
+	}
+
 	public String toString() {
 		return "file transfer support";
 	}
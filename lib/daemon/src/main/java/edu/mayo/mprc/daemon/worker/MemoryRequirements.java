@@ -0,0 +1,16 @@
+package edu.mayo.mprc.daemon.worker;
+
+/**
+ * This interface is used for marking work packets that know how much memory their processing takes.
+ * <p/>
+ * The daemon uses this together with {@link CoreRequirements} to decide how many requests can run at once
+ * without overloading the node.
+ *
+ * @author Roman Zenka
+ */
+public interface MemoryRequirements {
+	/**
+	 * @return How many megabytes of memory are needed for doing this job.
+	 */
+	int getRequiredMemoryMegabytes();
+}
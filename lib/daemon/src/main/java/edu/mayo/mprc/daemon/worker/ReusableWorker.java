@@ -0,0 +1,18 @@
+package edu.mayo.mprc.daemon.worker;
+
+/**
+ * A worker that can process more than one request. When the runner is configured to reuse workers,
+ * each of its threads creates such a worker once and keeps it for all the requests it processes, saving
+ * the cost of the worker construction.
+ * <p/>
+ * A reused worker is only ever called from one thread at a time. If it is a {@link edu.mayo.mprc.config.Lifecycle},
+ * it gets started once when created and stopped when the runner stops.
+ *
+ * @author Roman Zenka
+ */
+public interface ReusableWorker extends Worker {
+	/**
+	 * Clear any state left over from the previous request. Called before each request except the first one.
+	 */
+	void reset();
+}
@@ -0,0 +1,130 @@
+package edu.mayo.mprc.daemon;
+
+import edu.mayo.mprc.utilities.FileUtilities;
+import edu.mayo.mprc.utilities.StringUtilities;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.Set;
+
+public final class CacheEvictorTest {
+	private static final String TASK_DESCRIPTION = "_task_description";
+	private static final Set<String> NONE_BUSY = Collections.emptySet();
+
+	private File cacheFolder;
+	private CacheIndex index;
+	private CacheStatistics statistics;
+
+	@BeforeMethod
+	public void setup() {
+		cacheFolder = FileUtilities.createTempFolder();
+		index = new CacheIndex(cacheFolder, TASK_DESCRIPTION);
+		statistics = new CacheStatistics();
+	}
+
+	@AfterMethod
+	public void teardown() {
+		FileUtilities.cleanupTempFile(cacheFolder);
+	}
+
+	@Test
+	public void shouldEvictLeastRecentlyUsed() throws InterruptedException {
+		final File folder1 = addEntry("task1", "1", 100);
+		Thread.sleep(10);
+		final File folder2 = addEntry("task2", "2", 200);
+		Thread.sleep(10);
+		// task1 is now the most recently used
+		index.release(index.acquire(CacheIndex.digest("task1")));
+
+		final int evicted = new CacheEvictor(index, new CacheEvictionPolicy(0, 1, 0), statistics).sweep(NONE_BUSY);
+
+		Assert.assertEquals(evicted, 1);
+		Assert.assertTrue(folder1.exists());
+		Assert.assertFalse(folder2.exists());
+		Assert.assertNull(index.get(CacheIndex.digest("task2")));
+		Assert.assertEquals(statistics.getEvictedEntries(), 1);
+		Assert.assertEquals(statistics.getEvictedBytes(), 200 + "task2".length());
+	}
+
+	@Test
+	public void shouldEnforceSizeLimit() {
+		addEntry("task1", "1", 1000);
+		addEntry("task2", "2", 1000);
+		addEntry("task3", "3", 1000);
+
+		new CacheEvictor(index, new CacheEvictionPolicy(2500, 0, 0), statistics).sweep(NONE_BUSY);
+
+		Assert.assertEquals(index.size(), 2);
+	}
+
+	@Test
+	public void shouldNotEvictPinnedOrBusy() throws InterruptedException {
+		final File pinned = addEntry("task1", "1", 100);
+		final CacheIndex.Entry pin = index.acquire(CacheIndex.digest("task1"));
+		final File busy = addEntry("task2", "2", 100);
+		// Both entries are now past their maximum age
+		Thread.sleep(10);
+
+		final CacheEvictor evictor = new CacheEvictor(index, new CacheEvictionPolicy(0, 0, 1), statistics);
+		evictor.sweep(Collections.singleton(CacheIndex.digest("task2")));
+
+		Assert.assertTrue(pinned.exists());
+		Assert.assertTrue(busy.exists());
+		Assert.assertEquals(index.size(), 2);
+
+		index.release(pin);
+		evictor.sweep(NONE_BUSY);
+		Assert.assertFalse(pinned.exists());
+		Assert.assertFalse(busy.exists());
+		Assert.assertEquals(index.size(), 0);
+	}
+
+	@Test
+	public void shouldNotUnpinReplacedEntry() {
+		addEntry("task1", "1", 100);
+		final CacheIndex.Entry oldEntry = index.acquire(CacheIndex.digest("task1"));
+		// The entry gets replaced while the old one is still in use
+		final File folder = new File(cacheFolder, "00/00/00/00/2");
+		FileUtilities.writeStringToFile(new File(folder, TASK_DESCRIPTION), "task1", true);
+		final CacheIndex.Entry newEntry = index.put(CacheIndex.digest("task1"), folder);
+
+		index.release(oldEntry);
+
+		Assert.assertTrue(newEntry.isPinned(), "Releasing the old entry must not unpin the new one");
+		new CacheEvictor(index, new CacheEvictionPolicy(0, 0, 1), statistics).sweep(NONE_BUSY);
+		Assert.assertTrue(folder.exists());
+	}
+
+	@Test
+	public void shouldMeasureNestedOutputFolders() {
+		final File folder = addEntry("task1", "1", 100);
+		// The output folder is published still empty
+		FileUtilities.ensureFolderExists(new File(folder, "output"));
+		new CacheEvictor(index, new CacheEvictionPolicy(0, 0, 0), statistics).sweep(NONE_BUSY);
+		Assert.assertEquals(index.getEntries().get(0).getSize(), 100 + "task1".length());
+
+		// The output folder keeps filling up after the entry got published
+		FileUtilities.writeStringToFile(new File(folder, "output/nested/data"), StringUtilities.repeat('x', 1000), true);
+		new CacheEvictor(index, new CacheEvictionPolicy(0, 0, 0), statistics).sweep(NONE_BUSY);
+		Assert.assertEquals(index.getEntries().get(0).getSize(), 1100 + "task1".length());
+
+		FileUtilities.writeStringToFile(new File(folder, "output/more"), StringUtilities.repeat('x', 500), true);
+		new CacheEvictor(index, new CacheEvictionPolicy(1200, 0, 0), statistics).sweep(NONE_BUSY);
+		Assert.assertFalse(folder.exists(), "The entry is over the size limit once the folder contents are counted");
+	}
+
+	/**
+	 * Publish an entry with a single data file of given size. The entry is not pinned.
+	 */
+	private File addEntry(final String taskDescription, final String folderName, final int size) {
+		final File folder = new File(cacheFolder, "00/00/00/00/" + folderName);
+		FileUtilities.writeStringToFile(new File(folder, TASK_DESCRIPTION), taskDescription, true);
+		FileUtilities.writeStringToFile(new File(folder, "data"), StringUtilities.repeat('x', size), true);
+		index.release(index.put(CacheIndex.digest(taskDescription), folder));
+		return folder;
+	}
+}
@@ -0,0 +1,85 @@
+package edu.mayo.mprc.daemon;
+
+import edu.mayo.mprc.utilities.FileUtilities;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.File;
+
+public final class CacheIndexTest {
+	private static final String TASK_DESCRIPTION = "_task_description";
+
+	@Test
+	public void shouldDigestConsistently() {
+		Assert.assertEquals(CacheIndex.digest("abc"), "ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad");
+		Assert.assertFalse(CacheIndex.digest("task1").equals(CacheIndex.digest("task2")));
+	}
+
+	@Test
+	public void shouldReplayJournal() {
+		final File cacheFolder = FileUtilities.createTempFolder();
+		try {
+			final CacheIndex index = new CacheIndex(cacheFolder, TASK_DESCRIPTION);
+			final File folder1 = new File(cacheFolder, "01/02/03/04/1");
+			final File folder2 = new File(cacheFolder, "01/02/03/04/2");
+			index.put(CacheIndex.digest("task1"), folder1);
+			index.put(CacheIndex.digest("task2"), folder2);
+			index.remove(CacheIndex.digest("task1"));
+
+			final CacheIndex reloaded = new CacheIndex(cacheFolder, TASK_DESCRIPTION);
+			Assert.assertEquals(reloaded.size(), 1);
+			Assert.assertNull(reloaded.get(CacheIndex.digest("task1")));
+			Assert.assertEquals(reloaded.get(CacheIndex.digest("task2")), folder2);
+
+			reloaded.clear();
+			Assert.assertFalse(new File(cacheFolder, CacheIndex.JOURNAL_FILE_NAME).exists());
+		} finally {
+			FileUtilities.cleanupTempFile(cacheFolder);
+		}
+	}
+
+	@Test
+	public void shouldPersistLastHit() {
+		final File cacheFolder = FileUtilities.createTempFolder();
+		try {
+			final File published = new File(cacheFolder, "ab/cd/ef/01/1");
+			FileUtilities.writeStringToFile(new File(published, TASK_DESCRIPTION), "task1", true);
+			final CacheIndex index = new CacheIndex(cacheFolder, TASK_DESCRIPTION);
+			final CacheIndex.Entry entry = index.acquire(CacheIndex.digest("task1"));
+			index.release(entry);
+
+			final CacheIndex reloaded = new CacheIndex(cacheFolder, TASK_DESCRIPTION);
+			Assert.assertEquals(getLastUsed(reloaded, "task1"), entry.getLastUsed(), "The last use survives reloading");
+		} finally {
+			FileUtilities.cleanupTempFile(cacheFolder);
+		}
+	}
+
+	private static long getLastUsed(final CacheIndex index, final String taskDescription) {
+		for (final CacheIndex.Entry entry : index.getEntries()) {
+			if (entry.getDigest().equals(CacheIndex.digest(taskDescription))) {
+				return entry.getLastUsed();
+			}
+		}
+		throw new AssertionError("No entry for " + taskDescription);
+	}
+
+	@Test
+	public void shouldRebuildFromFolderLayout() {
+		final File cacheFolder = FileUtilities.createTempFolder();
+		try {
+			final File published = new File(cacheFolder, "ab/cd/ef/01/1");
+			FileUtilities.writeStringToFile(new File(published, TASK_DESCRIPTION), "task1", true);
+			final File inProgress = new File(cacheFolder, "ab/cd/ef/01/2");
+			FileUtilities.writeStringToFile(new File(inProgress, TASK_DESCRIPTION + "~"), "task2", true);
+
+			final CacheIndex index = new CacheIndex(cacheFolder, TASK_DESCRIPTION);
+			Assert.assertEquals(index.size(), 1, "Only the published entry is indexed");
+			Assert.assertEquals(index.get(CacheIndex.digest("task1")), published);
+			Assert.assertNull(index.get(CacheIndex.digest("task2")));
+			Assert.assertTrue(new File(cacheFolder, CacheIndex.JOURNAL_FILE_NAME).exists(), "Rebuilt index is persisted");
+		} finally {
+			FileUtilities.cleanupTempFile(cacheFolder);
+		}
+	}
+}
@@ -0,0 +1,138 @@
+package edu.mayo.mprc.daemon;
+
+import edu.mayo.mprc.daemon.transfer.FileTransferChunk;
+import edu.mayo.mprc.daemon.transfer.FileTransferWorker;
+import edu.mayo.mprc.utilities.FileUtilities;
+import edu.mayo.mprc.utilities.log.ParentLog;
+import edu.mayo.mprc.utilities.log.SimpleParentLog;
+import edu.mayo.mprc.utilities.progress.ProgressInfo;
+import edu.mayo.mprc.utilities.progress.UserProgressReporter;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public final class FileTransferTest {
+	@Test
+	public void shouldTransferInChunks() throws IOException {
+		final File folder = FileUtilities.createTempFolder();
+		try {
+			final int length = FileTransferWorker.BUFFER_SIZE * 2 + 1234;
+			final File source = makeFile(folder, length);
+			final File target = new File(folder, "target.bin");
+
+			final List<FileTransferChunk> chunks = new ArrayList<FileTransferChunk>();
+			send(source, 0, Long.MAX_VALUE, chunks);
+			Assert.assertEquals(chunks.size(), 3);
+			Assert.assertEquals(chunks.get(2).getOffset(), FileTransferWorker.BUFFER_SIZE * 2L);
+
+			final FileDownloaderImpl.ChunkWriter writer = new FileDownloaderImpl.ChunkWriter(target);
+			try {
+				for (final FileTransferChunk chunk : chunks) {
+					writer.write(chunk);
+				}
+				Assert.assertTrue(writer.isComplete());
+				writer.finish();
+			} finally {
+				writer.close();
+			}
+			Assert.assertTrue(FileUtilities.equalFiles(source, target));
+		} finally {
+			FileUtilities.cleanupTempFile(folder);
+		}
+	}
+
+	@Test
+	public void shouldResumeFromOffset() throws IOException {
+		final File folder = FileUtilities.createTempFolder();
+		try {
+			final int length = FileTransferWorker.BUFFER_SIZE + 100;
+			final File source = makeFile(folder, length);
+			final File target = new File(folder, "target.bin");
+
+			final List<FileTransferChunk> firstWindow = new ArrayList<FileTransferChunk>();
+			send(source, 0, FileTransferWorker.BUFFER_SIZE, firstWindow);
+			Assert.assertEquals(firstWindow.size(), 1);
+
+			final FileDownloaderImpl.ChunkWriter writer = new FileDownloaderImpl.ChunkWriter(target);
+			try {
+				writer.write(firstWindow.get(0));
+				Assert.assertFalse(writer.isComplete());
+
+				// A chunk that does not continue where we left off is rejected
+				final List<FileTransferChunk> wrongWindow = new ArrayList<FileTransferChunk>();
+				send(source, 10, Long.MAX_VALUE, wrongWindow);
+				try {
+					writer.write(wrongWindow.get(0));
+					Assert.fail("Out of order chunk must be rejected");
+				} catch (final Exception ignore) {
+					// SWALLOWED: expected
+				}
+
+				final List<FileTransferChunk> secondWindow = new ArrayList<FileTransferChunk>();
+				send(source, writer.getReceived(), Long.MAX_VALUE, secondWindow);
+				writer.write(secondWindow.get(0));
+				Assert.assertTrue(writer.isComplete());
+				writer.finish();
+			} finally {
+				writer.close();
+			}
+			Assert.assertTrue(FileUtilities.equalFiles(source, target));
+		} finally {
+			FileUtilities.cleanupTempFile(folder);
+		}
+	}
+
+	@Test
+	public void shouldTransferEmptyFile() throws IOException {
+		final File folder = FileUtilities.createTempFolder();
+		try {
+			final File source = makeFile(folder, 0);
+			final List<FileTransferChunk> chunks = new ArrayList<FileTransferChunk>();
+			send(source, 0, Long.MAX_VALUE, chunks);
+			Assert.assertEquals(chunks.size(), 1);
+			Assert.assertEquals(chunks.get(0).getChunk().length, 0);
+			Assert.assertEquals(chunks.get(0).getFileLength(), 0);
+		} finally {
+			FileUtilities.cleanupTempFile(folder);
+		}
+	}
+
+	private static File makeFile(final File folder, final int length) throws IOException {
+		final byte[] data = new byte[length];
+		new Random(length).nextBytes(data);
+		final File file = new File(folder, "source.bin");
+		final FileOutputStream stream = new FileOutputStream(file);
+		try {
+			stream.write(data);
+		} finally {
+			FileUtilities.closeQuietly(stream);
+		}
+		return file;
+	}
+
+	private static void send(final File source, final long offset, final long length, final List<FileTransferChunk> chunks) throws IOException {
+		final FileInputStream stream = new FileInputStream(source);
+		try {
+			FileTransferWorker.sendChunks(stream.getChannel(), offset, length, new UserProgressReporter() {
+				@Override
+				public void reportProgress(final ProgressInfo progressInfo) {
+					chunks.add((FileTransferChunk) progressInfo);
+				}
+
+				@Override
+				public ParentLog getLog() {
+					return new SimpleParentLog();
+				}
+			});
+		} finally {
+			FileUtilities.closeQuietly(stream);
+		}
+	}
+}
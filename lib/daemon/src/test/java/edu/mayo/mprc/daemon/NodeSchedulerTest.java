@@ -0,0 +1,155 @@
+package edu.mayo.mprc.daemon;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Roman Zenka
+ */
+public final class NodeSchedulerTest {
+	private static final long TIMEOUT_SECONDS = 10;
+
+	private ExecutorService executor;
+
+	@BeforeMethod
+	public void setup() {
+		executor = Executors.newCachedThreadPool();
+	}
+
+	@AfterMethod
+	public void teardown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void shouldRunHigherPriorityFirst() throws InterruptedException {
+		final NodeScheduler scheduler = new NodeScheduler(0, 0);
+		final RequestQueue queue = new RequestQueue("test", executor, 1, 10);
+		final List<String> order = Collections.synchronizedList(new ArrayList<String>());
+
+		final CountDownLatch blocker = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(3);
+		scheduler.submit(queue, new Blocked(blocker, null), 0, 1, 0);
+		scheduler.submit(queue, new Recorded("low", order, done), -1, 1, 0);
+		scheduler.submit(queue, new Recorded("normal", order, done), 0, 1, 0);
+		scheduler.submit(queue, new Recorded("high", order, done), 1, 1, 0);
+		Assert.assertEquals(queue.getWaitingRequests(), 3, "The queue runs one request at a time");
+
+		blocker.countDown();
+		Assert.assertTrue(done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+		Assert.assertEquals(order, Arrays.asList("high", "normal", "low"));
+		Assert.assertEquals(queue.getAdmittedRequests(), 4);
+	}
+
+	@Test
+	public void shouldLetSmallRequestsPastBigOnes() throws InterruptedException {
+		final NodeScheduler scheduler = new NodeScheduler(20, 0);
+		final RequestQueue search = new RequestQueue("search", executor, 2, 10);
+		final RequestQueue cleanup = new RequestQueue("cleanup", executor, 2, 10);
+
+		final CountDownLatch bigBlocker = new CountDownLatch(1);
+		final CountDownLatch bigRunning = new CountDownLatch(1);
+		scheduler.submit(search, new Blocked(bigBlocker, bigRunning), 0, 16, 0);
+		Assert.assertTrue(bigRunning.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+		final CountDownLatch secondBigDone = new CountDownLatch(1);
+		scheduler.submit(search, new Recorded("big", null, secondBigDone), 0, 16, 0);
+		Assert.assertEquals(search.getWaitingRequests(), 1, "Does not fit the budget");
+
+		final CountDownLatch smallDone = new CountDownLatch(1);
+		scheduler.submit(cleanup, new Recorded("small", null, smallDone), 0, 1, 0);
+		Assert.assertTrue(smallDone.await(TIMEOUT_SECONDS, TimeUnit.SECONDS), "Small request runs while the big one waits");
+		Assert.assertEquals(search.getWaitingRequests(), 1);
+
+		bigBlocker.countDown();
+		Assert.assertTrue(secondBigDone.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void shouldReserveForRequestsWaitingTooLong() throws InterruptedException {
+		final NodeScheduler scheduler = new NodeScheduler(20, 0, 0);
+		final RequestQueue search = new RequestQueue("search", executor, 2, 10);
+		final RequestQueue cleanup = new RequestQueue("cleanup", executor, 2, 10);
+
+		final CountDownLatch bigBlocker = new CountDownLatch(1);
+		final CountDownLatch bigRunning = new CountDownLatch(1);
+		scheduler.submit(search, new Blocked(bigBlocker, bigRunning), 0, 16, 0);
+		Assert.assertTrue(bigRunning.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+		final CountDownLatch done = new CountDownLatch(2);
+		scheduler.submit(search, new Recorded("big", null, done), 0, 16, 0);
+		Thread.sleep(1);
+		scheduler.submit(cleanup, new Recorded("small", null, done), 0, 1, 0);
+		Assert.assertEquals(cleanup.getWaitingRequests(), 1, "The big request waits too long, nothing can pass it");
+		Assert.assertEquals(scheduler.getUsedCores(), 16);
+
+		bigBlocker.countDown();
+		Assert.assertTrue(done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void shouldLimitRequestsToBudget() throws InterruptedException {
+		final NodeScheduler scheduler = new NodeScheduler(4, 1000);
+		final RequestQueue queue = new RequestQueue("test", executor, 1, 10);
+		final CountDownLatch blocker = new CountDownLatch(1);
+		final CountDownLatch running = new CountDownLatch(1);
+		scheduler.submit(queue, new Blocked(blocker, running), 0, 16, 5000);
+		Assert.assertTrue(running.await(TIMEOUT_SECONDS, TimeUnit.SECONDS), "Request bigger than the node still runs");
+		Assert.assertEquals(scheduler.getUsedCores(), 4);
+		Assert.assertEquals(scheduler.getUsedMemoryMegabytes(), 1000);
+		blocker.countDown();
+	}
+
+	private static final class Blocked implements Runnable {
+		private final CountDownLatch blocker;
+		private final CountDownLatch running;
+
+		private Blocked(final CountDownLatch blocker, final CountDownLatch running) {
+			this.blocker = blocker;
+			this.running = running;
+		}
+
+		@Override
+		public void run() {
+			if (running != null) {
+				running.countDown();
+			}
+			try {
+				blocker.await();
+			} catch (final InterruptedException ignore) {
+				// SWALLOWED: the test is over
+			}
+		}
+	}
+
+	private static final class Recorded implements Runnable {
+		private final String name;
+		private final List<String> order;
+		private final CountDownLatch done;
+
+		private Recorded(final String name, final List<String> order, final CountDownLatch done) {
+			this.name = name;
+			this.order = order;
+			this.done = done;
+		}
+
+		@Override
+		public void run() {
+			if (order != null) {
+				order.add(name);
+			}
+			done.countDown();
+		}
+	}
+}
@@ -0,0 +1,129 @@
+package edu.mayo.mprc.daemon;
+
+import edu.mayo.mprc.utilities.progress.PercentDone;
+import edu.mayo.mprc.utilities.progress.ProgressInfo;
+import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.*;
+
+public final class RunnerProgressReporterTest {
+
+	@Test
+	public static void shouldCoalescePercentDone() {
+		final AbstractRunner runner = mock(AbstractRunner.class);
+		final DaemonRequest request = mock(DaemonRequest.class);
+		final RunnerProgressReporter reporter = new RunnerProgressReporter(runner, request, 60 * 60 * 1000);
+
+		final ProgressInfo other = mock(ProgressInfo.class);
+		for (int i = 0; i < 100; i++) {
+			reporter.reportProgress(new PercentDone(i));
+			if (i % 10 == 0) {
+				reporter.reportProgress(other);
+			}
+		}
+		reporter.reportProgress(new PercentDone(100.0));
+		reporter.reportSuccess();
+
+		final ArgumentCaptor<Serializable> responses = ArgumentCaptor.forClass(Serializable.class);
+		verify(runner, times(13)).sendResponse(eq(request), responses.capture(), anyBoolean());
+		final List<Serializable> sent = responses.getAllValues();
+		// First percent done, 10 other progress infos, 100% and completion
+		Assert.assertEquals(((PercentDone) ((DaemonProgressMessage) sent.get(0)).getProgressData()).getPercentDone(), 0.0);
+		Assert.assertSame(((DaemonProgressMessage) sent.get(1)).getProgressData(), other);
+		Assert.assertEquals(((PercentDone) ((DaemonProgressMessage) sent.get(11)).getProgressData()).getPercentDone(), 100.0);
+		Assert.assertEquals(((DaemonProgressMessage) sent.get(12)).getProgress(), DaemonProgress.RequestCompleted);
+	}
+
+	@Test
+	public static void shouldSendLastHeldBackPercentDone() throws InterruptedException {
+		final AbstractRunner runner = mock(AbstractRunner.class);
+		final DaemonRequest request = mock(DaemonRequest.class);
+		final RunnerProgressReporter reporter = new RunnerProgressReporter(runner, request, 50);
+
+		reporter.reportProgress(new PercentDone(10.0));
+		reporter.reportProgress(new PercentDone(20.0));
+		reporter.reportProgress(new PercentDone(30.0));
+		Thread.sleep(500);
+
+		final ArgumentCaptor<Serializable> responses = ArgumentCaptor.forClass(Serializable.class);
+		verify(runner, times(2)).sendResponse(eq(request), responses.capture(), eq(false));
+		final List<Serializable> sent = responses.getAllValues();
+		Assert.assertEquals(((PercentDone) ((DaemonProgressMessage) sent.get(0)).getProgressData()).getPercentDone(), 10.0);
+		Assert.assertEquals(((PercentDone) ((DaemonProgressMessage) sent.get(1)).getProgressData()).getPercentDone(), 30.0);
+	}
+
+	@Test
+	public static void shouldNotSendPercentDoneAfterCompletion() throws InterruptedException {
+		final AbstractRunner runner = mock(AbstractRunner.class);
+		final DaemonRequest request = mock(DaemonRequest.class);
+		final RunnerProgressReporter reporter = new RunnerProgressReporter(runner, request, 50);
+
+		reporter.reportProgress(new PercentDone(10.0));
+		reporter.reportProgress(new PercentDone(20.0));
+		reporter.reportSuccess();
+		Thread.sleep(500);
+
+		verify(runner, times(1)).sendResponse(eq(request), any(Serializable.class), eq(false));
+		verify(runner, times(1)).sendResponse(eq(request), any(Serializable.class), eq(true));
+	}
+
+	@Test
+	public static void shouldNotOvertakeCompletionWithHeldBackPercentDone() throws InterruptedException {
+		final AbstractRunner runner = mock(AbstractRunner.class);
+		final DaemonRequest request = mock(DaemonRequest.class);
+		final RunnerProgressReporter reporter = new RunnerProgressReporter(runner, request, 50);
+		final List<Boolean> sentIsLast = Collections.synchronizedList(new ArrayList<Boolean>());
+		final CountDownLatch flushing = new CountDownLatch(1);
+		doAnswer(new Answer<Void>() {
+			@Override
+			public Void answer(final InvocationOnMock invocation) throws Throwable {
+				if (Thread.currentThread().getName().startsWith("percent-done")) {
+					// The held back percent done is slow to send, the request completes meanwhile
+					flushing.countDown();
+					Thread.sleep(200);
+				}
+				sentIsLast.add((Boolean) invocation.getArguments()[2]);
+				return null;
+			}
+		}).when(runner).sendResponse(eq(request), any(Serializable.class), anyBoolean());
+
+		reporter.reportProgress(new PercentDone(10.0));
+		reporter.reportProgress(new PercentDone(20.0));
+		Assert.assertTrue(flushing.await(5, TimeUnit.SECONDS), "The held back percent done was not sent");
+		reporter.reportSuccess();
+
+		Assert.assertEquals(sentIsLast, Arrays.asList(false, false, true), "The final response must be the last one");
+	}
+
+	@Test
+	public static void shouldSerializeProgressMessage() throws IOException, ClassNotFoundException {
+		final DaemonProgressMessage message = new DaemonProgressMessage(DaemonProgress.UserSpecificProgressInfo, new PercentDone(42.5));
+
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final ObjectOutputStream output = new ObjectOutputStream(bytes);
+		output.writeObject(message);
+		output.close();
+		final ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+		final DaemonProgressMessage read = (DaemonProgressMessage) input.readObject();
+		input.close();
+
+		Assert.assertEquals(read.getProgress(), DaemonProgress.UserSpecificProgressInfo);
+		Assert.assertEquals(((PercentDone) read.getProgressData()).getPercentDone(), 42.5);
+		Assert.assertEquals(read.getHostString(), message.getHostString());
+	}
+}
@@ -0,0 +1,99 @@
+package edu.mayo.mprc.daemon;
+
+import edu.mayo.mprc.config.DependencyResolver;
+import edu.mayo.mprc.config.ResourceConfig;
+import edu.mayo.mprc.daemon.worker.*;
+import edu.mayo.mprc.utilities.progress.ProgressReporter;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author Roman Zenka
+ */
+public final class SimpleRunnerTest {
+	private static final int THREADS = 2;
+	private static final int REQUESTS = 10;
+
+	@Test
+	public void shouldCreateWorkerPerRequest() throws InterruptedException {
+		final AtomicInteger resets = new AtomicInteger(0);
+		final SimpleRunner runner = createRunner(resets, false);
+
+		runRequests(runner);
+
+		Assert.assertEquals(runner.getSetupStatistics().getRequests(), REQUESTS);
+		Assert.assertEquals(runner.getSetupStatistics().getWorkersCreated(), REQUESTS);
+		Assert.assertEquals(resets.get(), 0);
+	}
+
+	@Test
+	public void shouldReuseWorkerPerThread() throws InterruptedException {
+		final AtomicInteger resets = new AtomicInteger(0);
+		final SimpleRunner runner = createRunner(resets, true);
+
+		runRequests(runner);
+
+		final long created = runner.getSetupStatistics().getWorkersCreated();
+		Assert.assertEquals(runner.getSetupStatistics().getRequests(), REQUESTS);
+		Assert.assertTrue(created >= 1 && created <= THREADS, "One worker per thread at most, was " + created);
+		Assert.assertEquals(resets.get(), REQUESTS - created, "Reused workers get reset");
+	}
+
+	private static SimpleRunner createRunner(final AtomicInteger resets, final boolean reuseWorkers) {
+		final WorkerFactory<ResourceConfig, Worker> factory = mock(WorkerFactory.class);
+		when(factory.getUserName()).thenReturn("test");
+		when(factory.create(any(ResourceConfig.class), any(DependencyResolver.class))).thenAnswer(new Answer<Worker>() {
+			@Override
+			public Worker answer(final InvocationOnMock invocation) throws Throwable {
+				return new TestWorker(resets);
+			}
+		});
+
+		final SimpleRunner runner = new SimpleRunner();
+		runner.setFactory(factory);
+		runner.setReuseWorkers(reuseWorkers);
+		runner.setExecutorService(new SimpleThreadPoolExecutor(THREADS, "simple-runner-test", true));
+		return runner;
+	}
+
+	private static void runRequests(final SimpleRunner runner) throws InterruptedException {
+		final DaemonRequest request = mock(DaemonRequest.class);
+		for (int i = 0; i < REQUESTS; i++) {
+			runner.processRequest(request);
+		}
+		runner.getExecutorService().shutdown();
+		Assert.assertTrue(runner.getExecutorService().awaitTermination(10, TimeUnit.SECONDS));
+		verify(request, times(REQUESTS)).sendResponse(any(DaemonProgressMessage.class), eq(true));
+	}
+
+	private static final class TestWorker implements ReusableWorker, NoLoggingWorker {
+		private final AtomicInteger resets;
+
+		private TestWorker(final AtomicInteger resets) {
+			this.resets = resets;
+		}
+
+		@Override
+		public void reset() {
+			resets.incrementAndGet();
+		}
+
+		@Override
+		public void processRequest(final WorkPacket workPacket, final ProgressReporter progressReporter) {
+			progressReporter.reportSuccess();
+		}
+
+		@Override
+		public String check() {
+			return null;
+		}
+	}
+}
@@ -92,7 +92,14 @@ public final class WorkCacheTest {
 		Assert.assertEquals(allValues.get(count++).getRequest(), "request6");  // Stale cache caused recalculation of request 6
 		Assert.assertEquals(allValues.get(count++).getRequest(), "cache:request6");
 
-		Assert.assertEquals(cacheFolder.listFiles().length, 2, "There should be two result folders (two hashes fold into one)");
+		int resultFolders = 0;
+		for (final File file : cacheFolder.listFiles()) {
+			if (file.isDirectory()) {
+				resultFolders++;
+			}
+		}
+		Assert.assertEquals(resultFolders, 2, "There should be two result folders (two hashes fold into one)");
+		Assert.assertTrue(new File(cacheFolder, CacheIndex.JOURNAL_FILE_NAME).exists(), "The cache index journal should be written");
 		Assert.assertFalse(workCache.isWorkInProgress(), "There should be no work in progress anymore");
 
 		connection.stop();
@@ -171,6 +178,11 @@ public final class WorkCacheTest {
 			return null;
 		}
 
+		@Override
+		public List<DaemonRequest> receiveDaemonRequests(final int maxRequests, final long timeout) {
+			return new ArrayList<DaemonRequest>(0);
+		}
+
 		@Override
 		public boolean isRunning() {
 			return running;
@@ -7,6 +7,9 @@ import edu.mayo.mprc.database.SessionProvider;
 import org.hibernate.Query;
 import org.hibernate.SQLQuery;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
 import java.text.MessageFormat;
 
 /**
@@ -83,6 +86,36 @@ public abstract class BulkHashedSetLoader<T extends PersistableHashedSetBase<? e
 		return result;
 	}
 
+	@Override
+	public String getTempColumns() {
+		return "hash";
+	}
+
+	@Override
+	protected void setTempValues(final T value, final PreparedStatement row) throws SQLException {
+		value.calculateHash();
+		row.setLong(TempTableBatch.FIRST_VALUE, value.getHash());
+	}
+
+	/**
+	 * The members are loaded together with the sets, for the extra equality checks.
+	 */
+	@Override
+	protected TempTableBatch createExtraTempBatch(final Connection connection) throws SQLException {
+		return new TempTableBatch(connection, sessionProvider.qualifyTableName(TEMP_MEMBERS), "value", getJdbcBatchSize());
+	}
+
+	@Override
+	protected void addExtraTempRows(final T value, final TempKey key, final TempTableBatch extraBatch) throws SQLException {
+		for (final PersistableBase member : value.getList()) {
+			if (member.getId() == null) {
+				throw new MprcException("The hashed set members have to be all saved in the database (ids associated) before bulk loading");
+			}
+			extraBatch.startRow(key).setInt(TempTableBatch.FIRST_VALUE, member.getId());
+			extraBatch.endRow();
+		}
+	}
+
 	@Override
 	public String getColumnsFromTemp() {
 		return getColumnsToTarget();
@@ -8,6 +8,7 @@ import org.hibernate.dialect.SQLServerDialect;
 import org.hibernate.jdbc.Work;
 
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.text.MessageFormat;
@@ -25,14 +26,20 @@ import java.util.regex.Pattern;
  * Fill in ids of all the values as they are in the database.
  * <p/>
  * Finally, and most importantly - do this FAST.
+ * <p/>
+ * The values are first written into a temporary table. If the loader lists the temporary table columns
+ * ({@link #getTempColumns()}), the rows are sent using plain JDBC batches of {@link #getJdbcBatchSize()} rows,
+ * otherwise each row is saved as a Hibernate entity, which is much slower for large amounts of data.
  *
  * @author Roman Zenka
  */
 public abstract class BulkLoader<T extends PersistableBase> {
 	public static final int BATCH_SIZE = 100;
+	public static final int DEFAULT_JDBC_BATCH_SIZE = 1000;
 
 	private final BulkLoadJobStarter jobStarter;
 	protected final SessionProvider sessionProvider;
+	private int jdbcBatchSize = DEFAULT_JDBC_BATCH_SIZE;
 
 	protected BulkLoader(final BulkLoadJobStarter jobStarter, final SessionProvider sessionProvider) {
 		this.jobStarter = jobStarter;
@@ -62,6 +69,54 @@ public abstract class BulkLoader<T extends PersistableBase> {
 	 */
 	public abstract Object wrapForTempTable(T value, TempKey key);
 
+	/**
+	 * Comma separated list of value columns of the temp table, for loading the temp table with JDBC.
+	 * The job and data_order columns are not listed, the new_id column is left null.
+	 *
+	 * @return Null if this loader can only use Hibernate to fill the temp table.
+	 */
+	public String getTempColumns() {
+		return null;
+	}
+
+	/**
+	 * Set the {@link #getTempColumns()} of a temp table row, starting at index {@link TempTableBatch#FIRST_VALUE}.
+	 * Must be overriden together with {@link #getTempColumns()}.
+	 */
+	protected void setTempValues(final T value, final PreparedStatement row) throws SQLException {
+		throw new MprcException("The loader " + getClass().getSimpleName() + " does not support JDBC loading");
+	}
+
+	/**
+	 * Rows loaded to the temp table in addition to those listed by {@link #getTempColumns}.
+	 *
+	 * @return A batch for extra temp table rows, null if there are no extra rows.
+	 */
+	protected TempTableBatch createExtraTempBatch(final Connection connection) throws SQLException {
+		return null;
+	}
+
+	/**
+	 * Add the extra rows for given value to the batch made by {@link #createExtraTempBatch}.
+	 */
+	protected void addExtraTempRows(final T value, final TempKey key, final TempTableBatch extraBatch) throws SQLException {
+	}
+
+	/**
+	 * @return How many rows get sent to the database at once when loading the temp table with JDBC. 0 means Hibernate is used.
+	 */
+	public int getJdbcBatchSize() {
+		return jdbcBatchSize;
+	}
+
+	/**
+	 * @param jdbcBatchSize How many rows to send to the database at once when loading the temp table with JDBC.
+	 *                      Set to 0 to always use Hibernate.
+	 */
+	public void setJdbcBatchSize(final int jdbcBatchSize) {
+		this.jdbcBatchSize = jdbcBatchSize;
+	}
+
 	/**
 	 * Comma separated list of columns to transfer from the temp table.
 	 */
@@ -111,6 +166,9 @@ public abstract class BulkLoader<T extends PersistableBase> {
 	}
 
 	protected int loadTempValues(final Collection<? extends T> values, final BulkLoadJob bulkLoadJob) {
+		if (jdbcBatchSize > 0 && getTempColumns() != null) {
+			return loadTempValuesJdbc(values, bulkLoadJob);
+		}
 		int order = 0;
 		int numAddedValues = 0;
 		for (final T value : values) {
@@ -132,6 +190,53 @@ public abstract class BulkLoader<T extends PersistableBase> {
 		return numAddedValues;
 	}
 
+	/**
+	 * Same as the Hibernate path, only the rows go directly through JDBC batches.
+	 */
+	protected int loadTempValuesJdbc(final Collection<? extends T> values, final BulkLoadJob bulkLoadJob) {
+		// Whatever Hibernate has pending must get to the database first
+		getSession().flush();
+		final int[] numAddedValues = new int[1];
+		try {
+			getSession().doWork(new Work() {
+				@Override
+				public void execute(final Connection connection) throws SQLException {
+					final TempTableBatch batch = new TempTableBatch(connection,
+							sessionProvider.qualifyTableName(getTempTableName()), getTempColumns(), jdbcBatchSize);
+					TempTableBatch extraBatch = null;
+					try {
+						extraBatch = createExtraTempBatch(connection);
+						int order = 0;
+						for (final T value : values) {
+							if (value.getId() == null) {
+								order++;
+								final TempKey key = new TempKey(bulkLoadJob.getId(), order);
+								setTempValues(value, batch.startRow(key));
+								batch.endRow();
+								if (extraBatch != null) {
+									addExtraTempRows(value, key, extraBatch);
+								}
+							}
+						}
+						batch.finish();
+						if (extraBatch != null) {
+							extraBatch.finish();
+						}
+						numAddedValues[0] = batch.getRows();
+					} finally {
+						batch.close();
+						if (extraBatch != null) {
+							extraBatch.close();
+						}
+					}
+				}
+			});
+		} catch (HibernateException e) {
+			throw new MprcException("Could not load data into " + getTempTableName(), e);
+		}
+		return numAddedValues[0];
+	}
+
 	protected int updateExisting(final BulkLoadJob bulkLoadJob) {
 		final String table = getTableName();
 		final String tableId = getTableIdColumn();
@@ -0,0 +1,97 @@
+package edu.mayo.mprc.database.bulk;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Inserts rows into a temporary bulk loading table using JDBC batches, bypassing Hibernate completely.
+ * <p/>
+ * Every row starts with the job and data order columns ({@link TempKey}), the value columns follow.
+ * <pre>
+ * final PreparedStatement row = batch.startRow(key);
+ * row.setString(TempTableBatch.FIRST_VALUE, "hello");
+ * batch.endRow();
+ * ...
+ * batch.finish();
+ * </pre>
+ *
+ * @author Roman Zenka
+ */
+public final class TempTableBatch {
+	/**
+	 * Parameter index of the first value column.
+	 */
+	public static final int FIRST_VALUE = 3;
+
+	private final PreparedStatement statement;
+	private final int batchSize;
+	private int rowsInBatch;
+	private int rows;
+
+	/**
+	 * @param connection   Connection to insert through.
+	 * @param table        Fully qualified temp table name.
+	 * @param valueColumns Comma separated value columns (job and data_order are added automatically).
+	 * @param batchSize    How many rows to send to the database at once.
+	 */
+	public TempTableBatch(final Connection connection, final String table, final String valueColumns, final int batchSize) throws SQLException {
+		final int numValues = valueColumns.split(",").length;
+		final StringBuilder sql = new StringBuilder(100)
+				.append("INSERT INTO ").append(table)
+				.append(" (job, data_order, ").append(valueColumns).append(") VALUES (?, ?");
+		for (int i = 0; i < numValues; i++) {
+			sql.append(", ?");
+		}
+		sql.append(')');
+		statement = connection.prepareStatement(sql.toString());
+		this.batchSize = Math.max(1, batchSize);
+	}
+
+	/**
+	 * Start a new row. Set the values starting with index {@link #FIRST_VALUE}, then call {@link #endRow()}.
+	 */
+	public PreparedStatement startRow(final TempKey key) throws SQLException {
+		statement.setInt(1, key.getJob());
+		statement.setInt(2, key.getDataOrder());
+		return statement;
+	}
+
+	public void endRow() throws SQLException {
+		statement.addBatch();
+		rows++;
+		rowsInBatch++;
+		if (rowsInBatch == batchSize) {
+			statement.executeBatch();
+			rowsInBatch = 0;
+		}
+	}
+
+	/**
+	 * @return Total amount of rows added so far.
+	 */
+	public int getRows() {
+		return rows;
+	}
+
+	/**
+	 * Send the rest of the rows to the database and close the statement.
+	 */
+	public void finish() throws SQLException {
+		try {
+			if (rowsInBatch > 0) {
+				statement.executeBatch();
+				rowsInBatch = 0;
+			}
+		} finally {
+			close();
+		}
+	}
+
+	/**
+	 * Close the statement without sending the rest of the rows. Use when the loading failed.
+	 */
+	public void close() throws SQLException {
+		statement.close();
+	}
+}
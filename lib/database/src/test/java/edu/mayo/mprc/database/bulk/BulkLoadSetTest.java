@@ -3,6 +3,7 @@ package edu.mayo.mprc.database.bulk;
 import edu.mayo.mprc.database.DaoTest;
 import edu.mayo.mprc.database.TestList;
 import edu.mayo.mprc.database.TestSetMember;
+import org.apache.log4j.Logger;
 import org.testng.Assert;
 import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeMethod;
@@ -16,7 +17,10 @@ import java.util.List;
  * @author Roman Zenka
  */
 public final class BulkLoadSetTest extends DaoTest {
+	private static final Logger LOGGER = Logger.getLogger(BulkLoadSetTest.class);
 	public static final int VALUES = 100;
+	private static final int BENCHMARK_MEMBERS = 100;
+	private static final int BENCHMARK_MAX_SET_SIZE = 50;
 	private TestBulkDaoBaseImpl dao;
 
 	@BeforeMethod
@@ -67,4 +71,97 @@ public final class BulkLoadSetTest extends DaoTest {
 
 		dao.commit();
 	}
+
+	@Test
+	public void jdbcAndHibernateShouldLoadSameSets() {
+		final List<TestSetMember> members = saveMembers();
+
+		dao.begin();
+		final TestSetLoader hibernateLoader = new TestSetLoader(dao, dao);
+		hibernateLoader.setJdbcBatchSize(0);
+		final List<TestList> hibernateSets = makeSets(members);
+		hibernateLoader.addObjects(hibernateSets);
+		dao.commit();
+
+		dao.begin();
+		final TestSetLoader jdbcLoader = new TestSetLoader(dao, dao);
+		jdbcLoader.setJdbcBatchSize(7);
+		final List<TestList> jdbcSets = makeSets(members);
+		jdbcLoader.addObjects(jdbcSets);
+		dao.commit();
+
+		for (int i = 0; i < VALUES; i++) {
+			Assert.assertNotNull(jdbcSets.get(i).getId());
+			Assert.assertEquals(jdbcSets.get(i).getId(), hibernateSets.get(i).getId(), "The same set must not be saved twice");
+		}
+	}
+
+	private List<TestSetMember> saveMembers() {
+		dao.begin();
+		final List<TestSetMember> members = new ArrayList<TestSetMember>(VALUES / 10);
+		for (int i = 0; i < VALUES / 10; i++) {
+			members.add(dao.save(new TestSetMember("member #" + i), true));
+		}
+		dao.commit();
+		return members;
+	}
+
+	private static List<TestList> makeSets(final List<TestSetMember> members) {
+		final List<TestList> testSets = new ArrayList<TestList>(VALUES);
+		for (int i = 0; i < VALUES; i++) {
+			final TestList testSet = new TestList();
+			testSets.add(testSet);
+			for (int j = 0; j < i / 10; j++) {
+				testSet.add(members.get(j));
+			}
+		}
+		return testSets;
+	}
+
+	/**
+	 * Compare the throughput of the Hibernate and JDBC batch paths when loading sets into H2.
+	 * Each path loads its own distinct sets, so neither of them benefits from the sets the other one saved.
+	 */
+	@Test(groups = {"benchmark"})
+	public void benchmarkJdbcAgainstHibernate() {
+		final long hibernateTime = benchmarkLoad(0);
+		final long jdbcTime = benchmarkLoad(BulkLoader.DEFAULT_JDBC_BATCH_SIZE);
+		LOGGER.info("Loaded " + BENCHMARK_MEMBERS * BENCHMARK_MAX_SET_SIZE + " sets: Hibernate " + hibernateTime + " ms, JDBC batches " + jdbcTime + " ms");
+	}
+
+	/**
+	 * @return How many milliseconds it took to load the sets.
+	 */
+	private long benchmarkLoad(final int jdbcBatchSize) {
+		dao.begin();
+		final List<TestSetMember> members = new ArrayList<TestSetMember>(BENCHMARK_MEMBERS);
+		for (int i = 0; i < BENCHMARK_MEMBERS; i++) {
+			members.add(dao.save(new TestSetMember("batch " + jdbcBatchSize + " member #" + i), true));
+		}
+		dao.commit();
+
+		final List<TestList> sets = new ArrayList<TestList>(BENCHMARK_MEMBERS * BENCHMARK_MAX_SET_SIZE);
+		for (int start = 0; start < BENCHMARK_MEMBERS; start++) {
+			for (int size = 1; size <= BENCHMARK_MAX_SET_SIZE; size++) {
+				final TestList set = new TestList();
+				for (int j = 0; j < size; j++) {
+					set.add(members.get((start + j) % BENCHMARK_MEMBERS));
+				}
+				sets.add(set);
+			}
+		}
+
+		final long start = System.currentTimeMillis();
+		dao.begin();
+		final TestSetLoader loader = new TestSetLoader(dao, dao);
+		loader.setJdbcBatchSize(jdbcBatchSize);
+		loader.addObjects(sets);
+		dao.commit();
+		final long time = System.currentTimeMillis() - start;
+
+		for (final TestList set : sets) {
+			Assert.assertNotNull(set.getId());
+		}
+		return time;
+	}
 }
@@ -5,6 +5,7 @@ import edu.mayo.mprc.fasta.DBInputStream;
 import edu.mayo.mprc.fasta.DBOutputStream;
 import edu.mayo.mprc.fasta.FASTAInputStream;
 import edu.mayo.mprc.fasta.FASTAOutputStream;
+import edu.mayo.mprc.fasta.FASTAValidator;
 import edu.mayo.mprc.utilities.FileUtilities;
 import edu.mayo.mprc.utilities.StringUtilities;
 import org.apache.log4j.Logger;
@@ -72,6 +73,11 @@ public final class CurationExecutor implements Runnable {
 	private File localTempFolder;
 	private File fastaArchiveFolder;
 
+	/**
+	 * Validates the resulting FASTA file while it is being written.
+	 */
+	private FASTAValidator resultValidator;
+
 
 	/**
 	 * Creates a new CurationExecutor given the curator you want to execute.  We also initialize the Status object that
@@ -152,7 +158,8 @@ public final class CurationExecutor implements Runnable {
 
 		//for each step in the curation
 		final CurationStep lastStep = steps.get(steps.size() - 1);
-		for (final CurationStep step : steps) {
+		int stepIndex = 0;
+		while (stepIndex < steps.size()) {
 			//if we have been interupted then exit.  This is pretty course grained interuption
 			//but it would take a lot more work to make it finer grained.
 			if (status.isInterrupted()) {
@@ -160,6 +167,20 @@ public final class CurationExecutor implements Runnable {
 				break;
 			}
 
+			// Consecutive steps that work sequence by sequence are done in a single pass over the previous result
+			final List<CurationStepStream> streams = outStream == null ? new ArrayList<CurationStepStream>(0) : openStreams(steps, stepIndex);
+			if (!streams.isEmpty()) {
+				final List<CurationStep> chain = steps.subList(stepIndex, stepIndex + streams.size());
+				stepIndex += streams.size();
+				if (performStreamingSteps(chain, streams, chain.contains(lastStep))) {
+					return true;
+				}
+				continue;
+			}
+
+			final CurationStep step = steps.get(stepIndex);
+			stepIndex++;
+
 			//increment the step counter
 			status.incrementStep();
 
@@ -181,13 +202,10 @@ public final class CurationExecutor implements Runnable {
 			}
 
 			//create a new outstream using the same test
-			final File newOutFile = new File(tempDirectory.getPath(), String.valueOf(status.getCurrentStepNumber()));
 			try {
-				final FASTAOutputStream fastaOutputStream = new FASTAOutputStream(newOutFile);
-				fastaOutputStream.setCleanupHeaders(step.equals(lastStep));
-				outStream = fastaOutputStream;
+				outStream = createOutStream(step.equals(lastStep));
 			} catch (IOException e) {
-				status.addMessage("Error setting up the next output file after step " + newOutFile);
+				status.addMessage("Error setting up the next output file after step " + status.getCurrentStepNumber());
 				LOGGER.error(e);
 			}
 			//have the step perform itself
@@ -201,28 +219,11 @@ public final class CurationExecutor implements Runnable {
 			}
 			// On the last curation step we also validate the resulting FASTA file
 			if (step.equals(lastStep)) {
-				// if the resulting fasta file is not valid then we want to say something in the status but we should probably just complete anyway
-				if (outStream == null) {
-					postValidation.addMessage("Error: The resulting .fasta file is not valid!");
-				} else {
-					final String message = FASTAInputStream.isFASTAFileValid(outStream.getFile(), false);
-					if (message != null) {
-						postValidation.addMessage(message);
-					}
-				}
+				validateResult(postValidation);
 			}
-			if (postValidation.isOK()) {
-				status.addCompletedStepValidation(postValidation);
-			} else {
-				for (final String msg : postValidation.getMessages()) {
-					status.addMessage("Step failed: " + msg);
-				}
-				status.addFailedStepValidation(postValidation);
-				status.setToDone(); //break out of the step loop
+			if (reportStepValidation(postValidation, status.getCurrentStepNumber())) {
 				return true;
 			}
-			status.addMessage("Step " + status.getCurrentStepNumber() + " completed with " +
-					postValidation.getCompletionCount() + " sequences");
 		}
 
 		if (retainArtifacts) {
@@ -262,6 +263,155 @@ public final class CurationExecutor implements Runnable {
 		return false;
 	}
 
+	/**
+	 * Open streams for the consecutive {@link StreamingCurationStep}s starting at given index.
+	 *
+	 * @return Streams for the steps that can be streamed, possibly none.
+	 */
+	private List<CurationStepStream> openStreams(final List<CurationStep> steps, final int from) {
+		final List<CurationStepStream> streams = new ArrayList<CurationStepStream>(steps.size() - from);
+		for (int i = from; i < steps.size() && steps.get(i) instanceof StreamingCurationStep; i++) {
+			final CurationStepStream stream = ((StreamingCurationStep) steps.get(i)).openStream(this);
+			if (stream == null) {
+				break;
+			}
+			streams.add(stream);
+		}
+		return streams;
+	}
+
+	/**
+	 * Runs a chain of streaming steps in a single pass. The previous result is read once, each sequence goes through
+	 * all the steps and only the output of the last one is written. When the chain ends the curation, the result is
+	 * validated while it is being written.
+	 *
+	 * @return true if there was an error
+	 */
+	private boolean performStreamingSteps(final List<CurationStep> chain, final List<CurationStepStream> streams, final boolean endsCuration) {
+		final int firstStepNumber = status.getCurrentStepNumber() + 1;
+		for (int i = 0; i < chain.size(); i++) {
+			status.incrementStep();
+			status.addMessage("Step " + status.getCurrentStepNumber() + " has begun");
+		}
+		if (chain.size() > 1) {
+			status.addMessage("Steps " + firstStepNumber + "-" + status.getCurrentStepNumber() + " are performed in a single pass");
+		}
+
+		final StepValidation lastValidation = streams.get(streams.size() - 1).getValidation();
+		final DBInputStream in = new FASTAInputStream(outStream.getFile());
+		final DBOutputStream out;
+		try {
+			out = createOutStream(endsCuration);
+		} catch (IOException e) {
+			for (final CurationStepStream stream : streams) {
+				stream.close();
+			}
+			lastValidation.addMessageAndException("Error setting up the next output file after step " + status.getCurrentStepNumber(), e);
+			return reportStepValidation(lastValidation, status.getCurrentStepNumber());
+		}
+		inStream = in;
+		outStream = out;
+
+		DBOutputStream next = out;
+		for (int i = streams.size() - 1; i >= 0; i--) {
+			streams.get(i).connect(next);
+			next = streams.get(i);
+		}
+
+		try {
+			final float sequencesToProcess = status.getLastStepSequenceCount();
+			int sequencesProcessed = 0;
+			in.beforeFirst();
+			while (in.gotoNextSequence()) {
+				status.setCurrentStepProgress(100f * ++sequencesProcessed / sequencesToProcess);
+				next.appendSequence(in.getHeader(), in.getSequence());
+			}
+			for (final CurationStepStream stream : streams) {
+				stream.finish();
+			}
+		} catch (CurationStepStream.StepFailure e) {
+			LOGGER.error(e);
+			e.getStream().getValidation().addMessageAndException(e.getMessage(), (Exception) e.getCause());
+		} catch (IOException e) {
+			LOGGER.error(e);
+			lastValidation.addMessageAndException("Error in performing database IO", e);
+		} finally {
+			in.close();
+			out.close();
+			for (final CurationStepStream stream : streams) {
+				stream.close();
+			}
+		}
+
+		for (int i = 0; i < chain.size(); i++) {
+			final StepValidation validation = streams.get(i).getValidation();
+			if (validation.isOK()) {
+				final int count = streams.get(i).getSequenceCount();
+				validation.setCompletionCount(count);
+				chain.get(i).setLastRunCompletionCount(count);
+			}
+		}
+		if (endsCuration && lastValidation.isOK()) {
+			validateResult(lastValidation);
+		}
+		for (int i = 0; i < chain.size(); i++) {
+			if (reportStepValidation(streams.get(i).getValidation(), firstStepNumber + i)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Create the output file for the current step. The result of the whole curation gets its headers cleaned up
+	 * and is validated as it is being written.
+	 */
+	private DBOutputStream createOutStream(final boolean lastStep) throws IOException {
+		final File newOutFile = new File(tempDirectory.getPath(), String.valueOf(status.getCurrentStepNumber()));
+		final FASTAOutputStream fastaOutputStream = new FASTAOutputStream(newOutFile);
+		fastaOutputStream.setCleanupHeaders(lastStep);
+		if (lastStep) {
+			resultValidator = new FASTAValidator(false, Math.max(0, status.getLastStepSequenceCount()));
+			fastaOutputStream.setValidator(resultValidator);
+		}
+		return fastaOutputStream;
+	}
+
+	/**
+	 * if the resulting fasta file is not valid then we want to say something in the status but we should probably just complete anyway
+	 */
+	private void validateResult(final StepValidation postValidation) {
+		if (outStream == null) {
+			postValidation.addMessage("Error: The resulting .fasta file is not valid!");
+			return;
+		}
+		final String message = resultValidator != null ? resultValidator.getError() : FASTAInputStream.isFASTAFileValid(outStream.getFile(), false);
+		if (message != null) {
+			postValidation.addMessage(message);
+		}
+	}
+
+	/**
+	 * Record how the step went.
+	 *
+	 * @return true if the step failed
+	 */
+	private boolean reportStepValidation(final StepValidation postValidation, final int stepNumber) {
+		if (postValidation.isOK()) {
+			status.addCompletedStepValidation(postValidation);
+		} else {
+			for (final String msg : postValidation.getMessages()) {
+				status.addMessage("Step failed: " + msg);
+			}
+			status.addFailedStepValidation(postValidation);
+			status.setToDone(); //break out of the step loop
+			return true;
+		}
+		status.addMessage("Step " + stepNumber + " completed with " +
+				postValidation.getCompletionCount() + " sequences");
+		return false;
+	}
+
 	/**
 	 * gets the status object of this curation.  You might want to get it before you run execute because it will allow
 	 * you to get feedback as far as progress is concerned.  This feature will require some concurrency but it shouldn't
@@ -321,6 +471,13 @@ public final class CurationExecutor implements Runnable {
 		return fastaArchiveFolder;
 	}
 
+	/**
+	 * @return Folder for the intermediate files of this curation run. Deleted when the run finishes.
+	 */
+	public File getTempDirectory() {
+		return tempDirectory;
+	}
+
 	/**
 	 * An implementation of CurationStatus that only this class will be aware of.  Only CurationExecutor will need
 	 * certain functionality and the only source of an instance of this Interface should be through a CurationExecutor
@@ -0,0 +1,126 @@
+package edu.mayo.mprc.dbcurator.model;
+
+import edu.mayo.mprc.MprcException;
+import edu.mayo.mprc.fasta.DBInputStream;
+import edu.mayo.mprc.fasta.DBOutputStream;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * One step of a streaming curation. Sequences appended to this stream are processed by the step and the results
+ * are {@link #emit}-ted to the next stream - either another step, or the resulting FASTA file.
+ * <p/>
+ * The emitted headers always start with &gt;, same as they would after being written to a file and read back
+ * by the next step.
+ *
+ * @author Roman Zenka
+ */
+public abstract class CurationStepStream implements DBOutputStream {
+	private DBOutputStream next;
+	private final StepValidation validation;
+	private int sequenceCount;
+
+	/**
+	 * @param validation Validation to report the results of the step in.
+	 */
+	protected CurationStepStream(final StepValidation validation) {
+		this.validation = validation;
+	}
+
+	/**
+	 * @param next Where to send the resulting sequences. Set by the executor before any sequence gets appended.
+	 */
+	void connect(final DBOutputStream next) {
+		this.next = next;
+	}
+
+	/**
+	 * Process a single input sequence, {@link #emit} the results.
+	 */
+	protected abstract void process(String header, String sequence) throws IOException;
+
+	/**
+	 * Called once all the input sequences were appended. Steps that hold sequences back must emit them now.
+	 */
+	public void finish() throws IOException {
+	}
+
+	/**
+	 * Send a resulting sequence to the next stream.
+	 */
+	protected final void emit(final String header, final String sequence) throws IOException {
+		if (header == null || header.isEmpty() || header.charAt(0) != '>') {
+			next.appendSequence(">" + (header == null ? "" : header), sequence);
+		} else {
+			next.appendSequence(header, sequence);
+		}
+		sequenceCount++;
+	}
+
+	@Override
+	public final void appendSequence(final String header, final String sequence) throws IOException {
+		try {
+			process(header, sequence);
+		} catch (StepFailure e) {
+			throw e;
+		} catch (IOException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new StepFailure(this, e);
+		}
+	}
+
+	@Override
+	public void appendRemaining(final DBInputStream inputStream) throws IOException {
+		if (inputStream != null) {
+			while (inputStream.gotoNextSequence()) {
+				appendSequence(inputStream.getHeader(), inputStream.getSequence());
+			}
+		}
+	}
+
+	@Override
+	public File getFile() {
+		return next.getFile();
+	}
+
+	/**
+	 * Release any resources held by the step. The resulting file is closed by the executor.
+	 */
+	@Override
+	public void close() {
+	}
+
+	/**
+	 * @return How many sequences this step emitted.
+	 */
+	@Override
+	public int getSequenceCount() {
+		return sequenceCount;
+	}
+
+	/**
+	 * @return Validation of this step's run.
+	 */
+	public StepValidation getValidation() {
+		return validation;
+	}
+
+	/**
+	 * A step failed processing a sequence. Remembers which step it was, so the error is reported for the right one.
+	 */
+	public static final class StepFailure extends MprcException {
+		private static final long serialVersionUID = 20131018L;
+		private final transient CurationStepStream stream;
+
+		public StepFailure(final CurationStepStream stream, final Exception cause) {
+			super(cause.getMessage(), cause);
+			this.stream = stream;
+		}
+
+		public CurationStepStream getStream() {
+			return stream;
+		}
+	}
+}
@@ -0,0 +1,18 @@
+package edu.mayo.mprc.dbcurator.model;
+
+/**
+ * A {@link CurationStep} that processes the sequences one at a time, never needing to see the whole database.
+ * <p/>
+ * The {@link CurationExecutor} chains consecutive streaming steps together, so the result of the previous step is read
+ * only once and only the output of the last step in the chain is written to disk.
+ *
+ * @author Roman Zenka
+ */
+public interface StreamingCurationStep extends CurationStep {
+	/**
+	 * @param exe The executor we work for.
+	 * @return Stream accepting the input sequences. Null if the step cannot be streamed with its current settings,
+	 *         the executor then falls back to {@link #performStep}.
+	 */
+	CurationStepStream openStream(CurationExecutor exe);
+}
@@ -21,7 +21,7 @@ import java.util.Locale;
  * @author Eric J. Winter Date: Apr 9, 2007 Time: 9:30:27 AM
  */
 
-public class HeaderFilterStep implements CurationStep {
+public class HeaderFilterStep implements StreamingCurationStep {
 	private static final long serialVersionUID = 20071220L;
 
 	/**
@@ -104,6 +104,25 @@ public class HeaderFilterStep implements CurationStep {
 		return runValidation;
 	}
 
+	/**
+	 * Copies the sequences whose headers match the filter to the next stream.
+	 */
+	@Override
+	public CurationStepStream openStream(final CurationExecutor exe) {
+		final TextFilter filter = getAppropriateTextFilter();
+		if (filter == null) {
+			return null;
+		}
+		return new CurationStepStream(new StepValidation()) {
+			@Override
+			protected void process(final String header, final String sequence) throws IOException {
+				if (filter.matches(header)) {
+					emit(header, sequence);
+				}
+			}
+		};
+	}
+
 	/**
 	 * Call this method if you want to see if the step is ready to be run and if any issues have been predicted.  NOTE:
 	 * succesfull prevalidation can not guarentee<sp> successful processing.
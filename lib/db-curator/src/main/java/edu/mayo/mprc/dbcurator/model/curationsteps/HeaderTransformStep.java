@@ -18,7 +18,7 @@ import java.util.regex.PatternSyntaxException;
  *
  * @author Eric Winter
  */
-public class HeaderTransformStep implements CurationStep {
+public class HeaderTransformStep implements StreamingCurationStep {
 	private static final long serialVersionUID = 20071220L;
 
 	private static final Logger LOGGER = Logger.getLogger(HeaderTransformStep.class);
@@ -101,6 +101,24 @@ public class HeaderTransformStep implements CurationStep {
 		return lastRunValidation;
 	}
 
+	/**
+	 * Transforms the headers on the fly. Falls back to {@link #performStep} when the step is not valid,
+	 * so the problem gets reported the usual way.
+	 */
+	@Override
+	public CurationStepStream openStream(final CurationExecutor exe) {
+		final StepValidation validation = preValidate(exe.getCurationDao());
+		if (!validation.isOK()) {
+			return null;
+		}
+		return new CurationStepStream(validation) {
+			@Override
+			protected void process(final String header, final String sequence) throws IOException {
+				emit(transformString(header), sequence);
+			}
+		};
+	}
+
 	/**
 	 * takes a string and transforms it based on the set matchPattern and subsitutionPattern
 	 *
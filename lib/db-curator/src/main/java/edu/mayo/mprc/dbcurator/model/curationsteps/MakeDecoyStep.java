@@ -1,13 +1,18 @@
 package edu.mayo.mprc.dbcurator.model.curationsteps;
 
 import com.google.common.base.Objects;
+import edu.mayo.mprc.MprcException;
 import edu.mayo.mprc.dbcurator.model.*;
 import edu.mayo.mprc.fasta.DBInputStream;
 import edu.mayo.mprc.fasta.DBOutputStream;
+import edu.mayo.mprc.fasta.FASTAInputStream;
+import edu.mayo.mprc.fasta.FASTAOutputStream;
 import edu.mayo.mprc.fasta.filter.ReversalStringManipulator;
 import edu.mayo.mprc.fasta.filter.ScrambleStringManipulator;
 import edu.mayo.mprc.fasta.filter.StringManipulator;
+import edu.mayo.mprc.utilities.FileUtilities;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -19,7 +24,7 @@ import java.util.regex.Pattern;
  *
  * @author Eric J. Winter Date: Apr 10, 2007 Time: 12:03:54 PM
  */
-public class MakeDecoyStep implements CurationStep {
+public class MakeDecoyStep implements StreamingCurationStep {
 	private static final long serialVersionUID = 20071220L;
 
 	/**
@@ -190,6 +195,64 @@ public class MakeDecoyStep implements CurationStep {
 
 	}
 
+	/**
+	 * In overwrite mode, each sequence is replaced by its decoy right away. In append mode the decoys have to follow
+	 * all the original sequences, so they are held in a temporary file and emitted when the input is finished.
+	 */
+	@Override
+	public CurationStepStream openStream(final CurationExecutor exe) {
+		final StepValidation validation = preValidate(null);
+		if (!validation.isOK()) {
+			return null;
+		}
+		final String decoyRegex = exe.getCuration().getDecoyRegex();
+		if (overwriteMode) {
+			return new CurationStepStream(validation) {
+				@Override
+				protected void process(final String header, final String sequence) throws IOException {
+					emit(modifyHeader(header, decoyRegex), manipulator.manipulateString(sequence));
+				}
+			};
+		}
+
+		final File decoyFile;
+		final FASTAOutputStream decoys;
+		try {
+			decoyFile = File.createTempFile("decoys", ".fasta", exe.getTempDirectory());
+			decoys = new FASTAOutputStream(decoyFile);
+		} catch (final IOException e) {
+			throw new MprcException("Could not create temporary file for decoy sequences", e);
+		}
+		return new CurationStepStream(validation) {
+			@Override
+			protected void process(final String header, final String sequence) throws IOException {
+				emit(header, sequence);
+				decoys.appendSequence(modifyHeader(header, decoyRegex), manipulator.manipulateString(sequence));
+			}
+
+			@Override
+			public void finish() throws IOException {
+				decoys.close();
+				final DBInputStream in = new FASTAInputStream(decoyFile);
+				try {
+					in.beforeFirst();
+					while (in.gotoNextSequence()) {
+						emit(in.getHeader(), in.getSequence());
+					}
+				} finally {
+					in.close();
+					FileUtilities.quietDelete(decoyFile);
+				}
+			}
+
+			@Override
+			public void close() {
+				decoys.close();
+				FileUtilities.quietDelete(decoyFile);
+			}
+		};
+	}
+
 	/**
 	 * modify the header so that a description of the modification precedes the original header
 	 *
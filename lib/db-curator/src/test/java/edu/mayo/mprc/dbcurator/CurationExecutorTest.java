@@ -134,6 +134,56 @@ public final class CurationExecutorTest extends CurationDaoTestBase {
 		}
 	}
 
+	@Test(groups = {"fast", "integration"}, enabled = true)
+	public void shouldStreamConsecutiveSteps() {
+		curationDao.begin();
+		try {
+			curation.addStep(new ManualInclusionStep(">PROT1_HUMAN First", "MKLLA", null), -1);
+			curation.addStep(new ManualInclusionStep(">PROT2_MOUSE Second", "MKLLB", null), -1);
+			curation.addStep(new ManualInclusionStep(">PROT3_HUMAN Third", "MKLLC", null), -1);
+			// The following three steps are done in a single pass
+			curation.addStep(new HeaderFilterStep(MatchMode.ANY, TextMode.REG_EX, "^>[^ ]+_HUMAN", null), -1);
+			curation.addStep(new HeaderTransformStep("Shorten", "^>PROT(\\S+)", ">P$1", null), -1);
+			final MakeDecoyStep decoyStep = new MakeDecoyStep(false, MakeDecoyStep.REVERSAL_MANIPULATOR, null);
+			curation.addStep(decoyStep, -1);
+
+			final CurationStatus status = executeCuration();
+
+			Assert.assertTrue(status.getFailedStepValidations().isEmpty(),
+					CurationExecutor.failedValidationsToString(status.getFailedStepValidations()));
+			Assert.assertEquals(status.getCompletedStepValidations().size(), 6);
+			Assert.assertEquals(status.getCompletedStepValidations().get(3).getCompletionCount(), 2, "Two human proteins");
+			Assert.assertEquals(status.getCompletedStepValidations().get(4).getCompletionCount(), 2);
+			Assert.assertEquals(status.getLastStepSequenceCount(), 4, "Two proteins and two decoys");
+			Assert.assertEquals(decoyStep.getLastRunCompletionCount(), Integer.valueOf(4));
+			curationDao.commit();
+		} catch (Exception e) {
+			curationDao.rollback();
+			throw new MprcException(e);
+		}
+	}
+
+	@Test(groups = {"fast", "integration"}, enabled = true)
+	public void shouldReportStreamedStepFailure() {
+		curationDao.begin();
+		try {
+			curation.addStep(new ManualInclusionStep(">PROT1_HUMAN First", "MKLLA", null), -1);
+			curation.addStep(new ManualInclusionStep(">PROT2_HUMAN Second", "MKLLB", null), -1);
+			// Both proteins get the same accession number
+			curation.addStep(new HeaderTransformStep("Break", "^>PROT\\d", ">PROT", null), -1);
+
+			final CurationStatus status = executeCuration();
+
+			Assert.assertEquals(status.getCompletedStepValidations().size(), 2);
+			Assert.assertEquals(status.getFailedStepValidations().size(), 1);
+			Assert.assertEquals(status.getFailedStepValidations().get(0).getMessages().get(0), "Duplicate accession number: [PROT_HUMAN] (line #3)");
+			curationDao.commit();
+		} catch (Exception e) {
+			curationDao.rollback();
+			throw new MprcException(e);
+		}
+	}
+
 	private CurationStatus executeCuration() {
 		final CurationExecutor executor = new CurationExecutor(curation, false, curationDao, curationFolder, localTempFolder, curatorArchiveFolder);
 		final CurationStatus status = executor.execute();
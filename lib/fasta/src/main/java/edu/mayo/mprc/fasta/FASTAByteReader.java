@@ -0,0 +1,359 @@
+package edu.mayo.mprc.fasta;
+
+import com.google.common.base.Charsets;
+import edu.mayo.mprc.MprcException;
+import edu.mayo.mprc.utilities.FileUtilities;
+import edu.mayo.mprc.utilities.GZipUtilities;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads FASTA files directly as bytes, using a large buffer filled from a {@link FileChannel}.
+ * <p/>
+ * The records are parsed exactly like {@link FASTAInputStream} does, but without decoding the file into characters
+ * and without creating a string per line. The sequence is collected and upper-cased in place in a reusable byte array,
+ * available through {@link #getSequenceBytes()} without any copying. Only ASCII letters are upper-cased, other bytes
+ * are left as they are.
+ * <p/>
+ * The reader can also process a single segment of the file - only the records whose header starts within the segment
+ * are returned. Use {@link #split} to get segment boundaries aligned to the record starts, so the segments can
+ * be processed in parallel, see {@link ParallelFASTAReader}.
+ *
+ * @author Roman Zenka
+ */
+public final class FASTAByteReader implements DBInputStream {
+	private static final int BUFFER_SIZE = 1024 * 1024;
+	private static final int SPLIT_BUFFER_SIZE = 64 * 1024;
+	private static final int INITIAL_LINE_LENGTH = 1024;
+	private static final int INITIAL_SEQUENCE_LENGTH = 4096;
+	private static final byte FASTA_HEADER = '>';
+	private static final int TO_UPPER_CASE = 'a' - 'A';
+
+	private final File fastaFile;
+	private final long start;
+	private final long end;
+
+	private ReadableByteChannel channel;
+	private final byte[] bytes = new byte[BUFFER_SIZE];
+	private final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+	private int bufferPos;
+	private int bufferEnd;
+	/**
+	 * Position of {@link #bytes}[0] in the file.
+	 */
+	private long bufferOffset;
+	/**
+	 * Previous line ended with \r, if next byte is \n, it belongs to the same line end.
+	 */
+	private boolean skipLineFeed;
+
+	private byte[] line = new byte[INITIAL_LINE_LENGTH];
+	private int lineLength;
+	private long lineStart;
+	/**
+	 * The line in {@link #line} is a header of the next record.
+	 */
+	private boolean nextHeaderPending;
+
+	private int linesRead;
+	private int linesBeforeEnd;
+
+	private String currentHeader;
+	private int currentLine;
+	private byte[] sequence = new byte[INITIAL_SEQUENCE_LENGTH];
+	private int sequenceLength;
+	private String currentSequence;
+
+	/**
+	 * Read the entire file. Gzipped files are supported.
+	 */
+	public FASTAByteReader(final File file) {
+		this(file, 0, Long.MAX_VALUE);
+	}
+
+	/**
+	 * Read records whose header starts in a given range of an uncompressed file.
+	 *
+	 * @param file  File to read.
+	 * @param start Start of the segment. Must be the start of a record, see {@link #split}.
+	 * @param end   End of the segment (exclusive).
+	 */
+	public FASTAByteReader(final File file, final long start, final long end) {
+		fastaFile = file;
+		this.start = start;
+		this.end = end;
+	}
+
+	/**
+	 * Split an uncompressed FASTA file into segments, each starting at a record header.
+	 * The segments are approximately of the same size, some can be empty.
+	 *
+	 * @param file     File to split.
+	 * @param segments Amount of segments to produce.
+	 * @return Array of segments + 1 boundaries. Segment i spans from boundaries[i] to boundaries[i+1].
+	 */
+	public static long[] split(final File file, final int segments) {
+		final long length = file.length();
+		final long[] boundaries = new long[segments + 1];
+		boundaries[segments] = length;
+		FileInputStream stream = null;
+		try {
+			stream = new FileInputStream(file);
+			final FileChannel fileChannel = stream.getChannel();
+			final ByteBuffer splitBuffer = ByteBuffer.allocate(SPLIT_BUFFER_SIZE);
+			for (int i = 1; i < segments; i++) {
+				final long nominal = Math.max(length * i / segments, boundaries[i - 1] + 1);
+				boundaries[i] = nominal >= length ? length : findRecordStart(fileChannel, splitBuffer, nominal, length);
+			}
+		} catch (IOException e) {
+			throw new MprcException("Cannot split FASTA file [" + file.getAbsolutePath() + "]", e);
+		} finally {
+			FileUtilities.closeQuietly(stream);
+		}
+		return boundaries;
+	}
+
+	/**
+	 * @return Position of the first header at or after given position, file length if there is none.
+	 */
+	private static long findRecordStart(final FileChannel fileChannel, final ByteBuffer splitBuffer, final long from, final long length) throws IOException {
+		// We need to see the byte before, to know whether the header is at the start of a line
+		long position = from - 1;
+		byte previous = 0;
+		boolean first = true;
+		while (position < length) {
+			splitBuffer.clear();
+			final int read = fileChannel.read(splitBuffer, position);
+			if (read <= 0) {
+				break;
+			}
+			final byte[] chunk = splitBuffer.array();
+			for (int i = 0; i < read; i++) {
+				final byte b = chunk[i];
+				if (!first && b == FASTA_HEADER && (previous == '\n' || previous == '\r')) {
+					return position + i;
+				}
+				first = false;
+				previous = b;
+			}
+			position += read;
+		}
+		return length;
+	}
+
+	/**
+	 * Opens the file and positions the reader before the first record of the segment.
+	 */
+	@Override
+	public void beforeFirst() {
+		close();
+		try {
+			final FileInputStream stream = new FileInputStream(fastaFile);
+			if (start == 0 && end == Long.MAX_VALUE && GZipUtilities.isGZipped(fastaFile)) {
+				channel = Channels.newChannel(new GZIPInputStream(stream, BUFFER_SIZE));
+			} else {
+				final FileChannel fileChannel = stream.getChannel();
+				fileChannel.position(start);
+				channel = fileChannel;
+			}
+			bufferOffset = start;
+			bufferPos = 0;
+			bufferEnd = 0;
+			skipLineFeed = false;
+			linesRead = 0;
+			linesBeforeEnd = 0;
+			// Same as FASTAInputStream, the first line is taken as a header no matter what it contains
+			nextHeaderPending = readLine() && lineStart < end;
+		} catch (IOException e) {
+			throw new MprcException("Cannot open FASTA file [" + fastaFile.getAbsolutePath() + "]", e);
+		}
+	}
+
+	@Override
+	public boolean gotoNextSequence() {
+		if (channel == null) {
+			throw new MprcException("FASTA stream not initalized properly. Call beforeFirst() before reading first sequence");
+		}
+		currentLine = linesRead;
+		if (!nextHeaderPending) {
+			return false;
+		}
+		currentHeader = new String(line, 0, lineLength, Charsets.ISO_8859_1);
+		currentSequence = null;
+		sequenceLength = 0;
+		try {
+			boolean more = readLine();
+			while (more && lineLength > 0 && line[0] != FASTA_HEADER) {
+				appendSequenceLine();
+				more = readLine();
+			}
+			// Skip everything until the next header
+			while (more && !(lineLength > 0 && line[0] == FASTA_HEADER)) {
+				more = readLine();
+			}
+			nextHeaderPending = more && lineStart < end;
+		} catch (IOException e) {
+			throw new MprcException("Error reading line " + linesRead + " from " + fastaFile.getAbsolutePath(), e);
+		}
+		// If the sequence ends with an * signalizing end codon, quietly drop it
+		if (sequenceLength > 0 && sequence[sequenceLength - 1] == '*') {
+			sequenceLength--;
+		}
+		return true;
+	}
+
+	/**
+	 * Append trimmed, upper-cased current line to the sequence.
+	 */
+	private void appendSequenceLine() {
+		int from = 0;
+		int to = lineLength;
+		while (from < to && (line[from] & 0xFF) <= ' ') {
+			from++;
+		}
+		while (to > from && (line[to - 1] & 0xFF) <= ' ') {
+			to--;
+		}
+		final int length = to - from;
+		if (sequenceLength + length > sequence.length) {
+			sequence = Arrays.copyOf(sequence, Math.max(sequence.length * 2, sequenceLength + length));
+		}
+		final byte[] target = sequence;
+		int pos = sequenceLength;
+		for (int i = from; i < to; i++) {
+			final byte b = line[i];
+			target[pos++] = b >= 'a' && b <= 'z' ? (byte) (b - TO_UPPER_CASE) : b;
+		}
+		sequenceLength = pos;
+	}
+
+	/**
+	 * Read next line into {@link #line}, without the line terminator (\n, \r or \r\n).
+	 *
+	 * @return False at the end of file.
+	 */
+	private boolean readLine() throws IOException {
+		lineLength = 0;
+		boolean readAnything = false;
+		while (true) {
+			if (bufferPos == bufferEnd && !fill()) {
+				if (!readAnything) {
+					return false;
+				}
+				break;
+			}
+			if (skipLineFeed) {
+				skipLineFeed = false;
+				if (bytes[bufferPos] == '\n') {
+					bufferPos++;
+					continue;
+				}
+			}
+			if (!readAnything) {
+				lineStart = bufferOffset + bufferPos;
+				readAnything = true;
+			}
+			int i = bufferPos;
+			while (i < bufferEnd && bytes[i] != '\n' && bytes[i] != '\r') {
+				i++;
+			}
+			appendToLine(bufferPos, i - bufferPos);
+			if (i < bufferEnd) {
+				skipLineFeed = bytes[i] == '\r';
+				bufferPos = i + 1;
+				break;
+			}
+			bufferPos = i;
+		}
+		linesRead++;
+		if (lineStart < end) {
+			linesBeforeEnd++;
+		}
+		return true;
+	}
+
+	private void appendToLine(final int from, final int length) {
+		if (lineLength + length > line.length) {
+			line = Arrays.copyOf(line, Math.max(line.length * 2, lineLength + length));
+		}
+		System.arraycopy(bytes, from, line, lineLength, length);
+		lineLength += length;
+	}
+
+	/**
+	 * @return False if there is no more data.
+	 */
+	private boolean fill() throws IOException {
+		bufferOffset += bufferEnd;
+		bufferPos = 0;
+		bufferEnd = 0;
+		buffer.clear();
+		int read;
+		do {
+			read = channel.read(buffer);
+		} while (read == 0);
+		if (read < 0) {
+			return false;
+		}
+		bufferEnd = buffer.position();
+		return true;
+	}
+
+	@Override
+	public String getHeader() {
+		return currentHeader;
+	}
+
+	@Override
+	public String getSequence() {
+		if (currentSequence == null) {
+			currentSequence = new String(sequence, 0, sequenceLength, Charsets.ISO_8859_1);
+		}
+		return currentSequence;
+	}
+
+	/**
+	 * @return The sequence bytes, valid until next {@link #gotoNextSequence()}. Only the first {@link #getSequenceLength()}
+	 *         bytes are used.
+	 */
+	public byte[] getSequenceBytes() {
+		return sequence;
+	}
+
+	public int getSequenceLength() {
+		return sequenceLength;
+	}
+
+	/**
+	 * @return Line number of the current header, counted from the start of the segment.
+	 */
+	public int getCurrentLine() {
+		return currentLine;
+	}
+
+	/**
+	 * @return Amount of lines starting within the segment. Valid once all records of the segment were read.
+	 */
+	public int getSegmentLineCount() {
+		return linesBeforeEnd;
+	}
+
+	@Override
+	public String getCurrentLineInfo() {
+		return "(line #" + currentLine + ")";
+	}
+
+	@Override
+	public void close() {
+		FileUtilities.closeQuietly(channel);
+		channel = null;
+	}
+}
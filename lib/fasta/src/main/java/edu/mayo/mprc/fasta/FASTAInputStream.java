@@ -8,7 +8,6 @@ import edu.mayo.mprc.utilities.GZipUtilities;
 import org.apache.log4j.Logger;
 
 import java.io.*;
-import java.util.HashSet;
 import java.util.Locale;
 import java.util.regex.Pattern;
 import java.util.zip.GZIPInputStream;
@@ -230,43 +229,19 @@ public final class FASTAInputStream implements DBInputStream {
 	 * are encountered or a header does not check out then false is returned.
 	 * <p/>
 	 * A valid fasta header must use an unique accession number for each sequence in the file.
+	 * <p/>
+	 * Large files are checked in parallel, see {@link ParallelFASTAReader#validate}.
 	 *
 	 * @param toCheck the file you want to see is a valid FASTA file
 	 * @return null if the file is a valid fasta file. Error description otherwise.
 	 */
 	public static String isFASTAFileValid(final File toCheck, final boolean checkHeaderLength) {
-		final HashSet<String> accessionNumbers = new HashSet<String>((int) (toCheck.length() / AVERAGE_FASTA_RECORD));
-		DBInputStream in = null;
 		try {
-			in = new FASTAInputStream(toCheck);
-			int sequenceCount = 0;
-			in.beforeFirst();
-			while (in.gotoNextSequence()) {
-				final String header = in.getHeader();
-				if (isHeader(header)) {
-					sequenceCount++;
-					final String accNum = getAccNum(header);
-					final String error = checkHeader(header, accNum, checkHeaderLength);
-					if (error != null) {
-						return error + " " + in.getCurrentLineInfo();
-					}
-					if (!accessionNumbers.add(accNum)) {
-						return "Duplicate accession number: [" + accNum + "] " + in.getCurrentLineInfo();
-					}
-				} else {
-					return "Invalid header [" + header + "] " + in.getCurrentLineInfo();
-				}
-			}
-			if (sequenceCount == 0) {
-				return "No sequences present";
-			}
+			return new ParallelFASTAReader(toCheck).validate(checkHeaderLength);
 		} catch (Exception e) {
 			// SWALLOWED: Convert into error message
 			return "Fasta file [" + toCheck.getAbsolutePath() + "] is not valid: " + MprcException.getDetailedMessage(e);
-		} finally {
-			FileUtilities.closeQuietly(in);
 		}
-		return null;
 	}
 
 	@Override
@@ -37,6 +37,16 @@ public final class FASTAOutputStream implements DBOutputStream {
 
 	private boolean cleanupHeaders;
 
+	/**
+	 * Checks the headers as they get written, null if no validation is requested.
+	 */
+	private FASTAValidator validator;
+
+	/**
+	 * Number of lines written so far.
+	 */
+	private int lineCount;
+
 	/**
 	 * create a new output stream from a file
 	 *
@@ -56,6 +66,18 @@ public final class FASTAOutputStream implements DBOutputStream {
 		this.cleanupHeaders = cleanupHeaders;
 	}
 
+	public FASTAValidator getValidator() {
+		return validator;
+	}
+
+	/**
+	 * @param validator Validator to check all written headers with. Saves re-reading the file using
+	 *                  {@link FASTAInputStream#isFASTAFileValid}.
+	 */
+	public void setValidator(final FASTAValidator validator) {
+		this.validator = validator;
+	}
+
 	/**
 	 * Appends a given header and sequence to the output file.  This method may attempt to perform some ironing of the
 	 * input if it is determined to need minor changes.  This makes sure that the number of characters per line of
@@ -76,12 +98,17 @@ public final class FASTAOutputStream implements DBOutputStream {
 		final String cleanSequence = cleanupProteinSequence(sequence);
 
 		//check to make sure the header contains a > since this is what denotes a header
-		if (cleanHeader.isEmpty() || cleanHeader.charAt(0) != '>') {
+		final boolean missingStart = cleanHeader.isEmpty() || cleanHeader.charAt(0) != '>';
+		if (missingStart) {
 			out.write('>');
 		}
 		//write out the header on a single line
 		out.write(cleanHeader);
 		out.write("\n");
+		lineCount++;
+		if (validator != null) {
+			validator.addHeader(writtenHeader(cleanHeader, missingStart), "(line #" + lineCount + ")");
+		}
 
 		//find out how many lines there eare and print out each but the last line in a loop
 		final int steps = cleanSequence.length() / LINE_WIDTH;
@@ -90,16 +117,33 @@ public final class FASTAOutputStream implements DBOutputStream {
 			out.write(cleanSequence, i * LINE_WIDTH, LINE_WIDTH);
 			out.write("\n");
 		}
+		lineCount += steps;
 
 		//if we have more to print then print out the last line but make sure that we don't run off of the String
 		if ((cleanSequence.length() - i * LINE_WIDTH) != 0) {
 			out.write(cleanSequence, i * LINE_WIDTH, cleanSequence.length() - i * LINE_WIDTH);
 			out.write("\n");
+			lineCount++;
 		}
 
 		sequenceCount++;
 	}
 
+	/**
+	 * @return The header the way {@link FASTAInputStream} will read it back - starting with &gt;, ending at the first line break.
+	 */
+	private static String writtenHeader(final String cleanHeader, final boolean missingStart) {
+		int end = cleanHeader.length();
+		for (int i = 0; i < end; i++) {
+			final char c = cleanHeader.charAt(i);
+			if (c == '\n' || c == '\r') {
+				end = i;
+			}
+		}
+		final String header = end == cleanHeader.length() ? cleanHeader : cleanHeader.substring(0, end);
+		return missingStart ? ">" + header : header;
+	}
+
 	/**
 	 * Clean up a given protein sequence, by converting to uppercase and removing anything that is not A-Z.
 	 *
@@ -0,0 +1,68 @@
+package edu.mayo.mprc.fasta;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Checks FASTA headers one by one, as they are read or written, so a file can be validated without
+ * a separate pass over it.
+ * <p/>
+ * The checks are the same as {@link FASTAInputStream#isFASTAFileValid} does - every header must have a valid,
+ * unique accession number and there has to be at least one sequence.
+ *
+ * @author Roman Zenka
+ */
+public final class FASTAValidator {
+	private final boolean checkHeaderLength;
+	private final Set<String> accessionNumbers;
+	private int sequenceCount;
+	private String error;
+
+	/**
+	 * @param checkHeaderLength  Whether to fail on headers longer than {@link FASTAInputStream#MAX_HEADER_LENGTH}.
+	 * @param expectedSequences How many sequences do we expect to see (sizes the accession number set).
+	 */
+	public FASTAValidator(final boolean checkHeaderLength, final int expectedSequences) {
+		this.checkHeaderLength = checkHeaderLength;
+		accessionNumbers = new HashSet<String>(Math.max(16, expectedSequences * 4 / 3 + 1));
+	}
+
+	/**
+	 * Check next header. Once a header fails, the remaining ones are ignored.
+	 *
+	 * @param header   Header including the initial &gt; sign.
+	 * @param lineInfo Where in the file the header is, e.g. {@code (line #10)}.
+	 * @return False if the file is not valid.
+	 */
+	public boolean addHeader(final String header, final String lineInfo) {
+		if (error != null) {
+			return false;
+		}
+		if (header == null || header.isEmpty() || header.charAt(0) != '>') {
+			error = "Invalid header [" + header + "] " + lineInfo;
+			return false;
+		}
+		sequenceCount++;
+		final String accNum = FASTAInputStream.getAccNum(header);
+		final String headerError = FASTAInputStream.checkHeader(header, accNum, checkHeaderLength);
+		if (headerError != null) {
+			error = headerError + " " + lineInfo;
+			return false;
+		}
+		if (!accessionNumbers.add(accNum)) {
+			error = "Duplicate accession number: [" + accNum + "] " + lineInfo;
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * @return Null if all the headers seen so far were valid, error description otherwise.
+	 */
+	public String getError() {
+		if (error == null && sequenceCount == 0) {
+			return "No sequences present";
+		}
+		return error;
+	}
+}
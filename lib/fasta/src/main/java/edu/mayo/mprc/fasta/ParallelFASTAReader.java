@@ -0,0 +1,222 @@
+package edu.mayo.mprc.fasta;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import edu.mayo.mprc.MprcException;
+import edu.mayo.mprc.utilities.GZipUtilities;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Processes a FASTA file in parallel. The file is split into segments aligned to the record boundaries
+ * and each segment is read by its own {@link FASTAByteReader} on a separate thread.
+ * <p/>
+ * Gzipped files cannot be split, they are processed as a single segment.
+ *
+ * @author Roman Zenka
+ */
+public final class ParallelFASTAReader {
+	/**
+	 * Files are not split into segments smaller than this - it is not worth starting a thread for less.
+	 */
+	public static final long MIN_SEGMENT_SIZE = 8L * 1024 * 1024;
+
+	private final File file;
+	private final long[] boundaries;
+
+	/**
+	 * Processes the records in a segment of the file.
+	 *
+	 * @param <T> Result of processing a segment.
+	 */
+	public interface SegmentProcessor<T> {
+		/**
+		 * @param segment Reader positioned before the first record of the segment.
+		 * @return Result for the segment.
+		 */
+		T process(FASTAByteReader segment);
+	}
+
+	/**
+	 * Split the file into a segment per processor, making sure the segments are not too small.
+	 */
+	public ParallelFASTAReader(final File file) {
+		this(file, (int) Math.max(1L, Math.min(Runtime.getRuntime().availableProcessors(), file.length() / MIN_SEGMENT_SIZE)));
+	}
+
+	/**
+	 * @param file     File to process.
+	 * @param segments How many segments to split the file to.
+	 */
+	public ParallelFASTAReader(final File file, final int segments) {
+		this.file = file;
+		if (segments <= 1 || isGZipped(file)) {
+			boundaries = new long[]{0, Long.MAX_VALUE};
+		} else {
+			boundaries = FASTAByteReader.split(file, segments);
+		}
+	}
+
+	private static boolean isGZipped(final File file) {
+		try {
+			return GZipUtilities.isGZipped(file);
+		} catch (IOException e) {
+			throw new MprcException("Cannot open FASTA file [" + file.getAbsolutePath() + "]", e);
+		}
+	}
+
+	public int getSegmentCount() {
+		return boundaries.length - 1;
+	}
+
+	/**
+	 * Process all segments, each on its own thread.
+	 *
+	 * @return Results of the segments, in the order of the segments within the file.
+	 */
+	public <T> List<T> process(final SegmentProcessor<T> processor) {
+		final int segments = getSegmentCount();
+		if (segments == 1) {
+			return Collections.singletonList(processSegment(processor, 0));
+		}
+
+		final ExecutorService service = Executors.newFixedThreadPool(
+				Math.min(segments, Runtime.getRuntime().availableProcessors()),
+				new ThreadFactoryBuilder()
+						.setNameFormat("fasta-segment-%d")
+						.setDaemon(true)
+						.build());
+		try {
+			final List<Future<T>> futures = new ArrayList<Future<T>>(segments);
+			for (int i = 0; i < segments; i++) {
+				final int segment = i;
+				futures.add(service.submit(new Callable<T>() {
+					@Override
+					public T call() {
+						return processSegment(processor, segment);
+					}
+				}));
+			}
+			final List<T> results = new ArrayList<T>(segments);
+			for (final Future<T> future : futures) {
+				results.add(future.get());
+			}
+			return results;
+		} catch (ExecutionException e) {
+			throw new MprcException("Failed processing FASTA file [" + file.getAbsolutePath() + "]", e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new MprcException("Interrupted while processing FASTA file [" + file.getAbsolutePath() + "]", e);
+		} finally {
+			service.shutdownNow();
+		}
+	}
+
+	private <T> T processSegment(final SegmentProcessor<T> processor, final int segment) {
+		final FASTAByteReader reader = new FASTAByteReader(file, boundaries[segment], boundaries[segment + 1]);
+		try {
+			reader.beforeFirst();
+			return processor.process(reader);
+		} finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * Same check as {@link FASTAInputStream#isFASTAFileValid}. The headers are checked in parallel, the duplicate
+	 * accession numbers are then found going through the segments in order, so the reported error is always the first
+	 * one in the file.
+	 *
+	 * @return Null if the file is valid, error description otherwise.
+	 */
+	public String validate(final boolean checkHeaderLength) {
+		final List<SegmentValidation> validations = process(new SegmentProcessor<SegmentValidation>() {
+			@Override
+			public SegmentValidation process(final FASTAByteReader segment) {
+				return validateSegment(segment, checkHeaderLength);
+			}
+		});
+
+		int totalSequences = 0;
+		for (final SegmentValidation validation : validations) {
+			totalSequences += validation.accessionNumbers.size();
+		}
+		final Set<String> accessionNumbers = new HashSet<String>(totalSequences * 4 / 3 + 1);
+		int lineOffset = 0;
+		for (final SegmentValidation validation : validations) {
+			for (int i = 0; i < validation.accessionNumbers.size(); i++) {
+				final String accNum = validation.accessionNumbers.get(i);
+				if (!accessionNumbers.add(accNum)) {
+					return "Duplicate accession number: [" + accNum + "] " + lineInfo(lineOffset + validation.lines[i]);
+				}
+			}
+			if (validation.error != null) {
+				return validation.error + " " + lineInfo(lineOffset + validation.errorLine);
+			}
+			lineOffset += validation.lineCount;
+		}
+		if (totalSequences == 0) {
+			return "No sequences present";
+		}
+		return null;
+	}
+
+	private static SegmentValidation validateSegment(final FASTAByteReader segment, final boolean checkHeaderLength) {
+		final SegmentValidation validation = new SegmentValidation();
+		while (segment.gotoNextSequence()) {
+			final String header = segment.getHeader();
+			if (header.isEmpty() || header.charAt(0) != '>') {
+				validation.fail("Invalid header [" + header + "]", segment.getCurrentLine());
+				return validation;
+			}
+			final String accNum = FASTAInputStream.getAccNum(header);
+			final String error = FASTAInputStream.checkHeader(header, accNum, checkHeaderLength);
+			if (error != null) {
+				validation.fail(error, segment.getCurrentLine());
+				return validation;
+			}
+			validation.add(accNum, segment.getCurrentLine());
+		}
+		validation.lineCount = segment.getSegmentLineCount();
+		return validation;
+	}
+
+	private static String lineInfo(final int line) {
+		return "(line #" + line + ")";
+	}
+
+	/**
+	 * Accession numbers found in a segment, in order, with their line numbers. Ends with the first invalid header.
+	 */
+	private static final class SegmentValidation {
+		private final List<String> accessionNumbers = new ArrayList<String>();
+		private int[] lines = new int[16];
+		private String error;
+		private int errorLine;
+		private int lineCount;
+
+		void add(final String accNum, final int line) {
+			if (accessionNumbers.size() == lines.length) {
+				lines = Arrays.copyOf(lines, lines.length * 2);
+			}
+			lines[accessionNumbers.size()] = line;
+			accessionNumbers.add(accNum);
+		}
+
+		void fail(final String error, final int line) {
+			this.error = error;
+			errorLine = line;
+		}
+	}
+}
@@ -0,0 +1,145 @@
+package edu.mayo.mprc.fasta;
+
+import edu.mayo.mprc.utilities.FileUtilities;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Checks that {@link FASTAByteReader} and {@link ParallelFASTAReader} read the files exactly like {@link FASTAInputStream}.
+ *
+ * @author Roman Zenka
+ */
+public final class FASTAByteReaderTest {
+	private static final int RECORDS = 2000;
+	private static final int SEGMENTS = 7;
+	private static final String AMINO_ACIDS = "ACDEFGHIKLMNPQRSTVWYacdefghiklmnpqrstvwy";
+
+	private File tempFolder;
+	private File fastaFile;
+
+	@BeforeClass
+	public void setup() {
+		tempFolder = FileUtilities.createTempFolder();
+		fastaFile = new File(tempFolder, "messy.fasta");
+		FileUtilities.writeStringToFile(fastaFile, messyFasta(new Random(1), RECORDS, null), true);
+	}
+
+	@AfterClass
+	public void teardown() {
+		FileUtilities.cleanupTempFile(tempFolder);
+	}
+
+	@Test
+	public void shouldReadLikeFastaInputStream() {
+		final List<String> expected = readAll(new FASTAInputStream(fastaFile));
+		Assert.assertEquals(expected.size(), RECORDS * 3);
+		Assert.assertEquals(readAll(new FASTAByteReader(fastaFile)), expected);
+	}
+
+	@Test
+	public void shouldReadSegments() {
+		final long[] boundaries = FASTAByteReader.split(fastaFile, SEGMENTS);
+		final List<String> records = new ArrayList<String>(RECORDS * 3);
+		int lineOffset = 0;
+		for (int i = 0; i < SEGMENTS; i++) {
+			final FASTAByteReader reader = new FASTAByteReader(fastaFile, boundaries[i], boundaries[i + 1]);
+			reader.beforeFirst();
+			while (reader.gotoNextSequence()) {
+				records.add(reader.getHeader());
+				records.add(reader.getSequence());
+				records.add("(line #" + (lineOffset + reader.getCurrentLine()) + ")");
+			}
+			lineOffset += reader.getSegmentLineCount();
+			reader.close();
+		}
+		Assert.assertEquals(records, readAll(new FASTAInputStream(fastaFile)));
+	}
+
+	@Test
+	public void shouldValidateInParallel() {
+		final Random random = new Random(2);
+		// Valid file
+		assertValidation(messyFasta(random, RECORDS, null), null);
+		// Duplicate accession number far apart
+		assertValidation(messyFasta(random, RECORDS, ">ACC_10 Duplicate"), "Duplicate accession number: [ACC_10]");
+		// Invalid header
+		assertValidation(messyFasta(random, RECORDS, ">BAD\"ACCESSION Invalid"), "Invalid accession number");
+		// Nothing at all
+		assertValidation("\n\n", null);
+	}
+
+	private void assertValidation(final String contents, final String errorStart) {
+		final File file = new File(tempFolder, "validate.fasta");
+		FileUtilities.writeStringToFile(file, contents, true);
+		final String expected = validateSequentially(file);
+		if (errorStart != null) {
+			Assert.assertTrue(expected.startsWith(errorStart), expected);
+		}
+		Assert.assertEquals(new ParallelFASTAReader(file, SEGMENTS).validate(false), expected);
+		Assert.assertEquals(new ParallelFASTAReader(file, 1).validate(false), expected);
+	}
+
+	private static String validateSequentially(final File file) {
+		final FASTAValidator validator = new FASTAValidator(false, RECORDS);
+		final FASTAInputStream in = new FASTAInputStream(file);
+		in.beforeFirst();
+		while (in.gotoNextSequence() && validator.addHeader(in.getHeader(), in.getCurrentLineInfo())) {
+		}
+		in.close();
+		return validator.getError();
+	}
+
+	private static List<String> readAll(final DBInputStream in) {
+		final List<String> records = new ArrayList<String>(RECORDS * 3);
+		in.beforeFirst();
+		while (in.gotoNextSequence()) {
+			records.add(in.getHeader());
+			records.add(in.getSequence());
+			records.add(in.getCurrentLineInfo());
+		}
+		in.close();
+		return records;
+	}
+
+	/**
+	 * A FASTA file with all the oddities the reader has to deal with - mixed line ends, lower case, blank lines,
+	 * end codons, garbage after blank lines.
+	 *
+	 * @param extraHeader Header of a record inserted at the end, null for none.
+	 */
+	private static String messyFasta(final Random random, final int records, final String extraHeader) {
+		final String[] lineEnds = {"\n", "\r\n", "\r"};
+		final StringBuilder fasta = new StringBuilder(records * 200);
+		for (int i = 0; i < records; i++) {
+			final String lineEnd = lineEnds[random.nextInt(lineEnds.length)];
+			fasta.append(">ACC_").append(i).append(" Protein number ").append(i).append(lineEnd);
+			final int lines = random.nextInt(5);
+			for (int j = 0; j < lines; j++) {
+				if (random.nextInt(5) == 0) {
+					fasta.append("  ");
+				}
+				for (int k = random.nextInt(80); k > 0; k--) {
+					fasta.append(AMINO_ACIDS.charAt(random.nextInt(AMINO_ACIDS.length())));
+				}
+				if (random.nextInt(5) == 0) {
+					fasta.append("*\t");
+				}
+				fasta.append(lineEnd);
+			}
+			if (random.nextInt(10) == 0) {
+				fasta.append(lineEnd).append("IGNORED AFTER BLANK LINE").append(lineEnd);
+			}
+		}
+		if (extraHeader != null) {
+			fasta.append(extraHeader).append("\nMKL\n");
+		}
+		return fasta.toString();
+	}
+}
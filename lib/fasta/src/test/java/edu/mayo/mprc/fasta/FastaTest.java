@@ -155,6 +155,27 @@ public final class FastaTest {
 		Assert.assertEquals(FASTAOutputStream.cleanupHeader(">abcdefghi", 8), ">abc...hi");
 	}
 
+	@Test
+	public void shouldValidateWhileWriting() throws IOException {
+		final File outFile = File.createTempFile("test_out", ".fasta");
+		final FASTAOutputStream out = new FASTAOutputStream(outFile);
+		final FASTAValidator validator = new FASTAValidator(false, 3);
+		out.setValidator(validator);
+		out.appendSequence(">FIRST first", Strings.repeat("A", 100));
+		out.appendSequence("SECOND no header start", "");
+		out.appendSequence(">FIRST duplicate", "KRP");
+		out.close();
+
+		Assert.assertEquals(validator.getError(), "Duplicate accession number: [FIRST] (line #5)");
+		Assert.assertEquals(validator.getError(), FASTAInputStream.isFASTAFileValid(outFile, false), "Must match the check done by reading the file");
+		FileUtilities.cleanupTempFile(outFile);
+	}
+
+	@Test
+	public void shouldRequireSequences() {
+		Assert.assertEquals(new FASTAValidator(false, 0).getError(), "No sequences present");
+	}
+
 	private void assertErrorContains(final String sequence, final String error) {
 		final String actualError = FASTAInputStream.checkHeader(sequence, FASTAInputStream.getAccNum(sequence), true);
 		if (actualError == null) {
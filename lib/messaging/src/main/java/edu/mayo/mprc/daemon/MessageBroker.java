@@ -3,6 +3,7 @@ package edu.mayo.mprc.daemon;
 import edu.mayo.mprc.MprcException;
 import edu.mayo.mprc.config.*;
 import edu.mayo.mprc.config.ui.*;
+import edu.mayo.mprc.messaging.QueueSettings;
 import edu.mayo.mprc.utilities.exceptions.ExceptionUtilities;
 import org.apache.activemq.ActiveMQConnectionFactory;
 import org.apache.activemq.broker.BrokerService;
@@ -34,6 +35,9 @@ public final class MessageBroker implements Lifecycle {
 	private static final String USE_JMX = "useJmx";
 	public static final String BROKER_URL = "brokerUrl";
 	private static final String EMBEDDED_BROKER_URL = "embeddedBrokerUrl";
+	private static final String PREFETCH_SIZE = "prefetchSize";
+	private static final String EXCLUSIVE_CONSUMER = "exclusiveConsumer";
+	private static final String COMPACT_MESSAGES = "compactMessages";
 
 	public MessageBroker() {
 		embedded = true;
@@ -169,6 +173,9 @@ public final class MessageBroker implements Lifecycle {
 		private String embeddedBrokerUrl;
 		private String embedded;
 		private String useJmx;
+		private String prefetchSize;
+		private String exclusiveConsumer;
+		private String compactMessages;
 
 		public Config() {
 		}
@@ -189,6 +196,9 @@ public final class MessageBroker implements Lifecycle {
 			writer.put(EMBEDDED, getEmbedded(), "Should we run the embedded broker?");
 			writer.put(EMBEDDED_BROKER_URL, getEmbeddedBrokerUrl(), "ActiveMQ configuration URL defining how to start the embedded broker up (if embedded)");
 			writer.put(USE_JMX, getUseJmx(), "Enable JMX on the broker");
+			writer.put(PREFETCH_SIZE, getPrefetchSize(), "How many messages the broker pushes to a consumer ahead of time, 0 for the broker default");
+			writer.put(EXCLUSIVE_CONSUMER, getExclusiveConsumer(), "Only a single consumer receives the messages of a queue at a time");
+			writer.put(COMPACT_MESSAGES, getCompactMessages(), "Send messages that support it as compact bytes instead of serialized Java objects");
 		}
 
 		@Override
@@ -197,6 +207,9 @@ public final class MessageBroker implements Lifecycle {
 			embeddedBrokerUrl = reader.get(EMBEDDED_BROKER_URL);
 			embedded = reader.get(EMBEDDED);
 			useJmx = reader.get(USE_JMX);
+			prefetchSize = reader.get(PREFETCH_SIZE);
+			exclusiveConsumer = reader.get(EXCLUSIVE_CONSUMER);
+			compactMessages = reader.get(COMPACT_MESSAGES);
 		}
 
 		@Override
@@ -240,6 +253,49 @@ public final class MessageBroker implements Lifecycle {
 			return getEmbedded() != null && getEmbedded().equalsIgnoreCase("true");
 		}
 
+		public String getPrefetchSize() {
+			return prefetchSize;
+		}
+
+		public void setPrefetchSize(final String prefetchSize) {
+			this.prefetchSize = prefetchSize;
+		}
+
+		public String getExclusiveConsumer() {
+			return exclusiveConsumer;
+		}
+
+		public void setExclusiveConsumer(final String exclusiveConsumer) {
+			this.exclusiveConsumer = exclusiveConsumer;
+		}
+
+		public String getCompactMessages() {
+			return compactMessages;
+		}
+
+		public void setCompactMessages(final String compactMessages) {
+			this.compactMessages = compactMessages;
+		}
+
+		/**
+		 * @return How the queues are consumed and how the messages are encoded. Missing values keep the {@link QueueSettings} defaults.
+		 */
+		public QueueSettings getQueueSettings() {
+			final QueueSettings settings = new QueueSettings();
+			if (prefetchSize != null && !prefetchSize.trim().isEmpty()) {
+				try {
+					settings.setPrefetchSize(Integer.parseInt(prefetchSize.trim()));
+				} catch (NumberFormatException e) {
+					throw new MprcException("The message prefetch size must be a number, was: " + prefetchSize, e);
+				}
+			}
+			if (exclusiveConsumer != null && !exclusiveConsumer.trim().isEmpty()) {
+				settings.setExclusiveConsumer("true".equalsIgnoreCase(exclusiveConsumer.trim()));
+			}
+			settings.setCompactMessages(compactMessages != null && "true".equalsIgnoreCase(compactMessages.trim()));
+			return settings;
+		}
+
 		public String validate() {
 			Connection connection = null;
 			try {
@@ -325,7 +381,20 @@ public final class MessageBroker implements Lifecycle {
 									+ "failover configuration options while this URI will not.").defaultValue("tcp://" + daemon.getHostName() + ":" + DEFAULT_PORT)
 					.defaultValue("tcp://" + daemon.getHostName() + ":" + DEFAULT_PORT)
 
-					.property(USE_JMX, "Enable the use of JMX", "").boolValue().defaultValue("false");
+					.property(USE_JMX, "Enable the use of JMX", "").boolValue().defaultValue("false")
+
+					.property(PREFETCH_SIZE, "Message prefetch",
+							"How many messages the broker pushes to each consumer ahead of time. Larger values let the daemons receive requests in batches."
+									+ " 0 means the broker default.").integerValue(0, 100000).defaultValue("0")
+
+					.property(EXCLUSIVE_CONSUMER, "Exclusive consumer",
+							"Only a single consumer receives the messages of a queue at a time. Uncheck to let several daemons share a queue round-robin.")
+					.boolValue().defaultValue("true")
+
+					.property(COMPACT_MESSAGES, "Compact messages",
+							"Messages that support it (e.g. progress reports) are sent as compact bytes instead of serialized Java objects."
+									+ " Receivers understand both forms, so daemons with different settings can talk to each other.")
+					.boolValue().defaultValue("false");
 		}
 
 		public static String getDefaultBrokerUrl(final DaemonConfig daemon) {
@@ -3,15 +3,19 @@ package edu.mayo.mprc.messaging;
 import edu.mayo.mprc.MprcException;
 
 import javax.jms.JMSException;
-import javax.jms.ObjectMessage;
+import javax.jms.Message;
 import java.io.Serializable;
 
 /**
  * Request received from JMS. Knows how to deliver response. Internal implementation of generic {@link edu.mayo.mprc.messaging.Request}.
  */
 class JmsRequest implements Request {
-	private ObjectMessage objectMessage;
+	private Message message;
 	private SimpleQueueService receivedFrom;
+	/**
+	 * Decoded message data. The receivers modify the data in place, so we decode only once.
+	 */
+	private Serializable messageData;
 
 	/**
 	 * Id that lets us correlate the response with a particular request.
@@ -21,12 +25,12 @@ class JmsRequest implements Request {
 	/**
 	 * {@link edu.mayo.mprc.messaging.Request} implementation. Knows where to send the response to (combination of {@link javax.jms.Destination} and coordination ID).
 	 *
-	 * @param objectMessage Message object for this request.
+	 * @param message Message object for this request.
 	 */
-	JmsRequest(final ObjectMessage objectMessage, final SimpleQueueService receivedFrom) {
+	JmsRequest(final Message message, final SimpleQueueService receivedFrom) {
 		this.receivedFrom = receivedFrom;
 		lastResponseSent = false;
-		this.objectMessage = objectMessage;
+		this.message = message;
 	}
 
 	/**
@@ -35,7 +39,7 @@ class JmsRequest implements Request {
 	@Override
 	public void processed() {
 		try {
-			objectMessage.acknowledge();
+			message.acknowledge();
 		} catch (JMSException e) {
 			throw new MprcException("Error acknowledging JMS request message.", e);
 		}
@@ -44,7 +48,10 @@ class JmsRequest implements Request {
 	@Override
 	public Serializable getMessageData() {
 		try {
-			return objectMessage.getObject();
+			if (messageData == null) {
+				messageData = MessageCodec.decode(message);
+			}
+			return messageData;
 		} catch (JMSException e) {
 			throw new MprcException("Error occurred while getting the data object from message.", e);
 		}
@@ -54,6 +61,6 @@ class JmsRequest implements Request {
 	public void sendResponse(final Serializable response, final boolean isLast) {
 		assert !lastResponseSent : "Last response was already sent.";
 		lastResponseSent = isLast;
-		receivedFrom.sendResponse(response, objectMessage, isLast);
+		receivedFrom.sendResponse(response, message, isLast);
 	}
 }
@@ -0,0 +1,92 @@
+package edu.mayo.mprc.messaging;
+
+import edu.mayo.mprc.MprcException;
+
+import javax.jms.BytesMessage;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.ObjectMessage;
+import javax.jms.Session;
+import java.io.*;
+
+/**
+ * Turns the objects we send into JMS messages and back.
+ * <p/>
+ * Regular objects travel as {@link ObjectMessage}. When compact messages are enabled, {@link Externalizable} objects
+ * are sent as {@link BytesMessage} holding only what the object writes in {@link Externalizable#writeExternal},
+ * the class name travels as a message property. This skips the class descriptors that Java serialization
+ * writes for the object and all its fields.
+ *
+ * @author Roman Zenka
+ */
+final class MessageCodec {
+	/**
+	 * Name of the class of a compact message payload.
+	 */
+	static final String COMPACT_CLASS = "compact_class";
+
+	private MessageCodec() {
+	}
+
+	/**
+	 * @param session Session to create the message in.
+	 * @param data    Data to send.
+	 * @param compact Use compact form if the data supports it.
+	 * @return Message with the data.
+	 */
+	static Message encode(final Session session, final Serializable data, final boolean compact) throws JMSException {
+		if (!compact || !(data instanceof Externalizable)) {
+			return session.createObjectMessage(data);
+		}
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+		try {
+			final ObjectOutputStream output = new ObjectOutputStream(bytes);
+			((Externalizable) data).writeExternal(output);
+			output.close();
+		} catch (IOException e) {
+			throw new MprcException("Could not write " + data.getClass().getName(), e);
+		}
+		final BytesMessage message = session.createBytesMessage();
+		message.setStringProperty(COMPACT_CLASS, data.getClass().getName());
+		message.writeBytes(bytes.toByteArray());
+		return message;
+	}
+
+	/**
+	 * @param message Message produced by {@link #encode}.
+	 * @return The data the message carries.
+	 */
+	static Serializable decode(final Message message) throws JMSException {
+		if (message instanceof ObjectMessage) {
+			return ((ObjectMessage) message).getObject();
+		}
+		if (!(message instanceof BytesMessage) || message.getStringProperty(COMPACT_CLASS) == null) {
+			throw new MprcException("Unsupported message type " + message.getClass().getName());
+		}
+		final String className = message.getStringProperty(COMPACT_CLASS);
+		final BytesMessage bytesMessage = (BytesMessage) message;
+		bytesMessage.reset();
+		final byte[] bytes = new byte[(int) bytesMessage.getBodyLength()];
+		bytesMessage.readBytes(bytes);
+		try {
+			final ClassLoader contextLoader = Thread.currentThread().getContextClassLoader();
+			final Class<?> dataClass = Class.forName(className, true, contextLoader != null ? contextLoader : MessageCodec.class.getClassLoader());
+			if (!Externalizable.class.isAssignableFrom(dataClass)) {
+				throw new MprcException("Compact message payload " + className + " is not Externalizable");
+			}
+			final Externalizable data = (Externalizable) dataClass.newInstance();
+			final ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(bytes));
+			data.readExternal(input);
+			input.close();
+			return data;
+		} catch (ClassNotFoundException e) {
+			throw new MprcException("Unknown compact message payload " + className, e);
+		} catch (InstantiationException e) {
+			throw new MprcException("Could not create " + className, e);
+		} catch (IllegalAccessException e) {
+			throw new MprcException("Could not create " + className, e);
+		} catch (IOException e) {
+			throw new MprcException("Could not read " + className, e);
+		}
+	}
+}
@@ -0,0 +1,72 @@
+package edu.mayo.mprc.messaging;
+
+/**
+ * Tuning of the JMS queues created by {@link ServiceFactoryImpl}. The defaults behave exactly as the queues always did -
+ * single exclusive consumer, broker default prefetch, Java-serialized object messages.
+ * <p/>
+ * Settings are read when the queue is started, so change them before the services get created.
+ *
+ * @author Roman Zenka
+ */
+public final class QueueSettings {
+	/**
+	 * How many messages the broker pushes to a consumer ahead of time. 0 means the broker default.
+	 */
+	private int prefetchSize;
+
+	/**
+	 * Only a single consumer receives the messages at a time. Turn off to let several receivers (threads or daemons)
+	 * share the queue round-robin.
+	 */
+	private boolean exclusiveConsumer = true;
+
+	/**
+	 * Send {@link java.io.Externalizable} payloads as bytes written by the payload itself instead of
+	 * regular Java serialization. Receivers understand both forms regardless of this setting.
+	 */
+	private boolean compactMessages;
+
+	public QueueSettings() {
+	}
+
+	public int getPrefetchSize() {
+		return prefetchSize;
+	}
+
+	public void setPrefetchSize(final int prefetchSize) {
+		this.prefetchSize = prefetchSize;
+	}
+
+	public boolean isExclusiveConsumer() {
+		return exclusiveConsumer;
+	}
+
+	public void setExclusiveConsumer(final boolean exclusiveConsumer) {
+		this.exclusiveConsumer = exclusiveConsumer;
+	}
+
+	public boolean isCompactMessages() {
+		return compactMessages;
+	}
+
+	public void setCompactMessages(final boolean compactMessages) {
+		this.compactMessages = compactMessages;
+	}
+
+	/**
+	 * @return Destination options to append to the queue name, for instance {@code consumer.exclusive=true}. Empty string if none.
+	 */
+	String getDestinationOptions() {
+		final StringBuilder options = new StringBuilder();
+		if (exclusiveConsumer) {
+			options.append("consumer.exclusive=true");
+		}
+		if (prefetchSize > 0) {
+			if (options.length() > 0) {
+				options.append('&');
+			}
+			options.append("consumer.prefetchSize=").append(prefetchSize);
+		}
+		return options.toString();
+	}
+}
@@ -0,0 +1,109 @@
+package edu.mayo.mprc.messaging;
+
+import java.text.MessageFormat;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Throughput and latency of a single queue, as seen by one {@link Service}.
+ * <p/>
+ * Latency is the time a request spent waiting - from being sent until it was handed to the receiver.
+ * It is measured using the JMS timestamp, so it is only meaningful when the clocks of sender and receiver agree
+ * (same machine, or synchronized clocks).
+ *
+ * @author Roman Zenka
+ */
+public final class QueueStatistics {
+	private final long created = System.currentTimeMillis();
+
+	private final AtomicLong requestsSent = new AtomicLong();
+	private final AtomicLong requestsReceived = new AtomicLong();
+	private final AtomicLong responsesSent = new AtomicLong();
+	private final AtomicLong receiveCalls = new AtomicLong();
+	private final AtomicLong totalLatency = new AtomicLong();
+	private final AtomicLong maxLatency = new AtomicLong();
+
+	public QueueStatistics() {
+	}
+
+	void requestSent() {
+		requestsSent.incrementAndGet();
+	}
+
+	/**
+	 * A call to receive requests returned.
+	 *
+	 * @param received How many requests were received by the call.
+	 */
+	void receiveCall(final int received) {
+		receiveCalls.incrementAndGet();
+		requestsReceived.addAndGet(received);
+	}
+
+	/**
+	 * @param sentTimestamp When was the received request sent.
+	 */
+	void requestLatency(final long sentTimestamp) {
+		if (sentTimestamp <= 0) {
+			return;
+		}
+		final long latency = Math.max(0, System.currentTimeMillis() - sentTimestamp);
+		totalLatency.addAndGet(latency);
+		long max = maxLatency.get();
+		while (latency > max && !maxLatency.compareAndSet(max, latency)) {
+			max = maxLatency.get();
+		}
+	}
+
+	void responseSent() {
+		responsesSent.incrementAndGet();
+	}
+
+	public long getRequestsSent() {
+		return requestsSent.get();
+	}
+
+	public long getRequestsReceived() {
+		return requestsReceived.get();
+	}
+
+	public long getResponsesSent() {
+		return responsesSent.get();
+	}
+
+	/**
+	 * @return How many times the receiver asked for requests, including the calls that timed out.
+	 */
+	public long getReceiveCalls() {
+		return receiveCalls.get();
+	}
+
+	/**
+	 * @return Average time in milliseconds the received requests waited in the queue.
+	 */
+	public double getAverageLatency() {
+		final long received = requestsReceived.get();
+		return received == 0 ? 0.0 : (double) totalLatency.get() / received;
+	}
+
+	/**
+	 * @return Longest time in milliseconds a received request waited in the queue.
+	 */
+	public long getMaxLatency() {
+		return maxLatency.get();
+	}
+
+	/**
+	 * @return Received requests per second since the statistics were created.
+	 */
+	public double getReceiveThroughput() {
+		final long elapsed = Math.max(1, System.currentTimeMillis() - created);
+		return requestsReceived.get() * 1000.0 / elapsed;
+	}
+
+	@Override
+	public String toString() {
+		return MessageFormat.format("sent: {0}, received: {1} in {2} calls ({3,number,#.#}/s), responses: {4}, latency avg: {5,number,#.#} ms, max: {6} ms",
+				getRequestsSent(), getRequestsReceived(), getReceiveCalls(), getReceiveThroughput(), getResponsesSent(),
+				getAverageLatency(), getMaxLatency());
+	}
+}
@@ -158,11 +158,10 @@ public final class ResponseDispatcher implements Lifecycle {
 			boolean isLast = true;
 			ResponseListener listener = null;
 			try {
-				final ObjectMessage objectMessage = (ObjectMessage) message;
-				final Serializable messageData = objectMessage.getObject();
-				final String listenerId = objectMessage.getJMSCorrelationID();
+				final Serializable messageData = MessageCodec.decode(message);
+				final String listenerId = message.getJMSCorrelationID();
 				listener = responseMap.get(listenerId);
-				isLast = objectMessage.getBooleanProperty(LAST_RESPONSE);
+				isLast = message.getBooleanProperty(LAST_RESPONSE);
 				if (listener == null) {
 					LOGGER.error("No registered listener for response with ID " + listenerId + " [" + messageData + "]");
 				} else {
@@ -3,6 +3,7 @@ package edu.mayo.mprc.messaging;
 import edu.mayo.mprc.config.Lifecycle;
 
 import java.io.Serializable;
+import java.util.List;
 
 /**
  * A service is a named entity that allows requests to be sent, delivered, executed and
@@ -42,6 +43,23 @@ public interface Service extends Lifecycle {
 	 */
 	Request receiveRequest(long timeout);
 
+	/**
+	 * Receives a batch of requests. Blocks until the first request arrives, then takes all the requests that are
+	 * already available, up to the given maximum.
+	 * <p/>
+	 * Each request in the batch is acknowledged separately by its {@link Request#processed()}.
+	 *
+	 * @param maxRequests Maximum amount of requests to return.
+	 * @param timeout     Timeout in milliseconds for the first request to arrive.
+	 * @return Received requests, empty list if nothing arrived within the timeout.
+	 */
+	List<Request> receiveRequests(int maxRequests, long timeout);
+
+	/**
+	 * @return Throughput and latency of this service's queue.
+	 */
+	QueueStatistics getStatistics();
+
 	/**
 	 * Gets service name.
 	 *
@@ -26,6 +26,7 @@ public final class ServiceFactoryImpl implements ServiceFactory {
 	private ActiveMQConnectionPool connectionPool;
 	private Connection connection;
 	private RunningApplicationContext context;
+	private QueueSettings queueSettings;
 
 	public ServiceFactoryImpl() {
 	}
@@ -48,13 +49,29 @@ public final class ServiceFactoryImpl implements ServiceFactory {
 			throw new MprcException("queue name must not be empty");
 		}
 
-		return new SimpleQueueService(this, responseDispatcher, queueName);
+		return new SimpleQueueService(this, responseDispatcher, queueName, getQueueSettings());
 	}
 
 	static UserInfo extractJmsUserinfo(final URI serviceURI) {
 		return new UserInfo(serviceURI);
 	}
 
+	/**
+	 * @return How the queues of the created services are consumed and how their messages are encoded.
+	 * Unless set explicitly, the settings come from the message broker configuration of the application.
+	 */
+	public synchronized QueueSettings getQueueSettings() {
+		if (queueSettings == null) {
+			final MessageBroker.Config config = context != null ? context.getSingletonConfig(MessageBroker.Config.class) : null;
+			queueSettings = config != null ? config.getQueueSettings() : new QueueSettings();
+		}
+		return queueSettings;
+	}
+
+	public synchronized void setQueueSettings(final QueueSettings queueSettings) {
+		this.queueSettings = queueSettings;
+	}
+
 	public ActiveMQConnectionPool getConnectionPool() {
 		return connectionPool;
 	}
@@ -98,7 +115,7 @@ public final class ServiceFactoryImpl implements ServiceFactory {
 
 	@Override
 	public Request deserializeRequest(final SerializedRequest serializedRequest) {
-		return new DeserializedRequest(getConnection(), serializedRequest);
+		return new DeserializedRequest(getConnection(), serializedRequest, getQueueSettings().isCompactMessages());
 	}
 
 	@Override
@@ -151,9 +168,11 @@ public final class ServiceFactoryImpl implements ServiceFactory {
 		private final SerializedRequest serializedRequest;
 		private final Session session;
 		private final MessageProducer producer;
+		private final boolean compactMessages;
 
-		DeserializedRequest(final Connection connection, final SerializedRequest serializedRequest) {
+		DeserializedRequest(final Connection connection, final SerializedRequest serializedRequest, final boolean compactMessages) {
 			this.serializedRequest = serializedRequest;
+			this.compactMessages = compactMessages;
 			try {
 				session = connection.createSession(/*transacted*/false, Session.CLIENT_ACKNOWLEDGE);
 				final Queue queue = session.createQueue(serializedRequest.getResponseQueueName());
@@ -172,7 +191,7 @@ public final class ServiceFactoryImpl implements ServiceFactory {
 		public void sendResponse(final Serializable response, final boolean isLast) {
 			try {
 				// Response was requested
-				final ObjectMessage responseMessage = session.createObjectMessage(response);
+				final Message responseMessage = MessageCodec.encode(session, response, compactMessages);
 				responseMessage.setBooleanProperty(ResponseDispatcher.LAST_RESPONSE, isLast);
 				responseMessage.setJMSCorrelationID(serializedRequest.getJmsCorrelationId());
 				producer.send(responseMessage);
@@ -1,10 +1,14 @@
 package edu.mayo.mprc.messaging;
 
 import edu.mayo.mprc.MprcException;
+import org.apache.activemq.ActiveMQSession;
 import org.apache.log4j.Logger;
 
 import javax.jms.*;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * A JMS queue that allows request-response communication.
@@ -12,12 +16,16 @@ import java.io.Serializable;
  * http://activemq.apache.org/how-should-i-implement-request-response-with-jms.html
  * <p/>
  * Multithreaded access is resolved using threadlocal variables.
+ * <p/>
+ * The received requests are acknowledged individually, so a receiver can take a batch of requests
+ * and acknowledge each one when it is done with it. How the queue is consumed is tuned by {@link QueueSettings}.
  */
 final class SimpleQueueService implements Service {
 	private static final Logger LOGGER = Logger.getLogger(SimpleQueueService.class);
-    private static final String EXCLUSIVE_CONSUMER = "consumer.exclusive=true";
 
-    private final ServiceFactory serviceFactory;
+	private final ServiceFactory serviceFactory;
+	private final QueueSettings settings;
+	private final QueueStatistics statistics = new QueueStatistics();
 
 	/**
 	 * Each thread using the SimpleQueueService uses a separate session.
@@ -53,9 +61,11 @@ final class SimpleQueueService implements Service {
 	 *
 	 * @param serviceFactory Service factory
 	 * @param name           Name of the queue.
+	 * @param settings       How to consume the queue and encode the messages.
 	 */
-	SimpleQueueService(final ServiceFactory serviceFactory, final ResponseDispatcher responseDispatcher, final String name) {
+	SimpleQueueService(final ServiceFactory serviceFactory, final ResponseDispatcher responseDispatcher, final String name, final QueueSettings settings) {
 		this.serviceFactory = serviceFactory;
+		this.settings = settings;
 		this.responseDispatcher = responseDispatcher;
 		queueName = name;
 	}
@@ -68,21 +78,22 @@ final class SimpleQueueService implements Service {
 	@Override
 	public void sendRequest(final Serializable request, final int priority, final ResponseListener listener) {
 		try {
-			final ObjectMessage objectMessage = sendingSession().createObjectMessage(request);
+			final Message requestMessage = MessageCodec.encode(sendingSession(), request, settings.isCompactMessages());
 
 			final int extraPriority = request instanceof PrioritizedData ? ((PrioritizedData) request).getPriority() : 0;
-			objectMessage.setJMSPriority(priority + extraPriority);
+			requestMessage.setJMSPriority(priority + extraPriority);
 
 			if (null != listener) {
 				// Register the new listener on the temporary queue and remember its correlation ID
 				final String correlationId = responseDispatcher.registerMessageListener(listener);
 				// Replies go our temporary queue
-				objectMessage.setJMSReplyTo(responseDispatcher.getResponseDestination());
+				requestMessage.setJMSReplyTo(responseDispatcher.getResponseDestination());
 				// Correlation ID matches the responses with the response listener
-				objectMessage.setJMSCorrelationID(correlationId);
+				requestMessage.setJMSCorrelationID(correlationId);
 			}
 
-			messageProducer().send(getRequestDestination(), objectMessage);
+			messageProducer().send(getRequestDestination(), requestMessage);
+			statistics.requestSent();
 		} catch (JMSException e) {
 			throw new MprcException("Could not send message", e);
 		}
@@ -104,8 +115,9 @@ final class SimpleQueueService implements Service {
 	 * @param message Message to wrap
 	 * @return Wrapped message
 	 */
-	private JmsRequest wrapReceivedMessage(final Message message) {
-		return new JmsRequest((ObjectMessage) message, this);
+	private JmsRequest wrapReceivedMessage(final Message message) throws JMSException {
+		statistics.requestLatency(message.getJMSTimestamp());
+		return new JmsRequest(message, this);
 	}
 
 	/**
@@ -115,14 +127,15 @@ final class SimpleQueueService implements Service {
 	 * @param originalMessage Message this was response to.
 	 * @param isLast          True if the message is the last one.
 	 */
-	void sendResponse(final Serializable response, final ObjectMessage originalMessage, final boolean isLast) {
+	void sendResponse(final Serializable response, final Message originalMessage, final boolean isLast) {
 		try {
 			if (originalMessage.getJMSCorrelationID() != null) {
 				// Response was requested
-				final ObjectMessage responseMessage = receivingSession().createObjectMessage(response);
+				final Message responseMessage = MessageCodec.encode(receivingSession(), response, settings.isCompactMessages());
 				responseMessage.setBooleanProperty(ResponseDispatcher.LAST_RESPONSE, isLast);
 				responseMessage.setJMSCorrelationID(originalMessage.getJMSCorrelationID());
 				messageProducer().send(originalMessage.getJMSReplyTo(), responseMessage);
+				statistics.responseSent();
 			}
 
 		} catch (JMSException e) {
@@ -132,18 +145,40 @@ final class SimpleQueueService implements Service {
 
 	@Override
 	public Request receiveRequest(final long timeout) {
+		final List<Request> requests = receiveRequests(1, timeout);
+		return requests.isEmpty() ? null : requests.get(0);
+	}
+
+	@Override
+	public List<Request> receiveRequests(final int maxRequests, final long timeout) {
 		try {
-			final Message message = messageConsumer().receive(timeout);
-			if (message != null) {
-				return wrapReceivedMessage(message);
-			} else {
-				return null;
+			final MessageConsumer messageConsumer = messageConsumer();
+			Message message = messageConsumer.receive(timeout);
+			if (message == null) {
+				statistics.receiveCall(0);
+				return Collections.emptyList();
 			}
+			final List<Request> requests = new ArrayList<Request>(Math.min(maxRequests, 64));
+			while (message != null) {
+				requests.add(wrapReceivedMessage(message));
+				if (requests.size() >= maxRequests) {
+					break;
+				}
+				// The rest of the batch is what the broker already prefetched for us
+				message = messageConsumer.receiveNoWait();
+			}
+			statistics.receiveCall(requests.size());
+			return requests;
 		} catch (JMSException e) {
 			throw new MprcException("Could not receive message", e);
 		}
 	}
 
+	@Override
+	public QueueStatistics getStatistics() {
+		return statistics;
+	}
+
 	private MessageConsumer messageConsumer() throws JMSException {
 		synchronized (this) {
 			if (null == consumer.get()) {
@@ -153,18 +188,22 @@ final class SimpleQueueService implements Service {
 		}
 	}
 
+	/**
+	 * Received messages are acknowledged one by one, acknowledging a message must not acknowledge the other
+	 * messages of the same batch that are still being processed.
+	 */
 	private Session receivingSession() {
-		return setupSession(receivingSession);
+		return setupSession(receivingSession, ActiveMQSession.INDIVIDUAL_ACKNOWLEDGE);
 	}
 
 	private Session sendingSession() {
-		return setupSession(sendingSession);
+		return setupSession(sendingSession, Session.CLIENT_ACKNOWLEDGE);
 	}
 
-	private Session setupSession(ThreadLocal<Session> sessionHolder) {
+	private Session setupSession(final ThreadLocal<Session> sessionHolder, final int acknowledgeMode) {
 		if (sessionHolder.get() == null) {
 			try {
-				final Session value = createConnection().createSession(/*transacted?*/false, /*acknowledgment*/Session.CLIENT_ACKNOWLEDGE);
+				final Session value = createConnection().createSession(/*transacted?*/false, acknowledgeMode);
 				sessionHolder.set(value);
 			} catch (JMSException e) {
 				throw new MprcException("Could not open JMS session", e);
@@ -189,14 +228,20 @@ final class SimpleQueueService implements Service {
 		}
 	}
 
-    /** We want only a single consumer for the messages at a time */
-    String decorateQueueName(final String queueName) {
-        if(queueName.contains("?")) {
-            return queueName + "&" + EXCLUSIVE_CONSUMER;
-        } else {
-            return queueName + "?" + EXCLUSIVE_CONSUMER;
-        }
-    }
+	/**
+	 * Append the consumer options from {@link QueueSettings} - by default we want only a single consumer for the messages at a time
+	 */
+	String decorateQueueName(final String queueName) {
+		final String options = settings.getDestinationOptions();
+		if (options.isEmpty()) {
+			return queueName;
+		}
+		if (queueName.contains("?")) {
+			return queueName + "&" + options;
+		} else {
+			return queueName + "?" + options;
+		}
+	}
 
 	@Override
 	public void start() {
@@ -220,6 +265,9 @@ final class SimpleQueueService implements Service {
 	public void stop() {
 		synchronized (this) {
 			if (isRunning()) {
+				if (statistics.getRequestsReceived() > 0) {
+					LOGGER.info("Queue " + queueName + " " + statistics);
+				}
 				closeSession(receivingSession);
 				closeSession(sendingSession);
 				if (null != consumer.get()) {
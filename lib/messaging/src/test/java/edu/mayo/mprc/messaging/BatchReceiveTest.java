@@ -0,0 +1,192 @@
+package edu.mayo.mprc.messaging;
+
+import edu.mayo.mprc.MprcException;
+import edu.mayo.mprc.config.RunningApplicationContext;
+import edu.mayo.mprc.daemon.MessageBroker;
+import org.apache.log4j.Logger;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.io.Serializable;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Checks batch receiving with prefetch and compact messages against the embedded broker.
+ *
+ * @author Roman Zenka
+ */
+public final class BatchReceiveTest extends MessagingTestBase {
+	private static final Logger LOGGER = Logger.getLogger(BatchReceiveTest.class);
+	private static final int TOTAL_REQUESTS = 500;
+	private static final int BATCH_SIZE = 50;
+	private static final int PRIORITY = 5;
+
+	@Test
+	public void shouldDecorateQueueName() {
+		final QueueSettings settings = new QueueSettings();
+		Assert.assertEquals(new SimpleQueueService(null, null, "test", settings).decorateQueueName("test"), "test?consumer.exclusive=true");
+
+		settings.setExclusiveConsumer(false);
+		Assert.assertEquals(new SimpleQueueService(null, null, "test", settings).decorateQueueName("test"), "test");
+
+		settings.setPrefetchSize(10);
+		Assert.assertEquals(new SimpleQueueService(null, null, "test?a=b", settings).decorateQueueName("test?a=b"), "test?a=b&consumer.prefetchSize=10");
+	}
+
+	@Test
+	public void shouldReceiveBatchesOfCompactMessages() throws InterruptedException {
+		startBroker();
+		final QueueSettings settings = new QueueSettings();
+		settings.setPrefetchSize(100);
+		settings.setCompactMessages(true);
+		serviceFactory.setQueueSettings(settings);
+		final Service batchService = serviceFactory.createService("batch_queue", responseDispatcher);
+		batchService.start();
+		try {
+			checkBatches(batchService);
+		} finally {
+			batchService.stop();
+		}
+	}
+
+	/**
+	 * The daemons get their queue settings from the message broker configuration, through the application context.
+	 */
+	@Test
+	public void shouldTakeQueueSettingsFromBrokerConfig() throws InterruptedException {
+		startBroker();
+		final MessageBroker.Config config = new MessageBroker.Config();
+		config.setBrokerUrl(BROKER + "?create=false&waitForStart=100");
+		config.setEmbedded("false");
+		config.setPrefetchSize("100");
+		config.setExclusiveConsumer("false");
+		config.setCompactMessages("true");
+		final RunningApplicationContext context = mock(RunningApplicationContext.class);
+		when(context.getSingletonConfig(MessageBroker.Config.class)).thenReturn(config);
+
+		final ServiceFactoryImpl configuredFactory = new ServiceFactoryImpl();
+		configuredFactory.setConnectionPool(new ActiveMQConnectionPool());
+		configuredFactory.setContext(context);
+		final ResponseDispatcher configuredDispatcher = new ResponseDispatcher(configuredFactory, "test-configured-daemon");
+		configuredDispatcher.start();
+		try {
+			final QueueSettings settings = configuredFactory.getQueueSettings();
+			Assert.assertEquals(settings.getPrefetchSize(), 100);
+			Assert.assertFalse(settings.isExclusiveConsumer());
+			Assert.assertTrue(settings.isCompactMessages());
+
+			final Service batchService = configuredFactory.createService("configured_batch_queue", configuredDispatcher);
+			batchService.start();
+			try {
+				checkBatches(batchService);
+			} finally {
+				batchService.stop();
+			}
+		} finally {
+			configuredDispatcher.stop();
+			configuredFactory.stop();
+		}
+	}
+
+	@Test
+	public void shouldDefaultQueueSettingsWithoutBrokerConfig() {
+		final QueueSettings settings = new MessageBroker.Config().getQueueSettings();
+		Assert.assertEquals(settings.getPrefetchSize(), 0);
+		Assert.assertTrue(settings.isExclusiveConsumer());
+		Assert.assertFalse(settings.isCompactMessages());
+	}
+
+	/**
+	 * Send requests as compact payloads, receive them in batches and check the responses and statistics.
+	 */
+	private static void checkBatches(final Service batchService) throws InterruptedException {
+		final CountDownLatch responses = new CountDownLatch(TOTAL_REQUESTS);
+		final AtomicInteger wrongResponses = new AtomicInteger(0);
+		for (int i = 0; i < TOTAL_REQUESTS; i++) {
+			final int expected = i * 2;
+			batchService.sendRequest(new CompactPayload(i, "request " + i), PRIORITY, new ResponseListener() {
+				@Override
+				public void responseReceived(final Serializable response, final boolean isLast) {
+					if (!(response instanceof CompactPayload) || ((CompactPayload) response).getNumber() != expected || !isLast) {
+						wrongResponses.incrementAndGet();
+					}
+					responses.countDown();
+				}
+			});
+		}
+
+		int received = 0;
+		while (received < TOTAL_REQUESTS) {
+			final List<Request> requests = batchService.receiveRequests(BATCH_SIZE, 10000);
+			if (requests.isEmpty()) {
+				throw new MprcException("No request received within 10 seconds");
+			}
+			Assert.assertTrue(requests.size() <= BATCH_SIZE, "Batch too large");
+			for (final Request request : requests) {
+				final CompactPayload payload = (CompactPayload) request.getMessageData();
+				Assert.assertEquals(payload.getText(), "request " + payload.getNumber());
+				request.sendResponse(new CompactPayload(payload.getNumber() * 2, "response"), true);
+				request.processed();
+			}
+			received += requests.size();
+		}
+
+		Assert.assertTrue(responses.await(10, TimeUnit.SECONDS), "Not all responses arrived");
+		Assert.assertEquals(wrongResponses.get(), 0, "Wrong responses received");
+
+		final QueueStatistics statistics = batchService.getStatistics();
+		LOGGER.debug("Batch queue: " + statistics);
+		Assert.assertEquals(statistics.getRequestsSent(), TOTAL_REQUESTS);
+		Assert.assertEquals(statistics.getRequestsReceived(), TOTAL_REQUESTS);
+		Assert.assertEquals(statistics.getResponsesSent(), TOTAL_REQUESTS);
+		Assert.assertTrue(statistics.getReceiveCalls() < TOTAL_REQUESTS, "The requests should arrive in batches");
+		Assert.assertNull(batchService.receiveRequest(10), "There should be no request left");
+	}
+
+	/**
+	 * Payload that gets sent as bytes when compact messages are on.
+	 */
+	public static final class CompactPayload implements Externalizable {
+		private static final long serialVersionUID = 20141020L;
+		private int number;
+		private String text;
+
+		public CompactPayload() {
+		}
+
+		public CompactPayload(final int number, final String text) {
+			this.number = number;
+			this.text = text;
+		}
+
+		public int getNumber() {
+			return number;
+		}
+
+		public String getText() {
+			return text;
+		}
+
+		@Override
+		public void writeExternal(final ObjectOutput out) throws IOException {
+			out.writeInt(number);
+			out.writeUTF(text);
+		}
+
+		@Override
+		public void readExternal(final ObjectInput in) throws IOException {
+			number = in.readInt();
+			text = in.readUTF();
+		}
+	}
+}
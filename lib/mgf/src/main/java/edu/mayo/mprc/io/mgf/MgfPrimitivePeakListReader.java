@@ -0,0 +1,329 @@
+package edu.mayo.mprc.io.mgf;
+
+import edu.mayo.mprc.MprcException;
+import edu.mayo.mprc.peaklist.PrimitivePeakList;
+import edu.mayo.mprc.peaklist.PrimitivePeakListReader;
+import edu.mayo.mprc.utilities.FileUtilities;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * Reads .mgf files into {@link PrimitivePeakList}.
+ * <p/>
+ * The file is scanned character by character in a reusable buffer. Header values and peaks are parsed
+ * directly from the buffer, so no strings are created except for the spectrum title, and no objects at all
+ * are created per peak.
+ * <p/>
+ * The reader accepts the same input as the original {@link MgfPeakListReader} - lines are trimmed, the headers
+ * are recognized by their prefix, PEPMASS can list intensity after the m/z, and peak lines that cannot be parsed
+ * are skipped.
+ *
+ * @author Roman Zenka
+ */
+public final class MgfPrimitivePeakListReader implements PrimitivePeakListReader {
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final int INITIAL_LINE_LENGTH = 256;
+
+	private static final char[] BEGIN_IONS = "BEGIN IONS".toCharArray();
+	private static final char[] END_IONS = "END IONS".toCharArray();
+	private static final char[] PEPMASS = "PEPMASS".toCharArray();
+	private static final char[] CHARGE = "CHARGE".toCharArray();
+	private static final char[] TITLE = "TITLE".toCharArray();
+
+	/**
+	 * Powers of ten that are represented exactly as a double.
+	 */
+	private static final double[] POWERS_OF_TEN = {
+			1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+			1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+	/**
+	 * Largest integer that is exactly representable as a double.
+	 */
+	private static final long MAX_EXACT_MANTISSA = 1L << 53;
+	/**
+	 * A mantissa with this many digits can no longer overflow a long.
+	 */
+	private static final int MAX_MANTISSA_DIGITS = 18;
+
+	private final File inputFile;
+	private final Reader reader;
+	private boolean readPeaks;
+
+	private final char[] buffer = new char[BUFFER_SIZE];
+	private int bufferPos;
+	private int bufferEnd;
+
+	/**
+	 * Current line, trimmed to {@link #lineStart} - {@link #lineEnd}.
+	 */
+	private char[] line = new char[INITIAL_LINE_LENGTH];
+	private int lineStart;
+	private int lineEnd;
+
+	/**
+	 * Result of the last {@link #parseNumber} call.
+	 */
+	private double number;
+
+	public MgfPrimitivePeakListReader(final File inputFile, final boolean readPeaks) {
+		this.inputFile = inputFile;
+		this.readPeaks = readPeaks;
+		reader = FileUtilities.getReader(inputFile);
+	}
+
+	@Override
+	public boolean nextPeakList(final PrimitivePeakList peakList) {
+		peakList.clear();
+		boolean foundPeaks = false;
+		try {
+			while (readLine()) {
+				if (lineStart == lineEnd) {
+					continue;
+				}
+				if (startsWith(PEPMASS)) {
+					peakList.setTandemCount(2);
+					parsePepmass(peakList);
+				} else if (startsWith(CHARGE)) {
+					peakList.setTandemCount(2);
+					peakList.setCharge(parseCharge());
+				} else if (startsWith(TITLE)) {
+					peakList.setTitle(headerValue());
+				} else if (startsWith(BEGIN_IONS)) {
+					foundPeaks = true;
+				} else if (startsWith(END_IONS)) {
+					break;
+				} else if (foundPeaks && readPeaks && isDigit(line[lineStart])) {
+					parsePeak(peakList);
+				}
+			}
+		} catch (IOException e) {
+			throw new MprcException("Failure reading peaklists from .mgf file " + inputFile.getAbsolutePath(), e);
+		}
+		return foundPeaks;
+	}
+
+	/**
+	 * Read next line into {@link #line}, strip leading and trailing whitespace.
+	 *
+	 * @return False at the end of file.
+	 */
+	private boolean readLine() throws IOException {
+		int length = 0;
+		boolean readAnything = false;
+		while (true) {
+			if (bufferPos == bufferEnd) {
+				bufferEnd = reader.read(buffer, 0, buffer.length);
+				bufferPos = 0;
+				if (bufferEnd <= 0) {
+					bufferEnd = 0;
+					if (!readAnything) {
+						return false;
+					}
+					break;
+				}
+			}
+			readAnything = true;
+			final char c = buffer[bufferPos++];
+			if (c == '\n') {
+				break;
+			}
+			if (length == line.length) {
+				line = Arrays.copyOf(line, length * 2);
+			}
+			line[length++] = c;
+		}
+		lineStart = 0;
+		lineEnd = length;
+		while (lineStart < lineEnd && line[lineStart] <= ' ') {
+			lineStart++;
+		}
+		while (lineEnd > lineStart && line[lineEnd - 1] <= ' ') {
+			lineEnd--;
+		}
+		return true;
+	}
+
+	private boolean startsWith(final char[] prefix) {
+		if (lineEnd - lineStart < prefix.length) {
+			return false;
+		}
+		for (int i = 0; i < prefix.length; i++) {
+			if (line[lineStart + i] != prefix[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return Position right after the '=' of a header line, or end of line if there is no '='.
+	 */
+	private int valueStart() {
+		for (int i = lineStart; i < lineEnd; i++) {
+			if (line[i] == '=') {
+				return i + 1;
+			}
+		}
+		return lineEnd;
+	}
+
+	private String headerValue() {
+		int start = valueStart();
+		while (start < lineEnd && line[start] <= ' ') {
+			start++;
+		}
+		return new String(line, start, lineEnd - start);
+	}
+
+	/**
+	 * PEPMASS=m/z [intensity]
+	 */
+	private void parsePepmass(final PrimitivePeakList peakList) {
+		final int afterMz = parseNumber(valueStart());
+		if (afterMz < 0) {
+			return;
+		}
+		peakList.setPrecursorMz(number);
+		if (parseNumber(afterMz) >= 0) {
+			peakList.setPrecursorIntensity(number);
+		}
+	}
+
+	/**
+	 * CHARGE=2+, possibly listing more charges (2+ and 3+). Only the first charge is used.
+	 */
+	private int parseCharge() {
+		int i = valueStart();
+		while (i < lineEnd && !isDigit(line[i])) {
+			i++;
+		}
+		int charge = 0;
+		while (i < lineEnd && isDigit(line[i])) {
+			charge = charge * 10 + (line[i] - '0');
+			i++;
+		}
+		if (i < lineEnd && line[i] == '-') {
+			return -charge;
+		}
+		return charge;
+	}
+
+	/**
+	 * A line with m/z, intensity and optionally charge. Lines we cannot parse are skipped.
+	 */
+	private void parsePeak(final PrimitivePeakList peakList) {
+		final int afterMz = parseNumber(lineStart);
+		if (afterMz < 0) {
+			return;
+		}
+		final double mz = number;
+		if (parseNumber(afterMz) < 0) {
+			return;
+		}
+		peakList.addPeak(mz, number);
+	}
+
+	/**
+	 * Parse a whitespace-delimited number starting at given position of the current line and store it in {@link #number}.
+	 * <p/>
+	 * Simple decimals are parsed directly. When the mantissa fits into 53 bits and the exponent is small, a single
+	 * multiplication or division by an exact power of ten gives a correctly rounded result,
+	 * same as {@link Double#parseDouble}. Everything else is handed to {@link Double#parseDouble}.
+	 *
+	 * @param from Where to start looking for the number.
+	 * @return Position right after the number, -1 if there is no valid number.
+	 */
+	private int parseNumber(final int from) {
+		int i = from;
+		while (i < lineEnd && line[i] <= ' ') {
+			i++;
+		}
+		final int start = i;
+		int tokenEnd = i;
+		while (tokenEnd < lineEnd && line[tokenEnd] > ' ') {
+			tokenEnd++;
+		}
+		if (start == tokenEnd) {
+			return -1;
+		}
+
+		boolean negative = false;
+		if (line[i] == '-' || line[i] == '+') {
+			negative = line[i] == '-';
+			i++;
+		}
+		long mantissa = 0;
+		int digits = 0;
+		int exponent = 0;
+		boolean simple = true;
+		for (; i < tokenEnd && isDigit(line[i]); i++) {
+			mantissa = mantissa * 10 + (line[i] - '0');
+			digits++;
+		}
+		if (i < tokenEnd && line[i] == '.') {
+			i++;
+			for (; i < tokenEnd && isDigit(line[i]); i++) {
+				mantissa = mantissa * 10 + (line[i] - '0');
+				digits++;
+				exponent--;
+			}
+		}
+		if (i < tokenEnd && (line[i] == 'e' || line[i] == 'E')) {
+			i++;
+			boolean negativeExponent = false;
+			if (i < tokenEnd && (line[i] == '-' || line[i] == '+')) {
+				negativeExponent = line[i] == '-';
+				i++;
+			}
+			int explicitExponent = 0;
+			final int exponentStart = i;
+			for (; i < tokenEnd && isDigit(line[i]) && explicitExponent < 1000; i++) {
+				explicitExponent = explicitExponent * 10 + (line[i] - '0');
+			}
+			simple = i > exponentStart;
+			exponent += negativeExponent ? -explicitExponent : explicitExponent;
+		}
+		simple = simple && i == tokenEnd && digits > 0 && digits <= MAX_MANTISSA_DIGITS
+				&& mantissa < MAX_EXACT_MANTISSA && Math.abs(exponent) < POWERS_OF_TEN.length;
+
+		if (simple) {
+			final double value = exponent < 0 ? mantissa / POWERS_OF_TEN[-exponent] : mantissa * POWERS_OF_TEN[exponent];
+			number = negative ? -value : value;
+		} else {
+			try {
+				number = Double.parseDouble(new String(line, start, tokenEnd - start));
+			} catch (NumberFormatException ignore) {
+				// SWALLOWED: not a number, the caller skips the line
+				return -1;
+			}
+		}
+		return tokenEnd;
+	}
+
+	private static boolean isDigit(final char c) {
+		return c >= '0' && c <= '9';
+	}
+
+	@Override
+	public boolean isReadPeaks() {
+		return readPeaks;
+	}
+
+	/**
+	 * When set to false, the reader will not parse actual peak data and return just the headers.
+	 *
+	 * @param readPeaks Set to false to skip parsing the peaks themselves.
+	 */
+	@Override
+	public void setReadPeaks(final boolean readPeaks) {
+		this.readPeaks = readPeaks;
+	}
+
+	@Override
+	public void close() throws IOException {
+		reader.close();
+	}
+}
@@ -0,0 +1,110 @@
+package edu.mayo.mprc.io.mgf;
+
+import edu.mayo.mprc.MprcException;
+import edu.mayo.mprc.utilities.FileUtilities;
+import org.apache.log4j.Logger;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits a single .mgf file into several shards that can be searched independently.
+ * <p/>
+ * The spectra are dealt out round-robin, so the shards differ by at most one spectrum and each of them
+ * covers the whole retention time range of the run. The parameters preceding the first BEGIN IONS
+ * are global for the file, so every shard gets a copy of them.
+ * <p/>
+ * The split is deterministic - same input always produces identical shards.
+ */
+public final class MgfSplitter {
+	private static final Logger LOGGER = Logger.getLogger(MgfSplitter.class);
+	private static final int BUFFER_SIZE = 100 * 1024;
+	private static final String BEGIN_IONS = "BEGIN IONS";
+	private static final String TEMP_SUFFIX = ".tmp";
+
+	private final File inputMgf;
+
+	public MgfSplitter(final File inputMgf) {
+		this.inputMgf = inputMgf;
+	}
+
+	/**
+	 * The shards are first written into temporary files next to them and renamed only when all of them are complete.
+	 * A split that fails or gets killed never leaves a truncated shard under the final name.
+	 *
+	 * @param shards Files to split the input into. Existing files are overwritten.
+	 * @return Number of spectra written into each shard.
+	 */
+	public int[] split(final List<File> shards) {
+		if (shards.isEmpty()) {
+			throw new MprcException("No shards to split " + inputMgf.getAbsolutePath() + " into");
+		}
+		LOGGER.debug("Splitting " + inputMgf.getAbsolutePath() + " into " + shards.size() + " shards");
+		final List<File> tempShards = new ArrayList<File>(shards.size());
+		for (final File shard : shards) {
+			tempShards.add(new File(shard.getParentFile(), shard.getName() + TEMP_SUFFIX));
+		}
+		BufferedReader reader = null;
+		final BufferedWriter[] writers = new BufferedWriter[shards.size()];
+		boolean success = false;
+		try {
+			reader = new BufferedReader(new FileReader(inputMgf), BUFFER_SIZE);
+			for (int i = 0; i < writers.length; i++) {
+				FileUtilities.ensureFileExists(tempShards.get(i));
+				writers[i] = new BufferedWriter(new FileWriter(tempShards.get(i)), BUFFER_SIZE);
+			}
+			final int[] spectra = performSplit(reader, writers);
+			for (final BufferedWriter writer : writers) {
+				writer.close();
+			}
+			for (int i = 0; i < shards.size(); i++) {
+				FileUtilities.rename(tempShards.get(i), shards.get(i));
+			}
+			success = true;
+			return spectra;
+		} catch (IOException e) {
+			throw new MprcException("Could not split " + inputMgf.getAbsolutePath() + " into " + shards.size() + " shards", e);
+		} finally {
+			FileUtilities.closeQuietly(reader);
+			for (final BufferedWriter writer : writers) {
+				FileUtilities.closeQuietly(writer);
+			}
+			if (!success) {
+				for (int i = 0; i < shards.size(); i++) {
+					FileUtilities.quietDelete(tempShards.get(i));
+					FileUtilities.quietDelete(shards.get(i));
+				}
+			}
+		}
+	}
+
+	static int[] performSplit(final BufferedReader reader, final Writer[] writers) throws IOException {
+		final int[] spectra = new int[writers.length];
+		// -1 means we are still in the global header, which goes to all shards
+		int current = -1;
+		int spectrum = 0;
+		while (true) {
+			final String line = reader.readLine();
+			if (line == null) {
+				break;
+			}
+			if (line.startsWith(BEGIN_IONS)) {
+				current = spectrum % writers.length;
+				spectrum++;
+				spectra[current]++;
+			}
+			if (current == -1) {
+				for (final Writer writer : writers) {
+					writer.append(line).append('\n');
+				}
+			} else {
+				writers[current].append(line).append('\n');
+			}
+		}
+		for (final Writer writer : writers) {
+			writer.flush();
+		}
+		return spectra;
+	}
+}
@@ -2,6 +2,8 @@ package edu.mayo.mprc.io.mgf;
 
 import edu.mayo.mprc.peaklist.PeakList;
 import edu.mayo.mprc.peaklist.PeakListReader;
+import edu.mayo.mprc.peaklist.PrimitivePeakList;
+import edu.mayo.mprc.peaklist.PrimitivePeakListReader;
 import edu.mayo.mprc.utilities.FileUtilities;
 import edu.mayo.mprc.utilities.TestingUtilities;
 import org.proteomecommons.io.Peak;
@@ -65,4 +67,74 @@ public final class MgfPeakListReaderTest {
 
 		reader.close();
 	}
+
+	@Test
+	public void shouldReadPrimitivePeaks() throws IOException {
+		final PrimitivePeakListReader reader = new MgfPeakListReaderFactory().createPrimitiveReader(file, true);
+		final PrimitivePeakList peakList = new PrimitivePeakList();
+		try {
+			Assert.assertTrue(reader.nextPeakList(peakList));
+			Assert.assertEquals(peakList.getTitle(), "ch261_042208_AO_check1 scan 1 1 (ch261_042208_AO_check1.1.1.3.dta)");
+			Assert.assertEquals(peakList.getPrecursorMz(), 506.60531764);
+			Assert.assertEquals(peakList.getCharge(), 3);
+			Assert.assertEquals(peakList.size(), 1);
+			Assert.assertEquals(peakList.getMz(0), 145.946);
+			Assert.assertEquals(peakList.getIntensity(0), 10.0);
+
+			Assert.assertTrue(reader.nextPeakList(peakList));
+			Assert.assertEquals(peakList.getPrecursorMz(), 1356.223850973333);
+		} finally {
+			reader.close();
+		}
+	}
+
+	@Test
+	public void shouldParseNumbersLikeJava() throws IOException {
+		final File mgf = File.createTempFile("numbers", ".mgf");
+		try {
+			FileUtilities.writeStringToFile(mgf, "" +
+					"BEGIN IONS\r\n" +
+					"TITLE= spectrum 1 \r\n" +
+					"PEPMASS=1e3 42.5\r\n" +
+					"CHARGE=2-\r\n" +
+					"100 1\r\n" +
+					"0.1 -2.5E-3\r\n" +
+					"123.456789012345678901 7.0e+2 2\r\n" +
+					"1.7976931348623157E308\t0.000000000000000000000001\r\n" +
+					"2.5 garbage\r\n" +
+					"END IONS\r\n" +
+					"BEGIN IONS\n" +
+					"PEPMASS=500\n" +
+					"END IONS\n", true);
+
+			final MgfPrimitivePeakListReader reader = new MgfPrimitivePeakListReader(mgf, true);
+			final PrimitivePeakList peakList = new PrimitivePeakList();
+			try {
+				Assert.assertTrue(reader.nextPeakList(peakList));
+				Assert.assertEquals(peakList.getTitle(), "spectrum 1");
+				Assert.assertEquals(peakList.getPrecursorMz(), 1000.0);
+				Assert.assertEquals(peakList.getPrecursorIntensity(), 42.5);
+				Assert.assertEquals(peakList.getCharge(), -2);
+				Assert.assertEquals(peakList.size(), 4, "The unparseable peak is skipped");
+				final String[] mz = {"100", "0.1", "123.456789012345678901", "1.7976931348623157E308"};
+				final String[] intensity = {"1", "-2.5E-3", "7.0e+2", "0.000000000000000000000001"};
+				for (int i = 0; i < mz.length; i++) {
+					Assert.assertEquals(peakList.getMz(i), Double.parseDouble(mz[i]));
+					Assert.assertEquals(peakList.getIntensity(i), Double.parseDouble(intensity[i]));
+				}
+
+				Assert.assertTrue(reader.nextPeakList(peakList));
+				Assert.assertEquals(peakList.size(), 0);
+				Assert.assertEquals(peakList.getCharge(), PrimitivePeakList.UNKNOWN_CHARGE);
+				Assert.assertEquals(peakList.toPeakList().getPepmass(), "PEPMASS=500");
+				Assert.assertNull(peakList.toPeakList().getCharge());
+
+				Assert.assertFalse(reader.nextPeakList(peakList));
+			} finally {
+				reader.close();
+			}
+		} finally {
+			FileUtilities.cleanupTempFile(mgf);
+		}
+	}
 }
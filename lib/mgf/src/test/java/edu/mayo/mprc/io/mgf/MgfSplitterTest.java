@@ -0,0 +1,109 @@
+package edu.mayo.mprc.io.mgf;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import edu.mayo.mprc.MprcException;
+import edu.mayo.mprc.utilities.FileUtilities;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.*;
+import java.util.Arrays;
+
+public final class MgfSplitterTest {
+	private static final String HEADER = "COM=test\n";
+
+	@Test
+	public void shouldDealSpectraRoundRobin() throws IOException {
+		final StringWriter[] writers = split(HEADER + spectrum(1) + spectrum(2) + spectrum(3), 2);
+
+		Assert.assertEquals(writers[0].toString(), HEADER + spectrum(1) + spectrum(3));
+		Assert.assertEquals(writers[1].toString(), HEADER + spectrum(2));
+	}
+
+	@Test
+	public void shouldCountSpectra() throws IOException {
+		final StringWriter[] writers = new StringWriter[]{new StringWriter(), new StringWriter(), new StringWriter()};
+		final int[] counts = MgfSplitter.performSplit(
+				new BufferedReader(new StringReader(spectrum(1) + spectrum(2) + spectrum(3) + spectrum(4))), writers);
+
+		Assert.assertEquals(counts.length, 3);
+		Assert.assertEquals(counts[0], 2);
+		Assert.assertEquals(counts[1], 1);
+		Assert.assertEquals(counts[2], 1);
+	}
+
+	@Test
+	public void shouldProduceEmptyShards() throws IOException {
+		final StringWriter[] writers = split(HEADER + spectrum(1), 3);
+
+		Assert.assertEquals(writers[0].toString(), HEADER + spectrum(1));
+		Assert.assertEquals(writers[1].toString(), HEADER);
+		Assert.assertEquals(writers[2].toString(), HEADER);
+	}
+
+	@Test
+	public void shouldWriteShardFiles() throws IOException {
+		final File folder = FileUtilities.createTempFolder();
+		try {
+			final File mgf = new File(folder, "input.mgf");
+			Files.write(HEADER + spectrum(1) + spectrum(2) + spectrum(3), mgf, Charsets.US_ASCII);
+			final File shard1 = new File(folder, "shards/input.shard1of2.mgf");
+			final File shard2 = new File(folder, "shards/input.shard2of2.mgf");
+
+			final int[] counts = new MgfSplitter(mgf).split(Arrays.asList(shard1, shard2));
+
+			Assert.assertEquals(counts[0], 2);
+			Assert.assertEquals(counts[1], 1);
+			Assert.assertEquals(Files.toString(shard1, Charsets.US_ASCII), HEADER + spectrum(1) + spectrum(3));
+			Assert.assertEquals(Files.toString(shard2, Charsets.US_ASCII), HEADER + spectrum(2));
+			Assert.assertEquals(shard1.getParentFile().list().length, 2, "No temporary files are left behind");
+		} finally {
+			FileUtilities.deleteNow(folder);
+		}
+	}
+
+	@Test
+	public void shouldNotLeavePartialShards() throws IOException {
+		final File folder = FileUtilities.createTempFolder();
+		try {
+			final File mgf = new File(folder, "input.mgf");
+			Files.write(HEADER + spectrum(1) + spectrum(2), mgf, Charsets.US_ASCII);
+			final File shard1 = new File(folder, "input.shard1of2.mgf");
+			// The second shard cannot be created, its folder is a file
+			final File notAFolder = new File(folder, "file");
+			Files.write("", notAFolder, Charsets.US_ASCII);
+			final File shard2 = new File(notAFolder, "input.shard2of2.mgf");
+
+			try {
+				new MgfSplitter(mgf).split(Arrays.asList(shard1, shard2));
+				Assert.fail("The split must fail");
+			} catch (MprcException e) {
+				// SWALLOWED: expected
+			}
+
+			Assert.assertFalse(shard1.exists(), "A failed split must not leave a shard behind");
+			Assert.assertEquals(folder.list().length, 2, "Only the input and the blocking file remain");
+		} finally {
+			FileUtilities.deleteNow(folder);
+		}
+	}
+
+	private static StringWriter[] split(final String mgf, final int shards) throws IOException {
+		final StringWriter[] writers = new StringWriter[shards];
+		for (int i = 0; i < shards; i++) {
+			writers[i] = new StringWriter();
+		}
+		MgfSplitter.performSplit(new BufferedReader(new StringReader(mgf)), writers);
+		return writers;
+	}
+
+	private static String spectrum(final int scan) {
+		return "BEGIN IONS\n"
+				+ "TITLE=spectrum (test." + scan + "." + scan + ".2.dta)\n"
+				+ "CHARGE=2+\n"
+				+ "PEPMASS=500.5\n"
+				+ "100.1 10.0\n"
+				+ "END IONS\n";
+	}
+}
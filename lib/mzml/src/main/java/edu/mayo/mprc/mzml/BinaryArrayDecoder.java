@@ -0,0 +1,109 @@
+package edu.mayo.mprc.mzml;
+
+import edu.mayo.mprc.MprcException;
+import uk.ac.ebi.jmzml.model.mzml.CVParam;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Decodes mzML binary data arrays straight into a primitive {@code double[]}, without the boxed
+ * {@link Number} array jmzml would produce.
+ * <p/>
+ * Supports 32/64-bit floats and integers, either uncompressed or zlib-compressed. Any other encoding
+ * (e.g. numpress) is left for jmzml to handle.
+ *
+ * @author Roman Zenka
+ */
+final class BinaryArrayDecoder {
+	private static final String FLOAT_32 = "MS:1000521";
+	private static final String FLOAT_64 = "MS:1000523";
+	private static final String INT_32 = "MS:1000519";
+	private static final String INT_64 = "MS:1000522";
+	private static final String ZLIB_COMPRESSION = "MS:1000574";
+	private static final String NO_COMPRESSION = "MS:1000576";
+
+	private BinaryArrayDecoder() {
+	}
+
+	/**
+	 * @param data        Binary data, already base64-decoded.
+	 * @param cvParams    Parameters of the binary data array, specifying the precision and compression.
+	 * @param arrayLength Expected number of values, null if not known.
+	 * @return Decoded values, or null if the precision or compression are not supported.
+	 */
+	public static double[] decode(final byte[] data, final List<CVParam> cvParams, final Integer arrayLength) {
+		String precision = null;
+		boolean zlib = false;
+		boolean knownCompression = false;
+		for (final CVParam param : cvParams) {
+			final String accession = param.getAccession();
+			if (FLOAT_32.equals(accession) || FLOAT_64.equals(accession) || INT_32.equals(accession) || INT_64.equals(accession)) {
+				precision = accession;
+			} else if (ZLIB_COMPRESSION.equals(accession)) {
+				zlib = true;
+				knownCompression = true;
+			} else if (NO_COMPRESSION.equals(accession)) {
+				knownCompression = true;
+			}
+		}
+		if (precision == null || !knownCompression) {
+			return null;
+		}
+		if (data == null || data.length == 0) {
+			return MzMlPeakListReader.NO_DATA;
+		}
+
+		final int width = FLOAT_32.equals(precision) || INT_32.equals(precision) ? 4 : 8;
+		final byte[] bytes = zlib ? inflate(data, arrayLength == null ? data.length * 2 : arrayLength * width) : data;
+		final ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+		final double[] result = new double[bytes.length / width];
+		if (FLOAT_32.equals(precision)) {
+			for (int i = 0; i < result.length; i++) {
+				result[i] = buffer.getFloat();
+			}
+		} else if (FLOAT_64.equals(precision)) {
+			buffer.asDoubleBuffer().get(result);
+		} else if (INT_32.equals(precision)) {
+			for (int i = 0; i < result.length; i++) {
+				result[i] = buffer.getInt();
+			}
+		} else {
+			for (int i = 0; i < result.length; i++) {
+				result[i] = buffer.getLong();
+			}
+		}
+		return result;
+	}
+
+	private static byte[] inflate(final byte[] data, final int expectedLength) {
+		final Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(data);
+			final byte[] buffer = new byte[Math.max(expectedLength, 1)];
+			int length = inflater.inflate(buffer);
+			if (inflater.finished() && length == buffer.length) {
+				return buffer;
+			}
+			// Our length estimate was off, collect the rest
+			final ByteArrayOutputStream output = new ByteArrayOutputStream(buffer.length * 2);
+			output.write(buffer, 0, length);
+			while (!inflater.finished()) {
+				length = inflater.inflate(buffer);
+				if (length == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+					throw new MprcException("Truncated zlib-compressed binary data array");
+				}
+				output.write(buffer, 0, length);
+			}
+			return output.toByteArray();
+		} catch (final DataFormatException e) {
+			throw new MprcException("Corrupted zlib-compressed binary data array", e);
+		} finally {
+			inflater.end();
+		}
+	}
+}
@@ -3,16 +3,18 @@ package edu.mayo.mprc.mzml;
 import edu.mayo.mprc.MprcException;
 import edu.mayo.mprc.peaklist.PeakList;
 import edu.mayo.mprc.peaklist.PeakListReader;
-import org.proteomecommons.io.GenericPeak;
-import org.proteomecommons.io.Peak;
+import edu.mayo.mprc.peaklist.PrimitivePeakList;
+import edu.mayo.mprc.peaklist.PrimitivePeakListReader;
 import uk.ac.ebi.jmzml.model.mzml.*;
 import uk.ac.ebi.jmzml.xml.io.MzMLObjectIterator;
 import uk.ac.ebi.jmzml.xml.io.MzMLUnmarshaller;
+import uk.ac.ebi.jmzml.xml.io.MzMLUnmarshallerException;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Queue;
 
@@ -20,10 +22,16 @@ import java.util.Queue;
  * Reads MS2 spectra from given mzML file (ignoring MS1 and MS3+).
  * <p/>
  * Creates {@link PeakList} objects that should be as similar as possible to those returned by the .mgf reader.
+ * <p/>
+ * The spectra are parsed one at a time, as the peak lists are requested, so the memory use does not depend on the
+ * file size. The binary arrays are decoded directly into primitive arrays by {@link BinaryArrayDecoder}.
+ * The reader can also fill {@link PrimitivePeakList} objects, in which case no per-peak objects are created at all.
+ * A single spectrum can also be looked up by its id using {@link #getPeakLists(String)}, which seeks to the spectrum
+ * using the file index instead of parsing everything that precedes it.
  *
  * @author Roman Zenka
  */
-public final class MzMlPeakListReader implements PeakListReader {
+public final class MzMlPeakListReader implements PeakListReader, PrimitivePeakListReader {
 	public static final int MS2_SPECTRUM = 2;
 
 	// Stages of ms achieved in a multi stage mass spectrometry experiment.
@@ -45,9 +53,8 @@ public final class MzMlPeakListReader implements PeakListReader {
 	private final File file;
 	private final MzMLUnmarshaller reader;
 	private final MzMLObjectIterator<Spectrum> iterator;
-	private Spectrum spectrum;
-	// Peak lists we would like to report in the future
-	private Queue<PeakList> parsedPeakLists = new ArrayDeque<PeakList>(10);
+	// Peak lists produced by the last parsed spectrum, waiting to be reported
+	private Queue<PrimitivePeakList> parsedPeakLists = new ArrayDeque<PrimitivePeakList>(10);
 
 	public MzMlPeakListReader(final File file, final boolean readPeaks) {
 		this.file = file;
@@ -65,75 +72,114 @@ public final class MzMlPeakListReader implements PeakListReader {
 		return null;
 	}
 
+	/**
+	 * Parse spectra until at least one peak list is produced or we run out of spectra.
+	 */
 	private void parsePeakLists() {
-		while (iterator.hasNext()) {
-			spectrum = iterator.next();
-			final String msLevelString = getCvParamValue(spectrum.getCvParam(), MS_LEVEL);
-			if (msLevelString == null) {
-				throw new MprcException(spectrumException(" does not specify ms-level (" + MS_LEVEL + ")"));
-			}
-			final int msLevel = Integer.parseInt(msLevelString);
+		while (parsedPeakLists.isEmpty() && iterator.hasNext()) {
+			parseSpectrum(iterator.next(), parsedPeakLists);
+		}
+	}
 
-			final String spectrumTitle = spectrum.getId();
+	/**
+	 * Random access to a single spectrum. The spectrum is located using the index of the mzML file,
+	 * no other spectra are parsed.
+	 *
+	 * @param spectrumId Id of the spectrum, e.g. {@code controllerType=0 controllerNumber=1 scan=10}
+	 * @return Peak lists for the spectrum - one for each precursor and charge state. Empty if the spectrum is not MS2.
+	 */
+	public List<PeakList> getPeakLists(final String spectrumId) {
+		final Spectrum spectrum;
+		try {
+			spectrum = reader.getSpectrumById(spectrumId);
+		} catch (final MzMLUnmarshallerException e) {
+			throw new MprcException("MzML file [" + file.getAbsolutePath() + "] could not read spectrum [" + spectrumId + "]", e);
+		}
+		if (spectrum == null) {
+			throw new MprcException("MzML file [" + file.getAbsolutePath() + "] does not contain spectrum [" + spectrumId + "]");
+		}
+		final List<PrimitivePeakList> parsed = new ArrayList<PrimitivePeakList>(1);
+		parseSpectrum(spectrum, parsed);
+		final List<PeakList> peakLists = new ArrayList<PeakList>(parsed.size());
+		for (final PrimitivePeakList peakList : parsed) {
+			peakLists.add(peakList.toPeakList(isReadPeaks()));
+		}
+		return peakLists;
+	}
 
-			if (msLevel == MS2_SPECTRUM) {
-				if (spectrum.getPrecursorList().getCount() <= 0) {
-					throw new MprcException(spectrumException(" has zero listed precursors"));
-				}
-				final boolean multiplePrecursors = 1 < spectrum.getPrecursorList().getCount();
-				int precursorId = 1;
-				for (final Precursor precursor : spectrum.getPrecursorList().getPrecursor()) {
-					if (precursor.getSelectedIonList().getCount() <= 0) {
-						throw new MprcException(spectrumException(" does not specify any precursor ions"));
-					}
-					final ParamGroup precursorIon = precursor.getSelectedIonList().getSelectedIon().get(0);
-					final String precursorMz = getCvParamValue(precursorIon.getCvParam(), SELECTED_ION_MZ);
-					final String chargeState = getCvParamValue(precursorIon.getCvParam(), CHARGE_STATE);
+	/**
+	 * @param spectrum  Spectrum to turn into peak lists.
+	 * @param peakLists Where to add the resulting peak lists. Only MS2 spectra produce peak lists.
+	 */
+	private void parseSpectrum(final Spectrum spectrum, final Collection<PrimitivePeakList> peakLists) {
+		final String msLevelString = getCvParamValue(spectrum.getCvParam(), MS_LEVEL);
+		if (msLevelString == null) {
+			throw new MprcException(spectrumException(spectrum, " does not specify ms-level (" + MS_LEVEL + ")"));
+		}
+		final int msLevel = Integer.parseInt(msLevelString);
 
-					Peak[] peaks = null;
-					if (isReadPeaks()) {
-						peaks = parsePeaks(spectrum);
-					}
+		final String spectrumTitle = spectrum.getId();
 
-					if (chargeState == null) {
-						boolean noChargeStates = true;
-						for (final CVParam param : precursorIon.getCvParam()) {
-							if (POSSIBLE_CHARGE_STATE.equals(param.getAccession())) {
-								final String charge = param.getValue();
-								queuePeakList(getSpectrumTitle(spectrumTitle, multiplePrecursors, precursorId, true, charge), precursorMz, charge, peaks, msLevel);
-								noChargeStates = false;
-							}
-						}
-						if (noChargeStates) {
-							throw new MprcException(spectrumException(" precursor charge state not specified"));
+		if (msLevel == MS2_SPECTRUM) {
+			if (spectrum.getPrecursorList().getCount() <= 0) {
+				throw new MprcException(spectrumException(spectrum, " has zero listed precursors"));
+			}
+			final boolean multiplePrecursors = 1 < spectrum.getPrecursorList().getCount();
+			int precursorId = 1;
+			// The peak arrays are shared by all the peak lists made from this spectrum
+			final PrimitivePeakList peaks = new PrimitivePeakList();
+			if (isReadPeaks()) {
+				parsePeaks(spectrum, peaks);
+			}
+			for (final Precursor precursor : spectrum.getPrecursorList().getPrecursor()) {
+				if (precursor.getSelectedIonList().getCount() <= 0) {
+					throw new MprcException(spectrumException(spectrum, " does not specify any precursor ions"));
+				}
+				final ParamGroup precursorIon = precursor.getSelectedIonList().getSelectedIon().get(0);
+				final String precursorMz = getCvParamValue(precursorIon.getCvParam(), SELECTED_ION_MZ);
+				final String chargeState = getCvParamValue(precursorIon.getCvParam(), CHARGE_STATE);
+
+				if (chargeState == null) {
+					boolean noChargeStates = true;
+					for (final CVParam param : precursorIon.getCvParam()) {
+						if (POSSIBLE_CHARGE_STATE.equals(param.getAccession())) {
+							final String charge = param.getValue();
+							peakLists.add(makePeakList(spectrum, getSpectrumTitle(spectrumTitle, multiplePrecursors, precursorId, true, charge), precursorMz, charge, peaks, msLevel));
+							noChargeStates = false;
 						}
-					} else {
-						queuePeakList(getSpectrumTitle(spectrumTitle, multiplePrecursors, precursorId, false, chargeState), precursorMz, chargeState, peaks, msLevel);
 					}
-					precursorId++;
+					if (noChargeStates) {
+						throw new MprcException(spectrumException(spectrum, " precursor charge state not specified"));
+					}
+				} else {
+					peakLists.add(makePeakList(spectrum, getSpectrumTitle(spectrumTitle, multiplePrecursors, precursorId, false, chargeState), precursorMz, chargeState, peaks, msLevel));
 				}
+				precursorId++;
 			}
 		}
-
 	}
 
 	private String getSpectrumTitle(final String spectrumTitle, final boolean multiplePrecursors, final int precursorId, final boolean multipleCharges, final String charge) {
 		return spectrumTitle + (multiplePrecursors ? " precursor=" + precursorId : "") + (multipleCharges ? " charge=" + charge : "");
 	}
 
-	private void queuePeakList(final String title, final String precursorMz, final String chargeState, final Peak[] peaks, final int msLevel) {
-		final PeakList peakList = new PeakList();
+	private PrimitivePeakList makePeakList(final Spectrum spectrum, final String title, final String precursorMz, final String chargeState, final PrimitivePeakList peaks, final int msLevel) {
+		final PrimitivePeakList peakList = new PrimitivePeakList();
+		peakList.setFrom(peaks);
 		peakList.setTitle(title);
 		peakList.setTandemCount(msLevel);
-		peakList.setPepmass("PEPMASS=" + precursorMz);
-		peakList.setCharge("CHARGE=" + chargeState + "+");
-		if (peaks != null) {
-			peakList.setPeaks(peaks);
+		try {
+			if (precursorMz != null) {
+				peakList.setPrecursorMz(Double.parseDouble(precursorMz));
+			}
+			peakList.setCharge(Integer.parseInt(chargeState.trim()));
+		} catch (final NumberFormatException e) {
+			throw new MprcException(spectrumException(spectrum, " has invalid precursor m/z [" + precursorMz + "] or charge [" + chargeState + "]"), e);
 		}
-		parsedPeakLists.add(peakList);
+		return peakList;
 	}
 
-	private Peak[] parsePeaks(final Spectrum spectrum) {
+	private void parsePeaks(final Spectrum spectrum, final PrimitivePeakList peaks) {
 		double[] mz = null;
 		double[] intensity = null;
 		for (final BinaryDataArray dataArray : spectrum.getBinaryDataArrayList().getBinaryDataArray()) {
@@ -153,69 +199,59 @@ public final class MzMlPeakListReader implements PeakListReader {
 		}
 
 		if (mz == null) {
-			throw new MprcException(spectrumException(" m/z data array missing"));
+			throw new MprcException(spectrumException(spectrum, " m/z data array missing"));
 		}
 
 		if (intensity == null) {
-			throw new MprcException(spectrumException(" intensity data array missing"));
+			throw new MprcException(spectrumException(spectrum, " intensity data array missing"));
 		}
 
 		if (mz.length != intensity.length) {
-			throw new MprcException(spectrumException(" m/z and intensity arrays have different length"));
+			throw new MprcException(spectrumException(spectrum, " m/z and intensity arrays have different length"));
 		}
 
-		final Peak[] peaks = new Peak[mz.length];
-		for (int i = 0; i < mz.length; i++) {
-			final GenericPeak peak = new GenericPeak();
-			peak.setMassOverCharge(mz[i]);
-			peak.setIntensity(intensity[i]);
-			peaks[i] = peak;
-		}
-		return peaks;
+		peaks.setPeaks(mz, intensity);
 	}
 
 	@Override
 	public PeakList nextPeakList() {
-		if (parsedPeakLists.size() == 0) {
-			parsePeakLists();
-		}
-		if (parsedPeakLists.size() > 0) {
-			return parsedPeakLists.remove();
+		parsePeakLists();
+		final PrimitivePeakList peakList = parsedPeakLists.poll();
+		return peakList == null ? null : peakList.toPeakList(isReadPeaks());
+	}
+
+	@Override
+	public boolean nextPeakList(final PrimitivePeakList peakList) {
+		parsePeakLists();
+		final PrimitivePeakList parsed = parsedPeakLists.poll();
+		if (parsed == null) {
+			return false;
 		}
-		return null;
+		peakList.setFrom(parsed);
+		return true;
 	}
 
-	private String spectrumException(final String message) {
+	private String spectrumException(final Spectrum spectrum, final String message) {
 		return "MzML file [" + file.getAbsolutePath() + "] spectrum [" + spectrum.getId() + "]" + message;
 	}
 
 	private double[] toDoubleArray(final BinaryDataArray dataArray) {
-		final double[] array;
 		// Working around a bug in jmzml
 		if (dataArray.needsUncompressing() && dataArray.getEncodedLength() != null && dataArray.getEncodedLength() == 0) {
-			array = NO_DATA;
-		} else {
-			if (dataArray.getArrayLength() != null) {
-				array = new double[dataArray.getArrayLength()];
-				int i = 0;
-				for (final Number number : dataArray.getBinaryDataAsNumberArray()) {
-					array[i] = number.doubleValue();
-					i++;
-				}
-			} else {
-				final ArrayList<Double> arrayList = new ArrayList<Double>(1000);
-				int i = 0;
-				for (final Number number : dataArray.getBinaryDataAsNumberArray()) {
-					arrayList.add(number.doubleValue());
-					i++;
-				}
-				array = new double[arrayList.size()];
-				for (int j = 0; j < array.length; j++) {
-					array[j] = arrayList.get(j);
-				}
-			}
+			return NO_DATA;
+		}
+		final double[] array = BinaryArrayDecoder.decode(dataArray.getBinary(), dataArray.getCvParam(), dataArray.getArrayLength());
+		if (array != null) {
+			return array;
+		}
+
+		// Encoding we do not decode ourselves, let jmzml do it
+		final Number[] numbers = dataArray.getBinaryDataAsNumberArray();
+		final double[] result = new double[numbers.length];
+		for (int i = 0; i < numbers.length; i++) {
+			result[i] = numbers[i].doubleValue();
 		}
-		return array;
+		return result;
 	}
 
 	@Override
@@ -2,6 +2,7 @@ package edu.mayo.mprc.mzml;
 
 import edu.mayo.mprc.peaklist.PeakListReader;
 import edu.mayo.mprc.peaklist.PeakListReaderFactory;
+import edu.mayo.mprc.peaklist.PrimitivePeakListReader;
 import org.springframework.stereotype.Component;
 
 import java.io.File;
@@ -23,4 +24,9 @@ public final class MzMlPeakListReaderFactory implements PeakListReaderFactory {
 	public PeakListReader createReader(final File file, final boolean readPeaks) {
 		return new MzMlPeakListReader(file, readPeaks);
 	}
+
+	@Override
+	public PrimitivePeakListReader createPrimitiveReader(final File file, final boolean readPeaks) {
+		return new MzMlPeakListReader(file, readPeaks);
+	}
 }
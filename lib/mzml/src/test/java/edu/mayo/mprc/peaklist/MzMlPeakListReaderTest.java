@@ -1,6 +1,7 @@
 package edu.mayo.mprc.peaklist;
 
 import edu.mayo.mprc.MprcException;
+import edu.mayo.mprc.mzml.MzMlPeakListReader;
 import edu.mayo.mprc.mzml.MzMlPeakListReaderFactory;
 import org.testng.Assert;
 import org.testng.annotations.Test;
@@ -8,6 +9,7 @@ import org.testng.annotations.Test;
 import java.io.File;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.util.List;
 
 /**
  * @author Roman Zenka
@@ -63,6 +65,28 @@ public final class MzMlPeakListReaderTest {
 				"scan=770\tPEPMASS=536.45917\tCHARGE=2+\n");
 	}
 
+	@Test
+	public void shouldLookupSpectrumById() {
+		final File file = fileFromClasspath("mzml/dta_example.mzML");
+		final MzMlPeakListReader reader = new MzMlPeakListReader(file, true);
+		final List<PeakList> peakLists = reader.getPeakLists("scan=10");
+		Assert.assertEquals(peakLists.size(), 2);
+		Assert.assertEquals(peakLists.get(0).getTitle(), "scan=10 charge=2");
+		Assert.assertEquals(peakLists.get(1).getTitle(), "scan=10 charge=3");
+		Assert.assertEquals(peakLists.get(1).getPepmass(), "PEPMASS=1082.5037");
+
+		// Random access must return the same peaks as sequential reading
+		final PeakListReader sequential = factory.createReader(file, true);
+		while (true) {
+			final PeakList peakList = sequential.nextPeakList();
+			Assert.assertNotNull(peakList, "Scan 10 not found");
+			if (peakList.getTitle().equals("scan=10 charge=2")) {
+				Assert.assertEquals(peakList.getPeaks().length, peakLists.get(0).getPeaks().length);
+				break;
+			}
+		}
+	}
+
 	private static File fileFromClasspath(final String path) {
 		try {
 			final URL url = ClassLoader.getSystemResource(path);
@@ -6,7 +6,7 @@ package edu.mayo.mprc.io.mgf;
 
 import com.google.common.base.Preconditions;
 import edu.mayo.mprc.MprcException;
-import edu.mayo.mprc.io.mzxml.MzXMLPeakListWriter;
+import edu.mayo.mprc.io.mzxml.IndexedMzXMLPeakListWriter;
 import edu.mayo.mprc.peaklist.PeakList;
 import edu.mayo.mprc.peaklist.PeakListReader;
 import edu.mayo.mprc.peaklist.PeakListReaders;
@@ -69,13 +69,13 @@ public final class MzXmlConverter {
 		/**
 		 * Reader and writer objects.
 		 */
-		MzXMLPeakListWriter mzXMLWriter = null;
+		IndexedMzXMLPeakListWriter mzXMLWriter = null;
 		PeakListReader inputReader = null;
 		final Map<Integer, String> mzXMLScanToMGFTitle = new HashMap<Integer, String>(1000);
 
 		try {
 			inputReader = readers.createReader(inputFile, true);
-			mzXMLWriter = new MzXMLPeakListWriter(mzXMLOutputFile, enable64BitPrecision);
+			mzXMLWriter = new IndexedMzXMLPeakListWriter(mzXMLOutputFile, enable64BitPrecision, false);
 
 			PeakList peakList = null;
 
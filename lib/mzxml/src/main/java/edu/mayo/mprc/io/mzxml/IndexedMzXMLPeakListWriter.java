@@ -0,0 +1,360 @@
+package edu.mayo.mprc.io.mzxml;
+
+import edu.mayo.mprc.MprcException;
+import edu.mayo.mprc.peaklist.PeakListWriter;
+import edu.mayo.mprc.utilities.FileUtilities;
+import org.proteomecommons.io.Peak;
+import org.proteomecommons.io.PeakList;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.Deflater;
+
+/**
+ * Writes indexed mzXML files directly as bytes.
+ * <p/>
+ * Same output as {@link MzXMLPeakListWriter}, but the peaks are packed into a reused buffer and Base64-encoded
+ * straight into the output buffer, without going through Strings and an {@link javax.xml.stream.XMLStreamWriter}.
+ * Since every byte passes through this writer, the byte offsets of the scans are known and the
+ * <c>&lt;index&gt;</c>, <c>&lt;indexOffset&gt;</c> and <c>&lt;sha1&gt;</c> elements are written when the file is closed.
+ * <p/>
+ * Optionally, the peaks can be zlib-compressed. Compressed peaks are not part of mzXML 2.1,
+ * the file then declares the mzXML 3.1 namespace.
+ *
+ * @author Roman Zenka
+ */
+public final class IndexedMzXMLPeakListWriter implements PeakListWriter {
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final int INITIAL_SCANS = 1024;
+	private static final String MZXML_2_1 = "http://sashimi.sourceforge.net/schema_revision/mzXML_2.1";
+	private static final String MZXML_3_1 = "http://sashimi.sourceforge.net/schema_revision/mzXML_3.1";
+	private static final byte[] BASE64 = toAscii("ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/");
+	private static final byte[] HEX = toAscii("0123456789abcdef");
+
+	private final boolean enable64BitPrecision;
+	private final boolean compress;
+
+	private final FileOutputStream stream;
+	private final FileChannel channel;
+	private final ByteBuffer buffer;
+	private final MessageDigest sha1;
+	private final Deflater deflater;
+
+	/**
+	 * Total bytes already written to the channel.
+	 */
+	private long flushed;
+	private long[] scanOffsets = new long[INITIAL_SCANS];
+	private int scanCount;
+
+	private ByteBuffer peakBytes = ByteBuffer.allocate(0);
+	private byte[] compressedBytes = new byte[0];
+
+	/**
+	 * @param outputFile           Where to write the mzXML.
+	 * @param enable64BitPrecision Write peaks as 64-bit doubles, otherwise as 32-bit floats.
+	 * @param compress             Compress the peaks with zlib.
+	 */
+	public IndexedMzXMLPeakListWriter(final File outputFile, final boolean enable64BitPrecision, final boolean compress) throws IOException {
+		this.enable64BitPrecision = enable64BitPrecision;
+		this.compress = compress;
+
+		try {
+			sha1 = MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException e) {
+			throw new MprcException("SHA-1 is not supported", e);
+		}
+		deflater = compress ? new Deflater() : null;
+
+		FileUtilities.ensureFileExists(outputFile);
+		stream = new FileOutputStream(outputFile);
+		channel = stream.getChannel();
+		buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+		final String namespace = compress ? MZXML_3_1 : MZXML_2_1;
+		final String schema = compress ? "mzXML_idx_3.1.xsd" : "mzXML_idx_2.1.xsd";
+		write("<?xml version=\"1.0\" ?>\n");
+		write("<mzXML xmlns=\"" + namespace + "\" xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\" xsi:schemaLocation=\""
+				+ namespace + " " + namespace + "/" + schema + "\">\n");
+		write("<msRun>");
+	}
+
+	@Override
+	public int writePeakList(final PeakList peakList) {
+		final Peak[] peaks = peakList.getPeaks();
+		final Peak parentPeak = peakList.getParentPeak();
+		if (parentPeak == null) {
+			throw new IllegalArgumentException("mzXML requires an intensity and mz values for precursor peaks.");
+		}
+		if (parentPeak.getIntensity() == Peak.UNKNOWN_INTENSITY) {
+			throw new IllegalArgumentException("mzXML requires an intensity value for precursor peaks.");
+		}
+		if (parentPeak.getMassOverCharge() == Peak.UNKNOWN_MZ) {
+			throw new IllegalArgumentException("mzXML requires an mz value for precursor peaks.");
+		}
+
+		final ByteBuffer bytes = preparePeakBytes(peaks.length);
+		for (final Peak peak : peaks) {
+			putPeak(bytes, peak.getMassOverCharge(), peak.getIntensity());
+		}
+
+		return writeScan(peakList.getTandemCount(), parentPeak.getMassOverCharge(), parentPeak.getIntensity(), parentPeak.getCharge(), peaks.length);
+	}
+
+	/**
+	 * Write a scan straight from primitive arrays.
+	 *
+	 * @param msLevel            MS level, {@link PeakList#UNKNOWN_TANDEM_COUNT} if not known.
+	 * @param precursorMz        Precursor m/z.
+	 * @param precursorIntensity Precursor intensity.
+	 * @param precursorCharge    Precursor charge, {@link Peak#UNKNOWN_CHARGE} if not known.
+	 * @param mz                 Peak m/z values.
+	 * @param intensity          Peak intensities.
+	 * @param peaksCount         How many peaks from the arrays to write.
+	 * @return Scan number written.
+	 */
+	public int writeScan(final int msLevel, final double precursorMz, final double precursorIntensity, final int precursorCharge,
+	                     final double[] mz, final double[] intensity, final int peaksCount) {
+		final ByteBuffer bytes = preparePeakBytes(peaksCount);
+		for (int i = 0; i < peaksCount; i++) {
+			putPeak(bytes, mz[i], intensity[i]);
+		}
+		return writeScan(msLevel, precursorMz, precursorIntensity, precursorCharge, peaksCount);
+	}
+
+	/**
+	 * @return Peak buffer in network byte order, cleared and large enough for given amount of peaks.
+	 */
+	private ByteBuffer preparePeakBytes(final int peaksCount) {
+		final int capacity = (enable64BitPrecision ? 64 / 8 : 32 / 8) * 2 * peaksCount;
+		if (peakBytes.capacity() < capacity) {
+			peakBytes = ByteBuffer.allocate(Math.max(capacity, peakBytes.capacity() * 2)).order(ByteOrder.BIG_ENDIAN);
+		}
+		peakBytes.clear();
+		return peakBytes;
+	}
+
+	private void putPeak(final ByteBuffer bytes, final double mz, final double intensity) {
+		if (enable64BitPrecision) {
+			bytes.putDouble(mz);
+			bytes.putDouble(intensity);
+		} else {
+			bytes.putFloat((float) mz);
+			bytes.putFloat((float) intensity);
+		}
+	}
+
+	/**
+	 * Write the scan, the peaks are already in {@link #peakBytes}.
+	 */
+	private int writeScan(final int msLevel, final double precursorMz, final double precursorIntensity, final int precursorCharge, final int peaksCount) {
+		try {
+			write("\n");
+			recordScanOffset();
+			final int scanNumber = scanCount;
+
+			write("<scan num=\"");
+			write(scanNumber);
+			write('"');
+			if (msLevel != PeakList.UNKNOWN_TANDEM_COUNT) {
+				write(" msLevel=\"");
+				write(msLevel);
+				write('"');
+			}
+			write(" peaksCount=\"");
+			write(peaksCount);
+			write("\">\n");
+
+			write("<precursorMz precursorIntensity=\"");
+			write(Float.toString((float) precursorIntensity));
+			write('"');
+			if (precursorCharge != Peak.UNKNOWN_CHARGE) {
+				write(" precursorCharge=\"");
+				write(precursorCharge);
+				write('"');
+			}
+			write('>');
+			write(Float.toString((float) precursorMz));
+			write("</precursorMz>\n");
+
+			write(enable64BitPrecision ? "<peaks precision=\"64\"" : "<peaks precision=\"32\"");
+			write(" byteOrder=\"network\" pairOrder=\"m/z-int\"");
+			if (compress) {
+				final int compressedLength = deflatePeaks();
+				write(" compressionType=\"zlib\" compressedLen=\"");
+				write(compressedLength);
+				write("\">");
+				writeBase64(compressedBytes, compressedLength);
+			} else {
+				write('>');
+				writeBase64(peakBytes.array(), peakBytes.position());
+			}
+			write("\n</peaks>\n</scan>");
+			return scanNumber;
+		} catch (IOException e) {
+			throw new MprcException("Could not write peaklist to mzXML file", e);
+		}
+	}
+
+	/**
+	 * Scan number must start at 1.
+	 */
+	private void recordScanOffset() {
+		if (scanCount == scanOffsets.length) {
+			final long[] newOffsets = new long[scanOffsets.length * 2];
+			System.arraycopy(scanOffsets, 0, newOffsets, 0, scanCount);
+			scanOffsets = newOffsets;
+		}
+		scanOffsets[scanCount] = getPosition();
+		scanCount++;
+	}
+
+	/**
+	 * @return Length of the compressed peaks in {@link #compressedBytes}.
+	 */
+	private int deflatePeaks() {
+		final int length = peakBytes.position();
+		deflater.reset();
+		deflater.setInput(peakBytes.array(), 0, length);
+		deflater.finish();
+		if (compressedBytes.length < length + length / 100 + 64) {
+			compressedBytes = new byte[length + length / 100 + 64];
+		}
+		int compressedLength = 0;
+		while (!deflater.finished()) {
+			if (compressedLength == compressedBytes.length) {
+				final byte[] larger = new byte[compressedBytes.length * 2];
+				System.arraycopy(compressedBytes, 0, larger, 0, compressedLength);
+				compressedBytes = larger;
+			}
+			compressedLength += deflater.deflate(compressedBytes, compressedLength, compressedBytes.length - compressedLength);
+		}
+		return compressedLength;
+	}
+
+	private void writeBase64(final byte[] data, final int length) throws IOException {
+		int i = 0;
+		for (; i + 2 < length; i += 3) {
+			ensureSpace(4);
+			final int triple = (data[i] & 0xff) << 16 | (data[i + 1] & 0xff) << 8 | (data[i + 2] & 0xff);
+			buffer.put(BASE64[triple >>> 18 & 0x3f]);
+			buffer.put(BASE64[triple >>> 12 & 0x3f]);
+			buffer.put(BASE64[triple >>> 6 & 0x3f]);
+			buffer.put(BASE64[triple & 0x3f]);
+		}
+		final int remaining = length - i;
+		if (remaining > 0) {
+			ensureSpace(4);
+			final int triple = (data[i] & 0xff) << 16 | (remaining == 2 ? (data[i + 1] & 0xff) << 8 : 0);
+			buffer.put(BASE64[triple >>> 18 & 0x3f]);
+			buffer.put(BASE64[triple >>> 12 & 0x3f]);
+			buffer.put(remaining == 2 ? BASE64[triple >>> 6 & 0x3f] : (byte) '=');
+			buffer.put((byte) '=');
+		}
+	}
+
+	private void write(final String text) throws IOException {
+		for (int i = 0; i < text.length(); i++) {
+			write(text.charAt(i));
+		}
+	}
+
+	private void write(final char c) throws IOException {
+		ensureSpace(1);
+		buffer.put((byte) c);
+	}
+
+	/**
+	 * Write a decimal number without going through a String.
+	 */
+	private void write(final long number) throws IOException {
+		if (number < 0) {
+			write('-');
+			write(-number);
+			return;
+		}
+		long divisor = 1;
+		while (divisor <= number / 10) {
+			divisor *= 10;
+		}
+		for (; divisor > 0; divisor /= 10) {
+			write((char) ('0' + number / divisor % 10));
+		}
+	}
+
+	private long getPosition() {
+		return flushed + buffer.position();
+	}
+
+	private void ensureSpace(final int bytes) throws IOException {
+		if (buffer.remaining() < bytes) {
+			flush();
+		}
+	}
+
+	private void flush() throws IOException {
+		buffer.flip();
+		sha1.update(buffer.array(), 0, buffer.limit());
+		while (buffer.hasRemaining()) {
+			flushed += channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	/**
+	 * Finish the msRun, write the scan index and the checksum of everything up to and including the <c>&lt;sha1&gt;</c> tag.
+	 */
+	@Override
+	public void close() {
+		if (!channel.isOpen()) {
+			return;
+		}
+		try {
+			write("</msRun>\n");
+			final long indexOffset = getPosition();
+			write("<index name=\"scan\">\n");
+			for (int i = 0; i < scanCount; i++) {
+				write("<offset id=\"");
+				write(i + 1);
+				write("\">");
+				write(scanOffsets[i]);
+				write("</offset>\n");
+			}
+			write("</index>\n");
+			write("<indexOffset>");
+			write(indexOffset);
+			write("</indexOffset>\n");
+			write("<sha1>");
+			flush();
+			for (final byte b : sha1.digest()) {
+				write((char) HEX[(b & 0xff) >>> 4]);
+				write((char) HEX[b & 0x0f]);
+			}
+			write("</sha1>\n");
+			write("</mzXML>\n");
+			flush();
+			stream.close();
+		} catch (IOException e) {
+			throw new MprcException("Could not close mzXML writer.", e);
+		} finally {
+			FileUtilities.closeQuietly(stream);
+			if (deflater != null) {
+				deflater.end();
+			}
+		}
+	}
+
+	private static byte[] toAscii(final String text) {
+		final byte[] bytes = new byte[text.length()];
+		for (int i = 0; i < text.length(); i++) {
+			bytes[i] = (byte) text.charAt(i);
+		}
+		return bytes;
+	}
+}
@@ -74,6 +74,13 @@ public final class TestMzXmlConverter {
 				"<precursorMz precursorIntensity=\"0.0\" precursorCharge=\"2\">234.567</precursorMz>\n" +
 				"<peaks precision=\"64\" byteOrder=\"network\" pairOrder=\"m/z-int\">QFuAAAAAAABAW8AAAAAAAEBrhmZmZmZmQGqJmZmZmZpAdKTMzMzMzUHnRYVio/NN\n" +
 				"</peaks>\n" +
-				"</scan></msRun></mzXML>", "The output mzXML is different");
+				"</scan></msRun>\n" +
+				"<index name=\"scan\">\n" +
+				"<offset id=\"1\">311</offset>\n" +
+				"<offset id=\"2\">577</offset>\n" +
+				"</index>\n" +
+				"<indexOffset>851</indexOffset>\n" +
+				"<sha1>a6e1e464450ae0f1b33c1f70f20b93ea175e2c7d</sha1>\n" +
+				"</mzXML>\n", "The output mzXML is different");
 	}
 }
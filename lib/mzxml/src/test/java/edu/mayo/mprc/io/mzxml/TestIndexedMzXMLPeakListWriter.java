@@ -0,0 +1,128 @@
+package edu.mayo.mprc.io.mzxml;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import edu.mayo.mprc.utilities.FileUtilities;
+import org.proteomecommons.io.Peak;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import javax.xml.bind.DatatypeConverter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * @author Roman Zenka
+ */
+public final class TestIndexedMzXMLPeakListWriter {
+	private static final Pattern OFFSET = Pattern.compile("<offset id=\"(\\d+)\">(\\d+)</offset>");
+	private static final Pattern INDEX_OFFSET = Pattern.compile("<indexOffset>(\\d+)</indexOffset>");
+	private static final Pattern SHA1 = Pattern.compile("<sha1>([0-9a-f]{40})</sha1>");
+	private static final Pattern COMPRESSED_PEAKS = Pattern.compile("compressedLen=\"(\\d+)\">([^\\n]*)\\n");
+	private static final int SCANS = 100;
+
+	@Test
+	public void shouldIndexScans() throws Exception {
+		final File folder = FileUtilities.createTempFolder();
+		try {
+			final File mzXml = new File(folder, "indexed.mzxml");
+			final IndexedMzXMLPeakListWriter writer = new IndexedMzXMLPeakListWriter(mzXml, true, false);
+			try {
+				for (int i = 0; i < SCANS; i++) {
+					final double[] mz = new double[i];
+					final double[] intensity = new double[i];
+					for (int peak = 0; peak < i; peak++) {
+						mz[peak] = 100.0 + peak;
+						intensity[peak] = 1000.0 * peak;
+					}
+					Assert.assertEquals(writer.writeScan(2, 500.0 + i, 0.0, 2, mz, intensity, i), i + 1);
+				}
+			} finally {
+				writer.close();
+			}
+
+			final byte[] bytes = Files.toByteArray(mzXml);
+			final String text = new String(bytes, Charsets.US_ASCII);
+
+			final Matcher offsets = OFFSET.matcher(text);
+			int scans = 0;
+			while (offsets.find()) {
+				scans++;
+				final int offset = Integer.parseInt(offsets.group(2));
+				Assert.assertTrue(text.startsWith("<scan num=\"" + offsets.group(1) + "\"", offset), "Offset of scan " + offsets.group(1) + " is wrong");
+			}
+			Assert.assertEquals(scans, SCANS);
+
+			final Matcher indexOffset = INDEX_OFFSET.matcher(text);
+			Assert.assertTrue(indexOffset.find());
+			Assert.assertTrue(text.startsWith("<index name=\"scan\">", Integer.parseInt(indexOffset.group(1))), "Index offset is wrong");
+
+			final Matcher sha1 = SHA1.matcher(text);
+			Assert.assertTrue(sha1.find());
+			final MessageDigest digest = MessageDigest.getInstance("SHA-1");
+			digest.update(bytes, 0, sha1.start(1));
+			Assert.assertEquals(sha1.group(1), DatatypeConverter.printHexBinary(digest.digest()).toLowerCase());
+		} finally {
+			FileUtilities.cleanupTempFile(folder);
+		}
+	}
+
+	@Test
+	public void shouldCompressPeaks() throws IOException, DataFormatException {
+		final File folder = FileUtilities.createTempFolder();
+		try {
+			final File mzXml = new File(folder, "compressed.mzxml");
+			final Random random = new Random(1);
+			final double[][] mzs = new double[SCANS][];
+			final double[][] intensities = new double[SCANS][];
+			final IndexedMzXMLPeakListWriter writer = new IndexedMzXMLPeakListWriter(mzXml, false, true);
+			try {
+				for (int i = 0; i < SCANS; i++) {
+					final int peaks = random.nextInt(200);
+					mzs[i] = new double[peaks];
+					intensities[i] = new double[peaks];
+					for (int peak = 0; peak < peaks; peak++) {
+						mzs[i][peak] = random.nextDouble() * 2000.0;
+						intensities[i][peak] = random.nextDouble() * 1.0E6;
+					}
+					writer.writeScan(2, 500.0, 1.0, Peak.UNKNOWN_CHARGE, mzs[i], intensities[i], peaks);
+				}
+			} finally {
+				writer.close();
+			}
+
+			final String text = Files.toString(mzXml, Charsets.US_ASCII);
+			Assert.assertTrue(text.contains("mzXML_3.1"), "Compressed peaks need mzXML 3.1");
+			final Matcher peaks = COMPRESSED_PEAKS.matcher(text);
+			int scan = 0;
+			while (peaks.find()) {
+				final byte[] compressed = DatatypeConverter.parseBase64Binary(peaks.group(2));
+				Assert.assertEquals(compressed.length, Integer.parseInt(peaks.group(1)));
+
+				final byte[] uncompressed = new byte[mzs[scan].length * 2 * 4];
+				final Inflater inflater = new Inflater();
+				inflater.setInput(compressed);
+				Assert.assertEquals(inflater.inflate(uncompressed), uncompressed.length);
+				Assert.assertTrue(inflater.finished());
+				inflater.end();
+
+				final ByteBuffer buffer = ByteBuffer.wrap(uncompressed);
+				for (int peak = 0; peak < mzs[scan].length; peak++) {
+					Assert.assertEquals(buffer.getFloat(), (float) mzs[scan][peak]);
+					Assert.assertEquals(buffer.getFloat(), (float) intensities[scan][peak]);
+				}
+				scan++;
+			}
+			Assert.assertEquals(scan, SCANS);
+		} finally {
+			FileUtilities.cleanupTempFile(folder);
+		}
+	}
+}
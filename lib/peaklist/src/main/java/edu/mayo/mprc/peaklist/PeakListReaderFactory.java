@@ -19,4 +19,13 @@ public interface PeakListReaderFactory {
 	 * @return The reader.
 	 */
 	PeakListReader createReader(File file, boolean readPeaks);
+
+	/**
+	 * Create a reader that fills {@link PrimitivePeakList} objects instead of creating new {@link PeakList} for each spectrum.
+	 *
+	 * @param file      File to read from.
+	 * @param readPeaks True if the reader should actually provide the peaks for each spectrum.
+	 * @return The reader.
+	 */
+	PrimitivePeakListReader createPrimitiveReader(File file, boolean readPeaks);
 }
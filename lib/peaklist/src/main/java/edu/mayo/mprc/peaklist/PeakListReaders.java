@@ -27,12 +27,20 @@ public final class PeakListReaders {
 	}
 
 	public PeakListReader createReader(final File file, final boolean readPeaks) {
+		return getFactory(file).createReader(file, readPeaks);
+	}
+
+	public PrimitivePeakListReader createPrimitiveReader(final File file, final boolean readPeaks) {
+		return getFactory(file).createPrimitiveReader(file, readPeaks);
+	}
+
+	private PeakListReaderFactory getFactory(final File file) {
 		final String extension = FileUtilities.getExtension(file.getName());
 		final PeakListReaderFactory factory = factories.get(extension);
 		if (factory == null) {
 			throw new MprcException("No peak list reader able to read [" + file.getAbsolutePath() + "] - unsupported extension [" + extension + "]");
 		}
-		return factory.createReader(file, readPeaks);
+		return factory;
 	}
 
 	public Collection<PeakListReaderFactory> getReaderFactories() {
@@ -0,0 +1,224 @@
+package edu.mayo.mprc.peaklist;
+
+import org.proteomecommons.io.GenericPeak;
+import org.proteomecommons.io.Peak;
+
+import java.util.Arrays;
+
+/**
+ * A list of peaks stored as two parallel primitive arrays, with the precursor information already parsed to numbers.
+ * <p/>
+ * Unlike {@link PeakList}, no object is allocated per peak, and a single instance can be reused for reading
+ * a whole file - the arrays only grow when a spectrum larger than any previous one is encountered.
+ * Use {@link #toPeakList()} to hand the data to code that expects the {@link PeakList}.
+ *
+ * @author Roman Zenka
+ */
+public final class PrimitivePeakList {
+	/**
+	 * Charge of the precursor is not known.
+	 */
+	public static final int UNKNOWN_CHARGE = 0;
+	/**
+	 * Precursor m/z or intensity is not known.
+	 */
+	public static final double UNKNOWN_VALUE = 0.0;
+
+	private static final int INITIAL_CAPACITY = 64;
+	private static final double[] EMPTY = new double[0];
+
+	private String title;
+	private double precursorMz;
+	private double precursorIntensity;
+	private int charge;
+	private int tandemCount;
+
+	private double[] mz = EMPTY;
+	private double[] intensity = EMPTY;
+	private int size;
+
+	public PrimitivePeakList() {
+		clear();
+	}
+
+	/**
+	 * Reset the peak list so it can be filled with a new spectrum. The peak arrays are kept for reuse.
+	 */
+	public void clear() {
+		title = null;
+		precursorMz = UNKNOWN_VALUE;
+		precursorIntensity = UNKNOWN_VALUE;
+		charge = UNKNOWN_CHARGE;
+		tandemCount = PeakList.UNKNOWN_TANDEM_COUNT;
+		size = 0;
+	}
+
+	/**
+	 * Append a peak, growing the arrays if needed.
+	 */
+	public void addPeak(final double peakMz, final double peakIntensity) {
+		if (size == mz.length) {
+			final int capacity = Math.max(INITIAL_CAPACITY, size * 2);
+			mz = Arrays.copyOf(mz, capacity);
+			intensity = Arrays.copyOf(intensity, capacity);
+		}
+		mz[size] = peakMz;
+		intensity[size] = peakIntensity;
+		size++;
+	}
+
+	/**
+	 * Replace all peaks with given arrays. The arrays are used directly, not copied, so the caller must not
+	 * modify them afterwards.
+	 *
+	 * @param mz        m/z values.
+	 * @param intensity Intensities, must be at least as long as m/z array.
+	 */
+	public void setPeaks(final double[] mz, final double[] intensity) {
+		if (mz.length > intensity.length) {
+			throw new IllegalArgumentException("There are " + mz.length + " m/z values, but only " + intensity.length + " intensities");
+		}
+		this.mz = mz;
+		this.intensity = intensity;
+		size = mz.length;
+	}
+
+	/**
+	 * Make this peak list the same as another one. The peak arrays end up shared by both lists.
+	 */
+	public void setFrom(final PrimitivePeakList other) {
+		title = other.title;
+		precursorMz = other.precursorMz;
+		precursorIntensity = other.precursorIntensity;
+		charge = other.charge;
+		tandemCount = other.tandemCount;
+		mz = other.mz;
+		intensity = other.intensity;
+		size = other.size;
+	}
+
+	/**
+	 * @return Number of peaks.
+	 */
+	public int size() {
+		return size;
+	}
+
+	public double getMz(final int index) {
+		return mz[index];
+	}
+
+	public double getIntensity(final int index) {
+		return intensity[index];
+	}
+
+	/**
+	 * @return The m/z array. Only the first {@link #size()} values are valid.
+	 */
+	public double[] getMzArray() {
+		return mz;
+	}
+
+	/**
+	 * @return The intensity array. Only the first {@link #size()} values are valid.
+	 */
+	public double[] getIntensityArray() {
+		return intensity;
+	}
+
+	public String getTitle() {
+		return title;
+	}
+
+	public void setTitle(final String title) {
+		this.title = title;
+	}
+
+	/**
+	 * @return Precursor m/z, {@link #UNKNOWN_VALUE} if not known.
+	 */
+	public double getPrecursorMz() {
+		return precursorMz;
+	}
+
+	public void setPrecursorMz(final double precursorMz) {
+		this.precursorMz = precursorMz;
+	}
+
+	/**
+	 * @return Precursor intensity, {@link #UNKNOWN_VALUE} if not known.
+	 */
+	public double getPrecursorIntensity() {
+		return precursorIntensity;
+	}
+
+	public void setPrecursorIntensity(final double precursorIntensity) {
+		this.precursorIntensity = precursorIntensity;
+	}
+
+	/**
+	 * @return Precursor charge, negative for negative ions, {@link #UNKNOWN_CHARGE} if not known.
+	 */
+	public int getCharge() {
+		return charge;
+	}
+
+	public void setCharge(final int charge) {
+		this.charge = charge;
+	}
+
+	public int getTandemCount() {
+		return tandemCount;
+	}
+
+	public void setTandemCount(final int tandemCount) {
+		this.tandemCount = tandemCount;
+	}
+
+	/**
+	 * Convert to a {@link PeakList}, formatting the precursor information the way the .mgf format has it
+	 * ({@code PEPMASS=123.45}, {@code CHARGE=2+}).
+	 *
+	 * @param includePeaks When false, the resulting peak list has no peaks (and no peak objects are allocated).
+	 * @return Newly created peak list.
+	 */
+	public PeakList toPeakList(final boolean includePeaks) {
+		final PeakList peakList = new PeakList();
+		peakList.setTitle(title);
+		peakList.setTandemCount(tandemCount);
+		if (precursorMz != UNKNOWN_VALUE) {
+			peakList.setPepmass("PEPMASS=" + formatNumber(precursorMz));
+		}
+		if (charge != UNKNOWN_CHARGE) {
+			peakList.setCharge("CHARGE=" + Math.abs(charge) + (charge > 0 ? "+" : "-"));
+		}
+		if (includePeaks) {
+			final Peak[] peaks = new Peak[size];
+			for (int i = 0; i < size; i++) {
+				final GenericPeak peak = new GenericPeak();
+				peak.setMassOverCharge(mz[i]);
+				peak.setIntensity(intensity[i]);
+				peaks[i] = peak;
+			}
+			peakList.setPeaks(peaks);
+		}
+		return peakList;
+	}
+
+	public PeakList toPeakList() {
+		return toPeakList(true);
+	}
+
+	/**
+	 * Format a number without the trailing {@code .0} Java adds to whole numbers.
+	 */
+	private static String formatNumber(final double value) {
+		final String s = Double.toString(value);
+		return s.endsWith(".0") ? s.substring(0, s.length() - 2) : s;
+	}
+
+	@Override
+	public String toString() {
+		return "PrimitivePeakList{title='" + title + "', precursorMz=" + precursorMz + ", charge=" + charge + ", size=" + size + '}';
+	}
+}
@@ -0,0 +1,41 @@
+package edu.mayo.mprc.peaklist;
+
+import java.io.IOException;
+
+/**
+ * Makes a {@link PrimitivePeakListReader} look like a regular {@link PeakListReader}, for the code
+ * that works with {@link PeakList} objects.
+ *
+ * @author Roman Zenka
+ */
+public final class PrimitivePeakListAdapter implements PeakListReader {
+	private final PrimitivePeakListReader reader;
+	private final PrimitivePeakList peakList = new PrimitivePeakList();
+
+	public PrimitivePeakListAdapter(final PrimitivePeakListReader reader) {
+		this.reader = reader;
+	}
+
+	@Override
+	public PeakList nextPeakList() {
+		if (!reader.nextPeakList(peakList)) {
+			return null;
+		}
+		return peakList.toPeakList(reader.isReadPeaks());
+	}
+
+	@Override
+	public boolean isReadPeaks() {
+		return reader.isReadPeaks();
+	}
+
+	@Override
+	public void setReadPeaks(final boolean readPeaks) {
+		reader.setReadPeaks(readPeaks);
+	}
+
+	@Override
+	public void close() throws IOException {
+		reader.close();
+	}
+}
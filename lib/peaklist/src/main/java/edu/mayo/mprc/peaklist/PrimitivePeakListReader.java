@@ -0,0 +1,29 @@
+package edu.mayo.mprc.peaklist;
+
+import java.io.Closeable;
+
+/**
+ * Reads spectra into a caller-provided {@link PrimitivePeakList}, so reading a whole file does not need
+ * to allocate per-spectrum or per-peak objects.
+ *
+ * @author Roman Zenka
+ */
+public interface PrimitivePeakListReader extends Closeable {
+	/**
+	 * Read the next peak list from the file.
+	 *
+	 * @param peakList Peak list to fill in. Its previous contents are discarded.
+	 * @return False if we are at the end of the file. The peak list is then left in an undefined state.
+	 */
+	boolean nextPeakList(PrimitivePeakList peakList);
+
+	/**
+	 * @return True if this reader actually reads the peak information (otherwise it reads just the headers)
+	 */
+	boolean isReadPeaks();
+
+	/**
+	 * @param readPeaks When true, the reader will also read the actual peaks.
+	 */
+	void setReadPeaks(boolean readPeaks);
+}
@@ -19,10 +19,8 @@ public final class ScaffoldQaSpectraReader extends ScaffoldReportReader implemen
 	private String[] header;
 	private String emptyLine;
 	private int spectrumNameColumn;
-	private final StringBuilder sb;
 
 	public ScaffoldQaSpectraReader() {
-		sb = new StringBuilder(1000);
 	}
 
 	@Override
@@ -64,31 +62,9 @@ public final class ScaffoldQaSpectraReader extends ScaffoldReportReader implemen
 	}
 
 	@Override
-	public boolean processRow(final String line) {
-		sb.setLength(0);
-		int columnNumber = 0;
-		int spectrumNameStart = 0;
-		String spectrumName = null;
-		for (int i = 0; i < line.length(); i++) {
-			if (line.charAt(i) == '\t') {
-				columnNumber++;
-				if (columnNumber == spectrumNameColumn) {
-					// This is the column we are skipping
-					// Append everything till now to the output
-					sb.append(line, 0, i);
-					spectrumNameStart = i + 1;
-				} else if (columnNumber == spectrumNameColumn + 1) {
-					// We are past the column to skip
-					// Spectrum name is in between
-					spectrumName = line.substring(spectrumNameStart, i);
-
-					// Append everything from here to the end of the string (including the tab)
-					sb.append(line, i, line.length());
-					break;
-				}
-			}
-		}
-		mapSpectrumNameToScaffoldSpectraInfo.put(spectrumName, fixCommaSeparatedThousands(sb.toString()));
+	public boolean processRow() {
+		final String spectrumName = getString(spectrumNameColumn);
+		mapSpectrumNameToScaffoldSpectraInfo.put(spectrumName, fixCommaSeparatedThousands(getCurrentLineWithout(spectrumNameColumn)));
 		return true;
 	}
 
@@ -2,16 +2,15 @@ package edu.mayo.mprc.scaffoldparser.spectra;
 
 import com.google.common.base.Splitter;
 import com.google.common.collect.ImmutableMap;
-import com.google.common.io.CountingInputStream;
 import edu.mayo.mprc.MprcException;
-import edu.mayo.mprc.utilities.BufferedEofReader;
-import edu.mayo.mprc.utilities.FileUtilities;
+import edu.mayo.mprc.io.ByteTsvReader;
 import edu.mayo.mprc.utilities.progress.PercentDoneReporter;
 import edu.mayo.mprc.utilities.progress.ProgressReporter;
 import edu.mayo.mprc.utilities.progress.UserProgressReporter;
 
-import java.io.*;
-import java.util.Iterator;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
 import java.util.Locale;
 import java.util.Map;
 import java.util.regex.Matcher;
@@ -27,7 +26,8 @@ import java.util.regex.Pattern;
  * <li>metadata processed a line at a time with {@link #processMetadata}</li>
  * <li>blank line</li>
  * <li>header line processed with {@link #processHeader}</li>
- * <li>data processed with {@link #processRow}</li>
+ * <li>data processed with {@link #processRow}, the columns of the current row are accessed using {@link #getString},
+ * {@link #getInt}, {@link #getDouble} etc.</li>
  * <li>{@code END OF FILE} - when missing, file is terminated prematurely</li>
  * </ul>
  *
@@ -58,29 +58,21 @@ public abstract class ScaffoldReportReader {
 	 */
 	private String dataSourceName;
 
-	/**
-	 * Current line number for exception handling.
-	 */
-	private int lineNumber;
-
 	/**
 	 * Total size of the input in bytes, <0 if not known.
 	 */
 	private long totalBytesToRead;
 
 	/**
-	 * A counting input stream wrapping the provided data source so we can report progress.
+	 * Reader of the data source. Parses the current row into columns.
 	 */
-	private CountingInputStream countingInputStream;
+	private ByteTsvReader reader;
 
 	/**
 	 * We use this to report percent done.
 	 */
 	private PercentDoneReporter percentDoneReporter;
 
-	// Current line parsed into columns, with data in fields trimmed
-	protected String[] currentLine;
-
 
 	// Scaffold files are terminated with this marker
 	private static final String END_OF_FILE = "END OF FILE";
@@ -149,14 +141,6 @@ public abstract class ScaffoldReportReader {
 	protected ScaffoldReportReader() {
 	}
 
-	protected static int parseInt(final String s) {
-		try {
-			return Integer.parseInt(fixCommaSeparatedThousands(s));
-		} catch (NumberFormatException e) {
-			throw new MprcException("Cannot parse number [" + s + "] as integer.", e);
-		}
-	}
-
 	/**
 	 * Extract database name from Scaffold export. The database is specified as "the WHATEVER database"
 	 *
@@ -184,22 +168,6 @@ public abstract class ScaffoldReportReader {
 		return value + ".fasta";
 	}
 
-	public void initializeCurrentLine(final Map<String, Integer> columnMap) {
-		int numColumns = columnMap.size();
-		currentLine = new String[numColumns];
-	}
-
-	public void fillCurrentLine(final String line) {
-		final Iterator<String> iterator = getColumnNames(line).iterator();
-		for (int i = 0; i < currentLine.length; i++) {
-			if (iterator.hasNext()) {
-				currentLine[i] = iterator.next();
-			} else {
-				currentLine[i] = "";
-			}
-		}
-	}
-
 	public static Map<String, Integer> buildColumnMap(final String line) {
 		final ImmutableMap.Builder<String, Integer> builder = new ImmutableMap.Builder<String, Integer>();
 		int position = 0;
@@ -252,7 +220,7 @@ public abstract class ScaffoldReportReader {
 			// The processing method will close the stream
 			processStream(new FileInputStream(scaffoldSpectraFile), reporter);
 		} catch (Exception t) {
-			throw new MprcException("Cannot parse Scaffold spectra file [" + dataSourceName + "], error at line " + lineNumber, t);
+			throw new MprcException("Cannot parse Scaffold spectra file [" + dataSourceName + "], error at line " + getLineNumber(), t);
 		}
 	}
 
@@ -272,30 +240,23 @@ public abstract class ScaffoldReportReader {
 		try {
 			processStream(stream, reporter);
 		} catch (Exception t) {
-			throw new MprcException("Cannot parse Scaffold spectra file [" + dataSourceName + "], error at line " + lineNumber, t);
+			throw new MprcException("Cannot parse Scaffold spectra file [" + dataSourceName + "], error at line " + getLineNumber(), t);
 		}
 	}
 
-	private void processStream(final InputStream stream, final UserProgressReporter reporter) throws IOException {
-		final Reader reader;
+	private void processStream(final InputStream stream, final UserProgressReporter reporter) {
 		if (totalBytesToRead > 0 && reporter != null) {
-			countingInputStream = new CountingInputStream(stream);
-			reader = new InputStreamReader(countingInputStream);
 			percentDoneReporter = new PercentDoneReporter(reporter, "Parsing Scaffold spectra file: ");
-		} else {
-			reader = new InputStreamReader(stream);
 		}
-		BufferedReader br = null;
+		reader = new ByteTsvReader(stream);
 		try {
-			br = new BufferedReader(reader);
 			// Skip the header portion of the file, process the header line
 			String line;
 			while (true) {
-				line = br.readLine();
-				lineNumber++;
-				if (line == null) {
+				if (!reader.nextLine()) {
 					throw new MprcException("End of file reached before we could find the header line");
 				}
+				line = reader.getLine();
 
 				final int colonPos = line.indexOf(':');
 				if (colonPos >= 0) {
@@ -318,9 +279,9 @@ public abstract class ScaffoldReportReader {
 			if (!processHeader(line)) {
 				return;
 			}
-			loadContents(br);
+			loadContents();
 		} finally {
-			FileUtilities.closeQuietly(br);
+			reader.close();
 		}
 	}
 
@@ -342,34 +303,99 @@ public abstract class ScaffoldReportReader {
 	public abstract boolean processHeader(String line);
 
 	/**
-	 * Process one row from the spectra file.
+	 * Process one row from the spectra file. The columns, as defined by the header supplied
+	 * to {@link #processHeader(String)}, are accessed using {@link #getString}, {@link #getInt}, {@link #getDouble} etc.
 	 *
-	 * @param line Scaffold spectra row, tab-separated, format matches the header supplied by {@link #processHeader(String)}.
 	 * @return Whether to keep processing. False stops.
 	 */
-	public abstract boolean processRow(String line);
+	public abstract boolean processRow();
 
-	private void loadContents(final BufferedReader reader) throws IOException {
-		final BufferedEofReader eofReader = new BufferedEofReader(reader);
+	private void loadContents() {
 		while (true) {
-			final String line = eofReader.readLine();
-			lineNumber++;
-			if (END_OF_FILE.equals(line)) {
+			final boolean hasLine = reader.nextLine();
+			if (hasLine && reader.lineEquals(END_OF_FILE)) {
 				break;
 			}
-			if (line == null || eofReader.isEof()) {
+			if (!hasLine || reader.isLastLine()) {
 				// We are at the end of file, but have not reach the end of file mark!
 				throw new MprcException("Scaffold file is truncated - the " + END_OF_FILE + " marker not found");
 			}
-			if (!processRow(line)) {
+			if (!processRow()) {
 				break;
 			}
-			if (lineNumber % REPORT_FREQUENCY == 0 && percentDoneReporter != null) {
-				percentDoneReporter.reportProgress((float) ((double) countingInputStream.getCount() / (double) totalBytesToRead));
+			if (reader.getLineNumber() % REPORT_FREQUENCY == 0 && percentDoneReporter != null) {
+				percentDoneReporter.reportProgress((float) ((double) reader.getBytesRead() / (double) totalBytesToRead));
 			}
 		}
 	}
 
+	/**
+	 * @return Entire current row, as it appears in the file.
+	 */
+	protected String getCurrentLine() {
+		return reader.getLine();
+	}
+
+	/**
+	 * @return Number of columns in the current row.
+	 */
+	protected int getColumnCount() {
+		return reader.getColumnCount();
+	}
+
+	/**
+	 * @return Given column of the current row, trimmed. Empty string if the row is shorter.
+	 */
+	protected String getString(final int column) {
+		return reader.getTrimmedString(column);
+	}
+
+	/**
+	 * @return True if given column of the current row, trimmed, equals the value.
+	 */
+	protected boolean columnEquals(final int column, final String value) {
+		return reader.cellEquals(column, value);
+	}
+
+	/**
+	 * @return True if given column of the current row is empty.
+	 */
+	protected boolean isEmpty(final int column) {
+		return reader.isEmpty(column);
+	}
+
+	/**
+	 * @return Given column of the current row as an integer, with commas separating thousands allowed.
+	 */
+	protected int getInt(final int column) {
+		return reader.getInt(column);
+	}
+
+	/**
+	 * @return Given column of the current row as a double, with commas separating thousands and a trailing percent sign allowed.
+	 * NaN for empty column.
+	 */
+	protected double getDouble(final int column) {
+		return reader.getDouble(column);
+	}
+
+	/**
+	 * @return The current row without given column.
+	 */
+	protected String getCurrentLineWithout(final int column) {
+		if (column + 1 >= reader.getColumnCount()) {
+			return reader.getStringBefore(column);
+		}
+		return reader.getStringBefore(column) + '\t' + reader.getStringFrom(column + 1);
+	}
+
+	/**
+	 * @return Number of the line being processed, 0 if nothing was read yet.
+	 */
+	protected int getLineNumber() {
+		return reader == null ? 0 : reader.getLineNumber();
+	}
+
 	/**
 	 * Allows a parser to change the reported scaffold version.
 	 *
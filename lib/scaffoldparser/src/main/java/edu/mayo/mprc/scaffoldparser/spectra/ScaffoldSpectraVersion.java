@@ -34,7 +34,7 @@ public final class ScaffoldSpectraVersion extends ScaffoldReportReader {
 	}
 
 	@Override
-	public boolean processRow(final String line) {
+	public boolean processRow() {
 		// Stop processing
 		return false;
 	}
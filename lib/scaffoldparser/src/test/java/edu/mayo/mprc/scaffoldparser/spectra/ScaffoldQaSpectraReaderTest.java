@@ -29,4 +29,16 @@ public final class ScaffoldQaSpectraReaderTest {
 			throw e;
 		}
 	}
+
+	@Test
+	public void shouldSkipSpectrumName() {
+		final ScaffoldQaSpectraReader reader = new ScaffoldQaSpectraReader();
+		final String input = "Scaffold\r\n\r\nExperiment name\tSpectrum name\tCol3\r\nData1\t spectrum.dta \t1,234\r\nData4\tother.dta\tData6\r\nEND OF FILE\r\n";
+		final byte[] bytes = input.getBytes(Charsets.US_ASCII);
+		reader.load(new ByteArrayInputStream(bytes), bytes.length, "huh", "3.6.2", null);
+
+		Assert.assertEquals(reader.getHeaderLine(), "Experiment name\tCol3");
+		Assert.assertEquals(reader.getLineForKey("spectrum.dta"), "Data1\t1234");
+		Assert.assertEquals(reader.getLineForKey("other.dta"), "Data4\tData6");
+	}
 }
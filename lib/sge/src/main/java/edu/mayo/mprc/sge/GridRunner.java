@@ -1,8 +1,7 @@
 package edu.mayo.mprc.sge;
 
 import com.google.common.base.Strings;
-import com.thoughtworks.xstream.XStream;
-import com.thoughtworks.xstream.io.xml.DomDriver;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import edu.mayo.mprc.MprcException;
 import edu.mayo.mprc.config.*;
 import edu.mayo.mprc.config.ui.FactoryDescriptor;
@@ -22,9 +21,11 @@ import org.springframework.stereotype.Component;
 import javax.annotation.Resource;
 import java.io.*;
 import java.text.MessageFormat;
-import java.util.Date;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
@@ -32,6 +33,16 @@ import java.util.concurrent.atomic.AtomicLong;
  * The {@link SgePacket} is
  * saved as a shared xml file and a {@link File} URI that represents the shared xml file
  * is sent through the Grid.
+ * <p/>
+ * Starting a grid job and a JVM for every packet is expensive for short tasks. The runner can instead
+ * <ul>
+ * <li>batch packets - packets with same grid requirements that arrive within {@link #BATCH_WAIT_MILLIS}
+ * are processed by a single grid job, up to {@link #getBatchSize()} packets per job</li>
+ * <li>use persistent grid workers - up to {@link #getGridWorkers()} grid jobs keep taking single-core packets from
+ * a shared {@link SgePacketQueue} until there is no work for {@link #getWorkerIdleTime()} seconds</li>
+ * </ul>
+ * In both cases, the grid job reports completion of each packet, the end of the grid job only
+ * resolves packets that did not get reported.
  */
 public final class GridRunner extends AbstractRunner {
 
@@ -42,6 +53,15 @@ public final class GridRunner extends AbstractRunner {
 	private static final String NATIVE_SPECIFICATION = "nativeSpecification";
 	private static final String MEMORY_REQUIREMENT = "memoryRequirement";
 	private static final String QUEUE_NAME = "queueName";
+	private static final String BATCH_SIZE = "batchSize";
+	private static final String GRID_WORKERS = "gridWorkers";
+	private static final String WORKER_IDLE_TIME = "workerIdleTime";
+
+	public static final int DEFAULT_WORKER_IDLE_TIME = 60;
+	/**
+	 * How long do we wait for more packets before we submit an incomplete batch.
+	 */
+	private static final long BATCH_WAIT_MILLIS = 2000;
 
 	private boolean enabled;
 	private boolean operational;
@@ -54,6 +74,21 @@ public final class GridRunner extends AbstractRunner {
 	private String memoryRequirement;
 	private String wrapperScript;
 
+	private int batchSize = 1;
+	private int gridWorkers;
+	private int workerIdleTime = DEFAULT_WORKER_IDLE_TIME;
+
+	// Batches still accepting packets, keyed by the grid requirements. Guarded by itself.
+	private final Map<String, Batch> openBatches = new HashMap<String, Batch>();
+	private ScheduledExecutorService batchTimer;
+
+	// Requests taken by the persistent grid workers. Guarded by itself, as are the fields below.
+	private final List<GridRequest> workerRequests = new ArrayList<GridRequest>();
+	private SgePacketQueue workerQueue;
+	private int liveWorkers;
+	// Grid jobs of the live workers, by worker id
+	private final Map<String, WorkerJob> workerJobs = new HashMap<String, WorkerJob>();
+
 	private ResourceConfig workerFactoryConfig;
 
 	private GridScriptFactory gridScriptFactory;
@@ -80,6 +115,13 @@ public final class GridRunner extends AbstractRunner {
 	public void stop() {
 		// Disables message processing
 		enabled = false;
+		submitOpenBatches();
+		synchronized (openBatches) {
+			if (batchTimer != null) {
+				batchTimer.shutdownNow();
+				batchTimer = null;
+			}
+		}
 		serviceFactory.stop();
 		manager.stop();
 		super.stop();
@@ -93,6 +135,21 @@ public final class GridRunner extends AbstractRunner {
 
 	@Override
 	protected void processRequest(final DaemonRequest request) {
+		final WorkPacket workPacket = request.getWorkPacket();
+		final int cores = workPacket instanceof CoreRequirements ? ((CoreRequirements) workPacket).getNumRequiredCores() : 0;
+		if (gridWorkers > 0 && cores <= 1) {
+			queueForWorkers(request);
+		} else if (batchSize > 1) {
+			addToBatch(request, cores);
+		} else {
+			submitSingle(request);
+		}
+	}
+
+	/**
+	 * Run the request as its own grid job.
+	 */
+	private void submitSingle(final DaemonRequest request) {
 		final GridWorkPacket gridWorkPacket = getBaseGridWorkPacket(gridScriptFactory.getApplicationName(wrapperScript));
 		final File sgePacketFile = new File(getSharedTempDirectory(), queueName + "_" + uniqueId.incrementAndGet());
 
@@ -100,14 +157,7 @@ public final class GridRunner extends AbstractRunner {
 			final SgeMessageListener allocatorListener = new SgeMessageListener(request);
 			final WorkPacket workPacket = request.getWorkPacket();
 
-			final SgePacket sgePacket =
-					new SgePacket(
-							serviceFactory.serializeRequest(workPacket, getDaemon().getResponseDispatcher(), allocatorListener)
-							, daemonConnection.getConnectionName()
-							, fileTokenFactory.getDaemonConfigInfo(),
-							getDaemonLoggerFactory().getLogFolder());
-
-			writeWorkerAllocatorInputObject(sgePacketFile, sgePacket);
+			SgePacketQueue.writePacket(sgePacketFile, createSgePacket(workPacket, allocatorListener));
 
 			final List<String> parameters = gridScriptFactory.getParameters(wrapperScript, sgePacketFile);
 			gridWorkPacket.setParameters(parameters);
@@ -123,26 +173,257 @@ public final class GridRunner extends AbstractRunner {
 			// Run the job
 			final String requestId = manager.passToGridEngine(gridWorkPacket);
 
-			// Report the information about the running task to the caller, making sure they get the task id and the logs
-			final AssignedTaskData data = new AssignedTaskData(requestId);
+			reportAssigned(request, requestId, gridWorkPacket);
+
+			// We are not done yet! The grid work packet's progress listener will get called when the state of the task changes,
+			// and either mark the task failed or successful.
+		} catch (Exception t) {
+			final DaemonException daemonException = processFailedJob(gridWorkPacket, sgePacketFile, t);
+			sendResponse(request, daemonException, true);
+			throw daemonException;
+		}
+	}
 
-			final RunnerProgressReporter reporter = new RunnerProgressReporter(this, request);
+	/**
+	 * Report the information about the running task to the caller, making sure they get the task id and the logs
+	 */
+	private void reportAssigned(final DaemonRequest request, final String jobId, final GridWorkPacket gridWorkPacket) {
+		final RunnerProgressReporter reporter = new RunnerProgressReporter(this, request);
 
-			// Report the assigned ID
-			reporter.reportProgress(data);
+		// Report the assigned ID
+		reporter.reportProgress(new AssignedTaskData(jobId));
 
-			final ParentLog log = getDaemonLoggerFactory().createLog(workPacket.getTaskId(), reporter);
+		final ParentLog log = getDaemonLoggerFactory().createLog(request.getWorkPacket().getTaskId(), reporter);
 
-			// Report that we spawned a child with its own SGE log, we use the SGE-based log paths for this
-			log.createChildLog(gridWorkPacket.getOutputLogFilePath(), gridWorkPacket.getErrorLogFilePath());
+		// Report that we spawned a child with its own SGE log, we use the SGE-based log paths for this
+		log.createChildLog(gridWorkPacket.getOutputLogFilePath(), gridWorkPacket.getErrorLogFilePath());
+	}
 
-			// We are not done yet! The grid work packet's progress listener will get called when the state of the task changes,
-			// and either mark the task failed or successful.
+	private SgePacket createSgePacket(final WorkPacket workPacket, final SgeMessageListener allocatorListener) {
+		return new SgePacket(
+				serviceFactory.serializeRequest(workPacket, getDaemon().getResponseDispatcher(), allocatorListener)
+				, daemonConnection.getConnectionName()
+				, fileTokenFactory.getDaemonConfigInfo(),
+				getDaemonLoggerFactory().getLogFolder());
+	}
+
+	/**
+	 * Add the request to a batch of requests with same grid requirements. Full batch gets submitted right away,
+	 * others once they waited for {@link #BATCH_WAIT_MILLIS}.
+	 */
+	private void addToBatch(final DaemonRequest request, final int cores) {
+		final WorkPacket workPacket = request.getWorkPacket();
+		final GridRequest gridRequest = new GridRequest(request);
+		Batch fullBatch = null;
+		try {
+			synchronized (openBatches) {
+				final String key = cores + ":" + workPacket.getPriority();
+				Batch batch = openBatches.get(key);
+				if (batch == null) {
+					final File folder = new File(getSharedTempDirectory(), queueName + "_batch_" + uniqueId.incrementAndGet());
+					batch = new Batch(key, cores, workPacket.getPriority(), new SgePacketQueue(folder));
+					openBatches.put(key, batch);
+					batch.setTimeout(getBatchTimer().schedule(batch, BATCH_WAIT_MILLIS, TimeUnit.MILLISECONDS));
+				}
+				gridRequest.setPacketFile(batch.getQueue().add(createSgePacket(workPacket, gridRequest.getListener())));
+				batch.add(gridRequest);
+				if (batch.size() >= batchSize) {
+					openBatches.remove(key);
+					batch.cancelTimeout();
+					fullBatch = batch;
+				}
+			}
 		} catch (Exception t) {
-			final DaemonException daemonException = processFailedJob(gridWorkPacket, sgePacketFile, t);
+			final DaemonException daemonException = new DaemonException("Failed adding work packet to a grid batch", t);
+			LOGGER.error(MprcException.getDetailedMessage(daemonException), daemonException);
+			sendResponse(request, daemonException, true);
+			throw daemonException;
+		}
+		if (fullBatch != null) {
+			submitBatch(fullBatch);
+		}
+	}
+
+	private ScheduledExecutorService getBatchTimer() {
+		synchronized (openBatches) {
+			if (batchTimer == null) {
+				batchTimer = Executors.newSingleThreadScheduledExecutor(
+						new ThreadFactoryBuilder()
+								.setDaemon(true)
+								.setNameFormat("grid-batch-" + queueName + "-%d")
+								.build());
+			}
+			return batchTimer;
+		}
+	}
+
+	private void submitOpenBatches() {
+		final List<Batch> batches;
+		synchronized (openBatches) {
+			batches = new ArrayList<Batch>(openBatches.values());
+			openBatches.clear();
+		}
+		for (final Batch batch : batches) {
+			batch.cancelTimeout();
+			submitBatch(batch);
+		}
+	}
+
+	/**
+	 * Submit a single grid job processing all packets of the batch.
+	 */
+	private void submitBatch(final Batch batch) {
+		final File folder = batch.getQueue().getDirectory();
+		final GridWorkPacket gridWorkPacket = getBaseGridWorkPacket(gridScriptFactory.getApplicationName(wrapperScript));
+		gridWorkPacket.setParameters(gridScriptFactory.getWorkerParameters(wrapperScript, folder, folder.getName(), 0));
+		gridWorkPacket.setListener(new BatchStateListener(batch));
+		gridWorkPacket.setPriority(batch.getPriority());
+		gridWorkPacket.setCoreRequirement(batch.getCores());
+
+		try {
+			final String jobId = manager.passToGridEngine(gridWorkPacket);
+			LOGGER.debug("Submitted batch of " + batch.size() + " packets as job " + jobId);
+			for (final GridRequest gridRequest : batch.getRequests()) {
+				reportAssigned(gridRequest.getRequest(), jobId, gridWorkPacket);
+			}
+		} catch (Exception t) {
+			final DaemonException daemonException = new DaemonException("Failed passing batch of " + batch.size()
+					+ " work packets to grid engine:\n" + gridWorkPacket.toString() + "\nPackets are kept in " + folder.getAbsolutePath(), t);
+			LOGGER.error(MprcException.getDetailedMessage(daemonException), daemonException);
+			for (final GridRequest gridRequest : batch.getRequests()) {
+				gridRequest.failed(daemonException);
+			}
+		}
+	}
+
+	/**
+	 * Add the request to the queue of the persistent grid workers. Start another worker if there is more work than workers.
+	 */
+	private void queueForWorkers(final DaemonRequest request) {
+		final GridRequest gridRequest = new GridRequest(request);
+		final boolean launch;
+		try {
+			synchronized (workerRequests) {
+				gridRequest.setPacketFile(getWorkerQueue().add(createSgePacket(request.getWorkPacket(), gridRequest.getListener())));
+				workerRequests.add(gridRequest);
+				launch = liveWorkers < Math.min(gridWorkers, workerRequests.size());
+				if (launch) {
+					liveWorkers++;
+				}
+			}
+		} catch (Exception t) {
+			final DaemonException daemonException = new DaemonException("Failed queuing work packet for grid workers", t);
+			LOGGER.error(MprcException.getDetailedMessage(daemonException), daemonException);
 			sendResponse(request, daemonException, true);
 			throw daemonException;
 		}
+		if (launch) {
+			launchWorker();
+		}
+	}
+
+	private SgePacketQueue getWorkerQueue() {
+		synchronized (workerRequests) {
+			if (workerQueue == null) {
+				workerQueue = new SgePacketQueue(new File(getSharedTempDirectory(), queueName + "_workers_" + uniqueId.incrementAndGet()));
+			}
+			return workerQueue;
+		}
+	}
+
+	/**
+	 * Submit a grid job that keeps taking packets from the worker queue.
+	 * The caller already counted the worker as live.
+	 */
+	private void launchWorker() {
+		final String workerId = "w" + uniqueId.incrementAndGet();
+		final GridWorkPacket gridWorkPacket = getBaseGridWorkPacket(gridScriptFactory.getApplicationName(wrapperScript));
+		gridWorkPacket.setParameters(gridScriptFactory.getWorkerParameters(wrapperScript, getWorkerQueue().getDirectory(), workerId, workerIdleTime));
+		gridWorkPacket.setListener(new WorkerStateListener(workerId));
+		final WorkerJob workerJob = new WorkerJob(gridWorkPacket);
+		synchronized (workerRequests) {
+			workerJobs.put(workerId, workerJob);
+		}
+		try {
+			final String jobId = manager.passToGridEngine(gridWorkPacket);
+			synchronized (workerRequests) {
+				workerJob.setJobId(jobId);
+			}
+			LOGGER.info("Started grid worker " + workerId + " as job " + jobId + " for " + queueName);
+		} catch (Exception t) {
+			LOGGER.error("Could not start grid worker " + workerId + " for " + queueName, t);
+			workerEnded(workerId, "Could not start grid worker: " + MprcException.getDetailedMessage(t), false);
+		}
+	}
+
+	/**
+	 * A worker job ended. Resolve the requests it left behind and start new workers if there is still work.
+	 *
+	 * @param workerId    Id of the worker.
+	 * @param message     Message for requests that failed because of the worker.
+	 * @param canRelaunch False if the worker failed. When no worker is left, the waiting requests fail
+	 *                    instead of starting a new worker that would likely fail the same way.
+	 */
+	private void workerEnded(final String workerId, final String message, final boolean canRelaunch) {
+		final List<GridRequest> done = new ArrayList<GridRequest>();
+		final List<GridRequest> failed = new ArrayList<GridRequest>();
+		int launch = 0;
+		synchronized (workerRequests) {
+			liveWorkers--;
+			workerJobs.remove(workerId);
+			for (final GridRequest gridRequest : workerRequests) {
+				switch (getWorkerQueue().getState(gridRequest.getPacketFile(), workerId)) {
+					case DONE:
+						done.add(gridRequest);
+						break;
+					case FAILED:
+					case ABANDONED:
+						failed.add(gridRequest);
+						break;
+					case WAITING:
+						if (!canRelaunch && liveWorkers == 0) {
+							// Nobody could take the packet later
+							FileUtilities.quietDelete(gridRequest.getPacketFile());
+							failed.add(gridRequest);
+						}
+						break;
+					default:
+						break;
+				}
+			}
+			if (canRelaunch) {
+				final int outstanding = workerRequests.size() - done.size() - failed.size();
+				launch = Math.max(0, Math.min(gridWorkers, outstanding) - liveWorkers);
+				liveWorkers += launch;
+			}
+		}
+		for (final GridRequest gridRequest : done) {
+			gridRequest.completed();
+		}
+		for (final GridRequest gridRequest : failed) {
+			gridRequest.failed(message);
+		}
+		for (int i = 0; i < launch; i++) {
+			launchWorker();
+		}
+	}
+
+	/**
+	 * A persistent worker claimed the packet of given request. Report the worker's grid job and logs,
+	 * same as {@link #submitSingle} does once a packet gets its own grid job.
+	 */
+	private void workerClaimed(final GridRequest gridRequest, final String workerId) {
+		final WorkerJob workerJob;
+		final String jobId;
+		synchronized (workerRequests) {
+			workerJob = workerJobs.get(workerId);
+			jobId = workerJob == null ? null : workerJob.getJobId();
+		}
+		if (workerJob == null) {
+			// Batch jobs were reported when submitted
+			return;
+		}
+		reportAssigned(gridRequest.getRequest(), jobId == null ? workerId : jobId, workerJob.getGridWorkPacket());
 	}
 
 	/**
@@ -167,18 +448,6 @@ public final class GridRunner extends AbstractRunner {
 		return null;
 	}
 
-	private static void writeWorkerAllocatorInputObject(final File file, final SgePacket object) throws IOException {
-		BufferedWriter bufferedWriter = null;
-
-		try {
-			final XStream xStream = new XStream(new DomDriver());
-			bufferedWriter = new BufferedWriter(new FileWriter(file));
-			bufferedWriter.write(xStream.toXML(object));
-		} finally {
-			FileUtilities.closeQuietly(bufferedWriter);
-		}
-	}
-
 	public void setServiceFactory(final ServiceFactory serviceFactory) {
 		this.serviceFactory = serviceFactory;
 	}
@@ -197,16 +466,25 @@ public final class GridRunner extends AbstractRunner {
 
 	/**
 	 * Listens to RMI calls from the process running within SGE. None of the messages is final.
+	 * <p/>
+	 * Grid workers processing a {@link SgePacketQueue} report claiming and completion of each packet. When the listener
+	 * belongs to such {@link GridRequest}, claiming, completion and failure are passed to it.
 	 */
 	private class SgeMessageListener implements ResponseListener {
 		private static final long serialVersionUID = 20090324L;
 		private DaemonRequest request;
+		private GridRequest gridRequest;
 		private Throwable lastThrowable;
 
 		SgeMessageListener(final DaemonRequest request) {
 			this.request = request;
 		}
 
+		SgeMessageListener(final DaemonRequest request, final GridRequest gridRequest) {
+			this.request = request;
+			this.gridRequest = gridRequest;
+		}
+
 		public synchronized Throwable getLastThrowable() {
 			return lastThrowable;
 		}
@@ -219,6 +497,16 @@ public final class GridRunner extends AbstractRunner {
 				synchronized (this) {
 					lastThrowable = (Throwable) response;
 				}
+				if (gridRequest != null) {
+					gridRequest.failed((Throwable) response);
+				}
+			} else if (gridRequest != null && response instanceof DaemonProgressMessage
+					&& ((DaemonProgressMessage) response).getProgress() == DaemonProgress.RequestCompleted) {
+				gridRequest.completed();
+			} else if (gridRequest != null && response instanceof DaemonProgressMessage
+					&& ((DaemonProgressMessage) response).getProgressData() instanceof AssignedTaskData) {
+				// The grid worker tells us its id, the caller needs the grid job id instead
+				workerClaimed(gridRequest, ((AssignedTaskData) ((DaemonProgressMessage) response).getProgressData()).getAssignedId());
 			} else {
 				// Not final - a progress message
 				sendResponse(request, response, false);
@@ -249,7 +537,7 @@ public final class GridRunner extends AbstractRunner {
 		 * @param w Work packet whose state changed
 		 */
 		@Override
-		public void stateChanged(final GridWorkPacket w) {
+		public synchronized void stateChanged(final GridWorkPacket w) {
 			if (w == null) {
 				return;
 			}
@@ -286,6 +574,251 @@ public final class GridRunner extends AbstractRunner {
 		}
 	}
 
+	/**
+	 * A request processed by a grid job together with other requests. Reported as done exactly once,
+	 * either by the message from the grid job or once the grid job ends.
+	 */
+	private final class GridRequest {
+		private final DaemonRequest request;
+		private final SgeMessageListener listener;
+		private File packetFile;
+		private boolean reported;
+
+		GridRequest(final DaemonRequest request) {
+			this.request = request;
+			listener = new SgeMessageListener(request, this);
+		}
+
+		public DaemonRequest getRequest() {
+			return request;
+		}
+
+		public SgeMessageListener getListener() {
+			return listener;
+		}
+
+		public File getPacketFile() {
+			return packetFile;
+		}
+
+		public void setPacketFile(final File packetFile) {
+			this.packetFile = packetFile;
+		}
+
+		private synchronized boolean markReported() {
+			if (reported) {
+				return false;
+			}
+			reported = true;
+			return true;
+		}
+
+		public void completed() {
+			if (markReported()) {
+				finished(this);
+				if (listener.getLastThrowable() == null) {
+					sendResponse(request, new DaemonProgressMessage(DaemonProgress.RequestCompleted), true);
+				} else {
+					sendResponse(request, new DaemonException(listener.getLastThrowable()), true);
+				}
+			}
+		}
+
+		public void failed(final String message) {
+			if (listener.getLastThrowable() == null) {
+				failed(new DaemonException(message));
+			} else {
+				failed(new DaemonException(message, listener.getLastThrowable()));
+			}
+		}
+
+		public void failed(final Throwable t) {
+			if (markReported()) {
+				finished(this);
+				LOGGER.warn("Grid packet failed, kept in " + packetFile.getParent());
+				sendResponse(request, t instanceof DaemonException ? t : new DaemonException(t), true);
+			}
+		}
+	}
+
+	private void finished(final GridRequest gridRequest) {
+		synchronized (workerRequests) {
+			workerRequests.remove(gridRequest);
+		}
+	}
+
+	/**
+	 * Requests processed by a single grid job.
+	 */
+	private final class Batch implements Runnable {
+		private final String key;
+		private final int cores;
+		private final int priority;
+		private final SgePacketQueue queue;
+		private final List<GridRequest> requests = new ArrayList<GridRequest>();
+		private ScheduledFuture<?> timeout;
+
+		Batch(final String key, final int cores, final int priority, final SgePacketQueue queue) {
+			this.key = key;
+			this.cores = cores;
+			this.priority = priority;
+			this.queue = queue;
+		}
+
+		public int getCores() {
+			return cores;
+		}
+
+		public int getPriority() {
+			return priority;
+		}
+
+		public SgePacketQueue getQueue() {
+			return queue;
+		}
+
+		public List<GridRequest> getRequests() {
+			return requests;
+		}
+
+		public void add(final GridRequest gridRequest) {
+			requests.add(gridRequest);
+		}
+
+		public int size() {
+			return requests.size();
+		}
+
+		public void setTimeout(final ScheduledFuture<?> timeout) {
+			this.timeout = timeout;
+		}
+
+		public void cancelTimeout() {
+			if (timeout != null) {
+				timeout.cancel(false);
+			}
+		}
+
+		/**
+		 * The batch waited long enough, submit it as it is.
+		 */
+		@Override
+		public void run() {
+			synchronized (openBatches) {
+				if (openBatches.get(key) != this) {
+					return;
+				}
+				openBatches.remove(key);
+			}
+			submitBatch(this);
+		}
+	}
+
+	/**
+	 * Resolves the requests of a batch that did not report back once the batch grid job ends.
+	 */
+	private final class BatchStateListener implements GridWorkPacketStateListener {
+		private final Batch batch;
+		private boolean reported;
+
+		BatchStateListener(final Batch batch) {
+			this.batch = batch;
+		}
+
+		private synchronized boolean markReported() {
+			if (reported) {
+				return false;
+			}
+			reported = true;
+			return true;
+		}
+
+		@Override
+		public void stateChanged(final GridWorkPacket w) {
+			if (w == null || !(w.getPassed() || w.getFailed()) || !markReported()) {
+				return;
+			}
+			final String workerId = batch.getQueue().getDirectory().getName();
+			for (final GridRequest gridRequest : batch.getRequests()) {
+				switch (batch.getQueue().getState(gridRequest.getPacketFile(), workerId)) {
+					case DONE:
+						gridRequest.completed();
+						break;
+					case FAILED:
+						gridRequest.failed("Grid packet processing failed");
+						break;
+					default:
+						gridRequest.failed("Grid job ended without processing the packet" + (w.getFailed() ? ": " + w.getErrorMessage() : ""));
+						break;
+				}
+			}
+			if (batch.getQueue().isEmpty()) {
+				FileUtilities.quietDelete(batch.getQueue().getDirectory());
+			} else {
+				LOGGER.warn("Retaining sge packet folder: " + batch.getQueue().getDirectory().getAbsolutePath());
+			}
+		}
+	}
+
+	/**
+	 * Resolves the requests a persistent grid worker left behind.
+	 */
+	private final class WorkerStateListener implements GridWorkPacketStateListener {
+		private final String workerId;
+		private boolean reported;
+
+		WorkerStateListener(final String workerId) {
+			this.workerId = workerId;
+		}
+
+		private synchronized boolean markReported() {
+			if (reported) {
+				return false;
+			}
+			reported = true;
+			return true;
+		}
+
+		@Override
+		public void stateChanged(final GridWorkPacket w) {
+			if (w == null || !(w.getPassed() || w.getFailed()) || !markReported()) {
+				return;
+			}
+			if (w.getPassed()) {
+				workerEnded(workerId, "Grid worker " + workerId + " ended without finishing the packet", true);
+			} else {
+				workerEnded(workerId, "Grid worker " + workerId + " failed: " + w.getErrorMessage(), false);
+			}
+		}
+	}
+
+	/**
+	 * Grid job running a persistent worker.
+	 */
+	private static final class WorkerJob {
+		private final GridWorkPacket gridWorkPacket;
+		private String jobId;
+
+		WorkerJob(final GridWorkPacket gridWorkPacket) {
+			this.gridWorkPacket = gridWorkPacket;
+		}
+
+		public GridWorkPacket getGridWorkPacket() {
+			return gridWorkPacket;
+		}
+
+		/**
+		 * @return Id of the grid job, null until the job is submitted.
+		 */
+		public String getJobId() {
+			return jobId;
+		}
+
+		public void setJobId(final String jobId) {
+			this.jobId = jobId;
+		}
+	}
+
 	@Override
 	public boolean isOperational() {
 		return operational || !enabled;
@@ -397,6 +930,30 @@ public final class GridRunner extends AbstractRunner {
 		this.fileTokenFactory = fileTokenFactory;
 	}
 
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	public void setBatchSize(final int batchSize) {
+		this.batchSize = batchSize;
+	}
+
+	public int getGridWorkers() {
+		return gridWorkers;
+	}
+
+	public void setGridWorkers(final int gridWorkers) {
+		this.gridWorkers = gridWorkers;
+	}
+
+	public int getWorkerIdleTime() {
+		return workerIdleTime;
+	}
+
+	public void setWorkerIdleTime(final int workerIdleTime) {
+		this.workerIdleTime = workerIdleTime;
+	}
+
 	public FailedJobManager getFailedJobManager() {
 		return failedJobManager;
 	}
@@ -410,6 +967,9 @@ public final class GridRunner extends AbstractRunner {
 		private String memoryRequirement;
 		private String nativeSpecification;
 		private String wrapperScript;
+		private int batchSize = 1;
+		private int gridWorkers;
+		private int workerIdleTime = DEFAULT_WORKER_IDLE_TIME;
 
 		public Config() {
 		}
@@ -450,6 +1010,30 @@ public final class GridRunner extends AbstractRunner {
 			this.wrapperScript = wrapperScript;
 		}
 
+		public int getBatchSize() {
+			return batchSize;
+		}
+
+		public void setBatchSize(final int batchSize) {
+			this.batchSize = batchSize;
+		}
+
+		public int getGridWorkers() {
+			return gridWorkers;
+		}
+
+		public void setGridWorkers(final int gridWorkers) {
+			this.gridWorkers = gridWorkers;
+		}
+
+		public int getWorkerIdleTime() {
+			return workerIdleTime;
+		}
+
+		public void setWorkerIdleTime(final int workerIdleTime) {
+			this.workerIdleTime = workerIdleTime;
+		}
+
 		@Override
 		public void save(final ConfigWriter writer) {
 			super.save(writer);
@@ -457,6 +1041,9 @@ public final class GridRunner extends AbstractRunner {
 			writer.put(MEMORY_REQUIREMENT, getMemoryRequirement(), "", "Memory requirements for the SGE queue");
 			writer.put(NATIVE_SPECIFICATION, getNativeSpecification(), "", "Native specification (additional parameters) for the SGE queue");
 			writer.put(WRAPPER_SCRIPT, getWrapperScript(), "A wrapper script that will ensure smooth execution of the Swift component (create/tear down environment). Takes the command to execute as its parameter.");
+			writer.put(BATCH_SIZE, getBatchSize(), 1, "How many work packets with same requirements can be processed by a single grid job");
+			writer.put(GRID_WORKERS, getGridWorkers(), 0, "How many persistent grid jobs can process single-core work packets one after another. 0 to run a grid job per packet");
+			writer.put(WORKER_IDLE_TIME, getWorkerIdleTime(), DEFAULT_WORKER_IDLE_TIME, "How many seconds does a persistent grid job wait for more work before it ends");
 		}
 
 		@Override
@@ -465,6 +1052,9 @@ public final class GridRunner extends AbstractRunner {
 			setMemoryRequirement(reader.get(MEMORY_REQUIREMENT, ""));
 			setNativeSpecification(reader.get(NATIVE_SPECIFICATION, ""));
 			setWrapperScript(reader.get(WRAPPER_SCRIPT));
+			setBatchSize(reader.getInteger(BATCH_SIZE, 1));
+			setGridWorkers(reader.getInteger(GRID_WORKERS, 0));
+			setWorkerIdleTime(reader.getInteger(WORKER_IDLE_TIME, DEFAULT_WORKER_IDLE_TIME));
 			super.load(reader);
 		}
 	}
@@ -494,6 +1084,10 @@ public final class GridRunner extends AbstractRunner {
 				runner.setNativeSpecification(config.getNativeSpecification());
 			}
 
+			runner.setBatchSize(Math.max(1, config.getBatchSize()));
+			runner.setGridWorkers(Math.max(0, config.getGridWorkers()));
+			runner.setWorkerIdleTime(Math.max(0, config.getWorkerIdleTime()));
+
 			runner.setGridScriptFactory(gridScriptFactory);
 			runner.setManager(gridEngineManager);
 			runner.setWrapperScript(getAbsoluteExecutablePath(config));
@@ -18,6 +18,15 @@ public final class GridScriptFactory {
 	private static final String LOG4J_CONFIGURATION = "log4j.configuration";
 	private static final String SWIFT_HOME = "swift.home";
 
+	/**
+	 * Id of a grid worker processing a {@link SgePacketQueue}.
+	 */
+	public static final String WORKER_ID = "swift.sge.workerId";
+	/**
+	 * How many seconds does a grid worker wait for new packets before it exits.
+	 */
+	public static final String WORKER_IDLE_SECONDS = "swift.sge.idleSeconds";
+
 	public String getJavaCommand() {
 		return javaCommand;
 	}
@@ -49,7 +58,23 @@ public final class GridScriptFactory {
 	// We need to pass certain system properties along to make sure logging will keep working
 
 	public List<String> getParameters(final String wrapper, final File serializedWorkPacket) {
-		final List<String> params = new ArrayList<String>(6);
+		return getParameters(wrapper, serializedWorkPacket, null, 0);
+	}
+
+	/**
+	 * Command line for a grid worker that keeps processing packets from a {@link SgePacketQueue}.
+	 *
+	 * @param wrapper     Wrapper script.
+	 * @param queue       Folder of the {@link SgePacketQueue}.
+	 * @param workerId    Id of the worker, used when claiming the packets.
+	 * @param idleSeconds How long to wait for new packets once the queue is empty.
+	 */
+	public List<String> getWorkerParameters(final String wrapper, final File queue, final String workerId, final int idleSeconds) {
+		return getParameters(wrapper, queue, workerId, idleSeconds);
+	}
+
+	private List<String> getParameters(final String wrapper, final File serializedWorkPacket, final String workerId, final int idleSeconds) {
+		final List<String> params = new ArrayList<String>(8);
 
 		if (isWrapper(wrapper)) {
 			params.add(getJavaCommand());
@@ -62,6 +87,11 @@ public final class GridScriptFactory {
 			params.add("-D" + SWIFT_HOME + "=" + System.getProperty(SWIFT_HOME));
 		}
 
+		if (workerId != null) {
+			params.add("-D" + WORKER_ID + "=" + workerId);
+			params.add("-D" + WORKER_IDLE_SECONDS + "=" + idleSeconds);
+		}
+
 		params.add("-Xmx512m");
 		params.add("-cp");
 		params.add(new File(swiftLibDirectory).getAbsolutePath() + "/*");
@@ -0,0 +1,202 @@
+package edu.mayo.mprc.sge;
+
+import com.thoughtworks.xstream.XStream;
+import com.thoughtworks.xstream.io.xml.DomDriver;
+import edu.mayo.mprc.MprcException;
+import edu.mayo.mprc.utilities.FileUtilities;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A folder of serialized {@link SgePacket} files shared between the {@link GridRunner} and the grid jobs.
+ * <p/>
+ * The runner adds packets, a grid job claims them one by one, processes them and removes them when done.
+ * A job claims a packet by renaming it to a name containing the worker id, so two jobs never process the same packet
+ * and the runner can tell which packets were being processed by a job that died.
+ * <p/>
+ * <ul>
+ * <li><code>123.xml</code> - waiting packet</li>
+ * <li><code>123.xml.w456</code> - packet claimed by worker <code>w456</code></li>
+ * <li><code>123.xml.failed</code> - packet that failed, kept for reproducing the problem</li>
+ * </ul>
+ *
+ * @author Roman Zenka
+ */
+public final class SgePacketQueue {
+	private static final String PACKET_EXTENSION = ".xml";
+	private static final String TEMP_EXTENSION = ".tmp";
+	private static final String FAILED_SUFFIX = ".failed";
+
+	private static final AtomicLong uniqueId = new AtomicLong(System.currentTimeMillis());
+
+	public enum PacketState {
+		/**
+		 * Nobody took the packet yet.
+		 */
+		WAITING,
+		/**
+		 * A worker is processing the packet.
+		 */
+		CLAIMED,
+		/**
+		 * The packet was claimed by the given worker, which is gone now.
+		 */
+		ABANDONED,
+		/**
+		 * The packet processing failed.
+		 */
+		FAILED,
+		/**
+		 * The packet was processed.
+		 */
+		DONE
+	}
+
+	private final File directory;
+
+	public SgePacketQueue(final File directory) {
+		this.directory = directory;
+	}
+
+	public File getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * Add a packet to the queue. The packet file appears in the queue only once fully written.
+	 *
+	 * @return The packet file.
+	 */
+	public File add(final SgePacket packet) {
+		FileUtilities.ensureFolderExists(directory);
+		final String name = String.valueOf(uniqueId.incrementAndGet());
+		final File tempFile = new File(directory, name + TEMP_EXTENSION);
+		final File packetFile = new File(directory, name + PACKET_EXTENSION);
+		try {
+			writePacket(tempFile, packet);
+		} catch (final IOException e) {
+			FileUtilities.quietDelete(tempFile);
+			throw new MprcException("Could not write grid packet " + tempFile.getAbsolutePath(), e);
+		}
+		if (!tempFile.renameTo(packetFile)) {
+			FileUtilities.quietDelete(tempFile);
+			throw new MprcException("Could not add grid packet " + packetFile.getAbsolutePath());
+		}
+		return packetFile;
+	}
+
+	/**
+	 * Take the oldest waiting packet.
+	 *
+	 * @param workerId Id of the worker claiming the packet.
+	 * @return The claimed file, null if no packet is waiting.
+	 */
+	public File claim(final String workerId) {
+		final File[] packets = directory.listFiles(new FilenameFilter() {
+			@Override
+			public boolean accept(final File dir, final String name) {
+				return name.endsWith(PACKET_EXTENSION);
+			}
+		});
+		if (packets == null) {
+			return null;
+		}
+		Arrays.sort(packets);
+		for (final File packet : packets) {
+			final File claimed = getClaimedFile(packet, workerId);
+			if (packet.renameTo(claimed)) {
+				return claimed;
+			}
+			// Somebody else was faster
+		}
+		return null;
+	}
+
+	/**
+	 * Remove a claimed packet that was processed.
+	 */
+	public void done(final File claimedFile) {
+		FileUtilities.quietDelete(claimedFile);
+	}
+
+	/**
+	 * Keep a claimed packet that failed to process.
+	 *
+	 * @return The file the packet was kept in.
+	 */
+	public File failed(final File claimedFile) {
+		final String name = claimedFile.getName();
+		final File failedFile = new File(directory, name.substring(0, name.lastIndexOf('.')) + FAILED_SUFFIX);
+		if (!claimedFile.renameTo(failedFile)) {
+			return claimedFile;
+		}
+		return failedFile;
+	}
+
+	/**
+	 * @param packetFile Packet file as returned by {@link #add}.
+	 * @param workerId   Id of a worker that is gone. Packets it claimed are reported as {@link PacketState#ABANDONED}.
+	 * @return State of the packet.
+	 */
+	public PacketState getState(final File packetFile, final String workerId) {
+		if (packetFile.exists()) {
+			return PacketState.WAITING;
+		}
+		final String prefix = packetFile.getName() + '.';
+		final String[] related = directory.list(new FilenameFilter() {
+			@Override
+			public boolean accept(final File dir, final String name) {
+				return name.startsWith(prefix);
+			}
+		});
+		if (related == null || related.length == 0) {
+			return PacketState.DONE;
+		}
+		PacketState state = PacketState.CLAIMED;
+		for (final String name : related) {
+			if (name.equals(packetFile.getName() + FAILED_SUFFIX)) {
+				return PacketState.FAILED;
+			}
+			if (workerId != null && name.equals(getClaimedFile(packetFile, workerId).getName())) {
+				state = PacketState.ABANDONED;
+			}
+		}
+		return state;
+	}
+
+	/**
+	 * @return True if there are no files left in the queue.
+	 */
+	public boolean isEmpty() {
+		final String[] files = directory.list();
+		return files == null || files.length == 0;
+	}
+
+	private File getClaimedFile(final File packetFile, final String workerId) {
+		return new File(directory, packetFile.getName() + '.' + workerId);
+	}
+
+	public static void writePacket(final File file, final SgePacket packet) throws IOException {
+		BufferedWriter bufferedWriter = null;
+		try {
+			final XStream xStream = new XStream(new DomDriver());
+			bufferedWriter = new BufferedWriter(new FileWriter(file));
+			bufferedWriter.write(xStream.toXML(packet));
+		} finally {
+			FileUtilities.closeQuietly(bufferedWriter);
+		}
+	}
+
+	public static SgePacket readPacket(final File file) throws IOException {
+		FileInputStream fileInputStream = null;
+		try {
+			final XStream xStream = new XStream(new DomDriver());
+			fileInputStream = new FileInputStream(file);
+			return (SgePacket) xStream.fromXML(fileInputStream);
+		} finally {
+			FileUtilities.closeQuietly(fileInputStream);
+		}
+	}
+}
@@ -5,21 +5,23 @@ import edu.mayo.mprc.config.DaemonConfig;
 import edu.mayo.mprc.config.DaemonConfigInfo;
 import edu.mayo.mprc.config.DependencyResolver;
 import edu.mayo.mprc.config.ServiceConfig;
-import edu.mayo.mprc.daemon.Daemon;
-import edu.mayo.mprc.daemon.DaemonConnection;
-import edu.mayo.mprc.daemon.DaemonRequest;
+import edu.mayo.mprc.daemon.*;
 import edu.mayo.mprc.daemon.files.FileTokenFactory;
+import edu.mayo.mprc.messaging.ResponseDispatcher;
+import edu.mayo.mprc.messaging.ResponseListener;
 import edu.mayo.mprc.messaging.ServiceFactory;
 import edu.mayo.mprc.utilities.FileUtilities;
+import org.mockito.ArgumentCaptor;
 import org.testng.Assert;
 import org.testng.annotations.AfterTest;
 import org.testng.annotations.Test;
 
 import java.io.File;
+import java.io.FilenameFilter;
+import java.io.Serializable;
 
 import static org.mockito.Matchers.any;
-import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.*;
 
 /**
  * @author Roman Zenka
@@ -29,8 +31,14 @@ public final class TestGridRunner {
 	private File logFolder; /* Log within the base folder */
 	private File tempFolder; /* Temp folder within the base folder */
 	private GridRunner runner;
+	private GridEngineJobManager jobManager;
+	private ServiceFactory serviceFactory;
 
 	public void setup(boolean simulateFailedRequest) {
+		setup(simulateFailedRequest, 1, 0);
+	}
+
+	public void setup(boolean simulateFailedRequest, int batchSize, int gridWorkers) {
 		baseFolder = FileUtilities.createTempFolder();
 		logFolder = new File(baseFolder, "log");
 		FileUtilities.ensureFolderExists(logFolder);
@@ -40,6 +48,8 @@ public final class TestGridRunner {
 		HelloWorldWorker.Config workerConfig = new HelloWorldWorker.Config();
 
 		GridRunner.Config runnerConfig = new GridRunner.Config(workerConfig);
+		runnerConfig.setBatchSize(batchSize);
+		runnerConfig.setGridWorkers(gridWorkers);
 
 		GridRunner.Factory runnerFactory = new GridRunner.Factory();
 
@@ -59,14 +69,14 @@ public final class TestGridRunner {
 		GridScriptFactory gridScriptFactory = new GridScriptFactory();
 		gridScriptFactory.setSwiftLibDirectory(new File(baseFolder, "lib").getAbsolutePath());
 		runnerFactory.setGridScriptFactory(gridScriptFactory);
-		GridEngineJobManager jobManager = mock(GridEngineJobManager.class);
+		jobManager = mock(GridEngineJobManager.class);
 		if (simulateFailedRequest) {
 			// We pretend that sge failed
 			when(jobManager.passToGridEngine(any(GridWorkPacket.class)))
 					.thenThrow(new MprcException("Failed passing packet to grid engine"));
 		}
 		runnerFactory.setGridEngineManager(jobManager);
-		ServiceFactory serviceFactory = mock(ServiceFactory.class);
+		serviceFactory = mock(ServiceFactory.class);
 		runnerFactory.setServiceFactory(serviceFactory);
 
 		ServiceConfig serviceConfig = new ServiceConfig("hello-world", runnerConfig);
@@ -104,6 +114,83 @@ public final class TestGridRunner {
 		Assert.assertEquals(tempFolder.listFiles().length, 2000);
 	}
 
+	@Test
+	public void shouldBatchPackets() {
+		setup(false, 5, 0);
+		DaemonRequest request = mock(DaemonRequest.class);
+		when(request.getWorkPacket()).thenReturn(new HelloWorldWorkPacket(false));
+
+		for (int i = 0; i < 10; i++) {
+			runner.processRequest(request);
+		}
+
+		// Two full batches, each is a single grid job
+		verify(jobManager, times(2)).passToGridEngine(any(GridWorkPacket.class));
+		final File[] batches = tempFolder.listFiles();
+		Assert.assertEquals(batches.length, 2);
+		for (final File batch : batches) {
+			Assert.assertEquals(batch.listFiles(new XmlFilter()).length, 5);
+		}
+	}
+
+	@Test
+	public void shouldQueueForGridWorkers() {
+		setup(false, 1, 2);
+		DaemonRequest request = mock(DaemonRequest.class);
+		when(request.getWorkPacket()).thenReturn(new HelloWorldWorkPacket(false));
+
+		for (int i = 0; i < 5; i++) {
+			runner.processRequest(request);
+		}
+
+		// No more workers than configured, all packets in one queue
+		verify(jobManager, times(2)).passToGridEngine(any(GridWorkPacket.class));
+		final File[] queues = tempFolder.listFiles();
+		Assert.assertEquals(queues.length, 1);
+		Assert.assertEquals(queues[0].listFiles(new XmlFilter()).length, 5);
+	}
+
+	@Test
+	public void shouldReportWorkerJobWhenClaimed() {
+		setup(false, 1, 1);
+		when(jobManager.passToGridEngine(any(GridWorkPacket.class))).thenReturn("job-17");
+		DaemonRequest request = mock(DaemonRequest.class);
+		when(request.getWorkPacket()).thenReturn(new HelloWorldWorkPacket(false));
+
+		runner.processRequest(request);
+
+		final ArgumentCaptor<GridWorkPacket> gridWorkPacket = ArgumentCaptor.forClass(GridWorkPacket.class);
+		verify(jobManager).passToGridEngine(gridWorkPacket.capture());
+		final ArgumentCaptor<ResponseListener> listener = ArgumentCaptor.forClass(ResponseListener.class);
+		verify(serviceFactory).serializeRequest(any(Serializable.class), any(ResponseDispatcher.class), listener.capture());
+
+		// The worker announces itself when it claims the packet
+		final String workerId = getWorkerId(gridWorkPacket.getValue());
+		listener.getValue().responseReceived(
+				new DaemonProgressMessage(DaemonProgress.UserSpecificProgressInfo, new AssignedTaskData(workerId)), false);
+
+		final ArgumentCaptor<Serializable> responses = ArgumentCaptor.forClass(Serializable.class);
+		verify(request, atLeastOnce()).sendResponse(responses.capture(), eq(false));
+		String assignedId = null;
+		for (final Serializable response : responses.getAllValues()) {
+			if (response instanceof DaemonProgressMessage
+					&& ((DaemonProgressMessage) response).getProgressData() instanceof AssignedTaskData) {
+				assignedId = ((AssignedTaskData) ((DaemonProgressMessage) response).getProgressData()).getAssignedId();
+			}
+		}
+		Assert.assertEquals(assignedId, "job-17", "The caller must get the grid job id, not the worker id");
+	}
+
+	private static String getWorkerId(final GridWorkPacket gridWorkPacket) {
+		final String prefix = "-D" + GridScriptFactory.WORKER_ID + "=";
+		for (final String parameter : gridWorkPacket.getParameters()) {
+			if (parameter.startsWith(prefix)) {
+				return parameter.substring(prefix.length());
+			}
+		}
+		throw new MprcException("Grid worker id not set");
+	}
+
 	@Test(expectedExceptions = MprcException.class)
 	public void shouldSupportFail() {
 		setup(true);
@@ -119,4 +206,10 @@ public final class TestGridRunner {
 		}
 	}
 
+	private static final class XmlFilter implements FilenameFilter {
+		@Override
+		public boolean accept(final File dir, final String name) {
+			return name.endsWith(".xml");
+		}
+	}
 }
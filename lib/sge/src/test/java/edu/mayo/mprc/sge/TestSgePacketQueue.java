@@ -0,0 +1,63 @@
+package edu.mayo.mprc.sge;
+
+import edu.mayo.mprc.utilities.FileUtilities;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * @author Roman Zenka
+ */
+public final class TestSgePacketQueue {
+	private File folder;
+	private SgePacketQueue queue;
+
+	@BeforeMethod
+	public void setup() {
+		folder = FileUtilities.createTempFolder();
+		queue = new SgePacketQueue(new File(folder, "queue"));
+	}
+
+	@AfterMethod
+	public void teardown() {
+		FileUtilities.cleanupTempFile(folder);
+	}
+
+	@Test
+	public void shouldClaimPacketsInOrder() throws IOException {
+		final File first = queue.add(packet("first"));
+		final File second = queue.add(packet("second"));
+
+		final File claimed = queue.claim("w1");
+		Assert.assertEquals(SgePacketQueue.readPacket(claimed).getServiceName(), "first");
+		Assert.assertEquals(queue.getState(first, "w2"), SgePacketQueue.PacketState.CLAIMED);
+		Assert.assertEquals(queue.getState(first, "w1"), SgePacketQueue.PacketState.ABANDONED);
+		Assert.assertEquals(queue.getState(second, "w1"), SgePacketQueue.PacketState.WAITING);
+
+		Assert.assertEquals(SgePacketQueue.readPacket(queue.claim("w2")).getServiceName(), "second");
+		Assert.assertNull(queue.claim("w1"), "Nothing left to claim");
+	}
+
+	@Test
+	public void shouldTrackFinishedPackets() {
+		final File success = queue.add(packet("success"));
+		final File failure = queue.add(packet("failure"));
+
+		queue.done(queue.claim("w1"));
+		final File kept = queue.failed(queue.claim("w1"));
+
+		Assert.assertTrue(kept.exists());
+		Assert.assertEquals(queue.getState(success, "w1"), SgePacketQueue.PacketState.DONE);
+		Assert.assertEquals(queue.getState(failure, "w1"), SgePacketQueue.PacketState.FAILED);
+		Assert.assertNull(queue.claim("w1"), "Failed packets are not processed again");
+		Assert.assertFalse(queue.isEmpty());
+	}
+
+	private static SgePacket packet(final String serviceName) {
+		return new SgePacket(null, serviceName, null, null);
+	}
+}
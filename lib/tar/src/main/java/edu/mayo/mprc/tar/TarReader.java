@@ -2,10 +2,13 @@ package edu.mayo.mprc.tar;
 
 import edu.mayo.mprc.MprcException;
 import edu.mayo.mprc.utilities.FileUtilities;
+import edu.mayo.mprc.utilities.GZipUtilities;
 import org.apache.tools.tar.TarInputStream;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
 
 public final class TarReader {
 
@@ -35,7 +38,7 @@ public final class TarReader {
 	}
 
 	/**
-	 * get the number of headers in the tar file
+	 * get the number of headers in the tar file. The tar file can be gzip-compressed.
 	 *
 	 * @return the number of headers in the tar file
 	 */
@@ -43,7 +46,8 @@ public final class TarReader {
 		int headers = 0;
 		TarInputStream inputStream = null;
 		try {
-			inputStream = new TarInputStream(FileUtilities.getInputStream(tarFile));
+			final InputStream stream = FileUtilities.getInputStream(tarFile);
+			inputStream = new TarInputStream(GZipUtilities.isGZipped(tarFile) ? new GZIPInputStream(stream) : stream);
 			while (inputStream.getNextEntry() != null) {
 				headers++;
 			}
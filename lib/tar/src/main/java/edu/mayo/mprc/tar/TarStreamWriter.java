@@ -0,0 +1,122 @@
+package edu.mayo.mprc.tar;
+
+import edu.mayo.mprc.MprcException;
+import edu.mayo.mprc.utilities.FileUtilities;
+import org.apache.tools.tar.TarEntry;
+import org.apache.tools.tar.TarOutputStream;
+
+import java.io.*;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes a tar archive in a single pass, optionally gzip-compressed on the fly.
+ * <p/>
+ * Unlike {@link TarWriter}, the archive stays open until {@link #close()}, so entries can be added in many batches
+ * without closing and concatenating the tar in between. Entries can be written straight from memory,
+ * so small generated files never have to be stored on the disk first.
+ *
+ * @author Roman Zenka
+ */
+public final class TarStreamWriter implements Closeable {
+	private static final int FILE_BUFFER_SIZE = 1024 * 1024;
+	private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+	private final File tarFile;
+	private TarOutputStream outputStream;
+	private final byte[] copyBuffer = new byte[COPY_BUFFER_SIZE];
+	private int entries;
+
+	/**
+	 * @param tarFile  The archive to create. Existing file is overwritten.
+	 * @param compress Compress the archive with gzip.
+	 */
+	public TarStreamWriter(final File tarFile, final boolean compress) {
+		this.tarFile = tarFile;
+		OutputStream stream = null;
+		try {
+			stream = new BufferedOutputStream(new FileOutputStream(tarFile), FILE_BUFFER_SIZE);
+			if (compress) {
+				stream = new GZIPOutputStream(stream, COPY_BUFFER_SIZE);
+			}
+		} catch (IOException e) {
+			FileUtilities.closeQuietly(stream);
+			throw new MprcException("Could not create tar file " + tarFile.getAbsolutePath(), e);
+		}
+		outputStream = new TarOutputStream(stream);
+		outputStream.setLongFileMode(TarOutputStream.LONGFILE_GNU);
+	}
+
+	/**
+	 * Add an entry with given contents.
+	 *
+	 * @param name    Name of the entry.
+	 * @param data    Entry contents.
+	 * @param modTime Modification time of the entry in milliseconds.
+	 */
+	public void addEntry(final String name, final byte[] data, final long modTime) {
+		final TarEntry entry = new TarEntry(name);
+		entry.setSize(data.length);
+		entry.setModTime(modTime);
+		try {
+			outputStream.putNextEntry(entry);
+			outputStream.write(data, 0, data.length);
+			outputStream.closeEntry();
+		} catch (IOException e) {
+			throw new MprcException("Failed adding tar entry " + name + " to tar file " + tarFile.getAbsolutePath(), e);
+		}
+		entries++;
+	}
+
+	/**
+	 * Add a file, named by its name without the path.
+	 */
+	public void addFile(final File file) {
+		final TarEntry entry = new TarEntry(file);
+		entry.setName(file.getName());
+		InputStream stream = null;
+		try {
+			stream = new FileInputStream(file);
+			outputStream.putNextEntry(entry);
+			while (true) {
+				final int read = stream.read(copyBuffer);
+				if (read < 0) {
+					break;
+				}
+				outputStream.write(copyBuffer, 0, read);
+			}
+			outputStream.closeEntry();
+		} catch (IOException e) {
+			throw new MprcException("Failed adding file " + file.getAbsolutePath() + " to tar file " + tarFile.getAbsolutePath(), e);
+		} finally {
+			FileUtilities.closeQuietly(stream);
+		}
+		entries++;
+	}
+
+	/**
+	 * @return How many entries were added so far.
+	 */
+	public int getEntries() {
+		return entries;
+	}
+
+	public File getTarFile() {
+		return tarFile;
+	}
+
+	/**
+	 * Finish the archive. Has to be called, otherwise the archive is incomplete.
+	 */
+	@Override
+	public void close() {
+		if (outputStream != null) {
+			try {
+				outputStream.close();
+			} catch (IOException e) {
+				throw new MprcException("Could not close the tar file " + tarFile.getAbsolutePath(), e);
+			} finally {
+				outputStream = null;
+			}
+		}
+	}
+}
@@ -48,7 +48,7 @@ public final class TarWriter {
 	private static final Logger LOGGER = Logger.getLogger(TarWriter.class);
 	private TarOutputStream outputStream;
 	private File tarFile;
-	private static final int MAX_BUFF_SIZE = 1000;
+	private static final int MAX_BUFF_SIZE = 64 * 1024;
 	/**
 	 * indicates tar written and closed
 	 */
@@ -108,12 +108,12 @@ public final class TarWriter {
 		BufferedInputStream bis = null;
 
 		try {
-			bis = new BufferedInputStream(FileUtilities.getInputStream(file));
+			bis = new BufferedInputStream(FileUtilities.getInputStream(file), MAX_BUFF_SIZE);
 			final byte[] buf = new byte[MAX_BUFF_SIZE];
 			int n = 0;
 			while (true) {
 				try {
-					n = bis.read(buf, 0, MAX_BUFF_SIZE - 1);
+					n = bis.read(buf, 0, MAX_BUFF_SIZE);
 				} catch (IOException e) {
 					throw new MprcException("error reading stream", e);
 				}
@@ -0,0 +1,139 @@
+package edu.mayo.mprc.tar;
+
+import edu.mayo.mprc.utilities.FileUtilities;
+import edu.mayo.mprc.utilities.GZipUtilities;
+import edu.mayo.mprc.utilities.progress.TestProgressReporter;
+import org.apache.log4j.Logger;
+import org.apache.tools.tar.TarEntry;
+import org.apache.tools.tar.TarInputStream;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * @author Roman Zenka
+ */
+public final class TestTarStreamWriter {
+	private static final Logger LOGGER = Logger.getLogger(TestTarStreamWriter.class);
+	private static final int BENCHMARK_ENTRIES = 5000;
+
+	@Test
+	public void shouldWriteCompressedTar() throws IOException {
+		final File folder = FileUtilities.createTempFolder();
+		try {
+			final File file = new File(folder, "test.out");
+			FileUtilities.writeStringToFile(file, "out file contents", true);
+
+			final File tar = new File(folder, "test.tar.gz");
+			final TarStreamWriter writer = new TarStreamWriter(tar, true);
+			writer.addEntry("test.1.1.2.dta", getDta(1), System.currentTimeMillis());
+			writer.addFile(file);
+			writer.close();
+
+			Assert.assertEquals(writer.getEntries(), 2);
+			Assert.assertTrue(GZipUtilities.isGZipped(tar));
+			Assert.assertEquals(TarReader.readNumberHeaders(tar), 2);
+
+			final TarInputStream input = new TarInputStream(new GZIPInputStream(new FileInputStream(tar)));
+			try {
+				TarEntry entry = input.getNextEntry();
+				Assert.assertEquals(entry.getName(), "test.1.1.2.dta");
+				Assert.assertEquals(readEntry(input), new String(getDta(1), "US-ASCII"));
+				entry = input.getNextEntry();
+				Assert.assertEquals(entry.getName(), "test.out");
+				Assert.assertEquals(readEntry(input), "out file contents");
+			} finally {
+				FileUtilities.closeQuietly(input);
+			}
+		} finally {
+			FileUtilities.deleteNow(folder);
+		}
+	}
+
+	/**
+	 * Compare archiving many small .dta files by reading them back from the disk (the way Sequest results used to be archived)
+	 * with streaming them from memory. Sequest needs the loose .dta files as its input, so both paths write them first.
+	 * Reports the times, checks only that both archives are equivalent.
+	 */
+	@Test(groups = {"benchmark"})
+	public void benchmarkAgainstFileBasedTar() throws IOException {
+		if (FileUtilities.isWindowsPlatform() || FileUtilities.isMacPlatform()) {
+			return;
+		}
+		final File folder = FileUtilities.createTempFolder();
+		try {
+			final long fileStart = System.currentTimeMillis();
+			final List<File> files = writeDtaFiles(new File(folder, "fileDta"));
+			final File fileTar = new File(folder, "files.tar");
+			final TarWriter tarWriter = new TarWriter(fileTar, new TestProgressReporter());
+			tarWriter.addFiles(files);
+			tarWriter.close();
+			final File fileTarGz = new File(folder, "files.tar.gz");
+			GZipUtilities.compressFile(fileTar, fileTarGz);
+			FileUtilities.quietDelete(fileTar);
+			final long fileTime = System.currentTimeMillis() - fileStart;
+
+			final long streamStart = System.currentTimeMillis();
+			writeDtaFiles(new File(folder, "streamDta"));
+			final File streamTarGz = new File(folder, "stream.tar.gz");
+			final TarStreamWriter streamWriter = new TarStreamWriter(streamTarGz, true);
+			for (int i = 0; i < BENCHMARK_ENTRIES; i++) {
+				streamWriter.addEntry(getDtaName(i), getDta(i), System.currentTimeMillis());
+			}
+			streamWriter.close();
+			final long streamTime = System.currentTimeMillis() - streamStart;
+
+			LOGGER.info("Writing and archiving " + BENCHMARK_ENTRIES + " .dta files: archived from files " + fileTime + " ms, archived from memory " + streamTime + " ms");
+			Assert.assertEquals(TarReader.readNumberHeaders(streamTarGz), BENCHMARK_ENTRIES);
+			Assert.assertEquals(TarReader.readNumberHeaders(fileTarGz), BENCHMARK_ENTRIES);
+		} finally {
+			FileUtilities.deleteNow(folder);
+		}
+	}
+
+	/**
+	 * Write the .dta files Sequest would search.
+	 */
+	private static List<File> writeDtaFiles(final File dtaFolder) throws IOException {
+		FileUtilities.ensureFolderExists(dtaFolder);
+		final List<File> files = new ArrayList<File>(BENCHMARK_ENTRIES);
+		for (int i = 0; i < BENCHMARK_ENTRIES; i++) {
+			final File dta = new File(dtaFolder, getDtaName(i));
+			final OutputStream stream = new FileOutputStream(dta);
+			try {
+				stream.write(getDta(i));
+			} finally {
+				FileUtilities.closeQuietly(stream);
+			}
+			files.add(dta);
+		}
+		return files;
+	}
+
+	private static String getDtaName(final int i) {
+		return "test." + i + "." + i + ".2.dta";
+	}
+
+	private static byte[] getDta(final int i) throws UnsupportedEncodingException {
+		final StringBuilder dta = new StringBuilder(500);
+		dta.append(1000.0 + i).append(" 2\n");
+		for (int peak = 0; peak < 20; peak++) {
+			dta.append(200.0 + peak * 10.5).append(' ').append(peak * 3.1 + i).append('\n');
+		}
+		return dta.toString().getBytes("US-ASCII");
+	}
+
+	private static String readEntry(final InputStream input) throws IOException {
+		final ByteArrayOutputStream output = new ByteArrayOutputStream();
+		final byte[] buffer = new byte[1024];
+		int read;
+		while ((read = input.read(buffer)) >= 0) {
+			output.write(buffer, 0, read);
+		}
+		return output.toString("US-ASCII");
+	}
+}
@@ -0,0 +1,102 @@
+package edu.mayo.mprc.io;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps the tails of lines read by {@link ByteTsvReader}, indexed by an integer key (e.g. scan number).
+ * <p/>
+ * The lines are copied as bytes into a single growing array. A String is created only when a line is asked for,
+ * so loading a file with tens of thousands of lines does not create tens of thousands of Strings.
+ * <p/>
+ * The cells of the stored lines are always separated by tabs, whatever the delimiter of the original file was.
+ * The implementation is not thread safe.
+ *
+ * @author Roman Zenka
+ */
+public final class ByteTsvLines {
+	private static final int INITIAL_BYTES = 64 * 1024;
+	private static final int INITIAL_LINES = 1024;
+
+	private final byte delimiter;
+	private final Charset charset;
+
+	private byte[] data = new byte[INITIAL_BYTES];
+	private int dataEnd;
+	// Line i occupies data[lineStarts[i]] till data[lineStarts[i+1]]
+	private int[] lineStarts = new int[INITIAL_LINES + 1];
+	private int lines;
+	private final Map<Integer, Integer> keyToLine = new HashMap<Integer, Integer>();
+
+	/**
+	 * @param delimiter Delimiter of the file the lines come from. It is replaced with a tab.
+	 * @param charset   Charset of the file the lines come from.
+	 */
+	public ByteTsvLines(final char delimiter, final Charset charset) {
+		this.delimiter = (byte) delimiter;
+		this.charset = charset;
+	}
+
+	/**
+	 * Store the current line of the reader, starting with given column. A line stored before under the same key is replaced.
+	 *
+	 * @param key    Key to store the line under.
+	 * @param reader Reader positioned at the line to store.
+	 * @param column First column to store.
+	 */
+	public void put(final int key, final ByteTsvReader reader, final int column) {
+		final int start = reader.getCellStart(column);
+		final int length = reader.getCellEnd(reader.getColumnCount() - 1) - start;
+		if (dataEnd + length > data.length) {
+			data = Arrays.copyOf(data, Math.max(data.length * 2, dataEnd + length));
+		}
+		if (lines + 1 == lineStarts.length) {
+			lineStarts = Arrays.copyOf(lineStarts, lineStarts.length * 2);
+		}
+		final byte[] buffer = reader.getBuffer();
+		for (int i = 0; i < length; i++) {
+			final byte b = buffer[start + i];
+			data[dataEnd + i] = b == delimiter ? (byte) '\t' : b;
+		}
+		dataEnd += length;
+		keyToLine.put(key, lines);
+		lines++;
+		lineStarts[lines] = dataEnd;
+	}
+
+	/**
+	 * @return The line stored under given key, null if there is none.
+	 */
+	public String get(final int key) {
+		final Integer line = keyToLine.get(key);
+		if (line == null) {
+			return null;
+		}
+		final int start = lineStarts[line];
+		return new String(data, start, lineStarts[line + 1] - start, charset);
+	}
+
+	/**
+	 * @return The line stored under given key, null if there is none or the key is not a number.
+	 */
+	public String get(final String key) {
+		final int intKey;
+		try {
+			intKey = Integer.parseInt(key);
+		} catch (NumberFormatException ignore) {
+			// SWALLOWED: only numeric keys are stored
+			return null;
+		}
+		return get(intKey);
+	}
+
+	public boolean contains(final int key) {
+		return keyToLine.containsKey(key);
+	}
+
+	public int size() {
+		return keyToLine.size();
+	}
+}
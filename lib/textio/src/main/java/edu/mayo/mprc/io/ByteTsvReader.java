@@ -0,0 +1,556 @@
+package edu.mayo.mprc.io;
+
+import edu.mayo.mprc.MprcException;
+import edu.mayo.mprc.utilities.FileUtilities;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Reads value separated files a line at a time, directly from bytes in a large buffer.
+ * <p/>
+ * Unlike {@link TsvStreamReader}, the line is not turned into a String, and neither are its cells.
+ * The reader only remembers where each cell of the current line starts. Numbers are parsed directly from the bytes,
+ * strings are created only for the cells that are asked for. This makes a big difference for reports with tens of columns,
+ * of which only a few are needed.
+ * <p/>
+ * The cell offsets point into {@link #getBuffer()} and are valid only until the next call to {@link #nextLine()}.
+ * <p/>
+ * Lines can end with {@code \n}, {@code \r\n} or {@code \r}. The delimiter has to be a single-byte character,
+ * the charset has to encode the delimiter and line ends as single bytes (e.g. ASCII, ISO-8859-1 or UTF-8).
+ * The implementation is not thread safe.
+ *
+ * @author Roman Zenka
+ */
+public final class ByteTsvReader implements Closeable {
+	public static final int DEFAULT_BUFFER_SIZE = 1024 * 1024;
+	private static final int INITIAL_COLUMNS = 64;
+
+	/**
+	 * We can convert up to this many digits to double exactly.
+	 */
+	private static final int MAX_EXACT_DIGITS = 15;
+	/**
+	 * Powers of ten that are exactly representable as double.
+	 */
+	private static final double[] POWERS_OF_TEN = {
+			1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+			1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+	private final InputStream stream;
+	private final byte delimiter;
+	private final Charset charset;
+
+	private byte[] buffer;
+	// Amount of valid bytes in the buffer
+	private int bufferEnd;
+	// Next byte to read
+	private int position;
+	// The stream has no more data
+	private boolean eof;
+	// The previous line ended with \r, skip \n if it follows
+	private boolean skipLineFeed;
+	// Bytes that were dropped from the start of the buffer
+	private long bytesDropped;
+
+	private int lineStart;
+	private int lineEnd;
+	// Start of each cell of the current line
+	private int[] cellStarts = new int[INITIAL_COLUMNS];
+	private int columns;
+	private int lineNumber;
+
+	public ByteTsvReader(final File file) {
+		this(openFile(file), '\t', Charset.defaultCharset(), DEFAULT_BUFFER_SIZE);
+	}
+
+	public ByteTsvReader(final File file, final char delimiter) {
+		this(openFile(file), delimiter, Charset.defaultCharset(), DEFAULT_BUFFER_SIZE);
+	}
+
+	public ByteTsvReader(final InputStream stream) {
+		this(stream, '\t', Charset.defaultCharset(), DEFAULT_BUFFER_SIZE);
+	}
+
+	public ByteTsvReader(final InputStream stream, final char delimiter) {
+		this(stream, delimiter, Charset.defaultCharset(), DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 * @param stream     Stream to read. Closed by {@link #close()}.
+	 * @param delimiter  Column delimiter, has to be a single byte.
+	 * @param charset    Charset to decode the strings with.
+	 * @param bufferSize Initial size of the buffer. The buffer grows if a line does not fit.
+	 */
+	public ByteTsvReader(final InputStream stream, final char delimiter, final Charset charset, final int bufferSize) {
+		if (delimiter > 127) {
+			throw new MprcException("Only single byte delimiters are supported, got [" + delimiter + "]");
+		}
+		this.stream = stream;
+		this.delimiter = (byte) delimiter;
+		this.charset = charset;
+		buffer = new byte[Math.max(16, bufferSize)];
+	}
+
+	private static InputStream openFile(final File file) {
+		try {
+			return new FileInputStream(file);
+		} catch (FileNotFoundException e) {
+			throw new MprcException("Cannot open file [" + file.getAbsolutePath() + "]", e);
+		}
+	}
+
+	/**
+	 * Move to the next line.
+	 *
+	 * @return False if there are no more lines.
+	 */
+	public boolean nextLine() {
+		columns = 0;
+		lineStart = position;
+		lineEnd = position;
+		if (!skipLineEnd() || !ensureData()) {
+			return false;
+		}
+		lineStart = position;
+		addCell(position);
+		int scan = position;
+		while (true) {
+			if (scan >= bufferEnd) {
+				final int before = lineStart;
+				final boolean more = fill();
+				scan -= before - lineStart;
+				if (!more) {
+					lineEnd = scan;
+					position = scan;
+					break;
+				}
+				continue;
+			}
+			final byte b = buffer[scan];
+			if (b == '\n') {
+				lineEnd = scan;
+				position = scan + 1;
+				break;
+			} else if (b == '\r') {
+				lineEnd = scan;
+				position = scan + 1;
+				skipLineFeed = true;
+				break;
+			} else if (b == delimiter) {
+				addCell(scan + 1);
+			}
+			scan++;
+		}
+		lineNumber++;
+		return true;
+	}
+
+	/**
+	 * @return True if there is no line after the current one.
+	 */
+	public boolean isLastLine() {
+		return !skipLineEnd() || !ensureData();
+	}
+
+	/**
+	 * Skip \n after \r that ended the previous line.
+	 *
+	 * @return False if we reached end of data.
+	 */
+	private boolean skipLineEnd() {
+		if (skipLineFeed) {
+			if (!ensureData()) {
+				return false;
+			}
+			if (buffer[position] == '\n') {
+				position++;
+			}
+			skipLineFeed = false;
+		}
+		return true;
+	}
+
+	/**
+	 * Make sure there is at least one unread byte in the buffer.
+	 *
+	 * @return False if there is no more data.
+	 */
+	private boolean ensureData() {
+		while (position >= bufferEnd) {
+			if (!fill()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Read more data, keeping the current line. The current line is moved to the start of the buffer,
+	 * the buffer grows if the line occupies all of it.
+	 *
+	 * @return False if the stream has no more data.
+	 */
+	private boolean fill() {
+		if (eof) {
+			return false;
+		}
+		final int shift = lineStart;
+		if (shift > 0) {
+			System.arraycopy(buffer, shift, buffer, 0, bufferEnd - shift);
+			bufferEnd -= shift;
+			bytesDropped += shift;
+			lineStart = 0;
+			lineEnd -= shift;
+			position -= shift;
+			for (int i = 0; i < columns; i++) {
+				cellStarts[i] -= shift;
+			}
+		} else if (bufferEnd == buffer.length) {
+			buffer = Arrays.copyOf(buffer, buffer.length * 2);
+		}
+		try {
+			final int read = stream.read(buffer, bufferEnd, buffer.length - bufferEnd);
+			if (read < 0) {
+				eof = true;
+				return false;
+			}
+			bufferEnd += read;
+			return true;
+		} catch (IOException e) {
+			throw new MprcException("Failed reading line " + (lineNumber + 1), e);
+		}
+	}
+
+	private void addCell(final int start) {
+		if (columns == cellStarts.length) {
+			cellStarts = Arrays.copyOf(cellStarts, cellStarts.length * 2);
+		}
+		cellStarts[columns++] = start;
+	}
+
+	/**
+	 * @return Number of the current line, starting from 1.
+	 */
+	public int getLineNumber() {
+		return lineNumber;
+	}
+
+	/**
+	 * @return How many bytes were read from the input so far.
+	 */
+	public long getBytesRead() {
+		return bytesDropped + bufferEnd;
+	}
+
+	/**
+	 * @return Number of columns on the current line.
+	 */
+	public int getColumnCount() {
+		return columns;
+	}
+
+	/**
+	 * @return The buffer the cell offsets point to. Valid until the next line is read.
+	 */
+	public byte[] getBuffer() {
+		return buffer;
+	}
+
+	/**
+	 * @return Offset of the first byte of given cell within {@link #getBuffer()}.
+	 */
+	public int getCellStart(final int column) {
+		return column < columns ? cellStarts[column] : lineEnd;
+	}
+
+	/**
+	 * @return Offset after the last byte of given cell within {@link #getBuffer()}.
+	 */
+	public int getCellEnd(final int column) {
+		return column + 1 < columns ? cellStarts[column + 1] - 1 : lineEnd;
+	}
+
+	/**
+	 * @return The entire current line.
+	 */
+	public String getLine() {
+		return decode(lineStart, lineEnd);
+	}
+
+	/**
+	 * @return True if the current line is equal to given string.
+	 */
+	public boolean lineEquals(final String value) {
+		return bytesEqual(lineStart, lineEnd, value);
+	}
+
+	/**
+	 * @return Given cell, empty string if the line does not have so many columns.
+	 */
+	public String getString(final int column) {
+		return decode(getCellStart(column), getCellEnd(column));
+	}
+
+	/**
+	 * @return Given cell with leading and trailing whitespace removed, empty string if the line does not have so many columns.
+	 */
+	public String getTrimmedString(final int column) {
+		final int end = trimmedEnd(column);
+		return decode(trimmedStart(column, end), end);
+	}
+
+	/**
+	 * @return Everything from the start of given column till the end of the line, including the delimiters.
+	 */
+	public String getStringFrom(final int column) {
+		return decode(getCellStart(column), lineEnd);
+	}
+
+	/**
+	 * @return Everything from the start of the line till given column, without the delimiter preceding the column.
+	 * The entire line if the line does not have so many columns.
+	 */
+	public String getStringBefore(final int column) {
+		if (column >= columns) {
+			return getLine();
+		}
+		return decode(lineStart, Math.max(lineStart, cellStarts[column] - 1));
+	}
+
+	/**
+	 * @return True if the trimmed cell is equal to given string.
+	 */
+	public boolean cellEquals(final int column, final String value) {
+		final int end = trimmedEnd(column);
+		return bytesEqual(trimmedStart(column, end), end, value);
+	}
+
+	/**
+	 * @return True if the cell is empty or contains just whitespace.
+	 */
+	public boolean isEmpty(final int column) {
+		final int end = trimmedEnd(column);
+		return trimmedStart(column, end) == end;
+	}
+
+	/**
+	 * Parse an integer directly from the cell. Whitespace around the number is ignored, as are commas
+	 * separating thousands ({@code 1,234}).
+	 */
+	public int getInt(final int column) {
+		final int end = trimmedEnd(column);
+		int i = trimmedStart(column, end);
+		final int start = i;
+		boolean negative = false;
+		if (i < end && (buffer[i] == '-' || buffer[i] == '+')) {
+			negative = buffer[i] == '-';
+			i++;
+		}
+		if (i == end) {
+			throw numberError(start, end, "integer");
+		}
+		long value = 0;
+		for (; i < end; i++) {
+			final byte b = buffer[i];
+			if (b >= '0' && b <= '9') {
+				value = value * 10 + (b - '0');
+				if (value > (long) Integer.MAX_VALUE + 1) {
+					throw numberError(start, end, "integer");
+				}
+			} else if (!isThousandsSeparator(i, end)) {
+				throw numberError(start, end, "integer");
+			}
+		}
+		if (negative) {
+			value = -value;
+		}
+		if (value > Integer.MAX_VALUE) {
+			throw numberError(start, end, "integer");
+		}
+		return (int) value;
+	}
+
+	/**
+	 * Parse a real number directly from the cell. Whitespace around the number is ignored, as are commas
+	 * separating thousands ({@code 1,234.5}) and a trailing percent sign (the value is not divided by 100).
+	 * Empty cell is {@link Double#NaN}. The result is identical to {@link Double#parseDouble}.
+	 */
+	public double getDouble(final int column) {
+		final int end = trimmedEnd(column);
+		final int start = trimmedStart(column, end);
+		if (start == end) {
+			return Double.NaN;
+		}
+		final int numberEnd = buffer[end - 1] == '%' ? end - 1 : end;
+
+		int i = start;
+		boolean negative = false;
+		if (buffer[i] == '-' || buffer[i] == '+') {
+			negative = buffer[i] == '-';
+			i++;
+		}
+		long mantissa = 0;
+		int digits = 0;
+		int exponent = 0;
+		boolean anyDigit = false;
+		boolean fraction = false;
+		for (; i < numberEnd; i++) {
+			final byte b = buffer[i];
+			if (b >= '0' && b <= '9') {
+				anyDigit = true;
+				if (mantissa != 0 || b != '0') {
+					digits++;
+				}
+				if (digits > MAX_EXACT_DIGITS) {
+					return parseDoubleSlow(start, end, numberEnd);
+				}
+				mantissa = mantissa * 10 + (b - '0');
+				if (fraction) {
+					exponent--;
+				}
+			} else if (b == '.' && !fraction) {
+				fraction = true;
+			} else if ((b == 'e' || b == 'E') && anyDigit) {
+				break;
+			} else if (b == ',' && !fraction && isThousandsSeparator(i, numberEnd)) {
+				continue;
+			} else {
+				// NaN, Infinity, hexadecimal or an error
+				return parseDoubleSlow(start, end, numberEnd);
+			}
+		}
+		if (!anyDigit) {
+			return parseDoubleSlow(start, end, numberEnd);
+		}
+		if (i < numberEnd) {
+			// Exponent
+			i++;
+			boolean negativeExponent = false;
+			if (i < numberEnd && (buffer[i] == '-' || buffer[i] == '+')) {
+				negativeExponent = buffer[i] == '-';
+				i++;
+			}
+			if (i == numberEnd || numberEnd - i > 4) {
+				return parseDoubleSlow(start, end, numberEnd);
+			}
+			int explicitExponent = 0;
+			for (; i < numberEnd; i++) {
+				final byte b = buffer[i];
+				if (b < '0' || b > '9') {
+					return parseDoubleSlow(start, end, numberEnd);
+				}
+				explicitExponent = explicitExponent * 10 + (b - '0');
+			}
+			exponent += negativeExponent ? -explicitExponent : explicitExponent;
+		}
+
+		final double value;
+		if (mantissa == 0) {
+			value = 0.0;
+		} else if (exponent >= 0 && exponent < POWERS_OF_TEN.length) {
+			value = mantissa * POWERS_OF_TEN[exponent];
+		} else if (exponent < 0 && -exponent < POWERS_OF_TEN.length) {
+			value = mantissa / POWERS_OF_TEN[-exponent];
+		} else {
+			return parseDoubleSlow(start, end, numberEnd);
+		}
+		return negative ? -value : value;
+	}
+
+	/**
+	 * Exact but slower parsing for numbers that cannot be converted exactly from the mantissa.
+	 */
+	private double parseDoubleSlow(final int start, final int end, final int numberEnd) {
+		final StringBuilder number = new StringBuilder(numberEnd - start);
+		for (int i = start; i < numberEnd; i++) {
+			if (buffer[i] != ',' || !isThousandsSeparator(i, numberEnd)) {
+				number.append((char) (buffer[i] & 0xff));
+			}
+		}
+		try {
+			return Double.parseDouble(number.toString());
+		} catch (NumberFormatException e) {
+			throw numberError(start, end, "real number");
+		}
+	}
+
+	/**
+	 * @return True if the comma at given position is followed by three digits.
+	 */
+	private boolean isThousandsSeparator(final int i, final int end) {
+		if (buffer[i] != ',' || i + 3 >= end) {
+			return false;
+		}
+		for (int j = i + 1; j <= i + 3; j++) {
+			if (buffer[j] < '0' || buffer[j] > '9') {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private MprcException numberError(final int start, final int end, final String type) {
+		return new MprcException("Cannot parse number [" + decode(start, end) + "] as " + type + " on line " + lineNumber + ".");
+	}
+
+	private int trimmedEnd(final int column) {
+		final int start = getCellStart(column);
+		int end = getCellEnd(column);
+		while (end > start && isWhitespace(buffer[end - 1])) {
+			end--;
+		}
+		return end;
+	}
+
+	private int trimmedStart(final int column, final int trimmedEnd) {
+		int start = getCellStart(column);
+		while (start < trimmedEnd && isWhitespace(buffer[start])) {
+			start++;
+		}
+		return start;
+	}
+
+	private static boolean isWhitespace(final byte b) {
+		return b == ' ' || b == '\t' || b == '\n' || b == '\u000B' || b == '\f' || b == '\r';
+	}
+
+	private boolean bytesEqual(final int start, final int end, final String value) {
+		if (end - start != value.length()) {
+			// Strings with multi-byte characters have different length, compare them decoded
+			return containsMultiByte(start, end) && decode(start, end).equals(value);
+		}
+		for (int i = 0; i < value.length(); i++) {
+			final char c = value.charAt(i);
+			if (c > 127 || buffer[start + i] < 0) {
+				return decode(start, end).equals(value);
+			}
+			if (buffer[start + i] != c) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private boolean containsMultiByte(final int start, final int end) {
+		for (int i = start; i < end; i++) {
+			if (buffer[i] < 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private String decode(final int start, final int end) {
+		if (start >= end) {
+			return "";
+		}
+		return new String(buffer, start, end - start, charset);
+	}
+
+	@Override
+	public void close() {
+		FileUtilities.closeQuietly(stream);
+	}
+}
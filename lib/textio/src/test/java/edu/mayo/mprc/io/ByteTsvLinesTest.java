@@ -0,0 +1,29 @@
+package edu.mayo.mprc.io;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.Charset;
+
+public final class ByteTsvLinesTest {
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	@Test
+	public void shouldStoreLineTails() {
+		// Tiny buffer - the stored lines must not depend on the reader buffer contents
+		final ByteTsvReader reader = new ByteTsvReader(new ByteArrayInputStream("1,a,b\n2,c,,d\n3\n1,e,f".getBytes(UTF8)), ',', UTF8, 4);
+		final ByteTsvLines lines = new ByteTsvLines(',', UTF8);
+		while (reader.nextLine()) {
+			lines.put(reader.getInt(0), reader, 1);
+		}
+
+		Assert.assertEquals(lines.size(), 3);
+		Assert.assertEquals(lines.get(1), "e\tf", "Later line replaces the earlier one");
+		Assert.assertEquals(lines.get("2"), "c\t\td", "Delimiters become tabs");
+		Assert.assertEquals(lines.get(3), "");
+		Assert.assertTrue(lines.contains(3));
+		Assert.assertNull(lines.get(4));
+		Assert.assertNull(lines.get("scan"));
+	}
+}
@@ -0,0 +1,348 @@
+package edu.mayo.mprc.io;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.Lists;
+import edu.mayo.mprc.MprcException;
+import edu.mayo.mprc.utilities.FileUtilities;
+import org.apache.log4j.Logger;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+public final class ByteTsvReaderTest {
+	private static final Logger LOGGER = Logger.getLogger(ByteTsvReaderTest.class);
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	// Shape of the synthetic Scaffold spectrum report for the benchmark
+	private static final int BENCHMARK_LINES = 200000;
+	private static final int BENCHMARK_ROUNDS = 3;
+	private static final int REPORT_COLUMNS = 40;
+	private static final int PEPTIDE_COLUMN = 12;
+	private static final int CHARGE_COLUMN = 15;
+	private static final int MASS_COLUMN = 17;
+	private static final int PROBABILITY_COLUMN = 19;
+	private static final int SPECTRA_COLUMN = 22;
+	private static final int[] BENCHMARK_COLUMNS = new int[]{PEPTIDE_COLUMN, CHARGE_COLUMN, MASS_COLUMN, PROBABILITY_COLUMN, SPECTRA_COLUMN};
+	// The line + split readers used to do the same Scaffold report parsing
+	private static final Splitter SPLITTER = Splitter.on('\t').trimResults();
+
+	@Test
+	public void shouldSplitLines() {
+		// Tiny buffer forces refills and growth of the buffer
+		final ByteTsvReader reader = reader("a\tb\t c \r\n\t\tlonger line than the buffer\rlast\n\nno newline", '\t', 16);
+
+		Assert.assertTrue(reader.nextLine());
+		Assert.assertEquals(reader.getColumnCount(), 3);
+		Assert.assertEquals(reader.getString(0), "a");
+		Assert.assertEquals(reader.getString(2), " c ");
+		Assert.assertEquals(reader.getTrimmedString(2), "c");
+		Assert.assertEquals(reader.getString(5), "", "Missing column is empty");
+		Assert.assertEquals(reader.getStringFrom(1), "b\t c ");
+		Assert.assertEquals(reader.getStringBefore(0), "");
+		Assert.assertEquals(reader.getStringBefore(2), "a\tb");
+		Assert.assertEquals(reader.getStringBefore(3), "a\tb\t c ");
+		Assert.assertTrue(reader.cellEquals(2, "c"));
+		Assert.assertFalse(reader.cellEquals(2, "d"));
+
+		Assert.assertTrue(reader.nextLine());
+		Assert.assertEquals(reader.getColumnCount(), 3);
+		Assert.assertTrue(reader.isEmpty(0));
+		Assert.assertEquals(reader.getString(2), "longer line than the buffer");
+
+		Assert.assertTrue(reader.nextLine());
+		Assert.assertTrue(reader.lineEquals("last"));
+
+		Assert.assertTrue(reader.nextLine());
+		Assert.assertEquals(reader.getLine(), "");
+		Assert.assertFalse(reader.isLastLine());
+
+		Assert.assertTrue(reader.nextLine());
+		Assert.assertEquals(reader.getLine(), "no newline");
+		Assert.assertTrue(reader.isLastLine());
+		Assert.assertEquals(reader.getLineNumber(), 5);
+
+		Assert.assertFalse(reader.nextLine());
+		reader.close();
+	}
+
+	@Test
+	public void shouldDecodeStrings() {
+		final ByteTsvReader reader = reader("Protein \u00e9\u00df\t2", ',', 16);
+		Assert.assertTrue(reader.nextLine());
+		Assert.assertEquals(reader.getColumnCount(), 1, "Comma separated");
+		Assert.assertEquals(reader.getLine(), "Protein \u00e9\u00df\t2");
+		Assert.assertTrue(reader.lineEquals("Protein \u00e9\u00df\t2"));
+	}
+
+	@Test
+	public void shouldParseIntegers() {
+		final ByteTsvReader reader = reader("12\t-7\t 1,234,567 \t2147483647\t-2147483648\t+3", '\t', 1024);
+		Assert.assertTrue(reader.nextLine());
+		Assert.assertEquals(reader.getInt(0), 12);
+		Assert.assertEquals(reader.getInt(1), -7);
+		Assert.assertEquals(reader.getInt(2), 1234567);
+		Assert.assertEquals(reader.getInt(3), Integer.MAX_VALUE);
+		Assert.assertEquals(reader.getInt(4), Integer.MIN_VALUE);
+		Assert.assertEquals(reader.getInt(5), 3);
+	}
+
+	@Test
+	public void shouldRejectBadIntegers() {
+		final ByteTsvReader reader = reader("1.5\t\t2147483648\t1,23\tabc", '\t', 1024);
+		Assert.assertTrue(reader.nextLine());
+		for (int i = 0; i < 5; i++) {
+			try {
+				reader.getInt(i);
+				Assert.fail("Column " + i + " must not parse");
+			} catch (MprcException ignore) {
+				// SWALLOWED: expected
+			}
+		}
+	}
+
+	@Test
+	public void shouldParseDoubles() {
+		final ByteTsvReader reader = reader("94.7%\t\t1,234.5\t-0\t1e-5\t2.5E+3\tNaN\t-Infinity\t0.1234567890123456789\t.5", '\t', 1024);
+		Assert.assertTrue(reader.nextLine());
+		Assert.assertEquals(reader.getDouble(0), 94.7);
+		Assert.assertTrue(Double.isNaN(reader.getDouble(1)));
+		Assert.assertEquals(reader.getDouble(2), 1234.5);
+		Assert.assertEquals(Double.doubleToLongBits(reader.getDouble(3)), Double.doubleToLongBits(-0.0));
+		Assert.assertEquals(reader.getDouble(4), 1e-5);
+		Assert.assertEquals(reader.getDouble(5), 2500.0);
+		Assert.assertTrue(Double.isNaN(reader.getDouble(6)));
+		Assert.assertEquals(reader.getDouble(7), Double.NEGATIVE_INFINITY);
+		Assert.assertEquals(reader.getDouble(8), 0.1234567890123456789);
+		Assert.assertEquals(reader.getDouble(9), 0.5);
+	}
+
+	@Test
+	public void shouldMatchDoubleParsing() {
+		final Random random = new Random(20140601L);
+		final StringBuilder line = new StringBuilder();
+		final String[] values = new String[2000];
+		for (int i = 0; i < values.length; i++) {
+			final double value = (random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(20) - 10);
+			switch (i % 4) {
+				case 0:
+					values[i] = String.valueOf(value);
+					break;
+				case 1:
+					values[i] = String.format(Locale.US, "%." + random.nextInt(12) + "f", value);
+					break;
+				case 2:
+					values[i] = String.format(Locale.US, "%." + random.nextInt(12) + "e", value);
+					break;
+				default:
+					values[i] = String.valueOf((float) value);
+					break;
+			}
+			if (i > 0) {
+				line.append('\t');
+			}
+			line.append(values[i]);
+		}
+		final ByteTsvReader reader = reader(line.toString(), '\t', 1024);
+		Assert.assertTrue(reader.nextLine());
+		for (int i = 0; i < values.length; i++) {
+			Assert.assertEquals(reader.getDouble(i), Double.parseDouble(values[i]), "Parsing " + values[i]);
+		}
+	}
+
+	@Test(expectedExceptions = MprcException.class)
+	public void shouldRejectBadDoubles() {
+		final ByteTsvReader reader = reader("1.2.3", '\t', 1024);
+		Assert.assertTrue(reader.nextLine());
+		reader.getDouble(0);
+	}
+
+	/**
+	 * Compare the byte reader with the line + split readers it replaced, on a large Scaffold spectrum report.
+	 * All readers pick a few columns of each line and parse them, as the Scaffold report readers do.
+	 */
+	@Test(groups = {"benchmark"})
+	public void benchmarkAgainstLineReaders() throws IOException {
+		final File folder = FileUtilities.createTempFolder();
+		try {
+			final File report = new File(folder, "spectra.txt");
+			writeSpectrumReport(report);
+
+			final String expected = readWithSplitter(report);
+			long byteTime = Long.MAX_VALUE;
+			long splitterTime = Long.MAX_VALUE;
+			long tsvStreamTime = Long.MAX_VALUE;
+			long valueSeparatedTime = Long.MAX_VALUE;
+			for (int round = 0; round < BENCHMARK_ROUNDS; round++) {
+				long start = System.currentTimeMillis();
+				Assert.assertEquals(readWithByteReader(report), expected);
+				byteTime = Math.min(byteTime, System.currentTimeMillis() - start);
+
+				start = System.currentTimeMillis();
+				Assert.assertEquals(readWithSplitter(report), expected);
+				splitterTime = Math.min(splitterTime, System.currentTimeMillis() - start);
+
+				start = System.currentTimeMillis();
+				Assert.assertEquals(readWithTsvStreamReader(report), expected);
+				tsvStreamTime = Math.min(tsvStreamTime, System.currentTimeMillis() - start);
+
+				start = System.currentTimeMillis();
+				Assert.assertEquals(readWithValueSeparatedReader(report), expected);
+				valueSeparatedTime = Math.min(valueSeparatedTime, System.currentTimeMillis() - start);
+			}
+			LOGGER.info("Read " + BENCHMARK_LINES + " lines (" + report.length() / 1024 / 1024 + " MB), best of " + BENCHMARK_ROUNDS
+					+ ": ByteTsvReader " + byteTime + " ms, Splitter " + splitterTime + " ms, TsvStreamReader " + tsvStreamTime
+					+ " ms, ValueSeparatedFileReader " + valueSeparatedTime + " ms");
+		} finally {
+			FileUtilities.cleanupTempFile(folder);
+		}
+	}
+
+	private static void writeSpectrumReport(final File report) throws IOException {
+		final Random random = new Random(20140601L);
+		final Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(report), UTF8));
+		try {
+			for (int column = 0; column < REPORT_COLUMNS; column++) {
+				writer.write(column == 0 ? "" : "\t");
+				writer.write("Column " + column);
+			}
+			writer.write("\n");
+			final StringBuilder line = new StringBuilder(400);
+			for (int i = 0; i < BENCHMARK_LINES; i++) {
+				line.setLength(0);
+				for (int column = 0; column < REPORT_COLUMNS; column++) {
+					if (column > 0) {
+						line.append('\t');
+					}
+					switch (column) {
+						case PEPTIDE_COLUMN:
+							for (int j = 6 + random.nextInt(20); j > 0; j--) {
+								line.append((char) ('A' + random.nextInt(26)));
+							}
+							break;
+						case CHARGE_COLUMN:
+							line.append(1 + random.nextInt(4));
+							break;
+						case MASS_COLUMN:
+							line.append(String.format(Locale.US, "%.4f", 500 + random.nextDouble() * 3000));
+							break;
+						case PROBABILITY_COLUMN:
+							line.append(String.format(Locale.US, "%.1f%%", random.nextDouble() * 100));
+							break;
+						case SPECTRA_COLUMN:
+							line.append(String.format(Locale.US, "%,d", random.nextInt(100000)));
+							break;
+						default:
+							line.append("value ").append(i % 97);
+							break;
+					}
+				}
+				line.append('\n');
+				writer.write(line.toString());
+			}
+		} finally {
+			FileUtilities.closeQuietly(writer);
+		}
+	}
+
+	private static String readWithByteReader(final File report) {
+		final ByteTsvReader reader = new ByteTsvReader(report);
+		try {
+			final Totals totals = new Totals();
+			reader.nextLine();
+			while (reader.nextLine()) {
+				totals.add(reader.getString(PEPTIDE_COLUMN), reader.getInt(CHARGE_COLUMN), reader.getDouble(MASS_COLUMN),
+						reader.getDouble(PROBABILITY_COLUMN), reader.getInt(SPECTRA_COLUMN));
+			}
+			return totals.toString();
+		} finally {
+			reader.close();
+		}
+	}
+
+	private static String readWithSplitter(final File report) throws IOException {
+		final BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(report), UTF8));
+		try {
+			final Totals totals = new Totals();
+			reader.readLine();
+			String line;
+			while ((line = reader.readLine()) != null) {
+				final List<String> cells = Lists.newArrayList(SPLITTER.split(line));
+				totals.add(cells.get(PEPTIDE_COLUMN), cells.get(CHARGE_COLUMN), cells.get(MASS_COLUMN),
+						cells.get(PROBABILITY_COLUMN), cells.get(SPECTRA_COLUMN));
+			}
+			return totals.toString();
+		} finally {
+			FileUtilities.closeQuietly(reader);
+		}
+	}
+
+	private static String readWithTsvStreamReader(final File report) {
+		final TsvStreamReader reader = new TsvStreamReader(report);
+		try {
+			final Totals totals = new Totals();
+			reader.nextLine();
+			final List<String> cells = new ArrayList<String>(BENCHMARK_COLUMNS.length);
+			while (reader.nextValues(BENCHMARK_COLUMNS, cells)) {
+				totals.add(cells.get(0), cells.get(1), cells.get(2), cells.get(3), cells.get(4));
+			}
+			return totals.toString();
+		} finally {
+			reader.close();
+		}
+	}
+
+	private static String readWithValueSeparatedReader(final File report) throws IOException {
+		final ValueSeparatedFileReader reader = new ValueSeparatedFileReader(report, "\t");
+		try {
+			final Totals totals = new Totals();
+			reader.nextRow();
+			List<String> cells;
+			while ((cells = reader.nextRow(false, BENCHMARK_COLUMNS)) != null) {
+				totals.add(cells.get(0), cells.get(1), cells.get(2), cells.get(3), cells.get(4));
+			}
+			return totals.toString();
+		} finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * Sums up what was read, so the readers can be checked against each other.
+	 */
+	private static final class Totals {
+		private int lines;
+		private long peptideHash;
+		private long intSum;
+		private double doubleSum;
+
+		void add(final String peptide, final int charge, final double mass, final double probability, final int spectra) {
+			lines++;
+			peptideHash = peptideHash * 31 + peptide.hashCode();
+			intSum += charge + spectra;
+			doubleSum += mass + probability;
+		}
+
+		void add(final String peptide, final String charge, final String mass, final String probability, final String spectra) {
+			add(peptide.trim(),
+					Integer.parseInt(charge.trim()),
+					Double.parseDouble(mass.trim()),
+					Double.parseDouble(probability.trim().replace("%", "")),
+					Integer.parseInt(spectra.trim().replace(",", "")));
+		}
+
+		@Override
+		public String toString() {
+			return lines + " lines, peptide hash " + peptideHash + ", int sum " + intSum + ", double sum " + doubleSum;
+		}
+	}
+
+	private static ByteTsvReader reader(final String data, final char delimiter, final int bufferSize) {
+		return new ByteTsvReader(new ByteArrayInputStream(data.getBytes(UTF8)), delimiter, UTF8, bufferSize);
+	}
+}
@@ -90,7 +90,10 @@ public interface Task {
 	void inputDone(Task input);
 
 	/**
-	 * @return Will be called once, switching the task to "running" mode.
+	 * Will be called once, switching the task to "running" mode.
+	 * <p/>
+	 * Must not block - the engine can run the tasks on a small pool of threads, so a long running task would stall
+	 * the other tasks. Hand the long work off to a daemon or another thread and change the task state when it is done.
 	 */
 	void run();
 
@@ -329,12 +329,31 @@ public abstract class TaskBase implements Task {
 
 	@Override
 	public void addDependency(final Task task) {
-		if (task != null) {
-			if (!task.getOutputs().contains(this)) {
-				inputs.add(task);
-				task.getOutputs().add(this);
+		if (task != null && !dependsOn(task)) {
+			inputs.add(task);
+			task.getOutputs().add(this);
+		}
+	}
+
+	/**
+	 * A popular task (e.g. database deployment) can have thousands of outputs, a report can have thousands of inputs.
+	 * We search whichever side of the dependency is shorter, by identity - equal tasks are still distinct nodes of the workflow.
+	 */
+	private boolean dependsOn(final Task task) {
+		final List<Task> taskOutputs = task.getOutputs();
+		if (inputs.size() <= taskOutputs.size()) {
+			return containsIdentical(inputs, task);
+		}
+		return containsIdentical(taskOutputs, this);
+	}
+
+	private static boolean containsIdentical(final List<Task> tasks, final Task task) {
+		for (final Task t : tasks) {
+			if (t == task) {
+				return true;
 			}
 		}
+		return false;
 	}
 
 	@Override
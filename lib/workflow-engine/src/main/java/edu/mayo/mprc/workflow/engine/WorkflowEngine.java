@@ -1,26 +1,57 @@
 package edu.mayo.mprc.workflow.engine;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import edu.mayo.mprc.MprcException;
 import edu.mayo.mprc.utilities.exceptions.CompositeException;
 import edu.mayo.mprc.utilities.progress.ProgressReport;
 import edu.mayo.mprc.workflow.persistence.TaskState;
 import org.apache.log4j.Logger;
 
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.List;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * A generic workflow engine! :)
+ * <p/>
+ * Scheduling is event-driven. Each task counts its finished inputs, and when a task finishes, only the tasks
+ * that depend on it get notified. A task becomes ready (and gets queued for {@link #run}) when its last input is done.
+ * Nothing ever scans the whole task list except for the initialization and the final error report.
+ * <p/>
+ * By default, {@link #run} executes the ready tasks on the caller's thread. Use {@link #setExecutor} to dispatch
+ * them in parallel instead - this helps when the tasks do non-trivial work before handing off to a daemon.
+ * <p/>
+ * The monitors get the progress statistics from {@link #run}, at most once per call, no matter how many tasks
+ * changed state in the meantime. A finished task asks for a resume just to report progress only if the last report
+ * is older than {@link #PROGRESS_REPORT_INTERVAL}. Otherwise a one-shot timer asks for the resume once the interval
+ * passes, so the last change always gets reported.
  */
 public final class WorkflowEngine {
 	private static final Logger LOGGER = Logger.getLogger(WorkflowEngine.class);
 
+	/**
+	 * Milliseconds between progress reports caused just by tasks finishing.
+	 */
+	public static final long PROGRESS_REPORT_INTERVAL = 1000L;
+
+	/**
+	 * Fires the delayed progress reports of all engines. The timers only request a resume, they never block.
+	 */
+	private static final ScheduledExecutorService PROGRESS_TIMER = Executors.newSingleThreadScheduledExecutor(
+			new ThreadFactoryBuilder()
+					.setDaemon(true)
+					.setNameFormat("workflow-progress-%d")
+					.build());
+
 	private boolean initialized;
+	// All tasks, in the order they were added
 	private final List<Task> allTasks = new ArrayList<Task>();
+	// The same tasks, for fast duplicate checks. The tasks define equals() as "does the same work", we need identity
+	private final Set<Task> registeredTasks = Collections.newSetFromMap(new IdentityHashMap<Task, Boolean>());
 	private final LinkedBlockingQueue<Task> tasksToProcess = new LinkedBlockingQueue<Task>();
+	// Executes the ready tasks, null means run them directly on the thread that called run()
+	private Executor executor;
 	private ProgressReport previousProgressReport;
 	private final CombinedMonitor monitor = new CombinedMonitor();
 	private Resumer resumer;
@@ -29,13 +60,20 @@ public final class WorkflowEngine {
 	private AtomicInteger failedTasks = new AtomicInteger(0); // Failed with our without warning
 	private AtomicInteger initFailedTasks = new AtomicInteger(0);
 	private AtomicInteger runningTasks = new AtomicInteger(0);
-	private boolean done;
+	// Set when the progress statistics changed since we last reported them
+	private final AtomicBoolean progressChanged = new AtomicBoolean(false);
+	private volatile long lastProgressReport;
+	// A delayed progress report is scheduled on PROGRESS_TIMER
+	private final AtomicBoolean progressReportScheduled = new AtomicBoolean(false);
+	private volatile boolean done;
 	private String id;
 	private AtomicInteger taskId = new AtomicInteger(0);
 	private int priority;
 
 	// We use this lock to check the size of the queue and add a new element atomically
 	private final Object resumeLock = new Object();
+	// A resume was requested when nobody was waiting for it. Guarded by resumeLock
+	private boolean resumePending;
 
 	public WorkflowEngine(final String id) {
 		this.id = id;
@@ -59,10 +97,10 @@ public final class WorkflowEngine {
 	 * @param task Task to be executed.
 	 */
 	public void addTask(final Task task) {
-		if (!allTasks.contains(task)) {
-			if (task.getEngine() != this) {
-				throw new MprcException("Task was created for a different engine");
-			}
+		if (task.getEngine() != this) {
+			throw new MprcException("Task was created for a different engine");
+		}
+		if (registeredTasks.add(task)) {
 			allTasks.add(task);
 			task.setPriority(task.getPriority() + getPriority());
 		}
@@ -88,6 +126,24 @@ public final class WorkflowEngine {
 		this.monitor.addMonitor(monitor);
 	}
 
+	/**
+	 * Dispatch the ready tasks to given executor instead of running them one by one on the thread calling {@link #run}.
+	 * The executor should be bounded and owned by this engine - the tasks must not block in {@link Task#run()},
+	 * they hand the actual work off to daemons, but a misbehaving task should stall only its own workflow.
+	 * <p/>
+	 * When the tasks run in parallel, {@link #run} returns before they are finished. Use {@link #resumeOnWork} to
+	 * learn when there is more to do.
+	 *
+	 * @param executor Executor for the tasks, null to run the tasks directly.
+	 */
+	public void setExecutor(final Executor executor) {
+		this.executor = executor;
+	}
+
+	public Executor getExecutor() {
+		return executor;
+	}
+
 	/**
 	 * @return Total amount of tasks within this engine.
 	 */
@@ -126,6 +182,7 @@ public final class WorkflowEngine {
 			final List<Task> taskList = new ArrayList<Task>();
 			synchronized (resumeLock) {
 				tasksToProcess.drainTo(taskList);
+				resumePending = false;
 			}
 
 			// Task is in the queue because it can actually run - it is either ready or running (running tasks can be called multiple times)
@@ -135,11 +192,7 @@ public final class WorkflowEngine {
 				if (task.getState() == TaskState.READY) {
 					task.setState(TaskState.RUNNING);
 				}
-				try {
-					task.run();
-				} catch (Exception e) {
-					task.setError(e);
-				}
+				dispatch(task);
 			}
 
 			// We update the progress information
@@ -183,6 +236,21 @@ public final class WorkflowEngine {
 		}
 	}
 
+	private void dispatch(final Task task) {
+		final Runnable runTask = new TaskRunner(task);
+		if (executor == null) {
+			runTask.run();
+			return;
+		}
+		try {
+			executor.execute(runTask);
+		} catch (RejectedExecutionException e) {
+			// SWALLOWED: The executor is shutting down or full, do the work ourselves
+			LOGGER.debug("Executor rejected task " + task.getName() + ", running it directly", e);
+			runTask.run();
+		}
+	}
+
 	/**
 	 * @return True if all work is done.
 	 */
@@ -191,11 +259,12 @@ public final class WorkflowEngine {
 	}
 
 	/**
-	 * @return True if there is some work to do immediatelly available in the queue.
+	 * @return True if there is some work to do immediatelly available in the queue, or some tasks finished
+	 *         since the last {@link #run} and we need to report it.
 	 */
 	public boolean isWorkAvailable() {
 		synchronized (resumeLock) {
-			return !tasksToProcess.isEmpty();
+			return !tasksToProcess.isEmpty() || resumePending;
 		}
 	}
 
@@ -210,8 +279,9 @@ public final class WorkflowEngine {
 		synchronized (resumeLock) {
 			this.resumer = null;
 
-			if (!tasksToProcess.isEmpty()) {
+			if (!tasksToProcess.isEmpty() || resumePending) {
 				runResumer = true;
+				resumePending = false;
 			} else {
 				this.resumer = resumer;
 			}
@@ -222,9 +292,14 @@ public final class WorkflowEngine {
 	}
 
 	/**
+	 * Report the progress statistics to the monitors, if they changed.
+	 *
 	 * @return True if everything is done.
 	 */
 	private boolean updateProgress() {
+		if (!progressChanged.getAndSet(false) && previousProgressReport != null) {
+			return isAllDone();
+		}
 		// Notify all the monitors about the updated progress statistics
 		final ProgressReport report = new ProgressReport(
 				allTasks.size(),
@@ -243,8 +318,13 @@ public final class WorkflowEngine {
 				m.updateStatistics(report);
 			}
 			previousProgressReport = report;
+			lastProgressReport = System.currentTimeMillis();
 		}
 
+		return isAllDone();
+	}
+
+	private boolean isAllDone() {
 		return succeededTasks.get() + failedTasks.get() == allTasks.size();
 	}
 
@@ -300,6 +380,7 @@ public final class WorkflowEngine {
 			default:
 				throw new MprcException("Unknown task state " + currentState.getText());
 		}
+		progressChanged.set(true);
 		monitor.taskChange(taskBase);
 
 		// Make the state transition, propagate it to other tasks and if we need to be resumed, signal that
@@ -308,17 +389,22 @@ public final class WorkflowEngine {
 		if (currentState == TaskState.COMPLETED_SUCCESFULLY ||
 				currentState == TaskState.RUN_FAILED ||
 				currentState == TaskState.INIT_FAILED) {
-			// Tell all of our outputs that we are done
+			// Tell all of our outputs that we are done. Those that have all their inputs done become ready.
 			for (final Task dependent : taskBase.getOutputs()) {
 				dependent.inputDone(taskBase);
 			}
 
-			// We update the progress information
-			final boolean allDone = updateProgress();
-
 			// If absolutely everything is done, we do one last resume to report this.
-			if (allDone) {
+			// Otherwise we resume only if the progress was not reported for a while, and schedule the report for later if it was.
+			if (isAllDone()) {
 				reportResume();
+			} else if (initialized) {
+				final long sinceLastReport = System.currentTimeMillis() - lastProgressReport;
+				if (sinceLastReport >= PROGRESS_REPORT_INTERVAL) {
+					reportResume();
+				} else {
+					scheduleProgressReport(PROGRESS_REPORT_INTERVAL - sinceLastReport);
+				}
 			}
 		} else if (currentState == TaskState.READY) {
 			tasksToProcess.add(taskBase);
@@ -339,6 +425,7 @@ public final class WorkflowEngine {
 
 	/**
 	 * Report that we want to be resumed. This is done only once per resumer.
+	 * If there is no resumer, we remember the request and resume as soon as one is provided.
 	 */
 	private void reportResume() {
 		synchronized (resumeLock) {
@@ -346,10 +433,37 @@ public final class WorkflowEngine {
 				// Resume just once
 				resumer.resume();
 				resumer = null;
+			} else {
+				resumePending = true;
 			}
 		}
 	}
 
+	/**
+	 * Request a resume after given delay, unless one is already scheduled. The resume reports the progress
+	 * that was not reported because it changed too soon after the previous report.
+	 */
+	private void scheduleProgressReport(final long delay) {
+		if (!progressReportScheduled.compareAndSet(false, true)) {
+			return;
+		}
+		try {
+			PROGRESS_TIMER.schedule(new Runnable() {
+				@Override
+				public void run() {
+					progressReportScheduled.set(false);
+					if (progressChanged.get()) {
+						reportResume();
+					}
+				}
+			}, delay, TimeUnit.MILLISECONDS);
+		} catch (RejectedExecutionException e) {
+			// SWALLOWED: The timer is shutting down, report right away
+			progressReportScheduled.set(false);
+			reportResume();
+		}
+	}
+
 	public String getNewTaskId(final String name) {
 		if (name == null) {
 			return null;
@@ -383,4 +497,24 @@ public final class WorkflowEngine {
 	public void setPriority(int priority) {
 		this.priority = priority;
 	}
+
+	/**
+	 * Runs a single task, storing any exception on the task itself.
+	 */
+	private static final class TaskRunner implements Runnable {
+		private final Task task;
+
+		private TaskRunner(final Task task) {
+			this.task = task;
+		}
+
+		@Override
+		public void run() {
+			try {
+				task.run();
+			} catch (Exception e) {
+				task.setError(e);
+			}
+		}
+	}
 }
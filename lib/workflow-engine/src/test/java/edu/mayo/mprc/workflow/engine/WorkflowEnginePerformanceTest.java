@@ -0,0 +1,277 @@
+package edu.mayo.mprc.workflow.engine;
+
+import edu.mayo.mprc.utilities.progress.ProgressReport;
+import edu.mayo.mprc.workflow.persistence.TaskState;
+import org.apache.log4j.Logger;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Builds and runs a synthetic workflow resembling a large search - many input files, each with a chain of
+ * tasks, all depending on a few shared tasks and feeding a few shared reports.
+ * <p/>
+ * Checks that building the workflow does not get slower with the amount of tasks, and that running it in parallel
+ * respects the dependencies. These take long, they are in the "benchmark" group that the default build skips.
+ */
+public final class WorkflowEnginePerformanceTest {
+	private static final Logger LOGGER = Logger.getLogger(WorkflowEnginePerformanceTest.class);
+
+	private static final int NUM_TASKS = 10000;
+	// Tasks every file depends on (database deployment and such)
+	private static final int SHARED_TASKS = 10;
+	// Length of the per-file task chain (conversion, searches, qa...)
+	private static final int CHAIN_LENGTH = 6;
+	// Tasks summarizing all files (Scaffold, reports)
+	private static final int REPORT_TASKS = 4;
+	// Each task burns this many iterations, so the parallel dispatch has something to do
+	private static final int TASK_WORK = 20000;
+	private static final long RUN_TIMEOUT_SECONDS = 120;
+
+	@Test(groups = {"benchmark"})
+	public void shouldBuildLargeWorkflowQuickly() {
+		final long start = System.currentTimeMillis();
+		final WorkflowEngine engine = new WorkflowEngine("build benchmark");
+		final List<CountingTask> tasks = buildWorkflow(engine, new Random(1));
+		engine.addAllTasks(tasks);
+		// Adding the same tasks again must not change anything
+		engine.addAllTasks(tasks);
+		final long took = System.currentTimeMillis() - start;
+
+		Assert.assertEquals(engine.getNumTasks(), tasks.size());
+		LOGGER.info("Building a workflow of " + tasks.size() + " tasks took " + took + " ms");
+	}
+
+	@Test(groups = {"benchmark"})
+	public void shouldRunSerially() throws InterruptedException {
+		runWorkflow(null);
+	}
+
+	@Test(groups = {"benchmark"})
+	public void shouldRunInParallel() throws InterruptedException {
+		final ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			runWorkflow(executor);
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * A task finishing right after a progress report must still get reported, without any other state change.
+	 */
+	@Test
+	public void shouldReportProgressSuppressedByInterval() throws InterruptedException {
+		final WorkflowEngine engine = new WorkflowEngine("delayed report");
+		final IdleTask first = new IdleTask(engine, "first");
+		final IdleTask second = new IdleTask(engine, "second");
+		engine.addTask(first);
+		engine.addTask(second);
+		final CountingMonitor monitor = new CountingMonitor();
+		engine.addMonitor(monitor);
+
+		engine.run();
+		Assert.assertEquals(monitor.getLastReport().getExecuting(), 2);
+
+		// Finishes within the report interval, the progress is not reported right away
+		first.setState(TaskState.COMPLETED_SUCCESFULLY);
+		final LatchResumer resumer = new LatchResumer();
+		engine.resumeOnWork(resumer);
+		Assert.assertTrue(resumer.await(), "The engine was not resumed to report the progress");
+
+		engine.run();
+		Assert.assertEquals(monitor.getLastReport().getSucceeded(), 1);
+		Assert.assertFalse(engine.isDone());
+	}
+
+	private static void runWorkflow(final ExecutorService executor) throws InterruptedException {
+		final WorkflowEngine engine = new WorkflowEngine("run benchmark");
+		engine.setExecutor(executor);
+		final List<CountingTask> tasks = buildWorkflow(engine, new Random(1));
+		engine.addAllTasks(tasks);
+		final CountingMonitor monitor = new CountingMonitor();
+		engine.addMonitor(monitor);
+
+		final long start = System.currentTimeMillis();
+		int iterations = 0;
+		while (true) {
+			engine.run();
+			iterations++;
+			if (engine.isDone()) {
+				break;
+			}
+			if (!engine.isWorkAvailable()) {
+				final LatchResumer resumer = new LatchResumer();
+				engine.resumeOnWork(resumer);
+				Assert.assertTrue(resumer.await(), "The engine was not resumed in time");
+			}
+		}
+		final long took = System.currentTimeMillis() - start;
+
+		for (final CountingTask task : tasks) {
+			Assert.assertEquals(task.getState(), TaskState.COMPLETED_SUCCESFULLY, task.getName());
+			Assert.assertEquals(task.getRuns(), 1, "Each task runs exactly once");
+		}
+		// The first run() also reports the initial state
+		Assert.assertTrue(monitor.getReports() <= iterations + 1, "Progress is reported at most once per run()");
+		LOGGER.info("Running " + tasks.size() + " tasks " + (executor == null ? "serially" : "in parallel") + " took " + took + " ms, "
+				+ iterations + " iterations, " + monitor.getReports() + " progress reports");
+	}
+
+	/**
+	 * @return Tasks in the order they were created. Every task only depends on tasks created before it.
+	 */
+	private static List<CountingTask> buildWorkflow(final WorkflowEngine engine, final Random random) {
+		final List<CountingTask> tasks = new ArrayList<CountingTask>(NUM_TASKS);
+		final List<CountingTask> shared = new ArrayList<CountingTask>(SHARED_TASKS);
+		for (int i = 0; i < SHARED_TASKS; i++) {
+			final CountingTask task = new CountingTask(engine, "shared " + i);
+			shared.add(task);
+			tasks.add(task);
+		}
+
+		final int files = (NUM_TASKS - SHARED_TASKS - REPORT_TASKS) / CHAIN_LENGTH;
+		final List<CountingTask> chainEnds = new ArrayList<CountingTask>(files);
+		for (int file = 0; file < files; file++) {
+			CountingTask previous = null;
+			for (int step = 0; step < CHAIN_LENGTH; step++) {
+				final CountingTask task = new CountingTask(engine, "file " + file + " step " + step);
+				task.addDependency(previous);
+				// Some steps need a shared resource, e.g. the search engines need a deployed database
+				if (random.nextInt(3) == 0) {
+					task.addDependency(shared.get(random.nextInt(shared.size())));
+				}
+				tasks.add(task);
+				previous = task;
+			}
+			chainEnds.add(previous);
+		}
+
+		while (tasks.size() < NUM_TASKS) {
+			final CountingTask report = new CountingTask(engine, "report " + tasks.size());
+			for (final CountingTask end : chainEnds) {
+				report.addDependency(end);
+			}
+			tasks.add(report);
+		}
+		return tasks;
+	}
+
+	private static final class CountingTask extends TaskBase {
+		private final AtomicInteger runs = new AtomicInteger(0);
+		private volatile long result;
+
+		CountingTask(final WorkflowEngine engine, final String name) {
+			super(engine);
+			setName(name);
+		}
+
+		@Override
+		public void run() {
+			runs.incrementAndGet();
+			for (final Task input : getInputs()) {
+				Assert.assertEquals(input.getState(), TaskState.COMPLETED_SUCCESFULLY, "All inputs must be done before " + getName() + " runs");
+			}
+			long sum = 0;
+			for (int i = 0; i < TASK_WORK; i++) {
+				sum += i * (long) i;
+			}
+			result = sum;
+			setState(TaskState.COMPLETED_SUCCESFULLY);
+		}
+
+		public int getRuns() {
+			return runs.get();
+		}
+
+		@Override
+		public boolean equals(final Object o) {
+			return this == o;
+		}
+
+		@Override
+		public int hashCode() {
+			return System.identityHashCode(this);
+		}
+	}
+
+	/**
+	 * Stays running until someone changes its state.
+	 */
+	private static final class IdleTask extends TaskBase {
+		IdleTask(final WorkflowEngine engine, final String name) {
+			super(engine);
+			setName(name);
+		}
+
+		@Override
+		public void run() {
+		}
+
+		@Override
+		public boolean equals(final Object o) {
+			return this == o;
+		}
+
+		@Override
+		public int hashCode() {
+			return System.identityHashCode(this);
+		}
+	}
+
+	private static final class CountingMonitor implements SearchMonitor {
+		private final AtomicInteger reports = new AtomicInteger(0);
+		private volatile ProgressReport lastReport;
+
+		@Override
+		public void updateStatistics(final ProgressReport report) {
+			reports.incrementAndGet();
+			lastReport = report;
+		}
+
+		public ProgressReport getLastReport() {
+			return lastReport;
+		}
+
+		@Override
+		public void taskChange(final TaskBase task) {
+		}
+
+		@Override
+		public void error(final TaskBase task, final Throwable t) {
+		}
+
+		@Override
+		public void error(final Throwable e) {
+		}
+
+		@Override
+		public void taskProgress(final TaskBase task, final Object progressInfo) {
+		}
+
+		public int getReports() {
+			return reports.get();
+		}
+	}
+
+	private static final class LatchResumer implements Resumer {
+		private final CountDownLatch latch = new CountDownLatch(1);
+
+		@Override
+		public void resume() {
+			latch.countDown();
+		}
+
+		public boolean await() throws InterruptedException {
+			return latch.await(RUN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+		}
+	}
+}
@@ -42,6 +42,8 @@ public final class CometCache extends WorkCache<CometWorkPacket> {
 
 					.property(CacheConfig.SERVICE, "Comet Search Engine", "The Comet engine that will do the search. The cache just caches the results.")
 					.reference("comet", UiBuilder.NONE_TYPE);
+
+			CacheConfig.evictionUi(builder);
 		}
 	}
 }
@@ -7,6 +7,7 @@ import edu.mayo.mprc.config.*;
 import edu.mayo.mprc.config.ui.ServiceUiFactory;
 import edu.mayo.mprc.config.ui.UiBuilder;
 import edu.mayo.mprc.daemon.exception.DaemonException;
+import edu.mayo.mprc.daemon.worker.ReusableWorker;
 import edu.mayo.mprc.daemon.worker.WorkPacket;
 import edu.mayo.mprc.daemon.worker.Worker;
 import edu.mayo.mprc.daemon.worker.WorkerBase;
@@ -27,7 +28,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.regex.Pattern;
 
-public final class CometWorker extends WorkerBase {
+public final class CometWorker extends WorkerBase implements ReusableWorker {
 	private static final Logger LOGGER = Logger.getLogger(CometWorker.class);
 	public static final String TYPE = "comet";
 	public static final String NAME = "Comet";
@@ -45,6 +46,11 @@ public final class CometWorker extends WorkerBase {
 		this.cometExecutable = cometExecutable;
 	}
 
+	@Override
+	public void reset() {
+		// No state is kept between requests
+	}
+
 	@Override
 	public void process(final WorkPacket workPacket, final File tempWorkFolder, final UserProgressReporter progressReporter) {
 		if (!(workPacket instanceof CometWorkPacket)) {
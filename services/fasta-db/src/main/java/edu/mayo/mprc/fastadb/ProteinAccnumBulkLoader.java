@@ -4,6 +4,10 @@ import edu.mayo.mprc.database.SessionProvider;
 import edu.mayo.mprc.database.bulk.BulkLoadJobStarter;
 import edu.mayo.mprc.database.bulk.BulkLoader;
 import edu.mayo.mprc.database.bulk.TempKey;
+import edu.mayo.mprc.database.bulk.TempTableBatch;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
 
 /**
  * @author Roman Zenka
@@ -36,6 +40,16 @@ public final class ProteinAccnumBulkLoader extends BulkLoader<ProteinAccnum> {
 		return new TempStringLoading(key, value.getAccnum());
 	}
 
+	@Override
+	public String getTempColumns() {
+		return "data";
+	}
+
+	@Override
+	protected void setTempValues(final ProteinAccnum value, final PreparedStatement row) throws SQLException {
+		row.setString(TempTableBatch.FIRST_VALUE, value.getAccnum());
+	}
+
 	@Override
 	public String getColumnsFromTemp() {
 		return "data";
@@ -4,6 +4,10 @@ import edu.mayo.mprc.database.SessionProvider;
 import edu.mayo.mprc.database.bulk.BulkLoadJobStarter;
 import edu.mayo.mprc.database.bulk.BulkLoader;
 import edu.mayo.mprc.database.bulk.TempKey;
+import edu.mayo.mprc.database.bulk.TempTableBatch;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
 
 /**
  * @author Roman Zenka
@@ -36,6 +40,16 @@ public final class ProteinDescriptionBulkLoader extends BulkLoader<ProteinDescri
 		return new TempStringLoading(key, value.getDescription());
 	}
 
+	@Override
+	public String getTempColumns() {
+		return "data";
+	}
+
+	@Override
+	protected void setTempValues(final ProteinDescription value, final PreparedStatement row) throws SQLException {
+		row.setString(TempTableBatch.FIRST_VALUE, value.getDescription());
+	}
+
 	@Override
 	public String getColumnsFromTemp() {
 		return "data";
@@ -4,8 +4,13 @@ import edu.mayo.mprc.database.SessionProvider;
 import edu.mayo.mprc.database.bulk.BulkLoadJobStarter;
 import edu.mayo.mprc.database.bulk.BulkLoader;
 import edu.mayo.mprc.database.bulk.TempKey;
+import edu.mayo.mprc.database.bulk.TempTableBatch;
 import org.hibernate.dialect.SQLServerDialect;
 
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+
 /**
  * @author Roman Zenka
  */
@@ -44,6 +49,21 @@ public final class SequenceBulkLoader extends BulkLoader<Sequence> {
 		return new TempSequenceLoading(key, value);
 	}
 
+	@Override
+	public String getTempColumns() {
+		return "sequence, mass";
+	}
+
+	@Override
+	protected void setTempValues(final Sequence value, final PreparedStatement row) throws SQLException {
+		row.setString(TempTableBatch.FIRST_VALUE, value.getSequence());
+		if (value.getMass() == null) {
+			row.setNull(TempTableBatch.FIRST_VALUE + 1, Types.DOUBLE);
+		} else {
+			row.setDouble(TempTableBatch.FIRST_VALUE + 1, value.getMass());
+		}
+	}
+
 	@Override
 	public String getColumnsFromTemp() {
 		return getColumnsToTarget();
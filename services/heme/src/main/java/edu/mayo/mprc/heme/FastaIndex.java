@@ -0,0 +1,423 @@
+package edu.mayo.mprc.heme;
+
+import com.google.common.base.Charsets;
+import edu.mayo.mprc.MprcException;
+import edu.mayo.mprc.utilities.FileUtilities;
+import org.apache.log4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Looks up FASTA headers and mutation sequences by accession number without loading the FASTA file.
+ * <p/>
+ * The index file holds the accession numbers sorted, each pointing to the offsets of its header and sequence
+ * line in the FASTA file. Both the index and the FASTA file are memory-mapped, so a lookup is a binary search
+ * that touches only the pages of the proteins that are actually asked for.
+ * <p/>
+ * The index is built once per FASTA file and rebuilt when the FASTA file changes (size or modification time).
+ * Opened indices are shared by the whole process, see {@link #get}.
+ * <p/>
+ * The lookups return the same values as the serialized hash maps that this class replaces:
+ * <ul>
+ * <li>{@link #getHeader} - the full header line for the first word of the header. For SwissProt accessions
+ * <c>sp|xxx|NAME</c>, also for <c>NAME</c> alone.</li>
+ * <li>{@link #getSequence} - the last sequence line of entries whose header ends with a mass.</li>
+ * </ul>
+ *
+ * @author Roman Zenka
+ */
+public final class FastaIndex {
+	private static final Logger LOGGER = Logger.getLogger(FastaIndex.class);
+
+	private static final Pattern MASS_PATTERN = Pattern.compile(".+ (\\d+\\.\\d+)?"); //last double on line
+	private static final Pattern SWISSPROT_PATTERN = Pattern.compile("^sp\\|[^|]*\\|(.*)$");
+
+	private static final int MAGIC = 0x48454d49;
+	private static final int FORMAT_VERSION = 1;
+	/**
+	 * magic, version, fasta length, fasta last modified, entry count
+	 */
+	private static final int HEADER_SIZE = 4 + 4 + 8 + 8 + 4;
+	/**
+	 * key offset, key length, header offset, header length, sequence offset, sequence length
+	 */
+	private static final int ENTRY_SIZE = 4 + 4 + 8 + 4 + 8 + 4;
+	/**
+	 * The FASTA file is mapped in segments of this size, so files over 2GB work as well.
+	 */
+	private static final long SEGMENT_SIZE = 1L << 30;
+	private static final int BUFFER_SIZE = 1024 * 1024;
+
+	/**
+	 * Indices opened by this process, by the absolute path of the index file.
+	 */
+	private static final Map<String, FastaIndex> OPEN_INDICES = new HashMap<String, FastaIndex>();
+
+	private final File fasta;
+	private final File indexFile;
+	private final long fastaLength;
+	private final long fastaLastModified;
+	private final int size;
+	private final ByteBuffer index;
+	private final int keysStart;
+	private final ByteBuffer[] fastaSegments;
+
+	private FastaIndex(final File fasta, final File indexFile, final ByteBuffer index, final ByteBuffer[] fastaSegments) {
+		this.fasta = fasta;
+		this.indexFile = indexFile;
+		this.index = index;
+		this.fastaSegments = fastaSegments;
+		fastaLength = index.getLong(8);
+		fastaLastModified = index.getLong(16);
+		size = index.getInt(24);
+		keysStart = HEADER_SIZE + size * ENTRY_SIZE;
+	}
+
+	/**
+	 * Obtain index for given FASTA file. If the index file is missing or does not match the FASTA file, it gets rebuilt.
+	 * The index stays open for the lifetime of the process, all callers share it.
+	 *
+	 * @param fasta     FASTA file to index. Must not be gzipped - the index points directly into the file.
+	 * @param indexFile File to store the index in.
+	 * @return Index of the FASTA file.
+	 */
+	public static FastaIndex get(final File fasta, final File indexFile) {
+		final String key = indexFile.getAbsolutePath();
+		synchronized (OPEN_INDICES) {
+			final FastaIndex existing = OPEN_INDICES.get(key);
+			if (existing != null && existing.isUpToDate()) {
+				return existing;
+			}
+			if (!isIndexUpToDate(fasta, indexFile)) {
+				build(fasta, indexFile);
+			}
+			final FastaIndex opened = open(fasta, indexFile);
+			OPEN_INDICES.put(key, opened);
+			return opened;
+		}
+	}
+
+	/**
+	 * @return Number of accession numbers in the index.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @param accession Accession number.
+	 * @return The FASTA header line (including the leading &gt;) for the accession number, null if there is none.
+	 */
+	public String getHeader(final String accession) {
+		final int entry = find(accession);
+		if (entry < 0) {
+			return null;
+		}
+		final int position = HEADER_SIZE + entry * ENTRY_SIZE;
+		final long offset = index.getLong(position + 8);
+		if (offset < 0) {
+			return null;
+		}
+		return readFasta(offset, index.getInt(position + 16));
+	}
+
+	/**
+	 * @param accession Accession number.
+	 * @return Last sequence line of the entry with the accession number, null if the entry does not have a mass
+	 *         in its header or does not exist.
+	 */
+	public String getSequence(final String accession) {
+		final int entry = find(accession);
+		if (entry < 0) {
+			return null;
+		}
+		final int position = HEADER_SIZE + entry * ENTRY_SIZE;
+		final long offset = index.getLong(position + 20);
+		if (offset < 0) {
+			return null;
+		}
+		return readFasta(offset, index.getInt(position + 28));
+	}
+
+	public File getIndexFile() {
+		return indexFile;
+	}
+
+	private boolean isUpToDate() {
+		return fasta.length() == fastaLength && fasta.lastModified() == fastaLastModified && indexFile.exists();
+	}
+
+	/**
+	 * Binary search for the accession number.
+	 *
+	 * @return Entry number, -1 if not found.
+	 */
+	private int find(final String accession) {
+		int low = 0;
+		int high = size - 1;
+		while (low <= high) {
+			final int middle = (low + high) >>> 1;
+			final int comparison = getKey(middle).compareTo(accession);
+			if (comparison < 0) {
+				low = middle + 1;
+			} else if (comparison > 0) {
+				high = middle - 1;
+			} else {
+				return middle;
+			}
+		}
+		return -1;
+	}
+
+	private String getKey(final int entry) {
+		final int position = HEADER_SIZE + entry * ENTRY_SIZE;
+		final int keyOffset = index.getInt(position);
+		final int keyLength = index.getInt(position + 4);
+		final byte[] bytes = new byte[keyLength];
+		final ByteBuffer buffer = index.duplicate();
+		buffer.position(keysStart + keyOffset);
+		buffer.get(bytes);
+		return new String(bytes, Charsets.UTF_8);
+	}
+
+	private String readFasta(final long offset, final int length) {
+		final byte[] bytes = new byte[length];
+		int copied = 0;
+		while (copied < length) {
+			final long position = offset + copied;
+			final ByteBuffer segment = fastaSegments[(int) (position / SEGMENT_SIZE)].duplicate();
+			segment.position((int) (position % SEGMENT_SIZE));
+			final int toCopy = Math.min(length - copied, segment.remaining());
+			segment.get(bytes, copied, toCopy);
+			copied += toCopy;
+		}
+		return new String(bytes, Charsets.UTF_8);
+	}
+
+	private static boolean isIndexUpToDate(final File fasta, final File indexFile) {
+		if (!indexFile.isFile() || indexFile.length() < HEADER_SIZE) {
+			return false;
+		}
+		RandomAccessFile file = null;
+		try {
+			file = new RandomAccessFile(indexFile, "r");
+			return file.readInt() == MAGIC
+					&& file.readInt() == FORMAT_VERSION
+					&& file.readLong() == fasta.length()
+					&& file.readLong() == fasta.lastModified();
+		} catch (IOException e) {
+			// SWALLOWED: we rebuild the index
+			LOGGER.warn("Could not read FASTA index " + indexFile.getAbsolutePath() + ", rebuilding", e);
+			return false;
+		} finally {
+			FileUtilities.closeQuietly(file);
+		}
+	}
+
+	private static FastaIndex open(final File fasta, final File indexFile) {
+		RandomAccessFile indexAccess = null;
+		RandomAccessFile fastaAccess = null;
+		try {
+			indexAccess = new RandomAccessFile(indexFile, "r");
+			final MappedByteBuffer index = indexAccess.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, indexAccess.length());
+
+			fastaAccess = new RandomAccessFile(fasta, "r");
+			final long length = fastaAccess.length();
+			final ByteBuffer[] segments = new ByteBuffer[(int) ((length + SEGMENT_SIZE - 1) / SEGMENT_SIZE)];
+			for (int i = 0; i < segments.length; i++) {
+				final long start = i * SEGMENT_SIZE;
+				segments[i] = fastaAccess.getChannel().map(FileChannel.MapMode.READ_ONLY, start, Math.min(SEGMENT_SIZE, length - start));
+			}
+			return new FastaIndex(fasta, indexFile, index, segments);
+		} catch (IOException e) {
+			throw new MprcException("Could not open FASTA index " + indexFile.getAbsolutePath() + " for " + fasta.getAbsolutePath(), e);
+		} finally {
+			// The mappings stay valid after the files are closed
+			FileUtilities.closeQuietly(indexAccess);
+			FileUtilities.closeQuietly(fastaAccess);
+		}
+	}
+
+	/**
+	 * Scan the FASTA file and write the index. The index is written to a temporary file first, so a crash
+	 * never leaves a partial index behind.
+	 */
+	static void build(final File fasta, final File indexFile) {
+		if (fasta.getName().endsWith(".gz")) {
+			throw new MprcException("Cannot index gzipped FASTA file " + fasta.getAbsolutePath());
+		}
+		LOGGER.info("Indexing FASTA file " + fasta.getAbsolutePath() + " into " + indexFile.getAbsolutePath());
+		final long length = fasta.length();
+		final long lastModified = fasta.lastModified();
+		final TreeMap<String, Entry> entries = scan(fasta);
+
+		final File tempFile = new File(indexFile.getParentFile(), indexFile.getName() + ".tmp");
+		DataOutputStream out = null;
+		try {
+			out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile), BUFFER_SIZE));
+			out.writeInt(MAGIC);
+			out.writeInt(FORMAT_VERSION);
+			out.writeLong(length);
+			out.writeLong(lastModified);
+			out.writeInt(entries.size());
+			int keyOffset = 0;
+			for (final Map.Entry<String, Entry> entry : entries.entrySet()) {
+				final int keyLength = entry.getKey().getBytes(Charsets.UTF_8).length;
+				out.writeInt(keyOffset);
+				out.writeInt(keyLength);
+				out.writeLong(entry.getValue().headerOffset);
+				out.writeInt(entry.getValue().headerLength);
+				out.writeLong(entry.getValue().sequenceOffset);
+				out.writeInt(entry.getValue().sequenceLength);
+				keyOffset += keyLength;
+			}
+			for (final String key : entries.keySet()) {
+				out.write(key.getBytes(Charsets.UTF_8));
+			}
+			out.close();
+			out = null;
+			FileUtilities.rename(tempFile, indexFile);
+		} catch (IOException e) {
+			throw new MprcException("Could not write FASTA index " + indexFile.getAbsolutePath(), e);
+		} finally {
+			FileUtilities.closeQuietly(out);
+			FileUtilities.quietDelete(tempFile);
+		}
+	}
+
+	/**
+	 * Go through the FASTA file line by line, noting where the headers and the mutation sequences are.
+	 * Later entries with the same accession number overwrite earlier ones.
+	 */
+	private static TreeMap<String, Entry> scan(final File fasta) {
+		final TreeMap<String, Entry> entries = new TreeMap<String, Entry>();
+		InputStream stream = null;
+		try {
+			stream = new BufferedInputStream(new FileInputStream(fasta), BUFFER_SIZE);
+			final LineBuffer line = new LineBuffer();
+			long offset = 0;
+			String mutationAccession = null;
+			while (line.read(stream)) {
+				final long lineOffset = offset;
+				offset += line.consumed;
+				if (line.length == 0) {
+					continue;
+				}
+				if (line.bytes[0] == '>') {
+					final String header = new String(line.bytes, 0, line.length, Charsets.UTF_8);
+					final String accession = getAccession(header);
+					getEntry(entries, accession).setHeader(lineOffset, line.length);
+					final Matcher matcher = SWISSPROT_PATTERN.matcher(accession);
+					if (matcher.matches()) {
+						// Also store the key without the sp|whatever| part for the old, messy databases
+						getEntry(entries, matcher.group(1)).setHeader(lineOffset, line.length);
+					}
+					mutationAccession = MASS_PATTERN.matcher(header).matches() ? accession : null;
+				} else if (mutationAccession != null) {
+					getEntry(entries, mutationAccession).setSequence(lineOffset, line.length);
+				}
+			}
+		} catch (IOException e) {
+			throw new MprcException("Could not read FASTA file " + fasta.getAbsolutePath(), e);
+		} finally {
+			FileUtilities.closeQuietly(stream);
+		}
+		return entries;
+	}
+
+	/**
+	 * @return First word of the header, without the &gt;
+	 */
+	private static String getAccession(final String header) {
+		int end = 1;
+		while (end < header.length() && !Character.isWhitespace(header.charAt(end))) {
+			end++;
+		}
+		return header.substring(1, end);
+	}
+
+	private static Entry getEntry(final Map<String, Entry> entries, final String accession) {
+		Entry entry = entries.get(accession);
+		if (entry == null) {
+			entry = new Entry();
+			entries.put(accession, entry);
+		}
+		return entry;
+	}
+
+	/**
+	 * Where the data for one accession number are in the FASTA file.
+	 */
+	private static final class Entry {
+		private long headerOffset = -1;
+		private int headerLength;
+		private long sequenceOffset = -1;
+		private int sequenceLength;
+
+		void setHeader(final long offset, final int length) {
+			headerOffset = offset;
+			headerLength = length;
+		}
+
+		void setSequence(final long offset, final int length) {
+			sequenceOffset = offset;
+			sequenceLength = length;
+		}
+	}
+
+	/**
+	 * One line of the file as bytes, without the line terminator.
+	 */
+	private static final class LineBuffer {
+		private byte[] bytes = new byte[1024];
+		/**
+		 * Length of the line without the terminator.
+		 */
+		private int length;
+		/**
+		 * How many bytes of the file the line took, including the terminator.
+		 */
+		private int consumed;
+
+		/**
+		 * @return False at the end of the file.
+		 */
+		boolean read(final InputStream stream) throws IOException {
+			length = 0;
+			consumed = 0;
+			int value;
+			while ((value = stream.read()) != -1) {
+				consumed++;
+				if (value == '\n') {
+					break;
+				}
+				if (length == bytes.length) {
+					final byte[] larger = new byte[bytes.length * 2];
+					System.arraycopy(bytes, 0, larger, 0, length);
+					bytes = larger;
+				}
+				bytes[length++] = (byte) value;
+			}
+			if (length > 0 && bytes[length - 1] == '\r') {
+				length--;
+			}
+			return consumed > 0;
+		}
+	}
+}
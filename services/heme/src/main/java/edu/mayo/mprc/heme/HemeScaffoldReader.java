@@ -4,9 +4,7 @@ import edu.mayo.mprc.MprcException;
 import edu.mayo.mprc.scaffoldparser.spectra.ScaffoldReportReader;
 import org.apache.log4j.Logger;
 
-import java.io.File;
 import java.text.MessageFormat;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -22,18 +20,16 @@ public class HemeScaffoldReader extends ScaffoldReportReader {
 	private int peptideSeq;
 	private static final Pattern MASS_PATTERN = Pattern.compile(".+ (\\d+\\.\\d+)?"); //last double on line
 	private HemeReport report;
-	private HashMap<String, String> databaseCache;
-	private HashMap<String, String> mutationSequenceCache;
-	private File cacheFile;
-	private File mutCacheFile;
-
-	public HemeScaffoldReader(File cache, File mutCache, HemeReport myNewReport) {
-		this.cacheFile = cache;
-		this.mutCacheFile = mutCache;
-		this.databaseCache = SerializeFastaDB.load(cache.getAbsolutePath());
-		this.mutationSequenceCache = SerializeFastaDB.load(mutCache.getAbsolutePath());
-		this.report = myNewReport;
+	private final FastaIndex fastaIndex;
 
+	/**
+	 * @param fastaIndex  Index of the database the search was done against, used to look up the protein descriptions
+	 *                    and the mutation sequences.
+	 * @param myNewReport Report to fill in.
+	 */
+	public HemeScaffoldReader(final FastaIndex fastaIndex, final HemeReport myNewReport) {
+		this.fastaIndex = fastaIndex;
+		this.report = myNewReport;
 	}
 
 	public boolean processMetadata(final String key, final String value) {
@@ -43,7 +39,6 @@ public class HemeScaffoldReader extends ScaffoldReportReader {
 	@Override
 	public boolean processHeader(final String line) {
 		final Map<String, Integer> map = buildColumnMap(line);
-		initializeCurrentLine(map);
 		// Store the column numbers for faster parsing
 		proteinAccessionNumbers = getColumn(map, ScaffoldReportReader.PROTEIN_ACCESSION_NUMBERS);
 		numberOfTotalSpectra = getColumn(map, ScaffoldReportReader.NUMBER_OF_TOTAL_SPECTRA);
@@ -52,10 +47,9 @@ public class HemeScaffoldReader extends ScaffoldReportReader {
 	}
 
 	@Override
-	public boolean processRow(final String line) {
-		fillCurrentLine(line);
+	public boolean processRow() {
 		//final List<ProteinEntity> ids = new ArrayList<ProteinEntity>();
-		String accnumString = currentLine[proteinAccessionNumbers];
+		String accnumString = getString(proteinAccessionNumbers);
 		final Iterable<String> accNums = PROTEIN_ACCESSION_SPLITTER.split(accnumString);
 
 		for (final String accNum : accNums) {
@@ -66,7 +60,7 @@ public class HemeScaffoldReader extends ScaffoldReportReader {
 			String description = getDescription(accNum);
 
 			//missing desc -> null results in error chain
-			final ProteinEntity prot = report.find_or_create_ProteinEntity(accNum, description, getMassIsotopic(description), mutationSequenceCache.get(accNum));
+			final ProteinEntity prot = report.find_or_create_ProteinEntity(accNum, description, getMassIsotopic(description), fastaIndex.getSequence(accNum));
 			prot.incrementTotalSpectra();
 
 			// Everyone else category (contaminants & wild-type proteins):
@@ -75,7 +69,7 @@ public class HemeScaffoldReader extends ScaffoldReportReader {
 				continue;
 			}
 
-			PeptideEntity newPep = new PeptideEntity(currentLine[peptideSeq]);
+			PeptideEntity newPep = new PeptideEntity(getString(peptideSeq));
 			boolean seqMatchCheck = peptideBelongsToDatabaseEntry(newPep, prot.getSequence());
 			if (!seqMatchCheck) {  //Sometimes Scaffold puts peptides to other db seq
 				continue;
@@ -84,7 +78,7 @@ public class HemeScaffoldReader extends ScaffoldReportReader {
 
 			// No mutation means scaffold put it in the wrong place....needs to attach to wild type instead
 			if (!mutationCheck) {
-				//prot.setSequence(mutationSequenceCache.get(accNum));
+				//prot.setSequence(fastaIndex.getSequence(accNum));
 				String[] splitAccNum = accNum.split("_");
 
 				// HBA1, HBA2 have HBA_HUMAN sequence
@@ -94,7 +88,7 @@ public class HemeScaffoldReader extends ScaffoldReportReader {
 				String baseAcc = splitAccNum[0] + "_" + splitAccNum[2];
 
 				String baseDesc = getDescription(baseAcc);
-				ProteinEntity baseProt = report.find_or_create_ProteinEntity(baseAcc, baseDesc, getMassIsotopic(baseDesc), mutationSequenceCache.get(baseAcc));
+				ProteinEntity baseProt = report.find_or_create_ProteinEntity(baseAcc, baseDesc, getMassIsotopic(baseDesc), fastaIndex.getSequence(baseAcc));
 				baseProt.incrementTotalSpectra();
 				baseProt.setFilter(ProteinEntity.Filter.OTHER);
 				baseProt.appendPeptide(newPep);
@@ -107,7 +101,7 @@ public class HemeScaffoldReader extends ScaffoldReportReader {
 
             /* Must be inside Mass Range & Have cooresponding mutation */
 			if (massCheck) {
-				//prot.setSequence(mutationSequenceCache.get(accNum));
+				//prot.setSequence(fastaIndex.getSequence(accNum));
 				prot.setFilter(ProteinEntity.Filter.MUTATION_CONFIRMED);
 			}
 			// Else: Mutation Proteins either outside of mass range or completely missing the target mutation
@@ -127,9 +121,9 @@ public class HemeScaffoldReader extends ScaffoldReportReader {
 	 * Get description for a protein of given accession number
 	 */
 	private String getDescription(final String accNum) {
-		final String result = databaseCache.get(accNum);
+		final String result = fastaIndex.getHeader(accNum);
 		if (result == null) {
-			throw new MprcException(MessageFormat.format("The accession number [{0}] did not have a description. The cache file [{1}] is likely corrupted.", accNum, cacheFile.getAbsolutePath()));
+			throw new MprcException(MessageFormat.format("The accession number [{0}] did not have a description. The index file [{1}] is likely corrupted.", accNum, fastaIndex.getIndexFile().getAbsolutePath()));
 		}
 		return result;
 	}
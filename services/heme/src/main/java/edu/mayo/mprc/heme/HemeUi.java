@@ -299,20 +299,12 @@ public final class HemeUi implements Dao {
 		final SwiftSearchDefinition swiftSearchDefinition = swiftDao.getSwiftSearchDefinition(test.getSearchRun().getSwiftSearch());
 
 		final Curation database = swiftSearchDefinition.getSearchParameters().getDatabase();
-		String fastaName = FileUtilities.stripGzippedExtension(database.getCurationFile().getName());
-		File dbCache = new File(fastaDbCache, fastaName + "-desc.obj");
-		if (!dbCache.exists()) {
-			SerializeFastaDB.generateDesc(database.getCurationFile(), dbCache.toString());
-		}
-
-		File seqCache = new File(fastaDbCache, fastaName + "-seq.obj");
-		if (!seqCache.exists()) {
-			SerializeFastaDB.generateSequence(database.getFastaFile().getFile(), seqCache.toString());
-		}
+		final String fastaName = FileUtilities.stripGzippedExtension(database.getCurationFile().getName());
+		final FastaIndex fastaIndex = FastaIndex.get(database.getCurationFile(), new File(fastaDbCache, fastaName + "-index.dat"));
 		HemeReport myNewReport = new HemeReport(test);
 
 		// final HemeScaffoldReader reader = new HemeScaffoldReader(fastaDbCache); // TODO - double check before deployment
-		final HemeScaffoldReader reader = new HemeScaffoldReader(dbCache, seqCache, myNewReport); // TODO - double check before deployment
+		final HemeScaffoldReader reader = new HemeScaffoldReader(fastaIndex, myNewReport); // TODO - double check before deployment
 		// final HemeScaffoldReader reader = new HemeScaffoldReader(fastaDbDao, swiftSearchDefinition.getSearchParameters().getDatabase());
 		reader.load(scaffoldFile, "3", null);
 
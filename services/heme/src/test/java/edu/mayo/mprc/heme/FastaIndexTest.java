@@ -0,0 +1,67 @@
+package edu.mayo.mprc.heme;
+
+import edu.mayo.mprc.utilities.FileUtilities;
+import edu.mayo.mprc.utilities.TestingUtilities;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * @author Roman Zenka
+ */
+public final class FastaIndexTest {
+	private static final String FASTA = ">sp|P69905|HBA_HUMAN Hemoglobin subunit alpha\r\n" +
+			"MVLSPADKTNVKAAWGKVGAHAGEYGAEALERMFLSFPTTK\r\n" +
+			">HBB_L68P_HUMAN beta 69 P 373:Hb Mizuho, 27M1X27M 15851.1729\n" +
+			"FFESFGDLSTPDAVMGNPKVK\n" +
+			"AHGKKVPGAFSDGLAHLDNLK\n" +
+			">HBB_HUMAN Hemoglobin subunit beta\n" +
+			"MVHLTPEEKSAVTALWGKVNVDEVGGEALGRLLVVYPWTQR";
+
+	@Test
+	public void shouldLookUpHeadersAndSequences() throws IOException {
+		final File fasta = TestingUtilities.getUniqueTempFile(true, null, ".fasta");
+		final File indexFile = TestingUtilities.getUniqueTempFile(true, null, "-index.dat");
+		try {
+			FileUtilities.writeStringToFile(fasta, FASTA, true);
+			final FastaIndex index = FastaIndex.get(fasta, indexFile);
+
+			Assert.assertEquals(index.size(), 4, "Three entries + SwissProt name without the prefix");
+			Assert.assertEquals(index.getHeader("sp|P69905|HBA_HUMAN"), ">sp|P69905|HBA_HUMAN Hemoglobin subunit alpha");
+			Assert.assertEquals(index.getHeader("HBA_HUMAN"), ">sp|P69905|HBA_HUMAN Hemoglobin subunit alpha");
+			Assert.assertEquals(index.getHeader("HBB_L68P_HUMAN"), ">HBB_L68P_HUMAN beta 69 P 373:Hb Mizuho, 27M1X27M 15851.1729");
+			Assert.assertNull(index.getHeader("HBB"));
+
+			// Only entries with mass in the header have sequence, the last line of it
+			Assert.assertEquals(index.getSequence("HBB_L68P_HUMAN"), "AHGKKVPGAFSDGLAHLDNLK");
+			Assert.assertNull(index.getSequence("HBB_HUMAN"));
+			Assert.assertNull(index.getSequence("missing"));
+
+			Assert.assertSame(FastaIndex.get(fasta, indexFile), index, "The index is shared");
+		} finally {
+			FileUtilities.cleanupTempFile(fasta);
+			FileUtilities.cleanupTempFile(indexFile);
+		}
+	}
+
+	@Test
+	public void shouldRebuildWhenFastaChanges() throws IOException {
+		final File fasta = TestingUtilities.getUniqueTempFile(true, null, ".fasta");
+		final File indexFile = TestingUtilities.getUniqueTempFile(true, null, "-index.dat");
+		try {
+			FileUtilities.writeStringToFile(fasta, FASTA, true);
+			final FastaIndex index = FastaIndex.get(fasta, indexFile);
+			Assert.assertNull(index.getHeader("NEW_HUMAN"));
+
+			FileUtilities.writeStringToFile(fasta, FASTA + "\n>NEW_HUMAN New protein\nMVHL\n", true);
+			final FastaIndex newIndex = FastaIndex.get(fasta, indexFile);
+			Assert.assertNotSame(newIndex, index);
+			Assert.assertEquals(newIndex.getHeader("NEW_HUMAN"), ">NEW_HUMAN New protein");
+		} finally {
+			FileUtilities.cleanupTempFile(fasta);
+			FileUtilities.cleanupTempFile(indexFile);
+		}
+	}
+}
@@ -19,27 +19,22 @@ import java.util.List;
  */
 public class HemeScaffoldReaderTest {
     private File fasta;
-    private File cache;
-    private File mutCache;
+    private File index;
     private File spectraFile;
 
     @BeforeTest
     public void setup() throws IOException {
         fasta = TestingUtilities.getTempFileFromResource(getClass(), "/edu/mayo/mprc/heme/testable_mutations.fasta", true, null );
 
-        cache = TestingUtilities.getUniqueTempFile(true, null, "-desc.obj");
-        SerializeFastaDB.generateDesc(fasta, cache.getAbsolutePath());
-
-        mutCache = TestingUtilities.getUniqueTempFile(true, null, "-seq.obj");
-        SerializeFastaDB.generateSequence(fasta, mutCache.getAbsolutePath());
+        index = TestingUtilities.getUniqueTempFile(true, null, "-index.dat");
 
         spectraFile = TestingUtilities.getTempFileFromResource(getClass(), "/edu/mayo/mprc/heme/10045908143.spectra.txt", true, null );;
     }
 
     @AfterTest
     public void teardown() {
-        FileUtilities.cleanupTempFile(cache);
-        FileUtilities.cleanupTempFile(mutCache);
+        FileUtilities.cleanupTempFile(fasta);
+        FileUtilities.cleanupTempFile(index);
         FileUtilities.cleanupTempFile(spectraFile);
     }
 
@@ -121,7 +116,7 @@ public class HemeScaffoldReaderTest {
         HemeReport report = new HemeReport(hemeTest);
         Assert.assertEquals(report.getMass(), 15807.0, "Mass must match");
 
-        HemeScaffoldReader reader = new HemeScaffoldReader(cache, mutCache, report);
+        HemeScaffoldReader reader = new HemeScaffoldReader(FastaIndex.get(fasta, index), report);
         reader.load(spectraFile, "3", null);
 
         List<ProteinEntity> mutationConfirmed = report.get_ProteinEntities_by_filter(ProteinEntity.Filter.MUTATION_CONFIRMED);
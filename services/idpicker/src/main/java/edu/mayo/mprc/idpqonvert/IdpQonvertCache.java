@@ -44,6 +44,8 @@ public final class IdpQonvertCache extends WorkCache<IdpQonvertWorkPacket> {
 
 					.property(CacheConfig.SERVICE, "IdpQonvert instance", "The module that will run IdpQonvert. The cache just caches the results.")
 					.reference("idpqonvert", UiBuilder.NONE_TYPE);
+
+			CacheConfig.evictionUi(builder);
 		}
 	}
 }
\ No newline at end of file
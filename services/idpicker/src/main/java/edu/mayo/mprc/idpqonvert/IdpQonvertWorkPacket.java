@@ -2,6 +2,7 @@ package edu.mayo.mprc.idpqonvert;
 
 import edu.mayo.mprc.daemon.CachableWorkPacket;
 import edu.mayo.mprc.daemon.WorkCache;
+import edu.mayo.mprc.daemon.worker.MemoryRequirements;
 import edu.mayo.mprc.daemon.worker.WorkPacket;
 import edu.mayo.mprc.daemon.worker.WorkPacketBase;
 import edu.mayo.mprc.utilities.progress.ProgressReporter;
@@ -13,7 +14,7 @@ import java.util.List;
 /**
  * A task for idpQonvert to convert .pepXML into .idp files.
  */
-public final class IdpQonvertWorkPacket extends WorkPacketBase implements CachableWorkPacket {
+public final class IdpQonvertWorkPacket extends WorkPacketBase implements CachableWorkPacket, MemoryRequirements {
 	private static final long serialVersionUID = 20121109;
 
 	/**
@@ -133,4 +134,9 @@ public final class IdpQonvertWorkPacket extends WorkPacketBase implements Cachab
 		final File cachedFile = new File(targetFolder, outputFiles.get(0));
 		reporter.reportProgress(new IdpQonvertResult(cachedFile));
 	}
+
+	@Override
+	public int getRequiredMemoryMegabytes() {
+		return 2048;
+	}
 }
@@ -52,6 +52,8 @@ public final class MascotCache extends WorkCache<MascotWorkPacket> {
 
 					.property(CacheConfig.SERVICE, "Mascot Search Engine", "The Mascot engine that will do the search. The cache just caches the results.")
 					.reference(MascotWorker.TYPE, UiBuilder.NONE_TYPE);
+
+			CacheConfig.evictionUi(builder);
 		}
 	}
 }
@@ -9,6 +9,7 @@ import edu.mayo.mprc.config.ui.ResourceConfigBase;
 import edu.mayo.mprc.config.ui.ServiceUiFactory;
 import edu.mayo.mprc.config.ui.UiBuilder;
 import edu.mayo.mprc.daemon.exception.DaemonException;
+import edu.mayo.mprc.daemon.worker.ReusableWorker;
 import edu.mayo.mprc.daemon.worker.WorkPacket;
 import edu.mayo.mprc.daemon.worker.Worker;
 import edu.mayo.mprc.daemon.worker.WorkerBase;
@@ -42,7 +43,7 @@ import java.util.regex.Pattern;
 /**
  * Daemon worker for Mascot.
  */
-public final class MascotWorker extends WorkerBase {
+public final class MascotWorker extends WorkerBase implements ReusableWorker {
 	private static final Logger LOGGER = Logger.getLogger(MascotWorker.class);
 
 	private static final int BUFFER_SIZE = 8192;
@@ -74,6 +75,13 @@ public final class MascotWorker extends WorkerBase {
 	 */
 	public static final String MASCOT_CGI = "cgi/nph-mascot.exe?1";
 
+	@Override
+	public void reset() {
+		connection = null;
+		channel = null;
+		mascotOutputFile = null;
+	}
+
 	@Override
 	public void process(final WorkPacket workPacket, final File tempWorkFolder, final UserProgressReporter progressReporter) {
 		final MascotWorkPacket mascotWorkPacket = (MascotWorkPacket) workPacket;
@@ -45,6 +45,8 @@ public final class MsconvertCache extends WorkCache<MsconvertWorkPacket> {
 
 					.property(WorkCache.CacheConfig.SERVICE, "Msconvert instance", "The module that will do the conversion. The cache just caches the results.")
 					.reference("msconvert", UiBuilder.NONE_TYPE);
+
+			WorkCache.CacheConfig.evictionUi(builder);
 		}
 	}
 }
\ No newline at end of file
@@ -2,27 +2,31 @@ package edu.mayo.mprc.msmseval;
 
 import com.google.common.base.Joiner;
 import edu.mayo.mprc.MprcException;
+import edu.mayo.mprc.io.ByteTsvLines;
+import edu.mayo.mprc.io.ByteTsvReader;
 import edu.mayo.mprc.io.KeyedTsvReader;
+import edu.mayo.mprc.utilities.FileUtilities;
 import edu.mayo.mprc.utilities.StringUtilities;
 import org.apache.log4j.Logger;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
-import java.util.HashMap;
-import java.util.Map;
+import java.nio.charset.Charset;
 
 /**
  * A class capable of reading msmsEval output and then responding to queries. For given scan number produces a tab-separated line
  * with msmsEval data. If the input file is null, the class will return empty output for any query.
  * <p/>
- * Right now the class simply loads the full file into memory, in the future (as we scale) we might want to do indexing
- * and serve the data from the disk.
+ * Only the header is read up front. The full file is loaded into memory on the first query, so a reader that is used
+ * only for its header and {@link #getFile()} never loads it.
  */
 public final class MSMSEvalOutputReader implements KeyedTsvReader {
 	private static final Logger LOGGER = Logger.getLogger(MSMSEvalOutputReader.class);
 
-	private Map<String/*Scan ID*/, String/*The full line without scan ID*/> lines;
+	private final File msmsEvalFile;
+	/**
+	 * The full lines without scan ID, tab-separated, keyed by the scan ID. Kept as bytes until asked for.
+	 */
+	private ByteTsvLines lines;
 	private String[] header;
 	private static final String SCAN_NUM_HEADER = "Scan #";
 	/**
@@ -41,26 +45,54 @@ public final class MSMSEvalOutputReader implements KeyedTsvReader {
 	}
 
 	/**
-	 * Prepare the reader. In this implementation, the entire file is loaded at once and cached in memory (we
-	 * expect the file to have around 10000 lines).
+	 * Prepare the reader. Only the header is read now, the entire file is loaded and cached in memory
+	 * when first needed (we expect the file to have around 10000 lines).
 	 *
 	 * @param msmsEvalFile msmsEval file to process
 	 */
 	public MSMSEvalOutputReader(final File msmsEvalFile) {
+		this.msmsEvalFile = msmsEvalFile;
 		if (msmsEvalFile == null) {
 			// Null files are honored - they will act as if there was no input information
 			// Use default header (otherwise we use header obtained from the file).
 			header = DEFAULT_HEADER;
 		} else {
+			ByteTsvReader reader = null;
 			try {
-				lines = new HashMap<String, String>();
-				parse(new BufferedReader(new FileReader(msmsEvalFile)), lines);
+				reader = new ByteTsvReader(msmsEvalFile, ',');
+				readHeader(reader);
 			} catch (Exception t) {
-				throw new MprcException("Cannot parse msmsEval output file [" + msmsEvalFile.getAbsolutePath() + "]");
+				throw new MprcException("Cannot parse msmsEval output file [" + msmsEvalFile.getAbsolutePath() + "]", t);
+			} finally {
+				FileUtilities.closeQuietly(reader);
 			}
 		}
 	}
 
+	/**
+	 * @return The msmsEval output file, null if there is none.
+	 */
+	public File getFile() {
+		return msmsEvalFile;
+	}
+
+	private void load() {
+		if (lines != null || msmsEvalFile == null) {
+			return;
+		}
+		final ByteTsvLines loaded = new ByteTsvLines(',', Charset.defaultCharset());
+		ByteTsvReader reader = null;
+		try {
+			reader = new ByteTsvReader(msmsEvalFile, ',');
+			parse(reader, loaded);
+		} catch (Exception t) {
+			throw new MprcException("Cannot parse msmsEval output file [" + msmsEvalFile.getAbsolutePath() + "]", t);
+		} finally {
+			FileUtilities.closeQuietly(reader);
+		}
+		lines = loaded;
+	}
+
 	/**
 	 * @return A tab-separated header line (sans the Scan number column) for all columns in the data in proper format
 	 */
@@ -81,6 +113,7 @@ public final class MSMSEvalOutputReader implements KeyedTsvReader {
 	 */
 	@Override
 	public String getLineForKey(final String key) {
+		load();
 		if (lines == null) {
 			return EMPTY_LINE;
 		}
@@ -91,30 +124,26 @@ public final class MSMSEvalOutputReader implements KeyedTsvReader {
 		return line;
 	}
 
-	private void parse(final BufferedReader br, final Map<String, String> lines) {
+	private void readHeader(final ByteTsvReader reader) {
+		if (!reader.nextLine()) {
+			throw new MprcException("The msmsEval output has no header");
+		}
+		final String[] tmpHeader = reader.getLine().split(",");
+		if (!SCAN_NUM_HEADER.equals(tmpHeader[0])) {
+			throw new MprcException("Unknown msmsEval output format (first column should be '" + SCAN_NUM_HEADER + "', was '" + tmpHeader[0] + "'.");
+		}
+		header = new String[tmpHeader.length - 1];
+		System.arraycopy(tmpHeader, 1, header, 0, tmpHeader.length - 1);
+	}
+
+	private void parse(final ByteTsvReader reader, final ByteTsvLines lines) {
 		try {
-			String line = br.readLine();
-			if (line == null) {
-				throw new MprcException("The msmsEval output has no header");
-			}
-			final String[] tmpHeader = line.split(",");
-			if (!SCAN_NUM_HEADER.equals(tmpHeader[0])) {
-				throw new MprcException("Unknown msmsEval output format (first column should be '" + SCAN_NUM_HEADER + "', was '" + tmpHeader[0] + "'.");
-			}
-			header = new String[tmpHeader.length - 1];
-			System.arraycopy(tmpHeader, 1, header, 0, tmpHeader.length - 1);
+			readHeader(reader);
 			int ignoredLines = 0;
-			while (true) {
-				line = br.readLine();
-				if (line == null) {
-					break;
-				}
-
-				final int firstComma = line.indexOf(',');
-				if (firstComma > 0) {
+			while (reader.nextLine()) {
+				if (reader.getColumnCount() > 1 && !reader.isEmpty(0)) {
 					// We have data
-					final String tabSeparatedLine = line.replace(',', '\t');
-					lines.put(line.substring(0, firstComma), tabSeparatedLine.substring(firstComma + 1));
+					lines.put(reader.getInt(0), reader, 1);
 				} else {
 					// Ignore the line
 					ignoredLines++;
@@ -41,6 +41,8 @@ public final class MsmsEvalCache extends WorkCache<MSMSEvalWorkPacket> {
 
 					.property(CacheConfig.SERVICE, "MsmsEval spectrum QA", "The msmsEval engine that will do the work. The cache just caches the results.")
 					.reference("msmsEval", UiBuilder.NONE_TYPE);
+
+			CacheConfig.evictionUi(builder);
 		}
 	}
 }
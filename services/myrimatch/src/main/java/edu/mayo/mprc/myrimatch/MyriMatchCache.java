@@ -42,6 +42,8 @@ public final class MyriMatchCache extends WorkCache<MyriMatchWorkPacket> {
 
 					.property(WorkCache.CacheConfig.SERVICE, "MyriMatch Search Engine", "The MyriMatch engine that will do the search. The cache just caches the results.")
 					.reference("myrimatch", UiBuilder.NONE_TYPE);
+
+			WorkCache.CacheConfig.evictionUi(builder);
 		}
 	}
 }
@@ -1,12 +1,13 @@
 package edu.mayo.mprc.myrimatch;
 
 import edu.mayo.mprc.MprcException;
+import edu.mayo.mprc.daemon.worker.MemoryRequirements;
 import edu.mayo.mprc.daemon.worker.WorkPacket;
 import edu.mayo.mprc.searchengine.EngineWorkPacket;
 
 import java.io.File;
 
-public final class MyriMatchWorkPacket extends EngineWorkPacket {
+public final class MyriMatchWorkPacket extends EngineWorkPacket implements MemoryRequirements {
 
 	private static final long serialVersionUID = 20110711;
 
@@ -55,4 +56,9 @@ public final class MyriMatchWorkPacket extends EngineWorkPacket {
 				isFromScratch()
 		);
 	}
+
+	@Override
+	public int getRequiredMemoryMegabytes() {
+		return 4096;
+	}
 }
@@ -1,15 +1,11 @@
 package edu.mayo.mprc.myrimatch;
 
+import com.google.common.base.Strings;
 import edu.mayo.mprc.MprcException;
-import edu.mayo.mprc.utilities.ResourceUtilities;
-import edu.mayo.mprc.utilities.exceptions.ExceptionUtilities;
+import edu.mayo.mprc.utilities.FileUtilities;
 
-import javax.xml.transform.Source;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.stream.StreamResult;
-import javax.xml.transform.stream.StreamSource;
-import java.io.File;
+import javax.xml.stream.*;
+import java.io.*;
 import java.util.List;
 
 /**
@@ -18,50 +14,144 @@ import java.util.List;
  * @author Roman Zenka
  */
 public final class MzIdentMl {
+	private static final String MZ_IDENT_ML_NAMESPACE = "http://psidev.info/psi/pi/mzIdentML/1.1";
+	private static final String SPECTRUM_IDENTIFICATION_RESULT = "SpectrumIdentificationResult";
+	private static final String SPECTRUM_ID = "spectrumID";
+	private static final String INDEX_PREFIX = "index=";
+	private static final String OUTPUT_ENCODING = "UTF-8";
+	private static final int BUFFER_SIZE = 64 * 1024;
+
 	private MzIdentMl() {
 	}
 
-	public static String retitle(final Object input, final Object titles) {
-		if (!(titles instanceof List)) {
-			ExceptionUtilities.throwCastException(titles, List.class);
-			return "";
-		}
-		final List<String> spectraTitles = (List<String>) titles;
-		if (!(input instanceof String)) {
-			ExceptionUtilities.throwCastException(input, String.class);
-			return "";
-		}
-		final String spectrumId = (String) input;
-		if (spectrumId.startsWith("index=")) {
-			final String spectrumIdString = spectrumId.substring("index=".length());
+	/**
+	 * @param spectrumId Spectrum ID as produced by MyriMatch, e.g. <c>index=12</c>
+	 * @param titles     Spectrum titles, indexed by the spectrum index.
+	 * @return Title of the spectrum.
+	 */
+	static String retitle(final String spectrumId, final String[] titles) {
+		if (spectrumId.startsWith(INDEX_PREFIX)) {
+			final String spectrumIdString = spectrumId.substring(INDEX_PREFIX.length());
 			final int spectrumNumber;
 			try {
 				spectrumNumber = Integer.parseInt(spectrumIdString);
 			} catch (NumberFormatException e) {
 				throw new MprcException("Spectrum ID [" + spectrumId + "] does not denote a numerical spectrum index", e);
 			}
-			if (spectrumNumber >= 0 && spectrumNumber < spectraTitles.size()) {
-				return spectraTitles.get(spectrumNumber);
+			if (spectrumNumber >= 0 && spectrumNumber < titles.length) {
+				return titles[spectrumNumber];
 			} else {
-				throw new MprcException("Invalid spectrum index " + spectrumNumber + ". Must be within 0-" + (spectraTitles.size() - 1));
+				throw new MprcException("Invalid spectrum index " + spectrumNumber + ". Must be within 0-" + (titles.length - 1));
 			}
 		} else {
 			throw new MprcException("Unexepected spectrum ID format: " + spectrumId);
 		}
 	}
 
+	/**
+	 * Replace the <c>spectrumID</c> of each <c>SpectrumIdentificationResult</c> with the matching spectrum title.
+	 * <p/>
+	 * The file is streamed through in a single pass, so the memory used does not depend on its size.
+	 * The output is always written in UTF-8.
+	 *
+	 * @param input         MzIdentML as produced by MyriMatch.
+	 * @param spectraTitles Titles of the spectra, indexed by the spectrum index.
+	 * @param output        Where to write the modified file.
+	 */
 	public static void replace(final File input, final List<String> spectraTitles, final File output) {
+		final String[] titles = spectraTitles.toArray(new String[spectraTitles.size()]);
+		InputStream inputStream = null;
+		OutputStream outputStream = null;
 		try {
-			final TransformerFactory transformerFactory = TransformerFactory.newInstance();
-			final Source xslt = new StreamSource(ResourceUtilities.getReader("classpath:edu/mayo/mprc/myrimatch/replaceSpectraTitles.xsl", MzIdentMl.class));
-			final Transformer transformer = transformerFactory.newTransformer(xslt);
-			transformer.setParameter("titles", spectraTitles);
+			inputStream = new BufferedInputStream(new FileInputStream(input), BUFFER_SIZE);
+			outputStream = new BufferedOutputStream(new FileOutputStream(output), BUFFER_SIZE);
 
-			final Source inputText = new StreamSource(input);
-			final StreamResult outputText = new StreamResult(output);
-			transformer.transform(inputText, outputText);
+			final XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+			inputFactory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.FALSE);
+			final XMLStreamReader reader = inputFactory.createXMLStreamReader(inputStream);
+			final XMLStreamWriter writer = XMLOutputFactory.newInstance().createXMLStreamWriter(outputStream, OUTPUT_ENCODING);
+			try {
+				copy(reader, writer, titles);
+				writer.flush();
+			} finally {
+				writer.close();
+				reader.close();
+			}
+			outputStream.close();
 		} catch (Exception e) {
 			throw new MprcException("Could not transform mzIdentML file " + input.getAbsolutePath() + " into " + output.getAbsolutePath(), e);
+		} finally {
+			FileUtilities.closeQuietly(inputStream);
+			FileUtilities.closeQuietly(outputStream);
+		}
+	}
+
+	private static void copy(final XMLStreamReader reader, final XMLStreamWriter writer, final String[] titles) throws XMLStreamException {
+		writer.writeStartDocument(OUTPUT_ENCODING, reader.getVersion() == null ? "1.0" : reader.getVersion());
+		writer.writeCharacters("\n");
+		while (reader.hasNext()) {
+			switch (reader.next()) {
+				case XMLStreamConstants.START_ELEMENT:
+					copyStartElement(reader, writer, titles);
+					break;
+				case XMLStreamConstants.END_ELEMENT:
+					writer.writeEndElement();
+					break;
+				case XMLStreamConstants.CHARACTERS:
+				case XMLStreamConstants.SPACE:
+					writer.writeCharacters(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+					break;
+				case XMLStreamConstants.CDATA:
+					writer.writeCData(reader.getText());
+					break;
+				case XMLStreamConstants.COMMENT:
+					writer.writeComment(reader.getText());
+					break;
+				case XMLStreamConstants.PROCESSING_INSTRUCTION:
+					writer.writeProcessingInstruction(reader.getPITarget(), reader.getPIData());
+					break;
+				case XMLStreamConstants.DTD:
+					writer.writeDTD(reader.getText());
+					break;
+				case XMLStreamConstants.ENTITY_REFERENCE:
+					writer.writeEntityRef(reader.getLocalName());
+					break;
+				case XMLStreamConstants.END_DOCUMENT:
+					writer.writeEndDocument();
+					break;
+				default:
+					break;
+			}
+		}
+	}
+
+	private static void copyStartElement(final XMLStreamReader reader, final XMLStreamWriter writer, final String[] titles) throws XMLStreamException {
+		final String prefix = Strings.nullToEmpty(reader.getPrefix());
+		final String namespace = Strings.nullToEmpty(reader.getNamespaceURI());
+		writer.writeStartElement(prefix, reader.getLocalName(), namespace);
+
+		for (int i = 0; i < reader.getNamespaceCount(); i++) {
+			final String namespacePrefix = reader.getNamespacePrefix(i);
+			if (namespacePrefix == null || namespacePrefix.length() == 0) {
+				writer.writeDefaultNamespace(reader.getNamespaceURI(i));
+			} else {
+				writer.writeNamespace(namespacePrefix, reader.getNamespaceURI(i));
+			}
+		}
+
+		final boolean retitle = SPECTRUM_IDENTIFICATION_RESULT.equals(reader.getLocalName()) && MZ_IDENT_ML_NAMESPACE.equals(namespace);
+		for (int i = 0; i < reader.getAttributeCount(); i++) {
+			final String attributeNamespace = Strings.nullToEmpty(reader.getAttributeNamespace(i));
+			final String attributeName = reader.getAttributeLocalName(i);
+			String value = reader.getAttributeValue(i);
+			if (retitle && attributeNamespace.length() == 0 && SPECTRUM_ID.equals(attributeName)) {
+				value = retitle(value, titles);
+			}
+			if (attributeNamespace.length() == 0) {
+				writer.writeAttribute(attributeName, value);
+			} else {
+				writer.writeAttribute(Strings.nullToEmpty(reader.getAttributePrefix(i)), attributeNamespace, attributeName, value);
+			}
 		}
 	}
 }
@@ -1,18 +1,25 @@
 package edu.mayo.mprc.myrimatch;
 
+import edu.mayo.mprc.MprcException;
 import edu.mayo.mprc.utilities.FileUtilities;
 import edu.mayo.mprc.utilities.TestingUtilities;
+import org.apache.log4j.Logger;
 import org.custommonkey.xmlunit.XMLTestCase;
 import org.custommonkey.xmlunit.XMLUnit;
+import org.testng.Assert;
 import org.testng.annotations.Test;
 
-import java.io.File;
+import java.io.*;
 import java.util.ArrayList;
+import java.util.List;
 
 /**
  * @author Roman Zenka
  */
 public final class MzIdentMlTest extends XMLTestCase {
+	private static final Logger LOGGER = Logger.getLogger(MzIdentMlTest.class);
+	private static final long SYNTHETIC_SIZE = 500L * 1024 * 1024;
+
 	@Test
 	public void testReplace() throws Exception {
 		XMLUnit.setIgnoreWhitespace(true);
@@ -31,4 +38,115 @@ public final class MzIdentMlTest extends XMLTestCase {
 			FileUtilities.cleanupTempFile(output);
 		}
 	}
+
+	@Test(expectedExceptions = MprcException.class)
+	public void shouldFailOnMissingTitle() throws Exception {
+		final File input = TestingUtilities.getTempFileFromResource(MzIdentMlTest.class, "test.mzid.xml", null);
+		final File output = File.createTempFile("transformed", ".mzid");
+		try {
+			final ArrayList<String> titles = new ArrayList<String>(1);
+			titles.add("spectrum 0");
+			MzIdentMl.replace(input, titles, output);
+		} finally {
+			FileUtilities.cleanupTempFile(input);
+			FileUtilities.cleanupTempFile(output);
+		}
+	}
+
+	/**
+	 * Retitle a synthetic mzIdentML file of about 500 MB and report the throughput.
+	 */
+	@Test(groups = {"benchmark"})
+	public void benchmarkLargeFile() throws IOException {
+		final File folder = FileUtilities.createTempFolder();
+		try {
+			final File input = new File(folder, "large.mzid");
+			final int spectra = writeSyntheticMzIdentMl(input, SYNTHETIC_SIZE);
+			final List<String> titles = new ArrayList<String>(spectra);
+			for (int i = 0; i < spectra; i++) {
+				titles.add("large.mgf spectrum " + i + " (large." + i + "." + i + ".2.dta)");
+			}
+
+			final File output = new File(folder, "retitled.mzid");
+			final long start = System.currentTimeMillis();
+			MzIdentMl.replace(input, titles, output);
+			final long time = Math.max(1, System.currentTimeMillis() - start);
+			LOGGER.info("Retitled " + spectra + " spectra in " + input.length() / 1024 / 1024 + " MB of mzIdentML in " + time + " ms, "
+					+ input.length() / 1024 * 1000 / 1024 / time + " MB/s");
+
+			Assert.assertEquals(countRetitled(output), spectra);
+		} finally {
+			FileUtilities.deleteNow(folder);
+		}
+	}
+
+	/**
+	 * @return Number of spectrum identification results written.
+	 */
+	private static int writeSyntheticMzIdentMl(final File file, final long size) throws IOException {
+		final CountingWriter writer = new CountingWriter(new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "ISO-8859-1")));
+		int spectra = 0;
+		try {
+			writer.write("<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?>\n" +
+					"<MzIdentML id=\"synthetic\" version=\"1.1.0\" xmlns=\"http://psidev.info/psi/pi/mzIdentML/1.1\"\n" +
+					"        xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\">\n" +
+					"    <DataCollection>\n" +
+					"        <AnalysisData>\n" +
+					"            <SpectrumIdentificationList id=\"SIL\" numSequencesSearched=\"13234\">\n");
+			while (writer.getCount() < size) {
+				writer.write("                <SpectrumIdentificationResult id=\"SIR_" + spectra + "\" spectrumID=\"index=" + spectra + "\" spectraData_ref=\"SD\">\n" +
+						"                    <SpectrumIdentificationItem id=\"SIR_" + spectra + "_SII_1\" rank=\"1\" chargeState=\"2\" peptide_ref=\"PEP_1\"\n" +
+						"                                                experimentalMassToCharge=\"885.10363764\" calculatedMassToCharge=\"885.692387800213\"\n" +
+						"                                                passThreshold=\"true\" massTable_ref=\"MT\">\n" +
+						"                        <PeptideEvidenceRef peptideEvidence_ref=\"DBSeq_PEP_1\"/>\n" +
+						"                        <cvParam cvRef=\"MS\" accession=\"MS:1001121\" name=\"number of matched peaks\" value=\"20\"/>\n" +
+						"                        <cvParam cvRef=\"MS\" accession=\"MS:1001589\" name=\"MyriMatch:MVH\" value=\"14.753323401682\"/>\n" +
+						"                        <userParam name=\"xcorr\" value=\"1.1625567067420124\"/>\n" +
+						"                    </SpectrumIdentificationItem>\n" +
+						"                </SpectrumIdentificationResult>\n");
+				spectra++;
+			}
+			writer.write("            </SpectrumIdentificationList>\n" +
+					"        </AnalysisData>\n" +
+					"    </DataCollection>\n" +
+					"</MzIdentML>\n");
+		} finally {
+			FileUtilities.closeQuietly(writer);
+		}
+		return spectra;
+	}
+
+	private static int countRetitled(final File file) throws IOException {
+		final BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+		int count = 0;
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.contains("spectrumID=\"large.mgf spectrum ")) {
+					count++;
+				}
+			}
+		} finally {
+			FileUtilities.closeQuietly(reader);
+		}
+		return count;
+	}
+
+	private static final class CountingWriter extends FilterWriter {
+		private long count;
+
+		private CountingWriter(final Writer out) {
+			super(out);
+		}
+
+		@Override
+		public void write(final String str) throws IOException {
+			super.write(str, 0, str.length());
+			count += str.length();
+		}
+
+		public long getCount() {
+			return count;
+		}
+	}
 }
@@ -1,5 +1,6 @@
 package edu.mayo.mprc.qa;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import edu.mayo.mprc.MprcException;
 import edu.mayo.mprc.config.*;
 import edu.mayo.mprc.config.ui.ServiceUiFactory;
@@ -22,7 +23,14 @@ import javax.annotation.Resource;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Generates data files and image files representing QA data.
@@ -36,8 +44,12 @@ public final class QaWorker extends WorkerBase {
 	private static final int INITIAL_OUTPUT_FILES = 10;
 	// Generating input files for the R script is considered 50% of all work(R script takes another 50%)
 	private static final float PERCENT_GENERATING_FILES = 50.0f;
+	// When R runs per file, the per-file runs take 40%, collecting the report takes the rest
+	private static final float PERCENT_R_PER_FILE = 90.0f;
 	// 100% - work complete
 	private static final float COMPLETE = 100.0f;
+	// The R script only computes the summary row of a single file and saves it
+	private static final String R_MODE_ROW = "row";
 	public static final String DESC = "Generates statistical information for analysis of the data adquisition process and the data search process.";
 
 	private String rExecutable;
@@ -45,11 +57,14 @@ public final class QaWorker extends WorkerBase {
 	private File xvfbWrapperScript;
 	private String rtcMzOrder;
 	private SpectrumInfoJoiner spectrumInfoJoiner;
+	private int threads = Math.max(1, Runtime.getRuntime().availableProcessors());
+	private boolean parallelR;
 
 	private static final String XVFB_WRAPPER_SCRIPT = "xvfbWrapperScript";
 	private static final String R_SCRIPT = "rScript";
 	private static final String R_EXECUTABLE = "rExecutable";
 	private static final String RAWDUMP = "rawdump";
+	private static final String PARALLEL_R = "parallelR";
 
 	@Override
 	public void process(final WorkPacket workPacket, final File tempWorkFolder, final UserProgressReporter progressReporter) {
@@ -62,44 +77,62 @@ public final class QaWorker extends WorkerBase {
 
 		final File rScriptInputFile = new File(qaReportFolder, "rInputData.tsv");
 
-		FileWriter fileWriter = null;
-
-		final LinkedList<File> generatedFileList = new LinkedList<File>();
-
-		boolean atLeastOneFileMissing = !reportFile.exists();
-		boolean writerIsClosed = false;
+		final List<ExperimentQa> experimentQas = qaWorkPacket.getExperimentQas();
+		final int numFilesTotal = countTotalFiles(experimentQas);
 
+		final ExecutorService service = Executors.newFixedThreadPool(
+				Math.max(1, Math.min(numFilesTotal, getThreads())),
+				new ThreadFactoryBuilder()
+						.setNameFormat("qa-file-%d")
+						.setDaemon(true)
+						.build());
 		try {
-			fileWriter = new FileWriter(rScriptInputFile);
-
-			fileWriter.write("Data File\tId File\tMz File\tIdVsMz File\tSource Current File\tmsmsEval Discriminant File\tGenerate Files\tRaw File\tmsmsEval Output\tRaw Info File\tRaw Spectra File\tPeptide Tolerance File\tTIC File\tChromatogram File\tUV Data File\tRTC Input File\tRTC Picture File");
-			fileWriter.write("\n");
-
-			final List<ExperimentQa> experimentQas = qaWorkPacket.getExperimentQas();
-
-			int numFilesDone = 0;
-			final int numFilesTotal = countTotalFiles(experimentQas);
-
+			final ParallelProgress joinProgress = new ParallelProgress(progressReporter, 0.0f, PERCENT_GENERATING_FILES, numFilesTotal);
+			final List<Future<QaFileResult>> futures = new ArrayList<Future<QaFileResult>>(numFilesTotal);
 			for (final ExperimentQa experimentQa : experimentQas) {
-				final List<QaFiles> entries = experimentQa.getQaFiles();
-				for (final QaFiles me : entries) {
-					atLeastOneFileMissing |= addRScriptInputLine(fileWriter, qaReportFolder, experimentQa, generatedFileList, me);
-					numFilesDone++;
-					reportProgress(numFilesDone * PERCENT_GENERATING_FILES / numFilesTotal, progressReporter);
+				final ScaffoldSpectra scaffoldSpectra = new ScaffoldSpectra(experimentQa);
+				for (final QaFiles qaFiles : experimentQa.getQaFiles()) {
+					futures.add(service.submit(new Callable<QaFileResult>() {
+						@Override
+						public QaFileResult call() throws IOException {
+							final QaFileResult result = prepareRScriptInput(qaReportFolder, experimentQa, scaffoldSpectra, qaFiles);
+							joinProgress.unitDone();
+							return result;
+						}
+					}));
 				}
 			}
 
-			FileUtilities.closeObjectQuietly(fileWriter);
-			writerIsClosed = true;
+			final List<QaFileResult> results = new ArrayList<QaFileResult>(numFilesTotal);
+			boolean atLeastOneFileMissing = !reportFile.exists();
+			for (final Future<QaFileResult> future : futures) {
+				final QaFileResult result = getResult(future);
+				atLeastOneFileMissing |= result.isAtLeastOneFileMissing();
+				results.add(result);
+			}
+
+			List<File> rowFiles = Collections.emptyList();
+			if (atLeastOneFileMissing && isParallelR()) {
+				rowFiles = runRScriptPerFile(service, qaReportFolder, results, decoyRegex, progressReporter);
+			}
+			writeRScriptInput(rScriptInputFile, results);
 
 			if (atLeastOneFileMissing) {
 				LOGGER.info("Running R script [" + getRScript().getAbsolutePath() + "] for output file [" + reportFile + "]");
-				runRScript(rScriptInputFile, reportFile, decoyRegex, getRtcMzOrder(), progressReporter);
+				try {
+					runRScript(rScriptInputFile, reportFile, decoyRegex, getRtcMzOrder(), null, progressReporter);
+				} finally {
+					for (final File rowFile : rowFiles) {
+						FileUtilities.quietDelete(rowFile);
+					}
+				}
 			}
 
-			for (final File file : generatedFileList) {
-				if (!file.exists()) {
-					throw new MprcException("Some of the output files for the QA have not been created, example: [" + file.getAbsolutePath() + "]");
+			for (final QaFileResult result : results) {
+				for (final File file : result.getGeneratedFiles()) {
+					if (!file.exists()) {
+						throw new MprcException("Some of the output files for the QA have not been created, example: [" + file.getAbsolutePath() + "]");
+					}
 				}
 			}
 
@@ -107,10 +140,99 @@ public final class QaWorker extends WorkerBase {
 		} catch (final Exception e) {
 			throw new MprcException("Processing of QA work packet failed.", e);
 		} finally {
-			if (!writerIsClosed) {
-				FileUtilities.closeObjectQuietly(fileWriter);
+			service.shutdownNow();
+		}
+	}
+
+	private static <T> T getResult(final Future<T> future) {
+		try {
+			return future.get();
+		} catch (ExecutionException e) {
+			throw new MprcException(e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new MprcException("Interrupted while generating QA data", e);
+		}
+	}
+
+	private void writeRScriptInput(final File rScriptInputFile, final List<QaFileResult> results) throws IOException {
+		FileWriter fileWriter = null;
+		try {
+			fileWriter = new FileWriter(rScriptInputFile);
+			writeRScriptInputHeader(fileWriter);
+			for (final QaFileResult result : results) {
+				fileWriter.write(result.getInputLine());
+			}
+		} finally {
+			FileUtilities.closeObjectQuietly(fileWriter);
+		}
+	}
+
+	private static void writeRScriptInputHeader(final Writer writer) throws IOException {
+		writer.write("Data File\tId File\tMz File\tIdVsMz File\tSource Current File\tmsmsEval Discriminant File\tGenerate Files\tRaw File\tmsmsEval Output\tRaw Info File\tRaw Spectra File\tPeptide Tolerance File\tTIC File\tChromatogram File\tUV Data File\tRTC Input File\tRTC Picture File\tRow File");
+		writer.write("\n");
+	}
+
+	/**
+	 * Runs the R script separately for each file that needs its images generated, in parallel.
+	 * Each run stores the summary row it computed into a row file. The row file is then referenced from the input
+	 * line of the file, so the final report run only collects the rows instead of generating everything again.
+	 *
+	 * @return The row files that were created.
+	 */
+	private List<File> runRScriptPerFile(final ExecutorService service, final File qaReportFolder, final List<QaFileResult> results,
+	                                     final String decoyRegex, final UserProgressReporter progressReporter) {
+		final List<QaFileResult> toGenerate = new ArrayList<QaFileResult>(results.size());
+		for (final QaFileResult result : results) {
+			if (result.isGenerate()) {
+				toGenerate.add(result);
+			}
+		}
+
+		final ParallelProgress rProgress = new ParallelProgress(progressReporter, PERCENT_GENERATING_FILES, PERCENT_R_PER_FILE, toGenerate.size());
+		final List<File> rowFiles = new ArrayList<File>(toGenerate.size());
+		final List<Future<File>> futures = new ArrayList<Future<File>>(toGenerate.size());
+		for (final QaFileResult result : toGenerate) {
+			futures.add(service.submit(new Callable<File>() {
+				@Override
+				public File call() throws IOException {
+					final File rowFile = new File(qaReportFolder, result.getAnalysisName() + ".row.rds");
+					final File inputFile = new File(qaReportFolder, result.getAnalysisName() + ".rInputData.tsv");
+					FileWriter fileWriter = null;
+					try {
+						fileWriter = new FileWriter(inputFile);
+						writeRScriptInputHeader(fileWriter);
+						fileWriter.write(result.getInputLine());
+						FileUtilities.closeObjectQuietly(fileWriter);
+						fileWriter = null;
+
+						LOGGER.info("Running R script [" + getRScript().getAbsolutePath() + "] for [" + result.getAnalysisName() + "]");
+						runRScript(inputFile, rowFile, decoyRegex, getRtcMzOrder(), R_MODE_ROW, progressReporter);
+					} finally {
+						FileUtilities.closeObjectQuietly(fileWriter);
+						FileUtilities.quietDelete(inputFile);
+					}
+					rProgress.unitDone();
+					return rowFile;
+				}
+			}));
+		}
+		try {
+			for (final Future<File> future : futures) {
+				rowFiles.add(getResult(future));
 			}
+		} catch (MprcException e) {
+			for (final QaFileResult result : toGenerate) {
+				FileUtilities.quietDelete(new File(qaReportFolder, result.getAnalysisName() + ".row.rds"));
+			}
+			throw e;
+		}
+
+		// The final report run picks the rows up, no need to generate the images again
+		for (int i = 0; i < toGenerate.size(); i++) {
+			toGenerate.get(i).rowFileCreated(rowFiles.get(i));
 		}
+		return rowFiles;
 	}
 
 	/**
@@ -121,9 +243,12 @@ public final class QaWorker extends WorkerBase {
 		return null;
 	}
 
-	private boolean addRScriptInputLine(final FileWriter fileWriter, final File qaReportFolder, final ExperimentQa experimentQa,
-	                                    final LinkedList<File> generatedFiles,
-	                                    final QaFiles qaFiles) throws IOException {
+	/**
+	 * Generate the data file for one .RAW file (if needed) and prepare its line of the R script input.
+	 * Called in parallel for all the files.
+	 */
+	private QaFileResult prepareRScriptInput(final File qaReportFolder, final ExperimentQa experimentQa,
+	                                         final ScaffoldSpectra scaffoldSpectra, final QaFiles qaFiles) throws IOException {
 
 		final File msmsEvalDiscriminantFile;
 		final File ticFile;
@@ -167,8 +292,7 @@ public final class QaWorker extends WorkerBase {
 
 			LOGGER.info("Generating output file [" + outputFile.getAbsolutePath() + "]");
 
-			final ScaffoldQaSpectraReader scaffoldParser = new ScaffoldQaSpectraReader();
-			scaffoldParser.load(experimentQa.getScaffoldSpectraFile(), experimentQa.getScaffoldVersion(), null);
+			final ScaffoldQaSpectraReader scaffoldParser = scaffoldSpectra.get();
 			final RawDumpReader rawDumpReader = new RawDumpReader(qaFiles.getRawSpectraFile());
 			final MSMSEvalOutputReader msmsEvalReader = new MSMSEvalOutputReader(qaFiles.getMsmsEvalOutputFile());
 			final UvDataReader uvDataReader = new UvDataReader(qaFiles.getUvDataFile());
@@ -222,12 +346,14 @@ public final class QaWorker extends WorkerBase {
 				rScriptOutputFilesSet.add(rtcFile);
 			}
 
-			generatedFiles.addAll(rScriptOutputFilesSet);
 		}
 
 		final File chromatogramFile = qaFiles.getChromatogramFile();
-		writeInputLine(fileWriter, outputFile, massCalibrationRtFile, massCalibrationMzFile, mzRtFile, sourceCurrentFile, msmsEvalDiscriminantFile, generate, qaFiles, pepTolFile, ticFile, chromatogramFile, uvDataFile, rtcFile);
-		return atLeastOneFileMissing;
+		final StringWriter inputLine = new StringWriter();
+		writeInputLine(inputLine, outputFile, massCalibrationRtFile, massCalibrationMzFile, mzRtFile, sourceCurrentFile, msmsEvalDiscriminantFile, generate, qaFiles, pepTolFile, ticFile, chromatogramFile, uvDataFile, rtcFile);
+		return new QaFileResult(uniqueMgfAnalysisName, atLeastOneFileMissing, generate,
+				generate ? rScriptOutputFilesSet : Collections.<File>emptyList(),
+				inputLine.toString());
 	}
 
 	/**
@@ -279,7 +405,7 @@ public final class QaWorker extends WorkerBase {
 		return null;
 	}
 
-	private void writeInputLine(final FileWriter fileWriter, final File outputFile, final File idVsPpmFile, final File mzVsPpmFile, final File idVsMzFile, final File sourceCurrentFile, final File msmsEvalDiscriminantFile, final boolean generate, final QaFiles qaFiles, final File pepTolFile, final File ticFile, final File chromatogramFile, final File uvDataFile, final File rtcFile) throws IOException {
+	private void writeInputLine(final Writer fileWriter, final File outputFile, final File idVsPpmFile, final File mzVsPpmFile, final File idVsMzFile, final File sourceCurrentFile, final File msmsEvalDiscriminantFile, final boolean generate, final QaFiles qaFiles, final File pepTolFile, final File ticFile, final File chromatogramFile, final File uvDataFile, final File rtcFile) throws IOException {
 		fileWriter.write(outputFile.getAbsolutePath());
 		fileWriter.write("\t");
 		fileWriter.write(idVsPpmFile.getAbsolutePath());
@@ -313,6 +439,8 @@ public final class QaWorker extends WorkerBase {
 		fileWriter.write(isDataFileValid(qaFiles.getRtcFile()) ? qaFiles.getRtcFile().getAbsolutePath() : "");
 		fileWriter.write("\t");
 		fileWriter.write(rtcFile != null ? rtcFile.getAbsolutePath() : "");
+		fileWriter.write("\t");
+		// Row file, filled in when the R script was already run for this file alone
 		fileWriter.write("\n");
 	}
 
@@ -332,11 +460,14 @@ public final class QaWorker extends WorkerBase {
 	 * @param file
 	 * @return true if file exists and is not empty.
 	 */
-	private boolean isDataFileValid(final File file) {
+	private static boolean isDataFileValid(final File file) {
 		return file != null && file.exists() && file.length() > 0;
 	}
 
-	private void runRScript(final File inputFile, final File reportFile, final String decoyRegex, final String rtcMzOrder, final UserProgressReporter reporter) {
+	/**
+	 * @param mode Null for producing the full report, {@link #R_MODE_ROW} to save the summary row of a single file.
+	 */
+	private void runRScript(final File inputFile, final File reportFile, final String decoyRegex, final String rtcMzOrder, final String mode, final UserProgressReporter reporter) {
 
 		final List<String> result = new ArrayList<String>();
 
@@ -350,6 +481,9 @@ public final class QaWorker extends WorkerBase {
 		result.add(reportFile.getAbsolutePath());
 		result.add(decoyRegex);
 		result.add(rtcMzOrder);
+		if (mode != null) {
+			result.add(mode);
+		}
 
 		final ProcessBuilder builder = new ProcessBuilder(result.toArray(new String[result.size()]));
 		final ProcessCaller caller = new ProcessCaller(builder, reporter.getLog());
@@ -396,6 +530,123 @@ public final class QaWorker extends WorkerBase {
 		this.spectrumInfoJoiner = spectrumInfoJoiner;
 	}
 
+	/**
+	 * @return How many .RAW files are processed at once. Defaults to the number of cores.
+	 */
+	public int getThreads() {
+		return threads;
+	}
+
+	public void setThreads(final int threads) {
+		this.threads = threads;
+	}
+
+	/**
+	 * @return True if the R script is run for each file separately, in parallel, before the report is collected.
+	 */
+	public boolean isParallelR() {
+		return parallelR;
+	}
+
+	public void setParallelR(final boolean parallelR) {
+		this.parallelR = parallelR;
+	}
+
+	/**
+	 * Data file and R script input line produced for a single .RAW file.
+	 */
+	private static final class QaFileResult {
+		private final String analysisName;
+		private final boolean atLeastOneFileMissing;
+		private final boolean generate;
+		private final List<File> generatedFiles;
+		private String inputLine;
+
+		QaFileResult(final String analysisName, final boolean atLeastOneFileMissing, final boolean generate, final List<File> generatedFiles, final String inputLine) {
+			this.analysisName = analysisName;
+			this.atLeastOneFileMissing = atLeastOneFileMissing;
+			this.generate = generate;
+			this.generatedFiles = generatedFiles;
+			this.inputLine = inputLine;
+		}
+
+		public String getAnalysisName() {
+			return analysisName;
+		}
+
+		public boolean isAtLeastOneFileMissing() {
+			return atLeastOneFileMissing;
+		}
+
+		public boolean isGenerate() {
+			return generate;
+		}
+
+		public List<File> getGeneratedFiles() {
+			return generatedFiles;
+		}
+
+		public String getInputLine() {
+			return inputLine;
+		}
+
+		/**
+		 * The summary row was already computed, fill its file into the last column of the input line.
+		 */
+		public void rowFileCreated(final File rowFile) {
+			inputLine = inputLine.substring(0, inputLine.length() - 1) + rowFile.getAbsolutePath() + "\n";
+		}
+	}
+
+	/**
+	 * Scaffold spectra report of an experiment, loaded when first needed and then shared by all its files.
+	 */
+	private static final class ScaffoldSpectra {
+		private final ExperimentQa experimentQa;
+		private ScaffoldQaSpectraReader reader;
+
+		ScaffoldSpectra(final ExperimentQa experimentQa) {
+			this.experimentQa = experimentQa;
+		}
+
+		public synchronized ScaffoldQaSpectraReader get() {
+			if (reader == null) {
+				reader = new ScaffoldQaSpectraReader();
+				reader.load(experimentQa.getScaffoldSpectraFile(), experimentQa.getScaffoldVersion(), null);
+			}
+			return reader;
+		}
+	}
+
+	/**
+	 * Turns completed units of work done in parallel into a percentage between two bounds.
+	 */
+	private static final class ParallelProgress {
+		private final UserProgressReporter reporter;
+		private final float from;
+		private final float to;
+		private final int total;
+		private int done;
+
+		ParallelProgress(final UserProgressReporter reporter, final float from, final float to, final int total) {
+			this.reporter = reporter;
+			this.from = from;
+			this.to = to;
+			this.total = total;
+		}
+
+		public void unitDone() {
+			final float percentDone;
+			synchronized (this) {
+				done++;
+				percentDone = from + (to - from) * done / total;
+			}
+			synchronized (reporter) {
+				reporter.reportProgress(new PercentDone(percentDone));
+			}
+		}
+	}
+
 	/**
 	 * A factory capable of creating the worker
 	 */
@@ -413,6 +664,7 @@ public final class QaWorker extends WorkerBase {
 			qaWorker.setXvfbWrapperScript(xvfbWrapperScript != null && !xvfbWrapperScript.isEmpty() ? new File(xvfbWrapperScript) : null);
 			qaWorker.setSpectrumInfoJoiner(getSpectrumInfoJoiner());
 			qaWorker.setRtcMzOrder(rtcOrder);
+			qaWorker.setParallelR(config.isParallelR());
 			return qaWorker;
 		}
 
@@ -434,6 +686,7 @@ public final class QaWorker extends WorkerBase {
 		private String rScript;
 		private String rExecutable;
 		private ServiceConfig rawDump;
+		private boolean parallelR;
 
 		public Config() {
 		}
@@ -449,6 +702,7 @@ public final class QaWorker extends WorkerBase {
 			writer.put(XVFB_WRAPPER_SCRIPT, xvfbWrapperScript);
 			writer.put(R_SCRIPT, rScript);
 			writer.put(RAWDUMP, writer.save(rawDump));
+			writer.put(PARALLEL_R, parallelR);
 		}
 
 		@Override
@@ -457,6 +711,7 @@ public final class QaWorker extends WorkerBase {
 			xvfbWrapperScript = reader.get(XVFB_WRAPPER_SCRIPT);
 			rScript = reader.get(R_SCRIPT);
 			rawDump = (ServiceConfig) reader.getObject(RAWDUMP);
+			parallelR = reader.getBoolean(PARALLEL_R, false);
 		}
 
 		@Override
@@ -495,6 +750,14 @@ public final class QaWorker extends WorkerBase {
 		public void setXvfbWrapperScript(String xvfbWrapperScript) {
 			this.xvfbWrapperScript = xvfbWrapperScript;
 		}
+
+		public boolean isParallelR() {
+			return parallelR;
+		}
+
+		public void setParallelR(final boolean parallelR) {
+			this.parallelR = parallelR;
+		}
 	}
 
 	public static final class Ui implements ServiceUiFactory {
@@ -525,7 +788,12 @@ public final class QaWorker extends WorkerBase {
 					.defaultValue(daemon.getXvfbWrapperScript())
 
 					.property(RAWDUMP, RAWDumpWorker.NAME, "RawDump that extracts the retention time calibration data")
-					.reference(RAWDumpWorker.TYPE, UiBuilder.NONE_TYPE);
+					.reference(RAWDumpWorker.TYPE, UiBuilder.NONE_TYPE)
+
+					.property(PARALLEL_R, "Run R per file in parallel", "Generate the images for each .RAW file by a separate run of the R script, "
+							+ "running as many at once as there are cores. The report is then collected by one final run.")
+					.boolValue()
+					.defaultValue(Boolean.toString(Boolean.FALSE));
 
 		}
 	}
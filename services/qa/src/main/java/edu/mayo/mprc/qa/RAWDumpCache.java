@@ -42,6 +42,8 @@ public final class RAWDumpCache extends WorkCache<RAWDumpWorkPacket> {
 
 					.property(CacheConfig.SERVICE, "RAW Dump", "The RAW dump engine that will do the work. The cache just caches the results.")
 					.reference("rawdump", UiBuilder.NONE_TYPE);
+
+			CacheConfig.evictionUi(builder);
 		}
 	}
 }
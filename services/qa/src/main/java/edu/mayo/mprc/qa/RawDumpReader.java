@@ -3,18 +3,16 @@ package edu.mayo.mprc.qa;
 import com.google.common.base.Joiner;
 import com.google.common.base.Splitter;
 import edu.mayo.mprc.MprcException;
+import edu.mayo.mprc.io.ByteTsvLines;
+import edu.mayo.mprc.io.ByteTsvReader;
 import edu.mayo.mprc.io.KeyedTsvReader;
 import edu.mayo.mprc.utilities.FileUtilities;
 import edu.mayo.mprc.utilities.StringUtilities;
 import org.apache.log4j.Logger;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
-import java.io.IOException;
-import java.util.HashMap;
+import java.nio.charset.Charset;
 import java.util.Iterator;
-import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.regex.Pattern;
 
@@ -22,15 +20,19 @@ import java.util.regex.Pattern;
  * A class capable of reading rawDump output and then responding to queries. For given scan number produces a tab-separated line
  * with rawDump data. If the input file is null, the class will return empty output for any query.
  * <p/>
- * Right now the class simply loads the full file into memory, in the future (as we scale) we might want to do indexing
- * and serve the data from the disk.
+ * Only the header is read up front. The full file is loaded into memory on the first query, so a reader that is used
+ * only for its header and {@link #getFile()} (like the streaming join in {@link SpectrumInfoJoiner}) never loads it.
  * <p/>
  * See also: {@link edu.mayo.mprc.msmseval.MSMSEvalOutputReader}.
  */
 public final class RawDumpReader implements KeyedTsvReader, Iterable<String> {
 	private static final Logger LOGGER = Logger.getLogger(RawDumpReader.class);
 
-	private Map<String/*Scan ID*/, String/*The full line without scan ID*/> lines;
+	private final File rawDumpFile;
+	/**
+	 * The full lines without scan ID, keyed by the scan ID. Kept as bytes until asked for.
+	 */
+	private ByteTsvLines lines;
 	private String[] header;
 	private static final String SCAN_NUM_HEADER = "Scan Id";
 	private int firstSpectrum;
@@ -73,23 +75,23 @@ public final class RawDumpReader implements KeyedTsvReader, Iterable<String> {
 	}
 
 	/**
-	 * Prepare the reader. In this implementation, the entire file is loaded at once and cached in memory (we
-	 * expect the file to have around 10000 lines).
+	 * Prepare the reader. Only the header is read now, the entire file is loaded and cached in memory
+	 * when first needed (we expect the file to have around 10000 lines).
 	 *
 	 * @param rawDumpFile rawDump file to process
 	 */
 	public RawDumpReader(final File rawDumpFile) {
+		this.rawDumpFile = rawDumpFile;
 		if (rawDumpFile == null) {
 			// Null files are honored - they will act as if there was no input information
 			// Use default header (otherwise we use header obtained from the file).
 			header = DEFAULT_HEADER;
 			rtColumnIndex = findRtColumnIndex(DEFAULT_HEADER);
 		} else {
-			lines = new HashMap<String, String>();
-			BufferedReader reader = null;
+			ByteTsvReader reader = null;
 			try {
-				reader = new BufferedReader(new FileReader(rawDumpFile));
-				parse(reader, lines);
+				reader = new ByteTsvReader(rawDumpFile);
+				header = readHeader(reader);
 			} catch (Exception t) {
 				throw new MprcException("Cannot parse rawDump file [" + rawDumpFile.getAbsolutePath() + "]", t);
 			} finally {
@@ -98,6 +100,30 @@ public final class RawDumpReader implements KeyedTsvReader, Iterable<String> {
 		}
 	}
 
+	/**
+	 * @return The rawDump file, null if there is none.
+	 */
+	public File getFile() {
+		return rawDumpFile;
+	}
+
+	private void load() {
+		if (lines != null || rawDumpFile == null) {
+			return;
+		}
+		final ByteTsvLines loaded = new ByteTsvLines('\t', Charset.defaultCharset());
+		ByteTsvReader reader = null;
+		try {
+			reader = new ByteTsvReader(rawDumpFile);
+			parse(reader, loaded);
+		} catch (Exception t) {
+			throw new MprcException("Cannot parse rawDump file [" + rawDumpFile.getAbsolutePath() + "]", t);
+		} finally {
+			FileUtilities.closeQuietly(reader);
+		}
+		lines = loaded;
+	}
+
 	/**
 	 * @return A tab-separated header line (sans the Scan number column) for all columns in the data in proper format
 	 */
@@ -118,6 +144,7 @@ public final class RawDumpReader implements KeyedTsvReader, Iterable<String> {
 	 */
 	@Override
 	public String getLineForKey(final String key) {
+		load();
 		if (lines == null) {
 			return EMPTY_LINE;
 		}
@@ -152,24 +179,16 @@ public final class RawDumpReader implements KeyedTsvReader, Iterable<String> {
 		}
 	}
 
-	private void parse(final BufferedReader br, final Map<String, String> lines) {
+	private void parse(final ByteTsvReader reader, final ByteTsvLines lines) {
 		try {
 			initSpectrumMinMax();
-			header = readHeader(br);
-			String line;
+			header = readHeader(reader);
 			int ignoredLines = 0;
-			while (true) {
-				line = br.readLine();
-				if (line == null) {
-					break;
-				}
-				final int firstTab = line.indexOf('\t');
-				if (firstTab > 0) {
+			while (reader.nextLine()) {
+				if (reader.getColumnCount() > 1 && !reader.isEmpty(0)) {
 					// We have data
-					final String scanNumStr = line.substring(0, firstTab);
-					final int scanNum = Integer.parseInt(scanNumStr);
-
-					lines.put(scanNumStr, line.substring(firstTab + 1));
+					final int scanNum = reader.getInt(0);
+					lines.put(scanNum, reader, 1);
 					updateSpectrumMinMax(scanNum);
 				} else {
 					// Ignore the line
@@ -201,12 +220,11 @@ public final class RawDumpReader implements KeyedTsvReader, Iterable<String> {
 		}
 	}
 
-	private String[] readHeader(final BufferedReader br) throws IOException {
-		final String line = br.readLine();
-		if (line == null) {
+	private String[] readHeader(final ByteTsvReader reader) {
+		if (!reader.nextLine()) {
 			throw new MprcException("The rawDump output has no header");
 		}
-		final String[] tmpHeader = TAB_SPLIT.split(line);
+		final String[] tmpHeader = TAB_SPLIT.split(reader.getLine());
 		if (!SCAN_NUM_HEADER.equals(tmpHeader[0])) {
 			throw new MprcException("Unknown rawDump output format (first column should be '" + SCAN_NUM_HEADER + "', was '" + tmpHeader[0] + "'.");
 		}
@@ -228,6 +246,7 @@ public final class RawDumpReader implements KeyedTsvReader, Iterable<String> {
 
 	@Override
 	public Iterator<String> iterator() {
+		load();
 		return new Iterator<String>() {
 			private int currentSpectrum = firstSpectrum - 1;
 
@@ -239,9 +258,8 @@ public final class RawDumpReader implements KeyedTsvReader, Iterable<String> {
 			@Override
 			public String next() {
 				currentSpectrum++;
-				final String spectrumStr = String.valueOf(currentSpectrum);
-				if (lines.containsKey(spectrumStr)) {
-					return spectrumStr;
+				if (lines.contains(currentSpectrum)) {
+					return String.valueOf(currentSpectrum);
 				}
 				throw new NoSuchElementException("No spectrum #" + currentSpectrum);
 			}
@@ -254,6 +272,6 @@ public final class RawDumpReader implements KeyedTsvReader, Iterable<String> {
 	}
 
 	public boolean emptyFile() {
-		return lines == null;
+		return rawDumpFile == null;
 	}
 }
\ No newline at end of file
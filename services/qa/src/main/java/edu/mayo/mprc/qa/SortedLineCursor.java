@@ -0,0 +1,225 @@
+package edu.mayo.mprc.qa;
+
+import edu.mayo.mprc.MprcException;
+import edu.mayo.mprc.utilities.FileUtilities;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+
+/**
+ * Walks through a delimited text file whose lines are sorted by a numeric key column, answering queries
+ * for ever increasing keys. Only the current and the next line are held in memory.
+ * <p/>
+ * The first line is a header and is skipped. Lines with no delimiter past the first character are ignored,
+ * same as the readers that load the whole file do. The value of a line is everything past the first delimiter,
+ * with the delimiters turned into tabs.
+ * <p/>
+ * Use {@link #isSorted} to check the file before relying on the cursor.
+ *
+ * @author Roman Zenka
+ */
+final class SortedLineCursor implements Closeable {
+	private final File file;
+	private final char delimiter;
+	private final int keyColumn;
+	private BufferedReader reader;
+
+	/**
+	 * Last line with key lower or equal to the last query.
+	 */
+	private String currentLine;
+	private double currentKey;
+	private String currentValue;
+
+	/**
+	 * The line after {@link #currentLine}, null at the end of file.
+	 */
+	private String nextLine;
+	private double nextKey;
+
+	private double lastQuery = Double.NEGATIVE_INFINITY;
+
+	/**
+	 * @param file      File to read.
+	 * @param delimiter Column delimiter.
+	 * @param keyColumn Index of the numeric column the file is sorted by.
+	 */
+	SortedLineCursor(final File file, final char delimiter, final int keyColumn) {
+		this.file = file;
+		this.delimiter = delimiter;
+		this.keyColumn = keyColumn;
+		try {
+			reader = new BufferedReader(new FileReader(file));
+			// Skip the header
+			reader.readLine();
+			readNext();
+		} catch (IOException e) {
+			close();
+			throw new MprcException("Cannot read [" + file.getAbsolutePath() + "]", e);
+		} catch (NumberFormatException e) {
+			close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Goes through the file, checking that the keys never decrease. Only the key column is parsed.
+	 *
+	 * @return False if the file is not sorted or a key cannot be parsed.
+	 */
+	static boolean isSorted(final File file, final char delimiter, final int keyColumn) {
+		SortedLineCursor cursor = null;
+		try {
+			cursor = new SortedLineCursor(file, delimiter, keyColumn);
+			double previous = Double.NEGATIVE_INFINITY;
+			while (cursor.nextLine != null) {
+				if (cursor.nextKey < previous) {
+					return false;
+				}
+				previous = cursor.nextKey;
+				cursor.readNext();
+			}
+			return true;
+		} catch (IOException e) {
+			throw new MprcException("Cannot read [" + file.getAbsolutePath() + "]", e);
+		} catch (NumberFormatException ignore) {
+			// SWALLOWED: the caller falls back to a reader that reports the problem properly
+			return false;
+		} finally {
+			if (cursor != null) {
+				cursor.close();
+			}
+		}
+	}
+
+	/**
+	 * Move to the next line of the file.
+	 *
+	 * @return False at the end of file.
+	 */
+	boolean next() {
+		if (nextLine == null) {
+			return false;
+		}
+		currentLine = nextLine;
+		currentKey = nextKey;
+		currentValue = null;
+		lastQuery = currentKey;
+		try {
+			readNext();
+		} catch (IOException e) {
+			throw new MprcException("Cannot read [" + file.getAbsolutePath() + "]", e);
+		}
+		return true;
+	}
+
+	double getCurrentKey() {
+		return currentKey;
+	}
+
+	/**
+	 * @return Value of the line the cursor is at.
+	 */
+	String getCurrentValue() {
+		return currentValue();
+	}
+
+	/**
+	 * @return True if the key is lower than the previously queried one. The cursor cannot go back.
+	 */
+	boolean isBehind(final double key) {
+		return key < lastQuery;
+	}
+
+	/**
+	 * @param key Key to look for, must not be lower than the previous one.
+	 * @return Value of the last line with exactly this key, null if there is none.
+	 */
+	String getValue(final double key) {
+		advanceTo(key);
+		return currentLine != null && currentKey == key ? currentValue() : null;
+	}
+
+	/**
+	 * @param key Key to look for, must not be lower than the previous one.
+	 * @return Value of the last line with key lower or equal to the given one. If there is no such line,
+	 *         value of the first line. Null for a file with no data.
+	 */
+	String getFloorValue(final double key) {
+		advanceTo(key);
+		if (currentLine != null) {
+			return currentValue();
+		}
+		return nextLine == null ? null : valueOf(nextLine);
+	}
+
+	private void advanceTo(final double key) {
+		if (isBehind(key)) {
+			throw new MprcException("The cursor over [" + file.getAbsolutePath() + "] cannot go back from " + lastQuery + " to " + key);
+		}
+		lastQuery = key;
+		try {
+			while (nextLine != null && nextKey <= key) {
+				currentLine = nextLine;
+				currentKey = nextKey;
+				currentValue = null;
+				readNext();
+			}
+		} catch (IOException e) {
+			throw new MprcException("Cannot read [" + file.getAbsolutePath() + "]", e);
+		}
+	}
+
+	private String currentValue() {
+		if (currentValue == null) {
+			currentValue = valueOf(currentLine);
+		}
+		return currentValue;
+	}
+
+	private String valueOf(final String line) {
+		final String value = line.substring(line.indexOf(delimiter) + 1);
+		return delimiter == '\t' ? value : value.replace(delimiter, '\t');
+	}
+
+	/**
+	 * Read the next data line into {@link #nextLine} and parse its key.
+	 */
+	private void readNext() throws IOException {
+		while (true) {
+			final String line = reader.readLine();
+			if (line == null) {
+				nextLine = null;
+				return;
+			}
+			if (line.indexOf(delimiter) > 0) {
+				nextKey = parseKey(line);
+				nextLine = line;
+				return;
+			}
+		}
+	}
+
+	private double parseKey(final String line) {
+		int start = 0;
+		for (int i = 0; i < keyColumn; i++) {
+			start = line.indexOf(delimiter, start) + 1;
+			if (start == 0) {
+				throw new NumberFormatException("Missing column " + keyColumn + " in line: " + line);
+			}
+		}
+		int end = line.indexOf(delimiter, start);
+		if (end < 0) {
+			end = line.length();
+		}
+		return Double.parseDouble(line.substring(start, end));
+	}
+
+	@Override
+	public void close() {
+		FileUtilities.closeQuietly(reader);
+	}
+}
@@ -0,0 +1,127 @@
+package edu.mayo.mprc.qa;
+
+import edu.mayo.mprc.peaklist.PrimitivePeakList;
+import edu.mayo.mprc.peaklist.PrimitivePeakListReader;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The few values about each MS/MS spectrum that the QA report needs, kept in primitive arrays ordered by scan id.
+ * <p/>
+ * The peaks are not kept, neither is anything else from the peak list, so the index stays small even
+ * for runs with many thousands of spectra.
+ *
+ * @author Roman Zenka
+ */
+final class SpectrumIndex {
+	private static final int INITIAL_CAPACITY = 1024;
+
+	private final String inputFileName;
+	private int size;
+	private long[] scanIds = new long[INITIAL_CAPACITY];
+	private double[] mz = new double[INITIAL_CAPACITY];
+	private int[] charges = new int[INITIAL_CAPACITY];
+	private String[] names = new String[INITIAL_CAPACITY];
+	private Object[] scaffoldInfos = new Object[INITIAL_CAPACITY];
+	/**
+	 * Spectrum numbers (positions in the peak list file) ordered by scan id. Null if the file is already ordered.
+	 */
+	private int[] order;
+
+	/**
+	 * @param reader        Peak lists to index.
+	 * @param inputFileName Name of the peak list file.
+	 * @param scaffoldInfos Scaffold information for spectrum names, as returned by {@link SpectrumInfoJoiner#getSpectrum}.
+	 */
+	SpectrumIndex(final PrimitivePeakListReader reader, final String inputFileName, final Map<String, List<String>> scaffoldInfos) {
+		this.inputFileName = inputFileName;
+		final PrimitivePeakList peakList = new PrimitivePeakList();
+		boolean ordered = true;
+		while (reader.nextPeakList(peakList)) {
+			ensureCapacity(size + 1);
+			final String title = peakList.getTitle();
+			final String name = SpectrumInfoJoiner.getSpectrum(title);
+			scanIds[size] = SpectrumInfoJoiner.getScanId(title);
+			mz[size] = peakList.getPrecursorMz();
+			charges[size] = peakList.getCharge();
+			names[size] = name;
+			this.scaffoldInfos[size] = scaffoldInfos.get(name);
+			if (size > 0 && scanIds[size] < scanIds[size - 1]) {
+				ordered = false;
+			}
+			size++;
+		}
+		if (!ordered) {
+			sortByScanId();
+		}
+	}
+
+	private void ensureCapacity(final int capacity) {
+		if (capacity > scanIds.length) {
+			final int newCapacity = Math.max(capacity, scanIds.length * 2);
+			scanIds = Arrays.copyOf(scanIds, newCapacity);
+			mz = Arrays.copyOf(mz, newCapacity);
+			charges = Arrays.copyOf(charges, newCapacity);
+			names = Arrays.copyOf(names, newCapacity);
+			scaffoldInfos = Arrays.copyOf(scaffoldInfos, newCapacity);
+		}
+	}
+
+	/**
+	 * Stable sort, spectra with the same scan id stay in the order of the file.
+	 */
+	private void sortByScanId() {
+		final Integer[] sorted = new Integer[size];
+		for (int i = 0; i < size; i++) {
+			sorted[i] = i;
+		}
+		Arrays.sort(sorted, new Comparator<Integer>() {
+			@Override
+			public int compare(final Integer o1, final Integer o2) {
+				final long scan1 = scanIds[o1];
+				final long scan2 = scanIds[o2];
+				return scan1 < scan2 ? -1 : (scan1 == scan2 ? 0 : 1);
+			}
+		});
+		order = new int[size];
+		for (int i = 0; i < size; i++) {
+			order[i] = sorted[i];
+		}
+	}
+
+	int size() {
+		return size;
+	}
+
+	/**
+	 * @param index Position in the scan id order.
+	 * @return Scan id of the spectrum.
+	 */
+	long getScanId(final int index) {
+		return scanIds[spectrumNumber(index)];
+	}
+
+	/**
+	 * @param index Position in the scan id order.
+	 * @return The spectrum, with its Scaffold information.
+	 */
+	Spectrum getSpectrum(final int index) {
+		final int number = spectrumNumber(index);
+		final Spectrum spectrum = new Spectrum(names[number], mz[number], charges[number], scanIds[number], inputFileName, number);
+		@SuppressWarnings("unchecked")
+		final List<String> infos = (List<String>) scaffoldInfos[number];
+		if (infos != null) {
+			for (final String info : infos) {
+				spectrum.addScaffoldInfo(info);
+			}
+		}
+		return spectrum;
+	}
+
+	private int spectrumNumber(final int index) {
+		return order == null ? index : order[index];
+	}
+}
@@ -1,14 +1,15 @@
 package edu.mayo.mprc.qa;
 
 import edu.mayo.mprc.MprcException;
+import edu.mayo.mprc.io.KeyedTsvReader;
 import edu.mayo.mprc.msmseval.MSMSEvalOutputReader;
 import edu.mayo.mprc.myrimatch.MyriMatchPepXmlReader;
-import edu.mayo.mprc.peaklist.PeakListReader;
 import edu.mayo.mprc.peaklist.PeakListReaders;
+import edu.mayo.mprc.peaklist.PrimitivePeakList;
+import edu.mayo.mprc.peaklist.PrimitivePeakListReader;
 import edu.mayo.mprc.scaffoldparser.spectra.ScaffoldQaSpectraReader;
 import edu.mayo.mprc.utilities.FileUtilities;
 import org.apache.log4j.Logger;
-import org.proteomecommons.io.mgf.MascotGenericFormatPeakList;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.Resource;
@@ -23,6 +24,13 @@ import java.util.regex.Pattern;
 
 /**
  * Joins information about spectra coming from .mgf, Scaffold, msmsEval and raw Dumper.
+ * <p/>
+ * By default the join is streamed: the rawDump output drives the join and is read one line at a time,
+ * msmsEval and UV data are merged in as they go, the rows are written to the sink immediately.
+ * Only a small index of the peak list spectra is kept in memory (see {@link SpectrumIndex}).
+ * This relies on the rawDump output being sorted by scan id; if it is not, or streaming is turned off,
+ * all the sources are loaded into memory. msmsEval and UV data that are not sorted
+ * are loaded into memory on their own, the rest of the join still streams.
  */
 @Component("spectrumInfoJoiner")
 public final class SpectrumInfoJoiner {
@@ -31,6 +39,7 @@ public final class SpectrumInfoJoiner {
 	private static final Logger LOGGER = Logger.getLogger(SpectrumInfoJoiner.class);
 
 	private PeakListReaders readers;
+	private boolean streaming = true;
 
 	private SpectrumInfoJoiner() {
 	}
@@ -63,6 +72,9 @@ public final class SpectrumInfoJoiner {
 	                            final MyriMatchPepXmlReader myrimatchReader, final SpectrumInfoSink sink,
 	                            final UvDataReader uvDataReader,
 	                            final String rawFileName) {
+		if (streaming && (rawDumpReader.emptyFile() || SortedLineCursor.isSorted(rawDumpReader.getFile(), '\t', 0))) {
+			return joinSortedSpectrumData(inputFile, scaffold, rawDumpReader, msmsEvalReader, myrimatchReader, sink, uvDataReader, rawFileName);
+		}
 		int rowCount = 0;
 		final Map<String, Spectrum> mgfSpectrumMap = new HashMap<String, Spectrum>();
 
@@ -130,6 +142,124 @@ public final class SpectrumInfoJoiner {
 		return rowCount;
 	}
 
+	/**
+	 * Same as {@link #joinSpectrumData}, only streaming. The rows are ordered by scan id.
+	 */
+	private int joinSortedSpectrumData(final File inputFile, final ScaffoldQaSpectraReader scaffold,
+	                                   final RawDumpReader rawDumpReader, final MSMSEvalOutputReader msmsEvalReader,
+	                                   final MyriMatchPepXmlReader myrimatchReader, final SpectrumInfoSink sink,
+	                                   final UvDataReader uvDataReader,
+	                                   final String rawFileName) {
+		int rowCount = 0;
+		final ScanLookup msmsEval = new ScanLookup(msmsEvalReader, msmsEvalReader.getFile(), ',', 0);
+		final ScanLookup uvData = uvDataReader == null ? null : new ScanLookup(uvDataReader, uvDataReader.getFile(), '\t', 1);
+		SortedLineCursor rawDump = null;
+		try {
+			final SpectrumIndex spectra = indexSpectra(inputFile, scaffold);
+
+			sink.initialize(scaffold, rawDumpReader, msmsEvalReader, myrimatchReader, uvDataReader, rawFileName);
+
+			final String scaffoldVersion = scaffold == null ? null : scaffold.getScaffoldVersion();
+			if (!rawDumpReader.emptyFile()) {
+				// We have a raw output file, use it to drive the output
+				rawDump = new SortedLineCursor(rawDumpReader.getFile(), '\t', 0);
+				int spectrumIndex = 0;
+				while (rawDump.next()) {
+					final long scanId = (long) rawDump.getCurrentKey();
+					final String scanIdStr = String.valueOf(scanId);
+					// Spectra without rawDump information are skipped
+					while (spectrumIndex < spectra.size() && spectra.getScanId(spectrumIndex) < scanId) {
+						spectrumIndex++;
+					}
+					final String rawDumpData = rawDump.getCurrentValue();
+					final String msmsEvalData = msmsEval.getExactLine(scanId);
+					final String uvDataLine = uvData == null ? null : uvData.getFloorLine(rawDumpReader.getRtFromLine(rawDumpData));
+					if (spectrumIndex >= spectra.size() || spectra.getScanId(spectrumIndex) != scanId) {
+						sink.writeSpectrumInfo(scanIdStr, null, scaffold != null ? scaffold.getEmptyLine() : "", scaffoldVersion,
+								msmsEvalData, rawDumpData, null, uvDataLine);
+						rowCount++;
+					} else {
+						while (spectrumIndex < spectra.size() && spectra.getScanId(spectrumIndex) == scanId) {
+							rowCount += writeSpectrumRows(sink, scaffold, scanIdStr, spectra.getSpectrum(spectrumIndex),
+									msmsEvalData, rawDumpData, myrimatchReader, uvDataLine);
+							spectrumIndex++;
+						}
+					}
+				}
+			} else {
+				// No raw data, drive the output by mgf spectra
+				for (int i = 0; i < spectra.size(); i++) {
+					final Spectrum spectrum = spectra.getSpectrum(i);
+					final String scanIdStr = String.valueOf(spectrum.getScanId());
+					final String rawDumpData = rawDumpReader.getLineForKey(scanIdStr);
+					final String uvDataLine = uvData == null ? null : uvData.getFloorLine(rawDumpReader.getRtFromLine(rawDumpData));
+					rowCount += writeSpectrumRows(sink, scaffold, scanIdStr, spectrum,
+							msmsEval.getExactLine(spectrum.getScanId()), rawDumpData, myrimatchReader, uvDataLine);
+				}
+			}
+		} catch (IOException e) {
+			throw new MprcException("Failed to join QA spectra and write into [" + sink.getDescription() + "]", e);
+		} finally {
+			FileUtilities.closeQuietly(rawDump);
+			msmsEval.close();
+			if (uvData != null) {
+				uvData.close();
+			}
+			FileUtilities.closeQuietly(sink);
+		}
+		return rowCount;
+	}
+
+	/**
+	 * Write a row for each Scaffold information about the spectrum, a single row if there is none.
+	 *
+	 * @return Number of rows written.
+	 */
+	private static int writeSpectrumRows(final SpectrumInfoSink sink, final ScaffoldQaSpectraReader scaffold,
+	                                     final String scanIdStr, final Spectrum spectrum,
+	                                     final String msmsEvalData, final String rawDumpData,
+	                                     final MyriMatchPepXmlReader myrimatchReader, final String uvDataLine) throws IOException {
+		final String scaffoldVersion = scaffold == null ? null : scaffold.getScaffoldVersion();
+		final String myrimatchData = myrimatchReader == null ? null : myrimatchReader.getLineForKey(String.valueOf(spectrum.getSpectrumNumber()));
+		if (spectrum.getScaffoldInfos().isEmpty()) {
+			sink.writeSpectrumInfo(scanIdStr, spectrum, scaffold != null ? scaffold.getEmptyLine() : null, scaffoldVersion,
+					msmsEvalData, rawDumpData, myrimatchData, uvDataLine);
+			return 1;
+		}
+		for (final String scaffoldInfo : spectrum.getScaffoldInfos()) {
+			sink.writeSpectrumInfo(scanIdStr, spectrum, scaffoldInfo, scaffoldVersion,
+					msmsEvalData, rawDumpData, myrimatchData, uvDataLine);
+		}
+		return spectrum.getScaffoldInfos().size();
+	}
+
+	/**
+	 * Read the peak list file, remember the Scaffold information for each spectrum.
+	 */
+	private SpectrumIndex indexSpectra(final File inputFile, final ScaffoldQaSpectraReader scaffold) {
+		final Map<String, List<String>> scaffoldInfos = new HashMap<String, List<String>>();
+		if (scaffold != null) {
+			for (final String spectrumName : scaffold) {
+				final String name = getSpectrum(spectrumName);
+				List<String> infos = scaffoldInfos.get(name);
+				if (infos == null) {
+					infos = new ArrayList<String>(1);
+					scaffoldInfos.put(name, infos);
+				}
+				infos.add(scaffold.getLineForKey(spectrumName));
+			}
+		}
+
+		PrimitivePeakListReader peakListReader = null;
+		try {
+			LOGGER.debug("Indexing source file [" + inputFile.getAbsolutePath() + "].");
+			peakListReader = readers.createPrimitiveReader(inputFile, false);
+			return new SpectrumIndex(peakListReader, inputFile.getAbsolutePath(), scaffoldInfos);
+		} finally {
+			FileUtilities.closeQuietly(peakListReader);
+		}
+	}
+
 	private static int writeMgfWithScaffoldInfos(final ScaffoldQaSpectraReader scaffold, final SpectrumInfoSink sink, int rowCount,
 	                                             final MSMSEvalOutputReader msmsEvalReader, final RawDumpReader rawDumpReader, final MyriMatchPepXmlReader myrimatchReader,
 	                                             final UvDataReader uvDataReader,
@@ -237,8 +367,8 @@ public final class SpectrumInfoJoiner {
 	 */
 	public void getSourceInformation(final File inputFile, final Map<String, Spectrum> spectrumMap) {
 		Spectrum spectrum = null;
-		PeakListReader peakListReader = null;
-		MascotGenericFormatPeakList peakList = null;
+		PrimitivePeakListReader peakListReader = null;
+		final PrimitivePeakList peakList = new PrimitivePeakList();
 		long spectrumNumber = 0;
 
 		try {
@@ -248,13 +378,13 @@ public final class SpectrumInfoJoiner {
 
 			LOGGER.debug("Reading source file [" + mgfPath + "].");
 
-			peakListReader = readers.createReader(inputFile, false);
+			peakListReader = readers.createPrimitiveReader(inputFile, false);
 
-			while ((peakList = peakListReader.nextPeakList()) != null) {
+			while (peakListReader.nextPeakList(peakList)) {
 				spectrum = new Spectrum(
 						getSpectrum(peakList.getTitle()),
-						getMz(peakList.getPepmass()),
-						getCharge(peakList.getCharge()),
+						peakList.getPrecursorMz(),
+						peakList.getCharge(),
 						getScanId(peakList.getTitle()),
 						mgfPath,
 						spectrumNumber);
@@ -300,19 +430,61 @@ public final class SpectrumInfoJoiner {
 		}
 	}
 
-	private static int getCharge(final String charge) {
-		if (charge == null) {
-			return 0;
-		}
-		final String str = charge.substring(charge.indexOf('=') + 1).trim();
-		return Integer.parseInt(str.substring(0, str.length() - (str.endsWith("+") ? 1 : 0)).trim());
+	public boolean isStreaming() {
+		return streaming;
 	}
 
-	private static double getMz(final String mz) {
-		if (mz == null) {
-			return 0.0;
+	/**
+	 * @param streaming False to always load all the sources into memory.
+	 */
+	public void setStreaming(final boolean streaming) {
+		this.streaming = streaming;
+	}
+
+	/**
+	 * Looks up lines of a source keyed by a number. Streams through the file if it is sorted and the lookups
+	 * come in increasing order, otherwise asks the reader, which loads the whole file.
+	 */
+	private static final class ScanLookup {
+		private final KeyedTsvReader reader;
+		private final SortedLineCursor cursor;
+
+		ScanLookup(final KeyedTsvReader reader, final File file, final char delimiter, final int keyColumn) {
+			this.reader = reader;
+			cursor = file != null && SortedLineCursor.isSorted(file, delimiter, keyColumn) ? new SortedLineCursor(file, delimiter, keyColumn) : null;
+		}
+
+		/**
+		 * @return Line for exactly given scan id, empty line if there is none.
+		 */
+		String getExactLine(final long scanId) {
+			if (cursor == null || cursor.isBehind(scanId)) {
+				return reader.getLineForKey(String.valueOf(scanId));
+			}
+			final String line = cursor.getValue(scanId);
+			return line == null ? reader.getEmptyLine() : line;
+		}
+
+		/**
+		 * @return Line with the closest lower or equal key, see {@link UvDataReader#getLineForKey}.
+		 */
+		String getFloorLine(final String key) {
+			if (cursor == null) {
+				return reader.getLineForKey(key);
+			}
+			final double value = Double.parseDouble(key);
+			if (cursor.isBehind(value)) {
+				return reader.getLineForKey(key);
+			}
+			final String line = cursor.getFloorValue(value);
+			return line == null ? reader.getEmptyLine() : line;
+		}
+
+		void close() {
+			if (cursor != null) {
+				cursor.close();
+			}
 		}
-		return Double.parseDouble(mz.substring(mz.indexOf('=') + 1).trim());
 	}
 
 	public PeakListReaders getReaders() {
@@ -25,6 +25,7 @@ import java.util.regex.Pattern;
 public final class UvDataReader implements KeyedTsvReader {
 	private static final Logger LOGGER = Logger.getLogger(UvDataReader.class);
 
+	private final File uvDataFile;
 	private TreeMap<Double/* Retention time */, String/*The full line without id and RT*/> lines;
 	private String[] header;
 	private static final String ID_HEADER = "id";
@@ -52,8 +53,8 @@ public final class UvDataReader implements KeyedTsvReader {
 	}
 
 	/**
-	 * Prepare the reader. In this implementation, the entire file is loaded at once and cached in memory (we
-	 * expect the file to have around 10000 lines).
+	 * Prepare the reader. Only the header is read now, the entire file is loaded and cached in memory
+	 * when first needed (we expect the file to have around 10000 lines).
 	 *
 	 * @param uvDataFile rawDump file to process
 	 */
@@ -61,13 +62,14 @@ public final class UvDataReader implements KeyedTsvReader {
 		if (uvDataFile == null || !uvDataFile.exists() || uvDataFile.length() == 0) {
 			// Null files are honored - they will act as if there was no input information
 			// Use default header (otherwise we use header obtained from the file).
+			this.uvDataFile = null;
 			header = DEFAULT_HEADER;
 		} else {
-			lines = new TreeMap<Double, String>();
+			this.uvDataFile = uvDataFile;
 			BufferedReader reader = null;
 			try {
 				reader = new BufferedReader(new FileReader(uvDataFile));
-				parse(reader, lines);
+				header = readHeader(reader);
 			} catch (Exception t) {
 				throw new MprcException("Cannot parse uv data file [" + uvDataFile.getAbsolutePath() + "]", t);
 			} finally {
@@ -76,6 +78,30 @@ public final class UvDataReader implements KeyedTsvReader {
 		}
 	}
 
+	/**
+	 * @return The UV data file, null if there is no data.
+	 */
+	public File getFile() {
+		return uvDataFile;
+	}
+
+	private void load() {
+		if (lines != null || uvDataFile == null) {
+			return;
+		}
+		final TreeMap<Double, String> loaded = new TreeMap<Double, String>();
+		BufferedReader reader = null;
+		try {
+			reader = new BufferedReader(new FileReader(uvDataFile));
+			parse(reader, loaded);
+		} catch (Exception t) {
+			throw new MprcException("Cannot parse uv data file [" + uvDataFile.getAbsolutePath() + "]", t);
+		} finally {
+			FileUtilities.closeQuietly(reader);
+		}
+		lines = loaded;
+	}
+
 	/**
 	 * @return A tab-separated header line (sans the Scan number column) for all columns in the data in proper format
 	 */
@@ -95,6 +121,7 @@ public final class UvDataReader implements KeyedTsvReader {
 	 */
 	@Override
 	public String getLineForKey(final String key) {
+		load();
 		if (lines == null) {
 			return EMPTY_LINE;
 		}
@@ -0,0 +1,204 @@
+package edu.mayo.mprc.qa;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import edu.mayo.mprc.MprcException;
+import edu.mayo.mprc.io.mgf.MgfPeakListReaderFactory;
+import edu.mayo.mprc.peaklist.PeakListReaderFactory;
+import edu.mayo.mprc.peaklist.PeakListReaders;
+import edu.mayo.mprc.utilities.FileUtilities;
+import edu.mayo.mprc.utilities.TestingUtilities;
+import edu.mayo.mprc.utilities.progress.TestProgressReporter;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Runs the whole QA worker with a fake R script that only creates the images it is asked for
+ * and copies its input to its output.
+ *
+ * @author Roman Zenka
+ */
+public final class QaWorkerTest {
+	private static final int EXPERIMENTS = 2;
+	private static final int FILES_PER_EXPERIMENT = 3;
+	private static final int THREADS = 4;
+	private static final String THREAD_PREFIX = "qa-file-";
+
+	private static final String FAKE_R_SCRIPT = "" +
+			"awk -F'\\t' 'NR > 1 { for (i = 1; i <= NF; i++) if ($i ~ /\\.png$/) print $i }' \"$1\" | while read f; do echo png > \"$f\"; done\n" +
+			"cp \"$1\" \"$2\"\n";
+
+	private File tempFolder;
+	private File inputFolder;
+	private File rScript;
+
+	@BeforeClass
+	public void setup() throws IOException {
+		tempFolder = FileUtilities.createTempFolder();
+		inputFolder = new File(tempFolder, "input");
+		FileUtilities.ensureFolderExists(inputFolder);
+		TestingUtilities.getNamedFileFromResource("/edu/mayo/mprc/qa/test1.mgf", inputFolder);
+		TestingUtilities.getNamedFileFromResource("/edu/mayo/mprc/qa/scaffoldSpectra.txt", inputFolder);
+		TestingUtilities.getNamedFileFromResource("/edu/mayo/mprc/qa/rawdump.tsv", inputFolder);
+		TestingUtilities.getNamedFileFromResource("/edu/mayo/mprc/qa/msmsEval.csv", inputFolder);
+		TestingUtilities.getNamedFileFromResource("/edu/mayo/mprc/qa/uv.tsv", inputFolder);
+		for (int i = 0; i < EXPERIMENTS * FILES_PER_EXPERIMENT; i++) {
+			Files.copy(new File(inputFolder, "test1.mgf"), mgfFile(i));
+		}
+		rScript = new File(tempFolder, "fakeR.sh");
+		FileUtilities.writeStringToFile(rScript, FAKE_R_SCRIPT, true);
+	}
+
+	@AfterClass
+	public void teardown() {
+		FileUtilities.cleanupTempFile(tempFolder);
+	}
+
+	@Test
+	public void shouldProduceSameFilesForAnyThreadCount() throws IOException {
+		if (!FileUtilities.isLinuxPlatform()) {
+			return;
+		}
+		final File serial = runQa("serial", 1, false, null);
+		final File parallel = runQa("parallel", THREADS, false, null);
+
+		for (int i = 0; i < EXPERIMENTS * FILES_PER_EXPERIMENT; i++) {
+			final String sfsName = QaWorker.getSfsFileName(serial, QaWorker.getAnalysisName(mgfFile(i))).getName();
+			final File serialSfs = new File(serial, sfsName);
+			Assert.assertTrue(serialSfs.length() > 0, "The data file was not generated: " + serialSfs.getAbsolutePath());
+			Assert.assertEquals(TestingUtilities.compareFilesByLine(serialSfs, new File(parallel, sfsName)), null,
+					"Data file " + sfsName + " depends on the thread count");
+		}
+		Assert.assertEquals(readReportInput(parallel), readReportInput(serial));
+	}
+
+	@Test
+	public void shouldWriteRowFilesInInputOrder() throws IOException {
+		if (!FileUtilities.isLinuxPlatform()) {
+			return;
+		}
+		final File serial = runQa("serialRows", 1, true, null);
+		final File parallel = runQa("parallelRows", THREADS, true, null);
+
+		final List<String> lines = readReportInput(parallel);
+		Assert.assertEquals(lines, readReportInput(serial), "R script input depends on the thread count");
+		Assert.assertEquals(lines.size(), 1 + EXPERIMENTS * FILES_PER_EXPERIMENT);
+
+		final String[] header = lines.get(0).split("\t", -1);
+		Assert.assertEquals(header[header.length - 1], "Row File");
+		for (int i = 0; i < EXPERIMENTS * FILES_PER_EXPERIMENT; i++) {
+			final String[] cells = lines.get(i + 1).split("\t", -1);
+			Assert.assertEquals(cells.length, header.length);
+			final String analysisName = QaWorker.getAnalysisName(mgfFile(i));
+			Assert.assertEquals(cells[0], "<QA>/" + analysisName + ".sfs", "Rows must follow the order of the input files");
+			Assert.assertEquals(cells[cells.length - 1], "<QA>/" + analysisName + ".row.rds");
+		}
+
+		for (final File folder : Arrays.asList(serial, parallel)) {
+			Assert.assertEquals(TestingUtilities.compareFilesByLine(new File(folder, "rInputData.tsv"), new File(folder, "report.html")), null,
+					"The final report must get the same input as the one that was saved");
+			for (int i = 0; i < EXPERIMENTS * FILES_PER_EXPERIMENT; i++) {
+				Assert.assertFalse(new File(folder, QaWorker.getAnalysisName(mgfFile(i)) + ".row.rds").exists(), "Row files are cleaned up");
+			}
+		}
+	}
+
+	@Test
+	public void shouldFailWholeTaskWhenOneFileFails() throws IOException, InterruptedException {
+		if (!FileUtilities.isLinuxPlatform()) {
+			return;
+		}
+		final File failing = new File(inputFolder, "missing.mgf");
+		try {
+			runQa("failing", THREADS, true, failing);
+			Assert.fail("The missing input file must fail the QA");
+		} catch (MprcException e) {
+			// SWALLOWED: expected
+		}
+		Assert.assertFalse(new File(tempFolder, "failing/report.html").exists(), "No report for a failed QA");
+
+		// The pool threads do not outlive the task
+		final long deadline = System.currentTimeMillis() + 10000;
+		while (countQaThreads() > 0 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(50);
+		}
+		Assert.assertEquals(countQaThreads(), 0, "QA threads are left running");
+	}
+
+	/**
+	 * @param failingFile Extra input file to put in the middle of the first experiment, null for none.
+	 * @return Folder with the QA outputs.
+	 */
+	private File runQa(final String name, final int threads, final boolean parallelR, final File failingFile) {
+		final File qaFolder = new File(tempFolder, name);
+
+		final List<ExperimentQa> experimentQas = new ArrayList<ExperimentQa>(EXPERIMENTS);
+		for (int experiment = 0; experiment < EXPERIMENTS; experiment++) {
+			final List<QaFiles> files = new ArrayList<QaFiles>(FILES_PER_EXPERIMENT);
+			for (int file = 0; file < FILES_PER_EXPERIMENT; file++) {
+				files.add(qaFiles(mgfFile(experiment * FILES_PER_EXPERIMENT + file)));
+			}
+			if (experiment == 0 && failingFile != null) {
+				files.add(1, qaFiles(failingFile));
+			}
+			experimentQas.add(new ExperimentQa("experiment" + experiment, new File(inputFolder, "scaffoldSpectra.txt"), files, "2"));
+		}
+
+		final QaWorker worker = new QaWorker();
+		worker.setRExecutable("sh");
+		worker.setRScript(rScript);
+		worker.setRtcMzOrder("mz");
+		worker.setSpectrumInfoJoiner(new SpectrumInfoJoiner(new PeakListReaders(Arrays.asList((PeakListReaderFactory) new MgfPeakListReaderFactory()))));
+		worker.setThreads(threads);
+		worker.setParallelR(parallelR);
+
+		final QaWorkPacket packet = new QaWorkPacket(name, experimentQas, qaFolder, new File(qaFolder, "report.html"), "Reversed_", false);
+		worker.process(packet, null, new TestProgressReporter());
+		return qaFolder;
+	}
+
+	private QaFiles qaFiles(final File mgfFile) {
+		final QaFiles qaFiles = new QaFiles();
+		qaFiles.setInputFile(mgfFile);
+		qaFiles.setRawSpectraFile(new File(inputFolder, "rawdump.tsv"));
+		qaFiles.setMsmsEvalOutputFile(new File(inputFolder, "msmsEval.csv"));
+		qaFiles.setUvDataFile(new File(inputFolder, "uv.tsv"));
+		return qaFiles;
+	}
+
+	private File mgfFile(final int index) {
+		return new File(inputFolder, "file" + index + ".mgf");
+	}
+
+	/**
+	 * @return Lines of the R script input, with the QA folder replaced by {@code <QA>}.
+	 */
+	private static List<String> readReportInput(final File qaFolder) throws IOException {
+		final Pattern folder = Pattern.compile(Pattern.quote(qaFolder.getAbsolutePath()));
+		final List<String> lines = new ArrayList<String>();
+		for (final String line : Files.readLines(new File(qaFolder, "rInputData.tsv"), Charsets.UTF_8)) {
+			lines.add(folder.matcher(line).replaceAll(Matcher.quoteReplacement("<QA>")));
+		}
+		return lines;
+	}
+
+	private static int countQaThreads() {
+		int count = 0;
+		for (final Thread thread : Thread.getAllStackTraces().keySet()) {
+			if (thread.getName().startsWith(THREAD_PREFIX) && thread.isAlive()) {
+				count++;
+			}
+		}
+		return count;
+	}
+}
@@ -1,6 +1,7 @@
 package edu.mayo.mprc.qa;
 
 import com.google.common.base.Charsets;
+import com.google.common.base.Joiner;
 import com.google.common.io.Files;
 import edu.mayo.mprc.io.mgf.MgfPeakListReaderFactory;
 import edu.mayo.mprc.msmseval.MSMSEvalOutputReader;
@@ -14,7 +15,11 @@ import org.testng.annotations.Test;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
 import java.util.regex.Matcher;
 
 public final class SpectrumInfoJoinerTest {
@@ -53,6 +58,64 @@ public final class SpectrumInfoJoinerTest {
 		}
 	}
 
+	@Test
+	public void streamingShouldMatchInMemoryJoin() throws IOException {
+		final File tempFolder = FileUtilities.createTempFolder();
+
+		try {
+			final File mgfFile = TestingUtilities.getNamedFileFromResource("/edu/mayo/mprc/qa/test1.mgf", tempFolder);
+			final File scaffoldSpectra = TestingUtilities.getNamedFileFromResource("/edu/mayo/mprc/qa/scaffoldSpectra.txt", tempFolder);
+			final File rawDumpFile = TestingUtilities.getNamedFileFromResource("/edu/mayo/mprc/qa/rawdump.tsv", tempFolder);
+			final File msmsEvalFile = TestingUtilities.getNamedFileFromResource("/edu/mayo/mprc/qa/msmsEval.csv", tempFolder);
+			final File uvDataFile = TestingUtilities.getNamedFileFromResource("/edu/mayo/mprc/qa/uv.tsv", tempFolder);
+
+			// The msmsEval output comes unsorted, sort it so the streaming join can use it directly
+			final File sortedMsmsEvalFile = new File(tempFolder, "msmsEvalSorted.csv");
+			final List<String> lines = new ArrayList<String>(Files.readLines(msmsEvalFile, Charsets.UTF_8));
+			final String header = lines.remove(0);
+			Collections.sort(lines, new Comparator<String>() {
+				@Override
+				public int compare(final String o1, final String o2) {
+					return Integer.valueOf(o1.substring(0, o1.indexOf(','))).compareTo(Integer.valueOf(o2.substring(0, o2.indexOf(','))));
+				}
+			});
+			lines.add(0, header);
+			Files.write(Joiner.on("\n").join(lines) + "\n", sortedMsmsEvalFile, Charsets.UTF_8);
+
+			for (final File msmsEval : Arrays.asList(msmsEvalFile, sortedMsmsEvalFile)) {
+				for (final File rawDump : Arrays.asList(rawDumpFile, null)) {
+					final File streamed = new File(tempFolder, "streamed.tsv");
+					final File inMemory = new File(tempFolder, "inMemory.tsv");
+					final int streamedRows = join(true, mgfFile, scaffoldSpectra, rawDump, msmsEval, rawDump == null ? null : uvDataFile, streamed);
+					final int inMemoryRows = join(false, mgfFile, scaffoldSpectra, rawDump, msmsEval, rawDump == null ? null : uvDataFile, inMemory);
+					Assert.assertEquals(streamedRows, inMemoryRows);
+					Assert.assertEquals(sortedLines(streamed), sortedLines(inMemory), "Streaming join differs for " + msmsEval.getName() + " " + rawDump);
+				}
+			}
+		} finally {
+			FileUtilities.cleanupTempFile(tempFolder);
+		}
+	}
+
+	private int join(final boolean streaming, final File mgfFile, final File scaffoldSpectra, final File rawDumpFile,
+	                 final File msmsEvalFile, final File uvDataFile, final File outputFile) {
+		final ScaffoldQaSpectraReader spectra = new ScaffoldQaSpectraReader();
+		spectra.load(scaffoldSpectra, "2", null);
+		final SpectrumInfoJoiner joiner = spectrumInfoJoiner();
+		joiner.setStreaming(streaming);
+		return joiner.joinSpectrumData(mgfFile, spectra, new RawDumpReader(rawDumpFile), new MSMSEvalOutputReader(msmsEvalFile),
+				null, new FileSpectrumInfoSink(outputFile), new UvDataReader(uvDataFile), null);
+	}
+
+	/**
+	 * Without rawDump the in-memory join produces the rows in no particular order.
+	 */
+	private static List<String> sortedLines(final File file) throws IOException {
+		final List<String> lines = new ArrayList<String>(Files.readLines(file, Charsets.UTF_8));
+		Collections.sort(lines);
+		return lines;
+	}
+
 	@Test
 	public void shouldParseMgfTitles() {
 		Assert.assertEquals(SpectrumInfoJoiner.getSpectrum("test1 scan 10 10 (test1.10.10.3.dta)"), "test1.10.10.3.dta");
@@ -9,6 +9,7 @@ import edu.mayo.mprc.MprcException;
 import edu.mayo.mprc.config.RuntimeInitializer;
 import edu.mayo.mprc.database.Change;
 import edu.mayo.mprc.database.DaoBase;
+import edu.mayo.mprc.database.FileTokenToDatabaseTranslator;
 import edu.mayo.mprc.quameterdb.dao.*;
 import edu.mayo.mprc.searchdb.dao.ProteinGroup;
 import edu.mayo.mprc.searchdb.dao.SearchDbDao;
@@ -22,6 +23,9 @@ import edu.mayo.mprc.utilities.progress.PercentDoneReporter;
 import edu.mayo.mprc.utilities.progress.PercentProgressReporter;
 import org.apache.log4j.Logger;
 import org.hibernate.Query;
+import org.hibernate.SQLQuery;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
 import org.hibernate.type.StandardBasicTypes;
 import org.joda.time.DateTime;
 import org.springframework.stereotype.Repository;
@@ -43,6 +47,16 @@ public final class QuameterDaoHibernate extends DaoBase implements QuameterDao,
 	 */
 	public static final Pattern PRE_POST = Pattern.compile("^.{14}.*_(Pre|Post).*$", Pattern.CASE_INSENSITIVE);
 
+	/**
+	 * Index of the first metric value in the rows of {@link #listResultRows}.
+	 */
+	private static final int ROW_METRICS_START = 9;
+	private static final int ROW_QUERY_CAPACITY = 2000;
+	/**
+	 * How many result ids to put into one IN clause.
+	 */
+	private static final int ID_BATCH_SIZE = 500;
+
 	private SwiftDao swiftDao;
 	private SearchDbDao searchDbDao;
 
@@ -265,6 +279,154 @@ public final class QuameterDaoHibernate extends DaoBase implements QuameterDao,
 		return new ArrayList<QuameterResult>(filtered.values());
 	}
 
+	@Override
+	public List<QuameterRow> listResultRows(final QuameterQuery query) {
+		final List<QuameterResult.QuameterColumn> columns = query.getColumns();
+		final boolean instrumentLimit = query.getInstruments() != null && !query.getInstruments().isEmpty();
+
+		final StringBuilder select = new StringBuilder(ROW_QUERY_CAPACITY);
+		select.append("SELECT q.quameter_result_id AS id,"
+				+ " t.start_time AS st,"
+				+ " t.sample_file AS sf,"
+				+ " t.run_time_seconds AS rt,"
+				+ " t.file_size AS fs,"
+				+ " t.instrument_serial_number AS isn,"
+				+ " m.metadata_value AS v,"
+				+ " r.search_run_id AS ti,"
+				+ " d.search_parameters AS sp");
+		for (final QuameterResult.QuameterColumn column : columns) {
+			select.append(", q.").append(column.name()).append(" AS m_").append(column.name());
+		}
+		select.append(" FROM " + swiftDao.qualifyTableName("search_run") + " AS r, "
+				+ swiftDao.qualifyTableName("file_search") + " AS f, "
+				+ swiftDao.qualifyTableName("swift_search_definition") + " AS d, "
+				+ swiftDao.qualifyTableName("search_metadata") + " AS m, "
+				+ swiftDao.qualifyTableName("tandem_mass_spec_sample") + " AS t, "
+				+ swiftDao.qualifyTableName("search_result") + " AS sr, "
+				+ swiftDao.qualifyTableName("quameter_result") + " AS q "
+				+ " WHERE "
+				+ " r.hidden=0 AND"
+				+ " q.file_search_id = f.file_search_id AND"
+				+ " q.search_result_id = sr.search_result_id AND"
+				+ " f.swift_search_definition_id = d.swift_search_definition_id AND"
+				+ " d.swift_search_definition_id = m.swift_search_definition_id AND"
+				+ " d.swift_search_definition_id = r.swift_search AND"
+				+ " m.metadata_key='quameter.category' AND"
+				+ " t.tandem_mass_spec_sample_id = sr.tandem_mass_spec_sample_id")
+				.append(query.getFrom() != null ? " AND t.start_time >= :timeStart" : "")
+				.append(query.getTo() != null ? " AND t.start_time < :timeEnd" : "")
+				.append(query.getAfterId() > 0 ? " AND q.quameter_result_id > :afterId" : "")
+				.append(instrumentLimit ? " AND t.instrument_serial_number IN (:instruments)" : "")
+				.append(" ORDER BY t.start_time, q.quameter_result_id");
+
+		final SQLQuery sqlQuery = getSession().createSQLQuery(select.toString());
+		sqlQuery
+				.addScalar("id", StandardBasicTypes.INTEGER)
+				.addScalar("st", StandardBasicTypes.TIMESTAMP)
+				.addScalar("sf", StandardBasicTypes.STRING)
+				.addScalar("rt", StandardBasicTypes.DOUBLE)
+				.addScalar("fs", StandardBasicTypes.LONG)
+				.addScalar("isn", StandardBasicTypes.STRING)
+				.addScalar("v", StandardBasicTypes.STRING)
+				.addScalar("ti", StandardBasicTypes.INTEGER)
+				.addScalar("sp", StandardBasicTypes.INTEGER);
+		for (final QuameterResult.QuameterColumn column : columns) {
+			sqlQuery.addScalar("m_" + column.name(), StandardBasicTypes.DOUBLE);
+		}
+		sqlQuery.setReadOnly(true);
+		if (query.getFrom() != null) {
+			sqlQuery.setParameter("timeStart", query.getFrom().toDate(), StandardBasicTypes.TIMESTAMP);
+		}
+		if (query.getTo() != null) {
+			sqlQuery.setParameter("timeEnd", query.getTo().toDate(), StandardBasicTypes.TIMESTAMP);
+		}
+		if (query.getAfterId() > 0) {
+			sqlQuery.setParameter("afterId", query.getAfterId());
+		}
+		if (instrumentLimit) {
+			sqlQuery.setParameterList("instruments", query.getInstruments());
+		}
+
+		// The _Pre/_Post files cannot be filtered out in SQL, so the paging has to happen here, after the filtering
+		final FileTokenToDatabaseTranslator translator = getDatabase().getTranslator();
+		final Map<Integer, QuameterRow> rows = new LinkedHashMap<Integer, QuameterRow>();
+		int toSkip = query.getFirstResult();
+		final ScrollableResults raw = sqlQuery.scroll(ScrollMode.FORWARD_ONLY);
+		try {
+			while ((query.getMaxResults() <= 0 || rows.size() < query.getMaxResults()) && raw.next()) {
+				final Object[] array = raw.get();
+				final File inputFile = translator.databaseTokenToFile((String) array[2]);
+				if (PRE_POST.matcher(inputFile.getName()).find()) {
+					continue;
+				}
+				if (toSkip > 0) {
+					toSkip--;
+					continue;
+				}
+				final double[] values = new double[columns.size()];
+				for (int i = 0; i < values.length; i++) {
+					final Double value = (Double) array[ROW_METRICS_START + i];
+					values[i] = value == null ? 0.0 : value;
+				}
+				final Integer id = (Integer) array[0];
+				final Double runTime = (Double) array[3];
+				final Integer searchParameters = (Integer) array[8];
+				rows.put(id, new QuameterRow(
+						id,
+						array[1] == null ? null : new DateTime(array[1]),
+						inputFile,
+						runTime == null ? 0.0 : runTime,
+						(Long) array[4],
+						(String) array[5],
+						(String) array[6],
+						searchParameters == null ? 0 : searchParameters,
+						(Integer) array[7],
+						columns,
+						values,
+						new HashMap<QuameterProteinGroup, Integer>(4)));
+			}
+		} finally {
+			raw.close();
+		}
+
+		loadIdentifiedSpectra(rows);
+
+		return new ArrayList<QuameterRow>(rows.values());
+	}
+
+	/**
+	 * Fill in protein group spectra counts for given rows, asking only for the rows we have.
+	 */
+	private void loadIdentifiedSpectra(final Map<Integer, QuameterRow> rows) {
+		if (rows.isEmpty()) {
+			return;
+		}
+		final Map<Integer, QuameterProteinGroup> proteinGroupMap = new HashMap<Integer, QuameterProteinGroup>();
+		for (final QuameterProteinGroup group : listProteinGroups()) {
+			proteinGroupMap.put(group.getId(), group);
+		}
+
+		final List<Integer> ids = new ArrayList<Integer>(rows.keySet());
+		for (int start = 0; start < ids.size(); start += ID_BATCH_SIZE) {
+			final List groupCounts = getSession().createSQLQuery(""
+					+ "SELECT quameter_result_id, quameter_pg_id, unique_spectra FROM "
+					+ swiftDao.qualifyTableName("quameter_spectra")
+					+ " WHERE quameter_result_id IN (:ids)")
+					.setParameterList("ids", ids.subList(start, Math.min(start + ID_BATCH_SIZE, ids.size())))
+					.setReadOnly(true)
+					.list();
+
+			for (final Object o : groupCounts) {
+				final Object[] array = (Object[]) o;
+				final QuameterRow row = rows.get(((Number) array[0]).intValue());
+				final QuameterProteinGroup pg = proteinGroupMap.get(((Number) array[1]).intValue());
+				if (row != null && pg != null) {
+					row.getIdentifiedSpectra().put(pg, ((Number) array[2]).intValue());
+				}
+			}
+		}
+	}
+
 	@Override
 	public void hideQuameterResult(final int quameterResultId, final String hideReason) {
 		final QuameterResult quameterResult = (QuameterResult) getSession().get(QuameterResult.class, quameterResultId);
@@ -0,0 +1,151 @@
+package edu.mayo.mprc.quameterdb;
+
+import edu.mayo.mprc.quameterdb.dao.QuameterDao;
+import edu.mayo.mprc.quameterdb.dao.QuameterQuery;
+import edu.mayo.mprc.quameterdb.dao.QuameterRow;
+import org.joda.time.DateTime;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * QuaMeter results of the last year kept in memory, so the user interface does not have to go to the database
+ * for the whole history each time.
+ * <p/>
+ * The results are loaded once, then only the results added since (the ones with higher id) are loaded
+ * on subsequent requests. The QuaMeter database worker can run in a different process, so we cannot rely on being
+ * told about new results. Once in a while everything is reloaded to pick up changes to the existing results
+ * (hidden search runs, recalculated protein counts) and to move the one-year window.
+ * <p/>
+ * All methods that can load data must be called within a transaction.
+ *
+ * @author Roman Zenka
+ */
+final class QuameterDataCache {
+	/**
+	 * Do not check for new results more often than this.
+	 */
+	private static final long CHECK_INTERVAL = 5 * 1000L;
+	/**
+	 * Reload all results after this time.
+	 */
+	private static final long RELOAD_INTERVAL = 60 * 60 * 1000L;
+
+	private static final Comparator<QuameterRow> BY_START_TIME = new Comparator<QuameterRow>() {
+		@Override
+		public int compare(final QuameterRow o1, final QuameterRow o2) {
+			final long time1 = QuameterSeries.getStartMillis(o1);
+			final long time2 = QuameterSeries.getStartMillis(o2);
+			if (time1 != time2) {
+				return time1 < time2 ? -1 : 1;
+			}
+			return o1.getId() < o2.getId() ? -1 : (o1.getId() == o2.getId() ? 0 : 1);
+		}
+	};
+
+	private final QuameterDao quameterDao;
+	private List<QuameterRow> rows = Collections.emptyList();
+	private DateTime from;
+	private int lastId;
+	private long loadTime;
+	private long checkTime;
+	/**
+	 * Series by instrument serial number, produced on demand.
+	 */
+	private Map<String, QuameterSeries> series;
+
+	QuameterDataCache(final QuameterDao quameterDao) {
+		this.quameterDao = quameterDao;
+	}
+
+	/**
+	 * @return All cached results ordered by start time.
+	 */
+	synchronized List<QuameterRow> getRows() {
+		refresh(System.currentTimeMillis());
+		return rows;
+	}
+
+	/**
+	 * @return Start of the cached time window - results from this time on are cached.
+	 */
+	synchronized DateTime getFrom() {
+		refresh(System.currentTimeMillis());
+		return from;
+	}
+
+	/**
+	 * @return Cached results for each instrument, by instrument serial number.
+	 */
+	synchronized Map<String, QuameterSeries> getSeries() {
+		refresh(System.currentTimeMillis());
+		if (series == null) {
+			series = makeSeries(rows);
+		}
+		return series;
+	}
+
+	/**
+	 * Split rows ordered by time into a series per instrument.
+	 */
+	static Map<String, QuameterSeries> makeSeries(final List<QuameterRow> rows) {
+		final Map<String, List<QuameterRow>> byInstrument = new LinkedHashMap<String, List<QuameterRow>>();
+		for (final QuameterRow row : rows) {
+			List<QuameterRow> instrumentRows = byInstrument.get(row.getInstrumentSerialNumber());
+			if (instrumentRows == null) {
+				instrumentRows = new ArrayList<QuameterRow>();
+				byInstrument.put(row.getInstrumentSerialNumber(), instrumentRows);
+			}
+			instrumentRows.add(row);
+		}
+		final Map<String, QuameterSeries> result = new LinkedHashMap<String, QuameterSeries>(byInstrument.size());
+		for (final Map.Entry<String, List<QuameterRow>> entry : byInstrument.entrySet()) {
+			result.put(entry.getKey(), new QuameterSeries(entry.getKey(), entry.getValue()));
+		}
+		return result;
+	}
+
+	/**
+	 * Drop everything, the next request loads all the results again.
+	 */
+	synchronized void invalidate() {
+		loadTime = 0;
+	}
+
+	private void refresh(final long now) {
+		if (loadTime == 0 || now - loadTime >= RELOAD_INTERVAL) {
+			from = new DateTime(now).minusYears(1);
+			final QuameterQuery query = new QuameterQuery();
+			query.setFrom(from);
+			setRows(quameterDao.listResultRows(query));
+			loadTime = now;
+			checkTime = now;
+		} else if (now - checkTime >= CHECK_INTERVAL) {
+			final QuameterQuery query = new QuameterQuery();
+			query.setFrom(from);
+			query.setAfterId(lastId);
+			final List<QuameterRow> added = quameterDao.listResultRows(query);
+			checkTime = now;
+			if (!added.isEmpty()) {
+				final List<QuameterRow> merged = new ArrayList<QuameterRow>(rows.size() + added.size());
+				merged.addAll(rows);
+				merged.addAll(added);
+				// New results can be for older files
+				Collections.sort(merged, BY_START_TIME);
+				setRows(merged);
+			}
+		}
+	}
+
+	private void setRows(final List<QuameterRow> newRows) {
+		rows = Collections.unmodifiableList(newRows);
+		for (final QuameterRow row : newRows) {
+			lastId = Math.max(lastId, row.getId());
+		}
+		series = null;
+	}
+}
@@ -6,6 +6,7 @@ import edu.mayo.mprc.MprcException;
 import edu.mayo.mprc.config.*;
 import edu.mayo.mprc.config.ui.ServiceUiFactory;
 import edu.mayo.mprc.config.ui.UiBuilder;
+import edu.mayo.mprc.daemon.worker.ReusableWorker;
 import edu.mayo.mprc.daemon.worker.WorkPacket;
 import edu.mayo.mprc.daemon.worker.Worker;
 import edu.mayo.mprc.daemon.worker.WorkerBase;
@@ -31,7 +32,7 @@ import java.util.regex.Pattern;
 /**
  * @author Roman Zenka
  */
-public final class QuameterDbWorker extends WorkerBase {
+public final class QuameterDbWorker extends WorkerBase implements ReusableWorker {
 	private static final Logger LOGGER = Logger.getLogger(QuameterDbWorker.class);
 	public static final String DUMMY_PROTEIN_SET = "dummy_protein_name_that_will_never_be_an_accession_number";
 	private QuameterDao dao;
@@ -51,6 +52,11 @@ public final class QuameterDbWorker extends WorkerBase {
 		this.swiftDao = swiftDao;
 	}
 
+	@Override
+	public void reset() {
+		// No state is kept between requests
+	}
+
 	@Override
 	public void process(final WorkPacket wp, final File tempWorkFolder, final UserProgressReporter reporter) {
 		final QuameterDbWorkPacket workPacket = (QuameterDbWorkPacket) wp;
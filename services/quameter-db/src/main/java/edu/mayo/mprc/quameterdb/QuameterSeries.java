@@ -0,0 +1,112 @@
+package edu.mayo.mprc.quameterdb;
+
+import edu.mayo.mprc.quameterdb.dao.QuameterProteinGroup;
+import edu.mayo.mprc.quameterdb.dao.QuameterResult;
+import edu.mayo.mprc.quameterdb.dao.QuameterRow;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * QuaMeter results of one instrument stored by column - the result ids, the acquisition times and
+ * the values of each metric are kept in separate arrays ordered by time.
+ * <p/>
+ * The metric arrays are produced when first asked for and kept afterwards.
+ *
+ * @author Roman Zenka
+ */
+final class QuameterSeries {
+	private final String instrumentSerialNumber;
+	private final List<QuameterRow> rows;
+	private final int[] ids;
+	private final long[] startTimes;
+	private final Map<QuameterResult.QuameterColumn, double[]> values =
+			new EnumMap<QuameterResult.QuameterColumn, double[]>(QuameterResult.QuameterColumn.class);
+	private final Map<QuameterProteinGroup, int[]> spectra = new HashMap<QuameterProteinGroup, int[]>();
+
+	/**
+	 * @param instrumentSerialNumber Instrument the rows belong to.
+	 * @param rows                   Rows ordered by start time.
+	 */
+	QuameterSeries(final String instrumentSerialNumber, final List<QuameterRow> rows) {
+		this.instrumentSerialNumber = instrumentSerialNumber;
+		this.rows = rows;
+		ids = new int[rows.size()];
+		startTimes = new long[rows.size()];
+		for (int i = 0; i < ids.length; i++) {
+			final QuameterRow row = rows.get(i);
+			ids[i] = row.getId();
+			startTimes[i] = getStartMillis(row);
+		}
+	}
+
+	static long getStartMillis(final QuameterRow row) {
+		return row.getStartTime() == null ? 0L : row.getStartTime().getMillis();
+	}
+
+	public String getInstrumentSerialNumber() {
+		return instrumentSerialNumber;
+	}
+
+	public int size() {
+		return ids.length;
+	}
+
+	public int getId(final int index) {
+		return ids[index];
+	}
+
+	public long getStartTime(final int index) {
+		return startTimes[index];
+	}
+
+	/**
+	 * @param time Time in milliseconds.
+	 * @return Index of the first result acquired at given time or later, {@link #size()} if there is none.
+	 */
+	public int indexOf(final long time) {
+		int index = Arrays.binarySearch(startTimes, time);
+		if (index < 0) {
+			return -index - 1;
+		}
+		// Multiple results at the same time - find the first one
+		while (index > 0 && startTimes[index - 1] == time) {
+			index--;
+		}
+		return index;
+	}
+
+	/**
+	 * @return Values of given metric for all the results, in time order.
+	 */
+	public synchronized double[] getValues(final QuameterResult.QuameterColumn column) {
+		double[] result = values.get(column);
+		if (result == null) {
+			result = new double[rows.size()];
+			for (int i = 0; i < result.length; i++) {
+				result[i] = rows.get(i).getValue(column);
+			}
+			values.put(column, result);
+		}
+		return result;
+	}
+
+	/**
+	 * @return Number of spectra identified for given protein group for all the results, in time order.
+	 */
+	public synchronized int[] getIdentifiedSpectra(final QuameterProteinGroup proteinGroup) {
+		int[] result = spectra.get(proteinGroup);
+		if (result == null) {
+			result = new int[rows.size()];
+			for (int i = 0; i < result.length; i++) {
+				final Integer count = rows.get(i).getIdentifiedSpectra().get(proteinGroup);
+				result[i] = count == null ? 0 : count;
+			}
+			spectra.put(proteinGroup, result);
+		}
+		return result;
+	}
+}
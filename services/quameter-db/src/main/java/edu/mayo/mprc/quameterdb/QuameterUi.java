@@ -13,8 +13,9 @@ import edu.mayo.mprc.daemon.UiConfigurationProvider;
 import edu.mayo.mprc.database.Dao;
 import edu.mayo.mprc.quameterdb.dao.QuameterDao;
 import edu.mayo.mprc.quameterdb.dao.QuameterProteinGroup;
+import edu.mayo.mprc.quameterdb.dao.QuameterQuery;
 import edu.mayo.mprc.quameterdb.dao.QuameterResult;
-import edu.mayo.mprc.searchdb.dao.TandemMassSpectrometrySample;
+import edu.mayo.mprc.quameterdb.dao.QuameterRow;
 import org.joda.time.DateTime;
 import org.joda.time.format.DateTimeFormat;
 import org.joda.time.format.DateTimeFormatter;
@@ -24,6 +25,7 @@ import javax.annotation.Resource;
 import java.io.IOException;
 import java.io.StringWriter;
 import java.io.Writer;
+import java.util.Collection;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -42,6 +44,7 @@ public final class QuameterUi implements Dao, UiConfigurationProvider, Lifecycle
 	private final QuameterDao quameterDao;
 	private final QuameterDbWorker.Config dbWorkerConfig;
 	private final Map<String, String> instrumentMap;
+	private final QuameterDataCache dataCache;
 	private static final DateTimeFormatter DATE_FORMAT_1 = DateTimeFormat.forPattern("'Date('yyyy, ").withLocale(Locale.US);
 	private static final DateTimeFormatter DATE_FORMAT_2 = DateTimeFormat.forPattern(", d, H, m, s, S')'").withLocale(Locale.US);
 
@@ -115,6 +118,7 @@ public final class QuameterUi implements Dao, UiConfigurationProvider, Lifecycle
 		this.quameterDao = quameterDao;
 		this.dbWorkerConfig = dbWorkerConfig;
 		this.instrumentMap = dbWorkerConfig.getInstrumentNameMap();
+		this.dataCache = new QuameterDataCache(quameterDao);
 	}
 
 	@Override
@@ -137,24 +141,135 @@ public final class QuameterUi implements Dao, UiConfigurationProvider, Lifecycle
 		return quameterDao.qualifyTableName(table);
 	}
 
+	/**
+	 * Existing results were changed (e.g. hidden or un-hidden). The cached results are loaded again on next request.
+	 */
+	public void resultsChanged() {
+		dataCache.invalidate();
+	}
+
+	/**
+	 * Write all the results from the last year as a Google data table. Must be called within a transaction.
+	 */
 	public void dataTableJson(final Writer writer) {
 
 		final List<QuameterProteinGroup> proteinGroups = dbWorkerConfig.getProteins();
-		final List<QuameterResult> quameterResults = quameterDao.listAllResults();
+		final List<QuameterRow> rows = dataCache.getRows();
 
 		final JsonWriter w = new JsonWriter(writer);
-		w.setIndent("    ");
 
 		try {
 			w.beginObject();
 			writeCols(w, proteinGroups);
-			writeRows(w, quameterResults, proteinGroups);
+			writeRows(w, rows, proteinGroups);
+			w.endObject();
+			w.flush();
+		} catch (final IOException e) {
+			throw new MprcException("Could not render QuaMeter data", e);
+		}
+	}
+
+	/**
+	 * Write the results matching the query, one series per instrument. The values of each metric are
+	 * listed as a separate array, in the order of acquisition:
+	 * <pre>
+	 * {"instruments":[{"instrument":"Orbi", "serialNumber":"123", "total":2,
+	 *   "id":[1,2], "startTime":[1296728430000,1296728490000], "values":{"c_1a":[0.1,0.2], "id_1":[10,12]}}]}
+	 * </pre>
+	 * The results from the last year come from a cache, older ones are loaded from the database.
+	 * Paging ({@link QuameterQuery#getFirstResult()}, {@link QuameterQuery#getMaxResults()}) applies to each instrument
+	 * separately, <c>total</c> is the number of results before paging. Must be called within a transaction.
+	 *
+	 * @param writer Where to write the JSON to.
+	 * @param query  Which results to write. The instruments can be given by serial number or by name.
+	 */
+	public void writeSeriesJson(final Writer writer, final QuameterQuery query) {
+		final List<QuameterProteinGroup> proteinGroups = dbWorkerConfig.getProteins();
+
+		final Map<String, QuameterSeries> series;
+		final DateTime cacheFrom = dataCache.getFrom();
+		if (query.getFrom() != null && !query.getFrom().isBefore(cacheFrom)) {
+			series = dataCache.getSeries();
+		} else {
+			final QuameterQuery allMetrics = new QuameterQuery();
+			allMetrics.setFrom(query.getFrom());
+			allMetrics.setTo(query.getTo());
+			allMetrics.setColumns(query.getColumns());
+			series = QuameterDataCache.makeSeries(quameterDao.listResultRows(allMetrics));
+		}
+
+		final JsonWriter w = new JsonWriter(writer);
+		try {
+			w.beginObject();
+			w.name("instruments");
+			w.beginArray();
+			for (final QuameterSeries instrumentSeries : series.values()) {
+				if (isInstrumentListed(instrumentSeries.getInstrumentSerialNumber(), query.getInstruments())) {
+					writeSeries(w, instrumentSeries, query, proteinGroups);
+				}
+			}
+			w.endArray();
 			w.endObject();
+			w.flush();
 		} catch (final IOException e) {
 			throw new MprcException("Could not render QuaMeter data", e);
 		}
 	}
 
+	private boolean isInstrumentListed(final String serialNumber, final Collection<String> instruments) {
+		return instruments == null || instruments.isEmpty()
+				|| instruments.contains(serialNumber)
+				|| instruments.contains(mapInstrument(serialNumber));
+	}
+
+	private void writeSeries(final JsonWriter writer, final QuameterSeries series, final QuameterQuery query,
+	                         final List<QuameterProteinGroup> proteinGroups) throws IOException {
+		final int start = query.getFrom() == null ? 0 : series.indexOf(query.getFrom().getMillis());
+		final int end = query.getTo() == null ? series.size() : series.indexOf(query.getTo().getMillis());
+		final int first = Math.min(end, start + query.getFirstResult());
+		final int last = query.getMaxResults() > 0 ? Math.min(end, first + query.getMaxResults()) : end;
+
+		writer.beginObject();
+		writer.name("instrument").value(mapInstrument(series.getInstrumentSerialNumber()));
+		writer.name("serialNumber").value(series.getInstrumentSerialNumber());
+		writer.name("total").value(Math.max(0, end - start));
+
+		writer.name("id").beginArray();
+		for (int i = first; i < last; i++) {
+			writer.value(series.getId(i));
+		}
+		writer.endArray();
+
+		writer.name("startTime").beginArray();
+		for (int i = first; i < last; i++) {
+			writer.value(series.getStartTime(i));
+		}
+		writer.endArray();
+
+		writer.name("values").beginObject();
+		for (final QuameterResult.QuameterColumn column : query.getColumns()) {
+			final double[] values = series.getValues(column);
+			writer.name(column.name()).beginArray();
+			for (int i = first; i < last; i++) {
+				writer.value(values[i]);
+			}
+			writer.endArray();
+		}
+		int proteinGroupId = 1;
+		for (final QuameterProteinGroup proteinGroup : proteinGroups) {
+			final int[] spectra = series.getIdentifiedSpectra(proteinGroup);
+			writer.name("id_" + proteinGroupId).beginArray();
+			for (int i = first; i < last; i++) {
+				writer.value(spectra[i]);
+			}
+			writer.endArray();
+			proteinGroupId++;
+		}
+		writer.endObject();
+
+		writer.endObject();
+	}
+
 	public void writeMetricsJson(final Writer writer) {
 		try {
 			final JsonWriter jsonWriter = new JsonWriter(writer);
@@ -208,27 +323,26 @@ public final class QuameterUi implements Dao, UiConfigurationProvider, Lifecycle
 		writer.endArray();
 	}
 
-	private void writeRow(final JsonWriter writer, final QuameterResult result, final List<QuameterProteinGroup> proteinGroups) throws IOException {
+	private void writeRow(final JsonWriter writer, final QuameterRow row, final List<QuameterProteinGroup> proteinGroups) throws IOException {
 		writer.beginObject()
 				.name("c");
 		writer.beginArray();
 
-		writeValue(writer, result.getId()); // Id of the entry (for hiding)
-		final TandemMassSpectrometrySample massSpecSample = result.getMassSpectrometrySample();
-		writeValue(writer, massSpecSample.getStartTime()); // startTime
-		writeValue(writer, massSpecSample.getFile().getAbsolutePath()); // path
-		writeValue(writer, massSpecSample.getRunTimeInSeconds() / SEC_TO_MIN); // duration
-		writeValue(writer, (massSpecSample.getFileSize() == null ? 0 : massSpecSample.getFileSize() / (1024.0 * 1024.0))); // file size in MB
-		writeValue(writer, mapInstrument(massSpecSample.getInstrumentSerialNumber())); // instrument
-		writeValue(writer, result.getCategory());
-		writeValue(writer, result.getSearchParametersId()); // search parameters id
-		writeValue(writer, result.getTransaction());
-
-		for (final QuameterResult.QuameterColumn column : QuameterResult.QuameterColumn.values()) {
-			writeValue(writer, result.getValue(column));
+		writeValue(writer, row.getId()); // Id of the entry (for hiding)
+		writeValue(writer, row.getStartTime()); // startTime
+		writeValue(writer, row.getFile().getAbsolutePath()); // path
+		writeValue(writer, row.getRunTimeInSeconds() / SEC_TO_MIN); // duration
+		writeValue(writer, (row.getFileSize() == null ? 0 : row.getFileSize() / (1024.0 * 1024.0))); // file size in MB
+		writeValue(writer, mapInstrument(row.getInstrumentSerialNumber())); // instrument
+		writeValue(writer, row.getCategory());
+		writeValue(writer, row.getSearchParametersId()); // search parameters id
+		writeValue(writer, row.getTransaction());
+
+		for (int i = 0; i < row.getColumns().size(); i++) {
+			writeValue(writer, row.getValue(i));
 		}
 
-		final Map<QuameterProteinGroup, Integer> identifiedSpectra = result.getReadOnlyIdentifiedSpectra();
+		final Map<QuameterProteinGroup, Integer> identifiedSpectra = row.getIdentifiedSpectra();
 		for (final QuameterProteinGroup proteinGroup : proteinGroups) {
 			final Integer numSpectra = identifiedSpectra != null ? identifiedSpectra.get(proteinGroup) : null;
 			writeValue(writer, numSpectra != null ? numSpectra : 0);
@@ -252,12 +366,12 @@ public final class QuameterUi implements Dao, UiConfigurationProvider, Lifecycle
 				.endObject();
 	}
 
-	private void writeRows(final JsonWriter writer, final List<QuameterResult> results, final List<QuameterProteinGroup> proteinGroups) throws IOException {
+	private void writeRows(final JsonWriter writer, final List<QuameterRow> rows, final List<QuameterProteinGroup> proteinGroups) throws IOException {
 		writer.name("rows");
 		writer.beginArray();
 
-		for (final QuameterResult result : results) {
-			writeRow(writer, result, proteinGroups);
+		for (final QuameterRow row : rows) {
+			writeRow(writer, row, proteinGroups);
 		}
 
 		writer.endArray();
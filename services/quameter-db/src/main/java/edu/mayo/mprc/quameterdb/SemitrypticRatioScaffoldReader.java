@@ -26,7 +26,6 @@ final class SemitrypticRatioScaffoldReader extends ScaffoldReportReader {
 	@Override
 	public boolean processHeader(final String line) {
 		final Map<String, Integer> map = buildColumnMap(line);
-		initializeCurrentLine(map);
 
 		// Store the column numbers for faster parsing
 		msmsSampleNameColumn = getColumn(map, ScaffoldReportReader.MS_MS_SAMPLE_NAME);
@@ -35,12 +34,10 @@ final class SemitrypticRatioScaffoldReader extends ScaffoldReportReader {
 	}
 
 	@Override
-	public boolean processRow(final String line) {
-		fillCurrentLine(line);
-
-		if (msmsSampleName.equals(currentLine[msmsSampleNameColumn])) {
+	public boolean processRow() {
+		if (columnEquals(msmsSampleNameColumn, msmsSampleName)) {
 			totalSpectra++;
-			if ("1".equals(currentLine[numberOfEnzymaticTerminiiColumn])) {
+			if (columnEquals(numberOfEnzymaticTerminiiColumn, "1")) {
 				semiTrypticSpectra++;
 			}
 		}
@@ -45,6 +45,19 @@ public interface QuameterDao extends Dao {
 	 */
 	List<QuameterResult> listHiddenResults();
 
+	/**
+	 * List results as rows of plain values, loading only the requested metrics straight from the database columns.
+	 * The rows are ordered by the time their sample was acquired. Hidden results are listed as well,
+	 * same as {@link #listAllResults()}, but there is no implicit time limit.
+	 * <p/>
+	 * The results for {@code _Pre} and {@code _Post} files are dropped after the paging limits were applied,
+	 * so a page can contain fewer rows than requested.
+	 *
+	 * @param query What results and which metrics to list.
+	 * @return Matching results.
+	 */
+	List<QuameterRow> listResultRows(QuameterQuery query);
+
 	void hideQuameterResult(int quameterResultId, final String hideReason);
 
 	void unhideQuameterResult(int quameterResultId, final String unhideReason);
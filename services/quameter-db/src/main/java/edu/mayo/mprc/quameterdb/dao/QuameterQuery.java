@@ -0,0 +1,107 @@
+package edu.mayo.mprc.quameterdb.dao;
+
+import com.google.common.collect.ImmutableList;
+import org.joda.time.DateTime;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Which QuaMeter results to list and which of their metrics to load.
+ * <p/>
+ * All the restrictions are optional. By default, all results with all metrics are listed.
+ *
+ * @author Roman Zenka
+ */
+public final class QuameterQuery {
+	private static final List<QuameterResult.QuameterColumn> ALL_COLUMNS = ImmutableList.copyOf(Arrays.asList(QuameterResult.QuameterColumn.values()));
+
+	private DateTime from;
+	private DateTime to;
+	private Collection<String> instruments;
+	private List<QuameterResult.QuameterColumn> columns = ALL_COLUMNS;
+	private int afterId;
+	private int firstResult;
+	private int maxResults;
+
+	public QuameterQuery() {
+	}
+
+	/**
+	 * @return List only results for samples that started at this time or later. Null for no limit.
+	 */
+	public DateTime getFrom() {
+		return from;
+	}
+
+	public void setFrom(final DateTime from) {
+		this.from = from;
+	}
+
+	/**
+	 * @return List only results for samples that started before this time. Null for no limit.
+	 */
+	public DateTime getTo() {
+		return to;
+	}
+
+	public void setTo(final DateTime to) {
+		this.to = to;
+	}
+
+	/**
+	 * @return Instrument serial numbers to list the results for. Null or empty for all instruments.
+	 */
+	public Collection<String> getInstruments() {
+		return instruments;
+	}
+
+	public void setInstruments(final Collection<String> instruments) {
+		this.instruments = instruments;
+	}
+
+	/**
+	 * @return The metrics to load, in the order {@link QuameterRow#getValue(int)} returns them.
+	 */
+	public List<QuameterResult.QuameterColumn> getColumns() {
+		return columns;
+	}
+
+	/**
+	 * @param columns The metrics to load. Null means all of them.
+	 */
+	public void setColumns(final List<QuameterResult.QuameterColumn> columns) {
+		this.columns = columns == null ? ALL_COLUMNS : ImmutableList.copyOf(columns);
+	}
+
+	/**
+	 * @return List only results with id larger than this one. Used to load results added since the last query.
+	 */
+	public int getAfterId() {
+		return afterId;
+	}
+
+	public void setAfterId(final int afterId) {
+		this.afterId = afterId;
+	}
+
+	public int getFirstResult() {
+		return firstResult;
+	}
+
+	public void setFirstResult(final int firstResult) {
+		this.firstResult = firstResult;
+	}
+
+	/**
+	 * @return Maximum number of results to list, 0 for no limit.
+	 */
+	public int getMaxResults() {
+		return maxResults;
+	}
+
+	public void setMaxResults(final int maxResults) {
+		this.maxResults = maxResults;
+	}
+}
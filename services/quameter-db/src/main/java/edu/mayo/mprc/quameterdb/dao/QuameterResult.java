@@ -216,7 +216,7 @@ public final class QuameterResult extends PersistableBase {
 		this.fileSearch = fileSearch;
 	}
 
-	private QuameterColumn getColumnByName(final String name) {
+	public static QuameterColumn getColumnByName(final String name) {
 		Preconditions.checkArgument(name != null);
 		final String canonicalName = name.toLowerCase(Locale.US).replace('-', '_');
 		try {
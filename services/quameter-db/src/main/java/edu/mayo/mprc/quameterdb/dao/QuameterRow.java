@@ -0,0 +1,115 @@
+package edu.mayo.mprc.quameterdb.dao;
+
+import edu.mayo.mprc.MprcException;
+import org.joda.time.DateTime;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One QuaMeter result as listed by {@link QuameterDao#listResultRows}. Holds only the values the user
+ * interface displays, loaded directly from the database columns instead of through the mapped objects.
+ *
+ * @author Roman Zenka
+ */
+public final class QuameterRow {
+	private final int id;
+	private final DateTime startTime;
+	private final File file;
+	private final double runTimeInSeconds;
+	private final Long fileSize;
+	private final String instrumentSerialNumber;
+	private final String category;
+	private final int searchParametersId;
+	private final int transaction;
+	private final List<QuameterResult.QuameterColumn> columns;
+	private final double[] values;
+	private final Map<QuameterProteinGroup, Integer> identifiedSpectra;
+
+	/**
+	 * @param columns           Metrics the values belong to.
+	 * @param values            Metric values, in the order of the columns.
+	 * @param identifiedSpectra Number of identified spectra per protein group. Can be filled in later.
+	 */
+	public QuameterRow(final int id, final DateTime startTime, final File file, final double runTimeInSeconds,
+	                   final Long fileSize, final String instrumentSerialNumber, final String category,
+	                   final int searchParametersId, final int transaction,
+	                   final List<QuameterResult.QuameterColumn> columns, final double[] values,
+	                   final Map<QuameterProteinGroup, Integer> identifiedSpectra) {
+		this.id = id;
+		this.startTime = startTime;
+		this.file = file;
+		this.runTimeInSeconds = runTimeInSeconds;
+		this.fileSize = fileSize;
+		this.instrumentSerialNumber = instrumentSerialNumber;
+		this.category = category;
+		this.searchParametersId = searchParametersId;
+		this.transaction = transaction;
+		this.columns = columns;
+		this.values = values;
+		this.identifiedSpectra = identifiedSpectra;
+	}
+
+	public int getId() {
+		return id;
+	}
+
+	public DateTime getStartTime() {
+		return startTime;
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	public double getRunTimeInSeconds() {
+		return runTimeInSeconds;
+	}
+
+	public Long getFileSize() {
+		return fileSize;
+	}
+
+	public String getInstrumentSerialNumber() {
+		return instrumentSerialNumber;
+	}
+
+	public String getCategory() {
+		return category;
+	}
+
+	public int getSearchParametersId() {
+		return searchParametersId;
+	}
+
+	public int getTransaction() {
+		return transaction;
+	}
+
+	public List<QuameterResult.QuameterColumn> getColumns() {
+		return columns;
+	}
+
+	/**
+	 * @param index Index of the column in {@link #getColumns()}.
+	 */
+	public double getValue(final int index) {
+		return values[index];
+	}
+
+	/**
+	 * @return Value of given metric. Throws an exception if the metric was not loaded.
+	 */
+	public double getValue(final QuameterResult.QuameterColumn column) {
+		final int index = columns.indexOf(column);
+		if (index < 0) {
+			throw new MprcException("The metric " + column.name() + " was not loaded");
+		}
+		return values[index];
+	}
+
+	public Map<QuameterProteinGroup, Integer> getIdentifiedSpectra() {
+		return identifiedSpectra;
+	}
+}
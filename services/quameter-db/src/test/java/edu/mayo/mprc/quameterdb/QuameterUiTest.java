@@ -3,11 +3,15 @@ package edu.mayo.mprc.quameterdb;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.gson.Gson;
+import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
 import edu.mayo.mprc.config.DependencyResolver;
 import edu.mayo.mprc.quameterdb.dao.QuameterDao;
 import edu.mayo.mprc.quameterdb.dao.QuameterProteinGroup;
+import edu.mayo.mprc.quameterdb.dao.QuameterQuery;
 import edu.mayo.mprc.quameterdb.dao.QuameterResult;
+import edu.mayo.mprc.quameterdb.dao.QuameterRow;
 import edu.mayo.mprc.searchdb.dao.SearchResult;
 import edu.mayo.mprc.searchdb.dao.TandemMassSpectrometrySample;
 import edu.mayo.mprc.swift.dbmapping.FileSearch;
@@ -23,10 +27,14 @@ import org.testng.annotations.Test;
 
 import java.io.File;
 import java.io.StringWriter;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 
+import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 /**
@@ -42,6 +50,7 @@ public final class QuameterUiTest {
 		when(quameterDao.listProteinGroups()).thenReturn(quameterProteinGroups());
 		when(quameterDao.listVisibleResults()).thenReturn(quameterResults());
 		when(quameterDao.listAllResults()).thenReturn(quameterResults());
+		when(quameterDao.listResultRows(any(QuameterQuery.class))).thenReturn(quameterRows());
 
 		final QuameterDbWorker.Config quameterDbConfig = new QuameterDbWorker.Config(null, "animal,-cat*,-dog", "{\"albumin\":\"ALBU_HUMAN\",\"keratin\":\"K1C1_HUMAN\"}", "");
 
@@ -90,6 +99,26 @@ public final class QuameterUiTest {
 		);
 	}
 
+	/**
+	 * @return The fake quameter results as the projection query would list them.
+	 */
+	private List<QuameterRow> quameterRows() {
+		final List<QuameterResult.QuameterColumn> columns = Arrays.asList(QuameterResult.QuameterColumn.values());
+		final List<QuameterRow> rows = Lists.newArrayList();
+		for (final QuameterResult result : quameterResults()) {
+			final TandemMassSpectrometrySample sample = result.getMassSpectrometrySample();
+			final double[] values = new double[columns.size()];
+			for (int i = 0; i < values.length; i++) {
+				values[i] = result.getValue(columns.get(i));
+			}
+			rows.add(new QuameterRow(result.getId(), sample.getStartTime(), sample.getFile(), sample.getRunTimeInSeconds(),
+					sample.getFileSize(), sample.getInstrumentSerialNumber(), result.getCategory(),
+					result.getSearchParametersId(), result.getTransaction(), columns, values,
+					Maps.newHashMap(result.getReadOnlyIdentifiedSpectra())));
+		}
+		return rows;
+	}
+
 	private Map<QuameterProteinGroup, Integer> getIdentifiedSpectra(final int initial) {
 		final Map<QuameterProteinGroup, Integer> identifiedSpectra = Maps.newHashMap();
 
@@ -130,6 +159,51 @@ public final class QuameterUiTest {
 		Assert.assertEquals(actual, expected, "Json objects must match");
 	}
 
+	@Test
+	public void shouldReloadChangedResults() {
+		quameterUi.begin();
+		quameterUi.dataTableJson(new StringWriter(1000));
+		quameterUi.dataTableJson(new StringWriter(1000));
+		verify(quameterDao, times(1)).listResultRows(any(QuameterQuery.class));
+
+		quameterUi.resultsChanged();
+		quameterUi.dataTableJson(new StringWriter(1000));
+		verify(quameterDao, times(2)).listResultRows(any(QuameterQuery.class));
+		quameterUi.commit();
+	}
+
+	@Test
+	public void shouldWriteSeries() {
+		final QuameterQuery query = new QuameterQuery();
+		query.setInstruments(Arrays.asList("serial 2"));
+		query.setColumns(Arrays.asList(QuameterResult.QuameterColumn.c_1a, QuameterResult.QuameterColumn.p_3));
+
+		quameterUi.begin();
+		final StringWriter writer = new StringWriter(1000);
+		try {
+			quameterUi.writeSeriesJson(writer, query);
+			quameterUi.commit();
+		} finally {
+			FileUtilities.closeQuietly(writer);
+		}
+
+		final JsonObject actual = jsonFromString(writer.toString()).getAsJsonObject();
+		final JsonArray instruments = actual.getAsJsonArray("instruments");
+		Assert.assertEquals(instruments.size(), 1, "Only the second instrument is listed");
+		final JsonObject instrument = instruments.get(0).getAsJsonObject();
+		Assert.assertEquals(instrument.get("serialNumber").getAsString(), "serial 2");
+		Assert.assertEquals(instrument.get("total").getAsInt(), 1);
+		Assert.assertEquals(instrument.getAsJsonArray("id").get(0).getAsInt(), 2);
+		Assert.assertEquals(instrument.getAsJsonArray("startTime").get(0).getAsLong(), new DateTime(2012, 2, 3, 10, 20, 30, 0).getMillis());
+
+		final JsonObject values = instrument.getAsJsonObject("values");
+		Assert.assertTrue(values.has("c_1a"));
+		Assert.assertTrue(values.has("p_3"));
+		Assert.assertFalse(values.has("c_1b"), "Only the requested metrics are listed");
+		Assert.assertEquals(values.getAsJsonArray("id_1").get(0).getAsInt(), 20);
+		Assert.assertEquals(values.getAsJsonArray("id_2").get(0).getAsInt(), 21);
+	}
+
 	@Test
 	public void shouldWriteMetrics() {
 		final StringWriter writer = new StringWriter(1000);
@@ -45,6 +45,8 @@ public final class QuameterCache extends WorkCache<QuameterWorkPacket> {
 
 					.property(WorkCache.CacheConfig.SERVICE, "QuaMeter Search Engine", "The QuaMeter engine that will do the search. The cache just caches the results.")
 					.reference("quameter", UiBuilder.NONE_TYPE);
+
+			WorkCache.CacheConfig.evictionUi(builder);
 		}
 	}
 }
@@ -43,6 +43,8 @@ public final class RawToMgfCache extends WorkCache<RawToMgfWorkPacket> {
 
 					.property(CacheConfig.SERVICE, "Raw To MGF Convertor", "The module that will do the conversion. The cache just caches the results.")
 					.reference("raw2mgf", UiBuilder.NONE_TYPE);
+
+			CacheConfig.evictionUi(builder);
 		}
 	}
 }
@@ -3,6 +3,7 @@ package edu.mayo.mprc.scaffold;
 import com.google.common.base.Charsets;
 import com.google.common.io.Files;
 import edu.mayo.mprc.daemon.CachableWorkPacket;
+import edu.mayo.mprc.daemon.worker.MemoryRequirements;
 import edu.mayo.mprc.daemon.worker.WorkPacket;
 import edu.mayo.mprc.daemon.worker.WorkPacketBase;
 import edu.mayo.mprc.scafml.ScafmlScaffold;
@@ -14,7 +15,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
-public final class ScaffoldWorkPacket extends WorkPacketBase implements CachableWorkPacket {
+public final class ScaffoldWorkPacket extends WorkPacketBase implements CachableWorkPacket, MemoryRequirements {
 	private static final long serialVersionUID = 20110407L;
 	public static final String SF3 = ".sf3";
 	private File outputFolder;
@@ -119,4 +120,9 @@ public final class ScaffoldWorkPacket extends WorkPacketBase implements Cachable
 	@Override
 	public void reportCachedResult(ProgressReporter reporter, File targetFolder, List<String> outputFiles) {
 	}
+
+	@Override
+	public int getRequiredMemoryMegabytes() {
+		return 8192;
+	}
 }
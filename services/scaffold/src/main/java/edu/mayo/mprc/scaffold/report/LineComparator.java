@@ -6,13 +6,14 @@ import edu.mayo.mprc.MprcException;
 import java.io.Serializable;
 import java.util.Comparator;
 
-final class LineComparator implements Comparator<String[]>, Serializable {
+final class LineComparator implements Comparator<ReportRow>, Serializable {
 	private static final long serialVersionUID = 20101221L;
 	private static final String ASCENDING = "a";
 	private static final String INTEGER = "i";
 
 	private int[] positions;
-	private String[] directions;
+	private boolean[] ascending;
+	private boolean[] numeric;
 
 	/**
 	 * Initialize the comparator to compare given items of the list in given order.
@@ -20,6 +21,7 @@ final class LineComparator implements Comparator<String[]>, Serializable {
 	 * @param columnsRead Names of the columns as they are being read
 	 * @param columns     List of column names to be compared to each other.
 	 * @param directions  Direction of the comparison, 'a' stands for ascending, 'd' stands for descending.
+	 *                    Append 'i' to compare the column as an integer.
 	 */
 	LineComparator(final String[] columnsRead,
 	               final String[] columns, final String[] directions) {
@@ -27,9 +29,12 @@ final class LineComparator implements Comparator<String[]>, Serializable {
 			throw new MprcException("The list comparator is not set up correctly.");
 		}
 
-		this.directions = directions.clone();
+		ascending = new boolean[columns.length];
+		numeric = new boolean[columns.length];
 		positions = new int[columns.length];
 		for (int i = 0; i < columns.length; i++) {
+			ascending[i] = directions[i].startsWith(ASCENDING);
+			numeric[i] = directions[i].endsWith(INTEGER);
 			boolean found = false;
 			for (int j = 0; j < columnsRead.length; j++) {
 				if (columnsRead[j].equals(columns[i])) {
@@ -44,19 +49,37 @@ final class LineComparator implements Comparator<String[]>, Serializable {
 		}
 	}
 
+	/**
+	 * Wrap the row values, parsing the numeric sort keys so the comparisons do not have to.
+	 */
+	ReportRow createRow(final String[] values) {
+		final int[] numericKeys = new int[positions.length];
+		for (int i = 0; i < positions.length; i++) {
+			if (numeric[i]) {
+				final String value = values[positions[i]];
+				try {
+					numericKeys[i] = Integer.parseInt(value);
+				} catch (NumberFormatException e) {
+					throw new MprcException("Expected an integer to sort by, got [" + value + "]", e);
+				}
+			}
+		}
+		return new ReportRow(values, numericKeys);
+	}
+
 	@Override
-	public int compare(final String[] o1, final String[] o2) {
+	public int compare(final ReportRow o1, final ReportRow o2) {
 		for (int i = 0; i < positions.length; i++) {
-			final int index = positions[i];
 			final int comparison;
-			if (directions[i].endsWith(INTEGER)) {
-				// Numeric
-				comparison = Integer.valueOf(o1[index]).compareTo(Integer.valueOf(o2[index]));
+			if (numeric[i]) {
+				final int n1 = o1.getNumericKey(i);
+				final int n2 = o2.getNumericKey(i);
+				comparison = n1 < n2 ? -1 : (n1 == n2 ? 0 : 1);
 			} else {
-				comparison = o1[index].compareTo(o2[index]);
+				comparison = o1.getValue(positions[i]).compareTo(o2.getValue(positions[i]));
 			}
 			if (comparison != 0) {
-				return directions[i].startsWith(ASCENDING) ? comparison : -comparison;
+				return ascending[i] ? comparison : -comparison;
 			}
 		}
 		return 0;
@@ -3,12 +3,21 @@ package edu.mayo.mprc.scaffold.report;
 import com.google.common.collect.Lists;
 import edu.mayo.mprc.scaffoldparser.spectra.ScaffoldReportReader;
 
-import java.util.*;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 
 /**
+ * Collects the distinct peptide and protein rows of a Scaffold spectrum report, sorted for the final reports.
+ * The rows are sorted in bounded memory, spilling to the disk when needed, so call {@link #close()} when done.
+ *
  * @author Roman Zenka
  */
-final class ReportBuildingReader extends ScaffoldReportReader {
+final class ReportBuildingReader extends ScaffoldReportReader implements Closeable {
 	static final String[] PEPTIDE_COLUMNS = {
 			BIOLOGICAL_SAMPLE_NAME,
 			PROTEIN_NAME,
@@ -42,17 +51,29 @@ final class ReportBuildingReader extends ScaffoldReportReader {
 	private int peptideGroupBy;
 	private int proteinGroupBy;
 
-	private static final Comparator<String[]> PEPTIDE_COMPARATOR = new LineComparator(
+	private static final LineComparator PEPTIDE_COMPARATOR = new LineComparator(
 			PEPTIDE_COLUMNS,
 			new String[]{BIOLOGICAL_SAMPLE_NAME /* group by */, NUMBER_OF_UNIQUE_PEPTIDES, PROTEIN_NAME, PEPTIDE_SEQUENCE, FIXED_MODIFICATIONS, VARIABLE_MODIFICATIONS},
 			new String[]{"a", "di", "a", "a", "a", "a"});
-	private static final Comparator<String[]> PROTEIN_COMPARATOR = new LineComparator(
+	private static final LineComparator PROTEIN_COMPARATOR = new LineComparator(
 			PROTEIN_COLUMNS,
 			new String[]{BIOLOGICAL_SAMPLE_NAME /* group by */, NUMBER_OF_UNIQUE_PEPTIDES, PROTEIN_NAME},
 			new String[]{"a", "di", "a"});
 
-	private TreeSet<String[]> peptides;
-	private TreeSet<String[]> proteins;
+	private final int maxRowsInMemory;
+	private final File tempFolder;
+
+	private ReportRowSorter peptides;
+	private ReportRowSorter proteins;
+
+	/**
+	 * @param maxRowsInMemory How many peptide (and protein) rows to keep in memory before spilling them to the disk.
+	 * @param tempFolder      Where to put the spilled rows.
+	 */
+	ReportBuildingReader(final int maxRowsInMemory, final File tempFolder) {
+		this.maxRowsInMemory = maxRowsInMemory;
+		this.tempFolder = tempFolder;
+	}
 
 	@Override
 	public boolean processMetadata(final String key, final String value) {
@@ -63,7 +84,6 @@ final class ReportBuildingReader extends ScaffoldReportReader {
 	public boolean processHeader(final String line) {
 		columnMap = buildColumnMap(line);
 		columnNames = Lists.newArrayList(getColumnNames(line));
-		initializeCurrentLine(columnMap);
 
 		peptideColumns = translateColumnNames(PEPTIDE_COLUMNS);
 		proteinColumns = translateColumnNames(PROTEIN_COLUMNS);
@@ -71,8 +91,9 @@ final class ReportBuildingReader extends ScaffoldReportReader {
 		peptideGroupBy = getColumn(columnMap, PEPTIDE_GROUP_BY);
 		proteinGroupBy = getColumn(columnMap, PROTEIN_GROUP_BY);
 
-		peptides = new TreeSet<String[]>(PEPTIDE_COMPARATOR);
-		proteins = new TreeSet<String[]>(PROTEIN_COMPARATOR);
+		close();
+		peptides = new ReportRowSorter(PEPTIDE_COMPARATOR, maxRowsInMemory, tempFolder);
+		proteins = new ReportRowSorter(PROTEIN_COMPARATOR, maxRowsInMemory, tempFolder);
 
 		return true;
 	}
@@ -86,9 +107,7 @@ final class ReportBuildingReader extends ScaffoldReportReader {
 	}
 
 	@Override
-	public boolean processRow(final String line) {
-		fillCurrentLine(line);
-
+	public boolean processRow() {
 		final String[] peptideRow = fillArrayWithData(peptideColumns);
 		final String[] proteinRow = fillArrayWithData(proteinColumns);
 
@@ -102,50 +121,61 @@ final class ReportBuildingReader extends ScaffoldReportReader {
 		final int length = columns.length;
 		final String[] row = new String[length];
 		for (int i = 0; i < length; i++) {
-			row[i] = currentLine[columns[i]];
+			row[i] = getString(columns[i]);
 		}
 		return row;
 	}
 
-	private String getReport(final Collection<String[]> rows, final int[] columnPositions, final int groupByIndex, final boolean includeHeader) {
-		final StringBuilder result = new StringBuilder(rows.size() * 50);
+	private void writeReport(final Writer writer, final ReportRowSorter rows, final int[] columnPositions, final int groupByIndex, final boolean includeHeader) throws IOException {
 		final int length = columnPositions.length;
 		if (includeHeader) {
 			for (int i = 0; i < length; i++) {
 				if (i > 0) {
-					result.append('\t');
+					writer.write('\t');
 				}
-				result.append(columnNames.get(columnPositions[i]));
+				writer.write(columnNames.get(columnPositions[i]));
 			}
-			result.append('\n');
+			writer.write('\n');
 		}
 
-		if (rows.size() > 0) {
-			String prevGroupBy = rows.iterator().next()[groupByIndex];
-			for (final String[] row : rows) {
-				final String groupBy = row[groupByIndex];
-				if (!groupBy.equals(prevGroupBy)) {
-					result.append('\n'); // Newline to separate the groups
-				}
-				prevGroupBy = groupBy;
+		String prevGroupBy = null;
+		final Iterator<String[]> iterator = rows.sorted();
+		while (iterator.hasNext()) {
+			final String[] row = iterator.next();
+			final String groupBy = row[groupByIndex];
+			if (prevGroupBy != null && !groupBy.equals(prevGroupBy)) {
+				writer.write('\n'); // Newline to separate the groups
+			}
+			prevGroupBy = groupBy;
 
-				for (int i = 0; i < row.length; i++) {
-					if (i > 0) {
-						result.append('\t');
-					}
-					result.append(row[i]);
+			for (int i = 0; i < row.length; i++) {
+				if (i > 0) {
+					writer.write('\t');
 				}
-				result.append('\n');
+				writer.write(row[i]);
 			}
+			writer.write('\n');
 		}
-		return result.toString();
 	}
 
-	public String getProteinReport(final boolean includeHeader) {
-		return getReport(proteins, proteinColumns, proteinGroupBy, includeHeader);
+	public void writeProteinReport(final Writer writer, final boolean includeHeader) throws IOException {
+		writeReport(writer, proteins, proteinColumns, proteinGroupBy, includeHeader);
+	}
+
+	public void writePeptideReport(final Writer writer, final boolean includeHeader) throws IOException {
+		writeReport(writer, peptides, peptideColumns, peptideGroupBy, includeHeader);
 	}
 
-	public String getPeptideReport(final boolean includeHeader) {
-		return getReport(peptides, peptideColumns, peptideGroupBy, includeHeader);
+	/**
+	 * Delete the temporary files holding the sorted rows.
+	 */
+	@Override
+	public void close() {
+		if (peptides != null) {
+			peptides.close();
+		}
+		if (proteins != null) {
+			proteins.close();
+		}
 	}
 }
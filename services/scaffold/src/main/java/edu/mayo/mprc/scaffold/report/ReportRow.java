@@ -0,0 +1,31 @@
+package edu.mayo.mprc.scaffold.report;
+
+/**
+ * A row of the report together with its numeric sort keys, parsed just once when the row is read.
+ *
+ * @author Roman Zenka
+ */
+final class ReportRow {
+	private final String[] values;
+	private final int[] numericKeys;
+
+	ReportRow(final String[] values, final int[] numericKeys) {
+		this.values = values;
+		this.numericKeys = numericKeys;
+	}
+
+	public String[] getValues() {
+		return values;
+	}
+
+	public String getValue(final int index) {
+		return values[index];
+	}
+
+	/**
+	 * @param key Index of the sort key (not of the column).
+	 */
+	public int getNumericKey(final int key) {
+		return numericKeys[key];
+	}
+}
@@ -0,0 +1,235 @@
+package edu.mayo.mprc.scaffold.report;
+
+import com.google.common.base.Joiner;
+import edu.mayo.mprc.MprcException;
+import edu.mayo.mprc.utilities.FileUtilities;
+
+import java.io.*;
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Sorts report rows, dropping rows that compare equal to an earlier one - same as adding them to a {@link TreeSet}.
+ * <p/>
+ * At most {@code maxRowsInMemory} rows are kept in memory. When there are more, the sorted rows are spilled
+ * into a temporary run file, and the runs are merged when the sorted rows are requested.
+ *
+ * @author Roman Zenka
+ */
+final class ReportRowSorter implements Closeable {
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final String ENCODING = "UTF-8";
+	private static final Pattern TAB = Pattern.compile("\t");
+	private static final Joiner TAB_JOINER = Joiner.on('\t');
+
+	private final LineComparator comparator;
+	private final int maxRowsInMemory;
+	private final File tempFolder;
+	private final List<ReportRow> buffer;
+	private final List<File> runs = new ArrayList<File>();
+	private final List<RunReader> readers = new ArrayList<RunReader>();
+
+	/**
+	 * @param maxRowsInMemory How many rows to keep in memory before spilling them to the disk.
+	 * @param tempFolder      Where to put the sorted runs.
+	 */
+	ReportRowSorter(final LineComparator comparator, final int maxRowsInMemory, final File tempFolder) {
+		if (maxRowsInMemory < 1) {
+			throw new MprcException("At least one row has to fit in memory when sorting, " + maxRowsInMemory + " requested");
+		}
+		this.comparator = comparator;
+		this.maxRowsInMemory = maxRowsInMemory;
+		this.tempFolder = tempFolder;
+		buffer = new ArrayList<ReportRow>(Math.min(maxRowsInMemory, BUFFER_SIZE));
+	}
+
+	public void add(final String[] values) {
+		buffer.add(comparator.createRow(values));
+		if (buffer.size() >= maxRowsInMemory) {
+			sortBuffer();
+			// Many rows are duplicates, spill only when removing them did not free enough space
+			if (buffer.size() > maxRowsInMemory / 2) {
+				spill();
+			}
+		}
+	}
+
+	/**
+	 * @return The distinct rows in sorted order. Can be called just once.
+	 */
+	public Iterator<String[]> sorted() {
+		if (runs.isEmpty()) {
+			sortBuffer();
+			final Iterator<ReportRow> iterator = buffer.iterator();
+			return new Iterator<String[]>() {
+				@Override
+				public boolean hasNext() {
+					return iterator.hasNext();
+				}
+
+				@Override
+				public String[] next() {
+					return iterator.next().getValues();
+				}
+
+				@Override
+				public void remove() {
+					throw new UnsupportedOperationException("The sorted rows cannot be removed");
+				}
+			};
+		}
+		if (!buffer.isEmpty()) {
+			sortBuffer();
+			spill();
+		}
+		return new MergingIterator();
+	}
+
+	/**
+	 * Stable sort, then drop each row equal to its predecessor. The first added row of each group survives.
+	 */
+	private void sortBuffer() {
+		Collections.sort(buffer, comparator);
+		int kept = 0;
+		for (int i = 0; i < buffer.size(); i++) {
+			final ReportRow row = buffer.get(i);
+			if (kept == 0 || comparator.compare(buffer.get(kept - 1), row) != 0) {
+				buffer.set(kept, row);
+				kept++;
+			}
+		}
+		buffer.subList(kept, buffer.size()).clear();
+	}
+
+	private void spill() {
+		Writer writer = null;
+		try {
+			final File run = File.createTempFile("run", ".tsv", tempFolder);
+			runs.add(run);
+			writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(run), ENCODING), BUFFER_SIZE);
+			for (final ReportRow row : buffer) {
+				TAB_JOINER.appendTo(writer, row.getValues());
+				writer.write('\n');
+			}
+		} catch (IOException e) {
+			throw new MprcException("Could not store sorted report rows in " + tempFolder.getAbsolutePath(), e);
+		} finally {
+			FileUtilities.closeQuietly(writer);
+		}
+		buffer.clear();
+	}
+
+	/**
+	 * Closes and deletes the temporary runs.
+	 */
+	@Override
+	public void close() {
+		for (final RunReader reader : readers) {
+			FileUtilities.closeQuietly(reader);
+		}
+		readers.clear();
+		for (final File run : runs) {
+			FileUtilities.quietDelete(run);
+		}
+		runs.clear();
+		buffer.clear();
+	}
+
+	/**
+	 * Reads one sorted run, one row ahead.
+	 */
+	private final class RunReader implements Closeable {
+		private final int index;
+		private final BufferedReader reader;
+		private ReportRow current;
+
+		RunReader(final int index, final File run) throws IOException {
+			this.index = index;
+			reader = new BufferedReader(new InputStreamReader(new FileInputStream(run), ENCODING), BUFFER_SIZE);
+			advance();
+		}
+
+		boolean advance() throws IOException {
+			final String line = reader.readLine();
+			current = line == null ? null : comparator.createRow(TAB.split(line, -1));
+			return current != null;
+		}
+
+		@Override
+		public void close() throws IOException {
+			reader.close();
+		}
+	}
+
+	/**
+	 * K-way merge of the sorted runs. Equal rows are resolved in favor of the earliest run, which holds
+	 * the rows that were added first.
+	 */
+	private final class MergingIterator implements Iterator<String[]> {
+		private final PriorityQueue<RunReader> queue;
+		private ReportRow next;
+
+		MergingIterator() {
+			queue = new PriorityQueue<RunReader>(runs.size(), new Comparator<RunReader>() {
+				@Override
+				public int compare(final RunReader o1, final RunReader o2) {
+					final int comparison = comparator.compare(o1.current, o2.current);
+					if (comparison != 0) {
+						return comparison;
+					}
+					return o1.index < o2.index ? -1 : (o1.index == o2.index ? 0 : 1);
+				}
+			});
+			try {
+				for (int i = 0; i < runs.size(); i++) {
+					final RunReader reader = new RunReader(i, runs.get(i));
+					readers.add(reader);
+					if (reader.current != null) {
+						queue.add(reader);
+					}
+				}
+			} catch (IOException e) {
+				throw new MprcException("Could not read sorted report rows", e);
+			}
+			next = poll();
+		}
+
+		private ReportRow poll() {
+			final RunReader reader = queue.poll();
+			if (reader == null) {
+				return null;
+			}
+			final ReportRow row = reader.current;
+			try {
+				if (reader.advance()) {
+					queue.add(reader);
+				}
+			} catch (IOException e) {
+				throw new MprcException("Could not read sorted report rows", e);
+			}
+			return row;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return next != null;
+		}
+
+		@Override
+		public String[] next() {
+			if (next == null) {
+				throw new NoSuchElementException();
+			}
+			final ReportRow result = next;
+			do {
+				next = poll();
+			} while (next != null && comparator.compare(result, next) == 0);
+			return result.getValues();
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException("The sorted rows cannot be removed");
+		}
+	}
+}
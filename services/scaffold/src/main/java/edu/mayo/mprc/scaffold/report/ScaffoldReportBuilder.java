@@ -1,18 +1,28 @@
 package edu.mayo.mprc.scaffold.report;
 
+import com.google.common.io.Files;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import edu.mayo.mprc.MprcException;
 import edu.mayo.mprc.utilities.FileUtilities;
 
-import java.io.BufferedWriter;
-import java.io.File;
-import java.io.FileWriter;
-import java.io.IOException;
+import java.io.*;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.*;
 
 /**
  * Builds the peptide and protein reports for Scaffold.
  */
 final class ScaffoldReportBuilder {
-
+	/**
+	 * How many rows of all the report sections together to sort in memory before spilling them to the disk.
+	 */
+	static final int DEFAULT_MAX_ROWS_IN_MEMORY = 400000;
+	/**
+	 * Each section sorts its peptide and protein rows separately.
+	 */
+	private static final int SORTERS_PER_SECTION = 2;
 
 	private ScaffoldReportBuilder() {
 	}
@@ -33,36 +43,154 @@ final class ScaffoldReportBuilder {
 	 * @param outputProteinReport Output .xls file for protein-level list (actually tab-separated) - differs from peptide-level by omitting the peptide sequence.
 	 */
 	public static void buildReport(final List<File> inputReports, final File outputPeptideReport, final File outputProteinReport) throws IOException {
+		buildReport(inputReports, outputPeptideReport, outputProteinReport, DEFAULT_MAX_ROWS_IN_MEMORY);
+	}
+
+	/**
+	 * Same as {@link #buildReport(List, File, File)}, with the amount of memory used bounded.
+	 * <p/>
+	 * Each input report is sorted on its own (several of them at once) into a temporary section,
+	 * the sections are then concatenated in the order of the input reports. The memory budget is split
+	 * evenly between the sections that are sorted at the same time.
+	 *
+	 * @param maxRowsInMemory How many rows of all the report sections together to sort in memory. The rest is sorted on the disk.
+	 */
+	public static void buildReport(final List<File> inputReports, final File outputPeptideReport, final File outputProteinReport, final int maxRowsInMemory) throws IOException {
+		final File tempFolder = FileUtilities.createTempFolder(outputPeptideReport.getAbsoluteFile().getParentFile(), "scaffoldReport", false);
+		final int threads = Math.max(1, Math.min(inputReports.size(), Runtime.getRuntime().availableProcessors()));
+		final int maxSorterRows = Math.max(1, maxRowsInMemory / (threads * SORTERS_PER_SECTION));
+		final ExecutorService executor = Executors.newFixedThreadPool(threads,
+				new ThreadFactoryBuilder()
+						.setDaemon(true)
+						.setNameFormat("scaffold-report-%d")
+						.build());
 
 		BufferedWriter peptideWriter = null;
 		BufferedWriter proteinWriter = null;
 
 		try {
+			final List<Future<Section>> sections = new ArrayList<Future<Section>>(inputReports.size());
+			for (int i = 0; i < inputReports.size(); i++) {
+				sections.add(executor.submit(new SectionBuilder(inputReports.get(i), i == 0, tempFolder, i, maxSorterRows)));
+			}
+
 			peptideWriter = new BufferedWriter(new FileWriter(outputPeptideReport));
 			proteinWriter = new BufferedWriter(new FileWriter(outputProteinReport));
 			boolean first = true;
-			for (final File inputReport : inputReports) {
+			for (final Future<Section> future : sections) {
+				final Section section = getSection(future);
 				//Leave a empty line between tables.
 				if (!first) {
 					peptideWriter.newLine();
 					proteinWriter.newLine();
 				}
 
-				final ReportBuildingReader reader = new ReportBuildingReader();
-				reader.load(inputReport, "3", null);
-
-				peptideWriter.write(reader.getPeptideReport(first));
-				proteinWriter.write(reader.getProteinReport(first));
+				Files.copy(section.getPeptides(), Charset.defaultCharset(), peptideWriter);
+				Files.copy(section.getProteins(), Charset.defaultCharset(), proteinWriter);
+				FileUtilities.quietDelete(section.getPeptides());
+				FileUtilities.quietDelete(section.getProteins());
 
 				first = false;
 			}
 
 		} finally {
+			executor.shutdownNow();
+			// The sections still being built write into the temp folder
+			awaitTermination(executor);
 			FileUtilities.closeQuietly(peptideWriter);
 			FileUtilities.closeQuietly(proteinWriter);
+			FileUtilities.deleteNow(tempFolder);
 			FileUtilities.restoreUmaskRights(outputPeptideReport, false);
 			FileUtilities.restoreUmaskRights(outputProteinReport, false);
 		}
 	}
 
+	private static void awaitTermination(final ExecutorService executor) {
+		boolean interrupted = false;
+		while (!executor.isTerminated()) {
+			try {
+				executor.awaitTermination(1, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				// SWALLOWED: we must not delete the files under the running sections, finish waiting first
+				interrupted = true;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static Section getSection(final Future<Section> future) throws IOException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new MprcException("Interrupted while building the Scaffold report", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new MprcException("Could not build the Scaffold report", e.getCause());
+		}
+	}
+
+	/**
+	 * Peptide and protein report for a single input file.
+	 */
+	private static final class Section {
+		private final File peptides;
+		private final File proteins;
+
+		private Section(final File peptides, final File proteins) {
+			this.peptides = peptides;
+			this.proteins = proteins;
+		}
+
+		public File getPeptides() {
+			return peptides;
+		}
+
+		public File getProteins() {
+			return proteins;
+		}
+	}
+
+	private static final class SectionBuilder implements Callable<Section> {
+		private final File inputReport;
+		private final boolean includeHeader;
+		private final File tempFolder;
+		private final int index;
+		private final int maxRowsInMemory;
+
+		private SectionBuilder(final File inputReport, final boolean includeHeader, final File tempFolder, final int index, final int maxRowsInMemory) {
+			this.inputReport = inputReport;
+			this.includeHeader = includeHeader;
+			this.tempFolder = tempFolder;
+			this.index = index;
+			this.maxRowsInMemory = maxRowsInMemory;
+		}
+
+		@Override
+		public Section call() throws IOException {
+			final Section section = new Section(new File(tempFolder, index + "_peptides.tsv"), new File(tempFolder, index + "_proteins.tsv"));
+			final ReportBuildingReader reader = new ReportBuildingReader(maxRowsInMemory, tempFolder);
+			Writer peptideWriter = null;
+			Writer proteinWriter = null;
+			try {
+				reader.load(inputReport, "3", null);
+
+				peptideWriter = new BufferedWriter(new FileWriter(section.getPeptides()));
+				reader.writePeptideReport(peptideWriter, includeHeader);
+				proteinWriter = new BufferedWriter(new FileWriter(section.getProteins()));
+				reader.writeProteinReport(proteinWriter, includeHeader);
+				peptideWriter.close();
+				proteinWriter.close();
+			} finally {
+				FileUtilities.closeQuietly(peptideWriter);
+				FileUtilities.closeQuietly(proteinWriter);
+				reader.close();
+			}
+			return section;
+		}
+	}
 }
@@ -0,0 +1,70 @@
+package edu.mayo.mprc.scaffold.report;
+
+import edu.mayo.mprc.utilities.FileUtilities;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * @author Roman Zenka
+ */
+public final class ReportRowSorterTest {
+	private static final LineComparator COMPARATOR = new LineComparator(
+			new String[]{"name", "count", "note"},
+			new String[]{"count", "name"},
+			new String[]{"di", "a"});
+
+	@Test
+	public void shouldSortInMemory() {
+		Assert.assertEquals(sort(100), "b,10,first|a,2,first|c,2,first|");
+	}
+
+	@Test
+	public void shouldMergeRunsFromDisk() {
+		Assert.assertEquals(sort(2), "b,10,first|a,2,first|c,2,first|");
+	}
+
+	@Test
+	public void shouldSortSingleRowRuns() {
+		Assert.assertEquals(sort(1), "b,10,first|a,2,first|c,2,first|");
+	}
+
+	/**
+	 * Duplicates of rows are dropped, the row added first is kept.
+	 */
+	private static String sort(final int maxRowsInMemory) {
+		final File folder = FileUtilities.createTempFolder();
+		final ReportRowSorter sorter = new ReportRowSorter(COMPARATOR, maxRowsInMemory, folder);
+		try {
+			sorter.add(new String[]{"c", "2", "first"});
+			sorter.add(new String[]{"a", "2", "first"});
+			sorter.add(new String[]{"b", "10", "first"});
+			sorter.add(new String[]{"a", "2", "second"});
+			sorter.add(new String[]{"c", "2", "second"});
+			sorter.add(new String[]{"b", "10", "second"});
+
+			final StringBuilder result = new StringBuilder();
+			final Iterator<String[]> iterator = sorter.sorted();
+			while (iterator.hasNext()) {
+				final String[] row = iterator.next();
+				result.append(row[0]).append(',').append(row[1]).append(',').append(row[2]).append('|');
+			}
+			return result.toString();
+		} finally {
+			sorter.close();
+			final List<File> leftovers = new ArrayList<File>();
+			final File[] files = folder.listFiles();
+			if (files != null) {
+				for (final File file : files) {
+					leftovers.add(file);
+				}
+			}
+			FileUtilities.cleanupTempFile(folder);
+			Assert.assertTrue(leftovers.isEmpty(), "Temporary runs were not deleted: " + leftovers);
+		}
+	}
+}
@@ -14,6 +14,18 @@ public final class ScaffoldReportBuilderTest {
 
 	@Test
 	public void shouldProduceProperOutput() throws IOException {
+		checkReport(ScaffoldReportBuilder.DEFAULT_MAX_ROWS_IN_MEMORY);
+	}
+
+	/**
+	 * Tiny memory limit forces the rows to be sorted on the disk, the output must not change.
+	 */
+	@Test
+	public void shouldProduceSameOutputSortingOnDisk() throws IOException {
+		checkReport(3);
+	}
+
+	private static void checkReport(final int maxRowsInMemory) throws IOException {
 		final List<File> inputFiles = new ArrayList<File>();
 		final File parentFolder = FileUtilities.createTempFolder();
 		final File file1 = TestingUtilities.getTempFileFromResource("/edu/mayo/mprc/scaffold/output/test1.txt", true, parentFolder);
@@ -29,7 +41,7 @@ public final class ScaffoldReportBuilderTest {
 		final File outputPeptideFile = File.createTempFile("scaffoldReportTest_peptide", ".xls", parentFolder);
 		final File outputProteinFile = File.createTempFile("scaffoldReportTest_protein", ".xls", parentFolder);
 
-		ScaffoldReportBuilder.buildReport(inputFiles, outputPeptideFile, outputProteinFile);
+		ScaffoldReportBuilder.buildReport(inputFiles, outputPeptideFile, outputProteinFile, maxRowsInMemory);
 
 		Assert.assertEquals(TestingUtilities.compareFilesByLine(outputPeptideFile, result_peptide, true), null, "Peptide scaffold report file does not match");
 		Assert.assertEquals(TestingUtilities.compareFilesByLine(outputProteinFile, result_protein, true), null, "Protein scaffold report file does not match");
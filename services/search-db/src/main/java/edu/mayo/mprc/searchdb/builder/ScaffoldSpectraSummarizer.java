@@ -1,6 +1,5 @@
 package edu.mayo.mprc.searchdb.builder;
 
-import com.google.common.base.Strings;
 import edu.mayo.mprc.MprcException;
 import edu.mayo.mprc.fastadb.ProteinSequenceTranslator;
 import edu.mayo.mprc.scaffoldparser.spectra.ScaffoldReportReader;
@@ -95,7 +94,6 @@ public class ScaffoldSpectraSummarizer extends ScaffoldReportReader {
 	@Override
 	public boolean processHeader(final String line) {
 		final Map<String, Integer> map = buildColumnMap(line);
-		initializeCurrentLine(map);
 
 		// Store the column numbers for faster parsing
 		biologicalSampleName = getColumn(map, ScaffoldReportReader.BIOLOGICAL_SAMPLE_NAME);
@@ -113,51 +111,38 @@ public class ScaffoldSpectraSummarizer extends ScaffoldReportReader {
 	}
 
 	@Override
-	public boolean processRow(final String line) {
-		fillCurrentLine(line);
-		final BiologicalSampleBuilder biologicalSample = analysis.getBiologicalSamples().getBiologicalSample(new BiologicalSampleId(currentLine[biologicalSampleName], currentLine[biologicalSampleCategory]));
-		final SearchResultBuilder searchResult = biologicalSample.getSearchResults().getTandemMassSpecResult(FileUtilities.stripGzippedExtension(currentLine[msmsSampleName]));
-		String databaseSourcesValue = Strings.isNullOrEmpty(currentLine[this.databaseSources]) ? databaseName : currentLine[this.databaseSources];
-		if (this.databaseSourcesValue == null) {
-			this.databaseSourcesValue = databaseSourcesValue;
-			analysis.setDatabaseSources(databaseSourcesValue);
-		} else {
-			if (!this.databaseSourcesValue.equals(databaseSourcesValue)) {
+	public boolean processRow() {
+		final BiologicalSampleBuilder biologicalSample = analysis.getBiologicalSamples().getBiologicalSample(new BiologicalSampleId(getString(biologicalSampleName), getString(biologicalSampleCategory)));
+		final SearchResultBuilder searchResult = biologicalSample.getSearchResults().getTandemMassSpecResult(FileUtilities.stripGzippedExtension(getString(msmsSampleName)));
+		if (this.databaseSourcesValue == null || !currentDatabaseSourcesMatch()) {
+			final String databaseSourcesValue = isEmpty(this.databaseSources) ? databaseName : getString(this.databaseSources);
+			if (this.databaseSourcesValue == null) {
+				this.databaseSourcesValue = databaseSourcesValue;
+				analysis.setDatabaseSources(databaseSourcesValue);
+			} else {
 				throw new MprcException("Only single-database Scaffold experiments are supported, saw two different database names: " + this.databaseSourcesValue + ", " + databaseSourcesValue);
 			}
 		}
 		searchResult.getProteinGroups().getProteinGroup(
-				currentLine[proteinAccessionNumbers],
-				parseInt(currentLine[numberOfTotalSpectra]),
-				parseInt(currentLine[numberOfUniquePeptides]),
-				parseInt(currentLine[numberOfUniqueSpectra]),
-				parseDouble(currentLine[percentageOfTotalSpectra]) / HUNDRED_PERCENT,
-				parseDouble(currentLine[percentageSequenceCoverage]) / HUNDRED_PERCENT,
-				parseDouble(currentLine[proteinIdentificationProbability]) / HUNDRED_PERCENT);
+				getString(proteinAccessionNumbers),
+				getInt(numberOfTotalSpectra),
+				getInt(numberOfUniquePeptides),
+				getInt(numberOfUniqueSpectra),
+				getDouble(percentageOfTotalSpectra) / HUNDRED_PERCENT,
+				getDouble(percentageSequenceCoverage) / HUNDRED_PERCENT,
+				getDouble(proteinIdentificationProbability) / HUNDRED_PERCENT);
 
 		return true;
 	}
 
 	/**
-	 * Parse a double number. If the number is missing, {@link Double#NaN} is returned
-	 *
-	 * @param s String representation of the number.
-	 * @return The number parsed. If the number is missing. {@link Double#NaN} is returned. Commas separating thousands
-	 * are handled as if they were not present. Trailing percent sign is removed if present.
+	 * @return True if the database sources of the current row match the ones we saw before. Checked without creating strings.
 	 */
-	static Double parseDouble(final String s) {
-		if ("".equals(s)) {
-			return Double.NaN;
-		}
-		try {
-			return Double.parseDouble(fixCommaSeparatedThousands(cutPercentSign(s)));
-		} catch (NumberFormatException e) {
-			throw new MprcException("Cannot parse number [" + s + "] as real number.", e);
+	private boolean currentDatabaseSourcesMatch() {
+		if (isEmpty(databaseSources)) {
+			return databaseSourcesValue.equals(databaseName);
 		}
-	}
-
-	private static String cutPercentSign(final String s) {
-		return s.endsWith("%") ? s.substring(0, s.length() - 1) : s;
+		return columnEquals(databaseSources, databaseSourcesValue);
 	}
 
 	/**
@@ -7,6 +7,7 @@ import com.google.common.io.Resources;
 import edu.mayo.mprc.MprcException;
 import edu.mayo.mprc.fastadb.ProteinSequence;
 import edu.mayo.mprc.fastadb.ProteinSequenceTranslator;
+import edu.mayo.mprc.io.ByteTsvReader;
 import edu.mayo.mprc.searchdb.dao.Analysis;
 import edu.mayo.mprc.searchdb.dao.BiologicalSample;
 import edu.mayo.mprc.searchdb.dao.ProteinGroup;
@@ -22,6 +23,7 @@ import org.testng.Assert;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Collection;
@@ -70,9 +72,15 @@ public class TestScaffoldSpectraSummarizer {
 
 	@Test
 	public void shouldParseDoubles() {
-		Assert.assertEquals("100.0", String.valueOf(ScaffoldSpectraSummarizer.parseDouble("100.0%")));
-		Assert.assertEquals("94.7", String.valueOf(ScaffoldSpectraSummarizer.parseDouble("94.7%")));
-		Assert.assertEquals("0.948", String.valueOf(ScaffoldSpectraSummarizer.parseDouble("94.8%") / 100.0));
+		final ByteTsvReader reader = new ByteTsvReader(new ByteArrayInputStream("100.0%\t94.7%\t94.8%\n".getBytes(Charsets.US_ASCII)));
+		try {
+			Assert.assertTrue(reader.nextLine());
+			Assert.assertEquals("100.0", String.valueOf(reader.getDouble(0)));
+			Assert.assertEquals("94.7", String.valueOf(reader.getDouble(1)));
+			Assert.assertEquals("0.948", String.valueOf(reader.getDouble(2) / 100.0));
+		} finally {
+			reader.close();
+		}
 	}
 
 	/**
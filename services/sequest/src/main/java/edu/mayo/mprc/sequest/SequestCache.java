@@ -44,6 +44,8 @@ public final class SequestCache extends WorkCache<SequestWorkPacket> {
 
 					.property(CacheConfig.SERVICE, "Sequest Search Engine", "The Sequest engine that will do the search. The cache just caches the results.")
 					.reference("sequest", UiBuilder.NONE_TYPE);
+
+			CacheConfig.evictionUi(builder);
 		}
 	}
 }
@@ -8,6 +8,7 @@ import edu.mayo.mprc.config.ui.ResourceConfigBase;
 import edu.mayo.mprc.config.ui.ServiceUiFactory;
 import edu.mayo.mprc.config.ui.UiBuilder;
 import edu.mayo.mprc.daemon.exception.DaemonException;
+import edu.mayo.mprc.daemon.worker.ReusableWorker;
 import edu.mayo.mprc.daemon.worker.WorkPacket;
 import edu.mayo.mprc.daemon.worker.Worker;
 import edu.mayo.mprc.daemon.worker.WorkerBase;
@@ -26,7 +27,7 @@ import java.io.File;
 import java.util.Arrays;
 
 
-public final class SequestWorker extends WorkerBase {
+public final class SequestWorker extends WorkerBase implements ReusableWorker {
 	private static final Logger LOGGER = Logger.getLogger(SequestWorker.class);
 	public static final String TYPE = "sequest";
 	public static final String NAME = "Sequest";
@@ -38,6 +39,11 @@ public final class SequestWorker extends WorkerBase {
 	private static final String PVM_HOSTS = "pvmHosts";
 	private static final String SEQUEST_COMMAND = "sequestCommand";
 
+	@Override
+	public void reset() {
+		// No state is kept between requests
+	}
+
 	@Override
 	public void process(final WorkPacket workPacket, final File tempWorkFolder, final UserProgressReporter progressReporter) {
 		SequestWorkPacket sequestWorkPacket = null;
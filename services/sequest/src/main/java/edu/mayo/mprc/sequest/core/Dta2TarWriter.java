@@ -1,13 +1,12 @@
 package edu.mayo.mprc.sequest.core;
 
 import edu.mayo.mprc.MprcException;
-import edu.mayo.mprc.tar.TarWriter;
+import edu.mayo.mprc.tar.TarStreamWriter;
 import edu.mayo.mprc.utilities.FileUtilities;
 import org.apache.log4j.Logger;
 
 import java.io.File;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Map;
 
 final class Dta2TarWriter {
 	private static final Logger LOGGER = Logger.getLogger(Dta2TarWriter.class);
@@ -21,17 +20,14 @@ final class Dta2TarWriter {
   * find the matching .out files based on same prefix
   * then insert the dta's and out's into the tar in order
   * dta, out, dta, out...
-  * @param dtaFileNames - the dta file names
-  * @param outputDir - tar file will be placed here
+  * @param dtaFiles - the dta files, with their contents if known (null otherwise)
+  * @param tarWriter - the tar to append to
   *
   */
-	public void writeDtaFilesToTar(final List<String> dtaFileNames, final TarWriter tarWriter) {
-		final List<File> allFiles = new ArrayList<File>();
-		for (final String fileName1 : dtaFileNames) {
-			final File dtaFile = new File(fileName1);
-			final String fileName = dtaFile.getAbsolutePath();
-			if (!new File(fileName).isFile()) {
-				throw new MprcException("not a file : " + fileName);
+	public void writeDtaFilesToTar(final Map<File, byte[]> dtaFiles, final TarStreamWriter tarWriter) {
+		for (final File dtaFile : dtaFiles.keySet()) {
+			if (!dtaFile.isFile()) {
+				throw new MprcException("not a file : " + dtaFile.getAbsolutePath());
 			}
 			final File out = getMatchingOutFile(dtaFile);
 
@@ -43,19 +39,22 @@ final class Dta2TarWriter {
 						"Moving the Sequest working folder to [" + destination.getAbsolutePath() + "] - check what went wrong and delete this folder.");
 			}
 
-			allFiles.add(dtaFile);
-			allFiles.add(out);
-
 		}
 		// now tar these files
-		if (!allFiles.isEmpty()) {
-			tarWriter.addFiles(allFiles);
+		for (final Map.Entry<File, byte[]> dta : dtaFiles.entrySet()) {
+			final File dtaFile = dta.getKey();
+			if (dta.getValue() != null) {
+				tarWriter.addEntry(dtaFile.getName(), dta.getValue(), System.currentTimeMillis());
+			} else {
+				tarWriter.addFile(dtaFile);
+			}
+			tarWriter.addFile(getMatchingOutFile(dtaFile));
 		}
 		// And since we added them all, we can delete them now
-		for (final File file : allFiles) {
-			FileUtilities.quietDelete(file);
+		for (final File dtaFile : dtaFiles.keySet()) {
+			FileUtilities.quietDelete(dtaFile);
+			FileUtilities.quietDelete(getMatchingOutFile(dtaFile));
 		}
-
 	}
 
 	/**
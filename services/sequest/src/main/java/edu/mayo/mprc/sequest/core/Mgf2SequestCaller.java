@@ -157,6 +157,7 @@ public final class Mgf2SequestCaller implements Mgf2SequestInterface {
 
 			parser.getDTAsFromFileWithBlockReads(br);
 		} catch (Exception t) {
+			s.abort();
 			throw new MprcException(t);
 		} finally {
 			FileUtilities.closeQuietly(br);
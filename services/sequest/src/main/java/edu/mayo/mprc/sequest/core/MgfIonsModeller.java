@@ -5,8 +5,9 @@ import edu.mayo.mprc.utilities.FileUtilities;
 import org.apache.log4j.Logger;
 
 import java.io.File;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.charset.Charset;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.regex.Matcher;
@@ -21,6 +22,7 @@ final class MgfIonsModeller implements IonsModellerInterface {
 	private static final Logger LOGGER = Logger.getLogger(MgfIonsModeller.class);
 
 	private static final double PROTON_MASS = 1.00727646;
+	private static final Charset DTA_CHARSET = Charset.forName("US-ASCII");
 
 	MgfIonsModeller() {
 		scans = new HashMap<String, Integer>();
@@ -189,6 +191,7 @@ final class MgfIonsModeller implements IonsModellerInterface {
 	private char[] left = new char[500];
 	private StringBuilder sIONS = new StringBuilder();
 	private StringBuilder sTITLE = new StringBuilder();
+	private StringBuilder dtaContents = new StringBuilder();
 
 	private static final String PEPMASS = "PEPMASS=";
 
@@ -400,25 +403,28 @@ final class MgfIonsModeller implements IonsModellerInterface {
 
 			dtaHistory.put(dtaFileName, "" + mgfFileName + ":" + lineNumber);
 			final File dta = new File(dtaFileName);
-			FileUtilities.ensureFileExists(dta);
 
-			FileWriter w = null;
+			// Render the .dta in memory, the submitter archives it without reading the file back
+			dtaContents.setLength(0);
+			dtaContents.append(mh)
+					.append(' ')
+					.append(charge)
+					.append('\n')
+					.append(sIONS);
+			final byte[] contents = dtaContents.toString().getBytes(DTA_CHARSET);
+
+			// Sequest itself needs the file on the disk
+			FileOutputStream w = null;
 			try {
-				w = new FileWriter(dta);
-				w.append(String.valueOf(mh))
-						.append(" ")
-						.append(charge)
-						.append("\n")
-						.append(sIONS);
+				w = new FileOutputStream(dta);
+				w.write(contents);
 			} catch (IOException ioe) {
-				throw new MprcException("could not write to file", ioe);
+				throw new MprcException("could not write to file " + dta.getAbsolutePath(), ioe);
 			} finally {
 				FileUtilities.closeQuietly(w);
 			}
-			//LOGGER.debug("created file="+dta.getAbsolutePath());
 
-
-			sequestSubmitter.addDtaFile(new File(dtaFileName), false);
+			sequestSubmitter.addDtaFile(dta, contents, false);
 			ionsSection++;
 		}
 	}
@@ -2,20 +2,19 @@ package edu.mayo.mprc.sequest.core;
 
 import edu.mayo.mprc.MprcException;
 import edu.mayo.mprc.tar.TarReader;
-import edu.mayo.mprc.tar.TarWriter;
+import edu.mayo.mprc.tar.TarStreamWriter;
 import edu.mayo.mprc.utilities.FileUtilities;
-import edu.mayo.mprc.utilities.GZipUtilities;
 import edu.mayo.mprc.utilities.progress.UserProgressReporter;
 import org.apache.log4j.Logger;
 
 import java.io.File;
-import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Date;
-import java.util.List;
+import java.util.*;
 
 /**
  * This is reponsible for packaging dtas to send to sequest
+ * <p/>
+ * The .dta and .out files of each batch go straight to a single gzip-compressed tar that stays open until
+ * {@link #forceSubmit()}. The .dta contents come from memory when the caller provides them.
  */
 final class SequestSubmit implements SequestSubmitterInterface {
 
@@ -26,6 +25,11 @@ final class SequestSubmit implements SequestSubmitterInterface {
 	 */
 	private List<File> sequestDtaFiles;
 
+	/**
+	 * contents of the dta files, when known
+	 */
+	private Map<File, byte[]> sequestDtaContents;
+
 	/**
 	 * the accumulated length of filenames in segment
 	 */
@@ -54,9 +58,14 @@ final class SequestSubmit implements SequestSubmitterInterface {
 	private File outputDir;
 
 	/**
-	 * The tar file.
+	 * The tar file. The archive is written compressed, with .gz appended.
 	 */
 	private File tarFile;
+
+	/**
+	 * The compressed tar being written, open from the first batch till {@link #forceSubmit()}.
+	 */
+	private TarStreamWriter tarWriter;
 	/**
 	 * Exception
 	 */
@@ -82,6 +91,7 @@ final class SequestSubmit implements SequestSubmitterInterface {
 		this.maxLineLength = (int) maxLineLength;
 		this.paramsFile = paramsFile;
 		sequestDtaFiles = new ArrayList<File>();
+		sequestDtaContents = new HashMap<File, byte[]>();
 		outputDir = workingDir;
 		this.tarFile = tarFile;
 		this.hostsFile = hostsFile;
@@ -96,6 +106,11 @@ final class SequestSubmit implements SequestSubmitterInterface {
 	 */
 	@Override
 	public void addDtaFile(final File file, final boolean forced) {
+		addDtaFile(file, null, forced);
+	}
+
+	@Override
+	public void addDtaFile(final File file, final byte[] contents, final boolean forced) {
 		if (n == 0) {
 			creationTime = new Date().getTime();
 		}
@@ -109,6 +124,9 @@ final class SequestSubmit implements SequestSubmitterInterface {
 
 		n++;
 		sequestDtaFiles.add(file);
+		if (contents != null) {
+			sequestDtaContents.put(file, contents);
+		}
 		accumulatedLength += addedLength;
 
 		if (forced) {
@@ -129,22 +147,43 @@ final class SequestSubmit implements SequestSubmitterInterface {
 			submitFilesToSequest();
 		}
 
-		// do the cleanup
-		// now create the zip file
-		final File zipFile = new File(tarFile + ".gz");
-		final Date startZip = new Date();
-		FileUtilities.quietDelete(zipFile);
+		// finish the compressed tar
+		final TarStreamWriter writer = getTarWriter();
+		tarWriter = null;
 		try {
-			GZipUtilities.compressFile(tarFile, zipFile);
-		} catch (IOException e) {
-			throw new MprcException("gzip failed for " + tarFile, e);
+			writer.close();
+		} catch (Exception e) {
+			cleanTarOnFailure(writer.getTarFile(), e);
+		}
+
+		// validate the tar file, if it is corrupted then delete it and throw an exception
+		validateTarFile(writer.getTarFile());
+		LOGGER.info("tar file = " + writer.getTarFile() + " has " + writer.getEntries() + " entries");
+	}
+
+	@Override
+	public void abort() {
+		if (tarWriter != null) {
+			final TarStreamWriter writer = tarWriter;
+			tarWriter = null;
+			try {
+				writer.close();
+			} catch (Exception ignore) {
+				// SWALLOWED: we report the original problem
+			}
 		}
-		final Date endZip = new Date();
-		final long zipTime = endZip.getTime() - startZip.getTime();
-		LOGGER.info("ziptime = " + zipTime);
+	}
 
-		// remove the tar file as no longer needed
-		FileUtilities.quietDelete(tarFile);
+	/**
+	 * @return The compressed tar, opened if needed.
+	 */
+	private TarStreamWriter getTarWriter() {
+		if (tarWriter == null) {
+			final File zipFile = new File(tarFile + ".gz");
+			LOGGER.info("tar file name=" + zipFile);
+			tarWriter = new TarStreamWriter(zipFile, true);
+		}
+		return tarWriter;
 	}
 
 	private List<File> getSequestDtaFiles() {
@@ -152,9 +191,18 @@ final class SequestSubmit implements SequestSubmitterInterface {
 	}
 
 	/**
-	 * see if can submit to sequest
+	 * see if can submit to sequest. On failure the tar is closed, it would never be completed.
 	 */
 	private void submitFilesToSequest() {
+		try {
+			submitBatch();
+		} catch (RuntimeException e) {
+			abort();
+			throw e;
+		}
+	}
+
+	private void submitBatch() {
 
 		LOGGER.info("start submitting batch of files to sequest, after " + (new Date().getTime() - creationTime) + " ms of preprocessing");
 
@@ -178,43 +226,24 @@ final class SequestSubmit implements SequestSubmitterInterface {
 		}
 
 		// now the tar
-		LOGGER.info("tar file name=" + tarFile);
-		TarWriter tt = null;
-		try {
-			tt = new TarWriter(tarFile, progressReporter);
-			// .out and .dta files are in the working  dir for sequest
-			final List<String> dtasToTar = new ArrayList<String>();
-			final List<File> sequestDtaSnapshot = new ArrayList<File>(getSequestDtaFiles());
-			final File workingDir = sequestCaller.getWorkingDir();
-			for (final File sequestDtaSnapshotFile : sequestDtaSnapshot) {
-				dtasToTar.add(new File(workingDir, sequestDtaSnapshotFile.getName()).getAbsolutePath());
-			}
-			// need to tar these files and the corresponding .out files
-			final Date startTar = new Date();
-
-			final Dta2TarWriter dtaWriter = new Dta2TarWriter();
-			dtaWriter.writeDtaFilesToTar(dtasToTar, tt);
-			final Date endTar = new Date();
-			final long tarTime = endTar.getTime() - startTar.getTime();
-
-			LOGGER.info("Tarring finished, tar time: " + tarTime);
-		} finally {
-			if (tt != null) {
-				try {
-					tt.close();
-				} catch (Exception e) {
-					cleanTarOnFailure(tt.getTarFile(), e);
-				}
-			}
-
-			// validate the tar file, if it is corrupted then delete it and throw an exception
-			validateTarFile(tarFile);
+		// .out and .dta files are in the working  dir for sequest
+		final Map<File, byte[]> dtasToTar = new LinkedHashMap<File, byte[]>();
+		final File workingDir = sequestCaller.getWorkingDir();
+		for (final File dtaFile : getSequestDtaFiles()) {
+			dtasToTar.put(new File(workingDir, dtaFile.getName()), sequestDtaContents.get(dtaFile));
 		}
+		// need to tar these files and the corresponding .out files
+		final Date startTar = new Date();
+		final Dta2TarWriter dtaWriter = new Dta2TarWriter();
+		dtaWriter.writeDtaFilesToTar(dtasToTar, getTarWriter());
+		final Date endTar = new Date();
+		final long tarTime = endTar.getTime() - startTar.getTime();
 
-		LOGGER.info("tar file = " + tt.getTarFile() + " has " + TarReader.readNumberHeaders(tt.getTarFile()) + " headers");
+		LOGGER.info("Tarring finished, tar time: " + tarTime);
 
 		// then remove the files
 		sequestDtaFiles = new ArrayList<File>();
+		sequestDtaContents = new HashMap<File, byte[]>();
 		accumulatedLength = 0;
 		creationTime = new Date().getTime();
 	}
@@ -6,12 +6,24 @@ interface SequestSubmitterInterface {
 
 	void addDtaFile(File file, boolean forced);
 
+	/**
+	 * @param file     The .dta file Sequest is to process.
+	 * @param contents Contents of the .dta file, so it does not have to be read back when archiving. Null if not known.
+	 * @param forced   Submit to Sequest right away.
+	 */
+	void addDtaFile(File file, byte[] contents, boolean forced);
+
 	int getHowManyFiles();
 
 	void setExceptionThrown(Throwable m);
 
 	void forceSubmit();
 
+	/**
+	 * Give up after a failure, releasing the partially written archive.
+	 */
+	void abort();
+
 
 	SequestCallerInterface getSequestCaller();
 
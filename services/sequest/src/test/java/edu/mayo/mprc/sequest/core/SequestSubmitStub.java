@@ -18,6 +18,11 @@ public final class SequestSubmitStub implements SequestSubmitterInterface {
 		dtas.add(file);
 	}
 
+	@Override
+	public void addDtaFile(final File file, final byte[] contents, final boolean forced) {
+		addDtaFile(file, forced);
+	}
+
 	@Override
 	public int getHowManyFiles() {
 		return dtas.size();
@@ -33,6 +38,11 @@ public final class SequestSubmitStub implements SequestSubmitterInterface {
 
 	}
 
+	@Override
+	public void abort() {
+
+	}
+
 	@Override
 	public SequestCallerInterface getSequestCaller() {
 		return sequestCaller;
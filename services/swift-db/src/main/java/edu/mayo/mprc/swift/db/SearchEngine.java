@@ -211,6 +211,13 @@ public final class SearchEngine implements Comparable<SearchEngine> {
 		return getEngineMetadata().getResultExtension();
 	}
 
+	/**
+	 * @return How many pieces should every input file be split into for this engine.
+	 */
+	public int getShards() {
+		return config == null ? 1 : config.getShards();
+	}
+
 	public DaemonConnection getSearchDaemon() {
 		return searchDaemon;
 	}
@@ -354,6 +361,7 @@ public final class SearchEngine implements Comparable<SearchEngine> {
 		private String version;
 		private ServiceConfig worker;
 		private ServiceConfig deployer;
+		private int shards = 1;
 
 		public Config(final String code, final String version, final ServiceConfig worker, final ServiceConfig deployer) {
 			this.code = code;
@@ -362,6 +370,11 @@ public final class SearchEngine implements Comparable<SearchEngine> {
 			this.deployer = deployer;
 		}
 
+		public Config(final String code, final String version, final ServiceConfig worker, final ServiceConfig deployer, final int shards) {
+			this(code, version, worker, deployer);
+			setShards(shards);
+		}
+
 		public String getCode() {
 			return code;
 		}
@@ -394,12 +407,31 @@ public final class SearchEngine implements Comparable<SearchEngine> {
 			this.deployer = deployer;
 		}
 
+		/**
+		 * @return How many pieces to split each input file into. Each piece is searched separately,
+		 * so a single large file can be searched by several workers in parallel. 1 means no splitting.
+		 * <p/>
+		 * This is a count, not a shard size - the whole workflow is created before the .mgf files are converted,
+		 * so the number of spectra is not known when the shard searches get created.
+		 */
+		public int getShards() {
+			return shards;
+		}
+
+		public void setShards(final int shards) {
+			if (shards < 1) {
+				throw new MprcException("Engine " + code + " must search at least one shard per input file, " + shards + " requested");
+			}
+			this.shards = shards;
+		}
+
 		@Override
 		public void save(final ConfigWriter writer) {
 			writer.put("code", getCode());
 			writer.put("version", getVersion());
 			writer.put("worker", writer.save(getWorker()));
 			writer.put("deployer", writer.save(getDeployer()));
+			writer.put("shards", getShards(), 1, "Split each input file into this many separately searched pieces");
 		}
 
 		@Override
@@ -408,6 +440,7 @@ public final class SearchEngine implements Comparable<SearchEngine> {
 			setVersion(reader.get("version"));
 			setWorker((ServiceConfig) reader.getObject("worker"));
 			setDeployer((ServiceConfig) reader.getObject("deployer"));
+			setShards(reader.getInteger("shards", 1));
 		}
 
 		@Override
@@ -1,5 +1,6 @@
 package edu.mayo.mprc.swift.search;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import edu.mayo.mprc.MprcException;
 import edu.mayo.mprc.daemon.AssignedTaskData;
 import edu.mayo.mprc.daemon.worker.log.NewLogFiles;
@@ -15,28 +16,111 @@ import edu.mayo.mprc.workflow.engine.TaskBase;
 import edu.mayo.mprc.workflow.persistence.TaskState;
 import org.apache.log4j.Logger;
 
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Stores the search progress into the database.
+ * <p/>
+ * The events are not written as they come. They are queued, events about the same task are coalesced - only the
+ * latest state of the task is written, together with its log files and assigned task data. The queue is flushed
+ * in a single transaction every {@link #DEFAULT_FLUSH_INTERVAL} milliseconds, or sooner when
+ * {@link #DEFAULT_FLUSH_THRESHOLD} events pile up. The flushes are serialized, so the database sees the changes
+ * in the order they happened.
+ * <p/>
+ * When the search completes or fails, everything pending is flushed right away on the caller's thread,
+ * so the database is up to date before the search reports its result.
+ */
 public final class PersistenceMonitor implements SearchMonitor {
 
 	private static final Logger LOGGER = Logger.getLogger(PersistenceMonitor.class);
 
+	public static final long DEFAULT_FLUSH_INTERVAL = 1000;
+	public static final int DEFAULT_FLUSH_THRESHOLD = 200;
+	private static final int MAX_MESSAGE_LENGTH = 496;
+
+	/**
+	 * Shared by all the monitors, the flushes are short.
+	 */
+	private static final ScheduledExecutorService FLUSHER = Executors.newSingleThreadScheduledExecutor(
+			new ThreadFactoryBuilder()
+					.setNameFormat("persistence-monitor-%d")
+					.setDaemon(true)
+					.build());
+
 	private int searchRunId;
 	private SwiftDao swiftDao;
 	private final LogMap logMap = new LogMap();
 
+	private final int flushThreshold;
+	private final PersistenceStatistics statistics = new PersistenceStatistics();
+
+	private final Object queueLock = new Object();
+	/**
+	 * Pending updates of tasks, keyed by identity. Tasks that do the same work are equal, but they are still
+	 * stored separately.
+	 */
+	private Map<TaskBase, PendingTask> pendingTasks = new IdentityHashMap<TaskBase, PendingTask>();
+	/**
+	 * Same tasks in the order they first changed.
+	 */
+	private List<PendingTask> pendingOrder = new ArrayList<PendingTask>();
+	private ProgressReport pendingReport;
+	private String pendingFailure;
+	private int pendingEvents;
+
+	/**
+	 * Held while writing to the database, so the flushes happen one after another.
+	 */
+	private final Object flushLock = new Object();
+	private final AtomicBoolean flushRequested = new AtomicBoolean(false);
+	private final ScheduledFuture<?> scheduledFlush;
+	private volatile boolean closed;
+
 	public PersistenceMonitor(final int searchRunId, final SwiftDao swiftDao) {
+		this(searchRunId, swiftDao, DEFAULT_FLUSH_INTERVAL, DEFAULT_FLUSH_THRESHOLD);
+	}
+
+	/**
+	 * @param flushInterval  How often to flush pending changes in milliseconds. Zero or less - flush only when the
+	 *                       threshold is reached or on {@link #flush}.
+	 * @param flushThreshold Flush as soon as this many events are pending.
+	 */
+	public PersistenceMonitor(final int searchRunId, final SwiftDao swiftDao, final long flushInterval, final int flushThreshold) {
 		this.swiftDao = swiftDao;
 		this.searchRunId = searchRunId;
+		this.flushThreshold = flushThreshold;
+		if (flushInterval > 0) {
+			scheduledFlush = FLUSHER.scheduleWithFixedDelay(new Runnable() {
+				@Override
+				public void run() {
+					flushQuietly();
+				}
+			}, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+		} else {
+			scheduledFlush = null;
+		}
 	}
 
 	@Override
 	public void updateStatistics(final ProgressReport report) {
-		swiftDao.begin();
-		try {
-			swiftDao.reportSearchRunProgress(searchRunId, report);
-			swiftDao.commit();
-		} catch (final Exception t) {
-			swiftDao.rollback();
-			throw new MprcException("Could not store search progress information to the database", t);
+		synchronized (queueLock) {
+			pendingReport = report;
+			eventQueued();
+		}
+		if (report.getSucceeded() + report.getFailed() == report.getTotal()) {
+			// The search is done, make sure the database knows everything before the search reports success
+			close();
+			flush();
+		} else {
+			afterEvent();
 		}
 	}
 
@@ -47,26 +131,20 @@ public final class PersistenceMonitor implements SearchMonitor {
 			return;
 		}
 
-		swiftDao.begin();
-		try {
-			syncTaskBase(task, task.getState());
-			swiftDao.commit();
-		} catch (final Exception t) {
-			throw new MprcException("Could not store change in task information", t);
+		synchronized (queueLock) {
+			getPendingTask(task);
+			eventQueued();
 		}
+		afterEvent();
 	}
 
 	@Override
 	public void error(final TaskBase task, final Throwable t) {
-		swiftDao.begin();
-		try {
-			syncTaskBase(task, TaskState.RUN_FAILED);
-			swiftDao.commit();
-		} catch (final Exception e) {
-			// SWALLOWED: just log
-			LOGGER.error("Could not store " + task.getName() + " task exception into the database (" + t.getMessage() + ").", e);
-			swiftDao.rollback();
+		synchronized (queueLock) {
+			getPendingTask(task);
+			eventQueued();
 		}
+		afterEvent();
 	}
 
 	@Override
@@ -74,17 +152,20 @@ public final class PersistenceMonitor implements SearchMonitor {
 		// TODO: Ideally this would store the exception in a separate table that SearchRun table links to
 		LOGGER.error("Workflow engine error (logged here as it currently cannot be fully stored in the database):", t);
 		String message = MprcException.getDetailedMessage(t);
-		if (message.length() > 496) {
-			message = message.substring(0, 496) + "...";
+		if (message.length() > MAX_MESSAGE_LENGTH) {
+			message = message.substring(0, MAX_MESSAGE_LENGTH) + "...";
 		}
-		swiftDao.begin();
+		synchronized (queueLock) {
+			pendingFailure = message;
+			eventQueued();
+		}
+		// The search failed, store all we know right away
+		close();
 		try {
-			swiftDao.searchRunFailed(searchRunId, message);
-			swiftDao.commit();
+			flush();
 		} catch (final Exception e) {
 			// SWALLOWED: just log
 			LOGGER.error("Could not store " + searchRunId + " search run exception into the database (" + t.getMessage() + ").", e);
-			swiftDao.rollback();
 		}
 	}
 
@@ -94,63 +175,234 @@ public final class PersistenceMonitor implements SearchMonitor {
 	@Override
 	public void taskProgress(final TaskBase task, final Object progressInfo) {
 		if (task instanceof AsyncTaskBase) {
-			if (progressInfo instanceof AssignedTaskData) {
-				swiftDao.begin();
-				final TaskData data = syncTaskBase(task, task.getState());
-				try {
-					swiftDao.storeAssignedTaskData(data, (AssignedTaskData) progressInfo);
-					swiftDao.commit();
-				} catch (final Exception t) {
-					// SWALLOWED: just log
-					LOGGER.error("Could not store " + task.getName() + " assigned task data into the database (" + t.getMessage() + ").", t);
-					swiftDao.rollback();
+			synchronized (queueLock) {
+				final PendingTask pending = getPendingTask(task);
+				if (progressInfo instanceof AssignedTaskData) {
+					pending.assignedTaskData = (AssignedTaskData) progressInfo;
+				} else if (progressInfo instanceof NewLogFiles) {
+					pending.logFiles.add((NewLogFiles) progressInfo);
+				} else if (progressInfo instanceof TaskWarning) {
+					pending.warningMessage = ((TaskWarning) progressInfo).getWarningMessage();
+				} else if (progressInfo instanceof PercentDone) {
+					// We got PercentDone message, let's store that
+					pending.percentDone = ((PercentDone) progressInfo).getPercentDone();
 				}
-			} else if (progressInfo instanceof NewLogFiles) {
-				swiftDao.begin();
-				final TaskData data = syncTaskBase(task, task.getState());
-				try {
-					final LogData logData = new LogData(
-							data,
-							logMap.getLogData(data, ((NewLogFiles) progressInfo).getParentLogId()),
-							((NewLogFiles) progressInfo).getOutputLogFile(),
-							((NewLogFiles) progressInfo).getErrorLogFile());
-					final LogData savedLogData = swiftDao.storeLogData(logData);
-					logMap.addLogData(((NewLogFiles) progressInfo).getLogId(), savedLogData);
-					swiftDao.commit();
-				} catch (final Exception t) {
-					// SWALLOWED: just log
-					LOGGER.error("Could not store " + task.getName() + " log data into the database (" + t.getMessage() + ").", t);
-					swiftDao.rollback();
+				// No matter what happened, we just update the task
+				eventQueued();
+			}
+			afterEvent();
+		}
+	}
+
+	/**
+	 * Write all pending changes to the database now.
+	 *
+	 * @throws MprcException When some of the changes could not be stored.
+	 */
+	public void flush() {
+		synchronized (flushLock) {
+			flushRequested.set(false);
+
+			final List<PendingTask> tasks;
+			final ProgressReport report;
+			final String failure;
+			synchronized (queueLock) {
+				if (pendingEvents == 0) {
+					return;
 				}
-			} else if (progressInfo instanceof TaskWarning) {
-				swiftDao.begin();
-				final TaskData data = syncTaskBase(task, task.getState());
-				try {
-					data.setWarningMessage(((TaskWarning) progressInfo).getWarningMessage());
-					swiftDao.commit();
-				} catch (final Exception t) {
-					// SWALLOWED: just log
-					LOGGER.error("Could not store " + task.getName() + " assigned task data into the database (" + t.getMessage() + ").", t);
-					swiftDao.rollback();
+				tasks = pendingOrder;
+				report = pendingReport;
+				failure = pendingFailure;
+				pendingTasks = new IdentityHashMap<TaskBase, PendingTask>();
+				pendingOrder = new ArrayList<PendingTask>();
+				pendingReport = null;
+				pendingFailure = null;
+				pendingEvents = 0;
+			}
+
+			final long start = System.currentTimeMillis();
+			final int items = tasks.size() + (report != null ? 1 : 0) + (failure != null ? 1 : 0);
+			boolean success = false;
+			try {
+				success = writeBatch(tasks, report, failure);
+			} finally {
+				statistics.flushed(items, System.currentTimeMillis() - start, success);
+			}
+			if (!success) {
+				throw new MprcException("Could not store all search progress information to the database");
+			}
+		}
+	}
+
+	private void flushQuietly() {
+		try {
+			flush();
+		} catch (final Exception e) {
+			// SWALLOWED: the individual failures were already logged
+			LOGGER.debug("Search run " + searchRunId + " progress flush failed", e);
+		}
+	}
+
+	/**
+	 * Stop the periodic flushing. Events that arrive later are written right away.
+	 */
+	private void close() {
+		if (!closed) {
+			closed = true;
+			if (scheduledFlush != null) {
+				scheduledFlush.cancel(false);
+			}
+			LOGGER.debug("Search run " + searchRunId + " persistence: " + statistics);
+		}
+	}
+
+	/**
+	 * @return True if everything was stored.
+	 */
+	private boolean writeBatch(final List<PendingTask> tasks, final ProgressReport report, final String failure) {
+		final List<TaskBase> createdTasks = new ArrayList<TaskBase>();
+		swiftDao.begin();
+		try {
+			for (final PendingTask pending : tasks) {
+				if (pending.task.getTaskDataId() == null) {
+					createdTasks.add(pending.task);
 				}
-			} else {
-				// No matter what happened, we just update the task
-				swiftDao.begin();
-				try {
-					final TaskData data = syncTaskBase(task, task.getState());
-					// We got PercentDone message, let's store that
-					if (progressInfo instanceof PercentDone) {
-						final PercentDone done = (PercentDone) progressInfo;
-						data.setPercentDone(done.getPercentDone());
-					}
-					swiftDao.commit();
-				} catch (final Exception t) {
-					// SWALLOWED: just log
-					LOGGER.error("Could not store " + task.getName() + " task progress into the database (" + t.getMessage() + ").", t);
-					swiftDao.rollback();
+				writeTask(pending);
+			}
+			if (report != null) {
+				swiftDao.reportSearchRunProgress(searchRunId, report);
+			}
+			if (failure != null) {
+				swiftDao.searchRunFailed(searchRunId, failure);
+			}
+			swiftDao.commit();
+			return true;
+		} catch (final Exception t) {
+			swiftDao.rollback();
+			LOGGER.warn("Could not store search progress information to the database in one transaction, storing it piece by piece", t);
+		}
+
+		// The ids of tasks created in the rolled back transaction are not valid
+		for (final TaskBase task : createdTasks) {
+			task.setTaskDataId(null);
+		}
+		return writeSeparately(tasks, report, failure);
+	}
+
+	/**
+	 * Store each task in its own transaction, so a single failing one does not prevent the others from being stored.
+	 */
+	private boolean writeSeparately(final List<PendingTask> tasks, final ProgressReport report, final String failure) {
+		boolean success = true;
+		for (final PendingTask pending : tasks) {
+			final boolean created = pending.task.getTaskDataId() == null;
+			swiftDao.begin();
+			try {
+				writeTask(pending);
+				swiftDao.commit();
+			} catch (final Exception t) {
+				// SWALLOWED: just log
+				LOGGER.error("Could not store " + pending.task.getName() + " task information into the database (" + t.getMessage() + ").", t);
+				swiftDao.rollback();
+				if (created) {
+					pending.task.setTaskDataId(null);
 				}
+				success = false;
+			}
+		}
+		if (report != null) {
+			swiftDao.begin();
+			try {
+				swiftDao.reportSearchRunProgress(searchRunId, report);
+				swiftDao.commit();
+			} catch (final Exception t) {
+				// SWALLOWED: just log
+				LOGGER.error("Could not store search progress information to the database (" + t.getMessage() + ").", t);
+				swiftDao.rollback();
+				success = false;
+			}
+		}
+		if (failure != null) {
+			swiftDao.begin();
+			try {
+				swiftDao.searchRunFailed(searchRunId, failure);
+				swiftDao.commit();
+			} catch (final Exception t) {
+				// SWALLOWED: just log
+				LOGGER.error("Could not store " + searchRunId + " search run exception into the database (" + t.getMessage() + ").", t);
+				swiftDao.rollback();
+				success = false;
 			}
 		}
+		return success;
+	}
+
+	private void writeTask(final PendingTask pending) {
+		final TaskData data = syncTaskBase(pending.task, pending.task.getState());
+		if (pending.percentDone != null) {
+			data.setPercentDone(pending.percentDone);
+		}
+		if (pending.warningMessage != null) {
+			data.setWarningMessage(pending.warningMessage);
+		}
+		if (pending.assignedTaskData != null) {
+			swiftDao.storeAssignedTaskData(data, pending.assignedTaskData);
+		}
+		for (final NewLogFiles logFiles : pending.logFiles) {
+			final LogData logData = new LogData(
+					data,
+					logMap.getLogData(data, logFiles.getParentLogId()),
+					logFiles.getOutputLogFile(),
+					logFiles.getErrorLogFile());
+			final LogData savedLogData = swiftDao.storeLogData(logData);
+			logMap.addLogData(logFiles.getLogId(), savedLogData);
+		}
+		if (pending.task.isDone()) {
+			logMap.removeTask(data);
+		}
+	}
+
+	/**
+	 * Must be called with {@link #queueLock} held.
+	 */
+	private PendingTask getPendingTask(final TaskBase task) {
+		PendingTask pending = pendingTasks.get(task);
+		if (pending == null) {
+			pending = new PendingTask(task);
+			pendingTasks.put(task, pending);
+			pendingOrder.add(pending);
+		}
+		return pending;
+	}
+
+	/**
+	 * Must be called with {@link #queueLock} held.
+	 */
+	private void eventQueued() {
+		pendingEvents++;
+		statistics.eventReceived(getQueueDepth());
+	}
+
+	/**
+	 * Flush if the monitor is closed, or schedule a flush if there is too many pending events.
+	 */
+	private void afterEvent() {
+		if (closed) {
+			flushQuietly();
+			return;
+		}
+		final boolean thresholdReached;
+		synchronized (queueLock) {
+			thresholdReached = pendingEvents >= flushThreshold;
+		}
+		if (thresholdReached && flushRequested.compareAndSet(false, true)) {
+			FLUSHER.execute(new Runnable() {
+				@Override
+				public void run() {
+					flushQuietly();
+				}
+			});
+		}
 	}
 
 	private TaskData syncTaskBase(final TaskBase task, final TaskState state) {
@@ -183,13 +435,38 @@ public final class PersistenceMonitor implements SearchMonitor {
 		}
 		data.setEndTimestamp(task.getExecutionFinished());
 		data.setHostString(task.getExecutedOnHost());
-		if (task.isDone()) {
-			logMap.removeTask(data);
-		}
 		return data;
 	}
 
 	public Integer getSearchRunId() {
 		return searchRunId;
 	}
+
+	/**
+	 * @return Number of tasks and search run updates waiting to be written.
+	 */
+	public int getQueueDepth() {
+		synchronized (queueLock) {
+			return pendingOrder.size() + (pendingReport != null ? 1 : 0) + (pendingFailure != null ? 1 : 0);
+		}
+	}
+
+	public PersistenceStatistics getStatistics() {
+		return statistics;
+	}
+
+	/**
+	 * Everything that happened to a task since the last flush.
+	 */
+	private static final class PendingTask {
+		private final TaskBase task;
+		private Double percentDone;
+		private String warningMessage;
+		private AssignedTaskData assignedTaskData;
+		private final List<NewLogFiles> logFiles = new ArrayList<NewLogFiles>(1);
+
+		private PendingTask(final TaskBase task) {
+			this.task = task;
+		}
+	}
 }
@@ -0,0 +1,105 @@
+package edu.mayo.mprc.swift.search;
+
+import java.text.MessageFormat;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * How well the {@link PersistenceMonitor} keeps up with the search - how many events it got, how many database writes
+ * they were coalesced into and how long the flushes took.
+ *
+ * @author Roman Zenka
+ */
+public final class PersistenceStatistics {
+	private final AtomicLong eventsReceived = new AtomicLong();
+	private final AtomicLong writes = new AtomicLong();
+	private final AtomicLong maxQueueDepth = new AtomicLong();
+	private final AtomicLong flushes = new AtomicLong();
+	private final AtomicLong failedFlushes = new AtomicLong();
+	private final AtomicLong totalFlushLatency = new AtomicLong();
+	private final AtomicLong maxFlushLatency = new AtomicLong();
+
+	public PersistenceStatistics() {
+	}
+
+	/**
+	 * @param queueDepth Number of pending writes after the event was queued.
+	 */
+	void eventReceived(final int queueDepth) {
+		eventsReceived.incrementAndGet();
+		updateMax(maxQueueDepth, queueDepth);
+	}
+
+	/**
+	 * @param writtenItems How many coalesced writes the flush did.
+	 * @param latency      How long the flush took in milliseconds.
+	 * @param success      False if some of the items could not be stored.
+	 */
+	void flushed(final int writtenItems, final long latency, final boolean success) {
+		flushes.incrementAndGet();
+		if (!success) {
+			failedFlushes.incrementAndGet();
+		}
+		writes.addAndGet(writtenItems);
+		totalFlushLatency.addAndGet(latency);
+		updateMax(maxFlushLatency, latency);
+	}
+
+	private static void updateMax(final AtomicLong max, final long value) {
+		long current = max.get();
+		while (value > current && !max.compareAndSet(current, value)) {
+			current = max.get();
+		}
+	}
+
+	public long getEventsReceived() {
+		return eventsReceived.get();
+	}
+
+	/**
+	 * @return How many task or search run updates were written. Multiple events about the same task
+	 *         between two flushes produce a single write.
+	 */
+	public long getWrites() {
+		return writes.get();
+	}
+
+	/**
+	 * @return The most writes that were ever waiting for a flush.
+	 */
+	public long getMaxQueueDepth() {
+		return maxQueueDepth.get();
+	}
+
+	public long getFlushes() {
+		return flushes.get();
+	}
+
+	/**
+	 * @return How many flushes could not store everything in one transaction.
+	 */
+	public long getFailedFlushes() {
+		return failedFlushes.get();
+	}
+
+	/**
+	 * @return Average flush duration in milliseconds.
+	 */
+	public double getAverageFlushLatency() {
+		final long flushCount = flushes.get();
+		return flushCount == 0 ? 0.0 : (double) totalFlushLatency.get() / flushCount;
+	}
+
+	/**
+	 * @return Longest flush duration in milliseconds.
+	 */
+	public long getMaxFlushLatency() {
+		return maxFlushLatency.get();
+	}
+
+	@Override
+	public String toString() {
+		return MessageFormat.format("events: {0}, writes: {1} in {2} flushes ({3} failed), max queue depth: {4}, flush avg: {5,number,#.#} ms, max: {6} ms",
+				getEventsReceived(), getWrites(), getFlushes(), getFailedFlushes(), getMaxQueueDepth(),
+				getAverageFlushLatency(), getMaxFlushLatency());
+	}
+}
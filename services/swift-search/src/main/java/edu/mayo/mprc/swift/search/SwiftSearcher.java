@@ -64,6 +64,7 @@ public final class SwiftSearcher implements Worker, Lifecycle {
 	public static final String ENGINE_DEPLOYER_SUFFIX = ".deployer";
 	public static final String ENGINE_VERSION_SUFFIX = ".version";
 	public static final String ENGINE_CODE_SUFFIX = ".code";
+	public static final String ENGINE_SHARDS_SUFFIX = ".shards";
 
 	private Collection<SearchEngine> supportedEngines = new HashSet<SearchEngine>();
 
@@ -672,6 +673,7 @@ public final class SwiftSearcher implements Worker, Lifecycle {
 				writer.put(ENGINE_PREFIX + i + ENGINE_VERSION_SUFFIX, engineConfig.getVersion());
 				writer.put(ENGINE_PREFIX + i + ENGINE_WORKER_SUFFIX, writer.save(engineConfig.getWorker()));
 				writer.put(ENGINE_PREFIX + i + ENGINE_DEPLOYER_SUFFIX, writer.save(engineConfig.getDeployer()));
+				writer.put(ENGINE_PREFIX + i + ENGINE_SHARDS_SUFFIX, engineConfig.getShards(), 1, "Split each input file into this many separately searched pieces");
 			}
 
 			writer.put(SCAFFOLD_REPORT, writer.save(getScaffoldReport()));
@@ -723,8 +725,9 @@ public final class SwiftSearcher implements Worker, Lifecycle {
 			final ServiceConfig worker = (ServiceConfig) reader.getObject(ENGINE_PREFIX + number + ENGINE_WORKER_SUFFIX);
 			final ServiceConfig deployer = (ServiceConfig) reader.getObject(ENGINE_PREFIX + number + ENGINE_DEPLOYER_SUFFIX);
 			final String version = reader.get(ENGINE_PREFIX + number + ENGINE_VERSION_SUFFIX);
+			final int shards = reader.getInteger(ENGINE_PREFIX + number + ENGINE_SHARDS_SUFFIX, 1);
 
-			engineConfigs.put(engineNumber, new SearchEngine.Config(code, version, worker, deployer));
+			engineConfigs.put(engineNumber, new SearchEngine.Config(code, version, worker, deployer, shards));
 		}
 
 		@Override
@@ -805,7 +808,12 @@ public final class SwiftSearcher implements Worker, Lifecycle {
 								ObjectArrays.concat(metadata.getWorkerTypes(), metadata.getCacheTypes(), String.class), UiBuilder.NONE_TYPE))
 
 						.property(ENGINE_PREFIX + i + ENGINE_DEPLOYER_SUFFIX, "Engine #" + i + " deployer", "The service that prepares the environment for this engine to work efficiently")
-						.reference(ObjectArrays.concat(metadata.getDeployerTypes(), UiBuilder.NONE_TYPE));
+						.reference(ObjectArrays.concat(metadata.getDeployerTypes(), UiBuilder.NONE_TYPE))
+
+						.property(ENGINE_PREFIX + i + ENGINE_SHARDS_SUFFIX, "Engine #" + i + " shards", "Split each .mgf file into this many pieces, each searched separately, so one large file can keep several workers busy. " +
+								"The pieces are passed to Scaffold as multiple results for the same input. Use 1 to search whole files.")
+						.integerValue(1, null)
+						.defaultValue("1");
 			}
 
 			builder
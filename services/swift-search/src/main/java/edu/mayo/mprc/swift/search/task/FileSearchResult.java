@@ -2,7 +2,9 @@ package edu.mayo.mprc.swift.search.task;
 
 import java.io.File;
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -10,22 +12,28 @@ import java.util.Map;
  * The results are organized in a map.
  * <ul>
  * <li>The key is a search engine .</li>
- * <li>The value is the search result for the particular combination of engine+params.</li>
+ * <li>The value lists the search results for the particular combination of engine+params.
+ * There is more than one when the input file was split into shards, each searched on its own.</li>
  * <ul>
  */
 final class FileSearchResult implements Serializable {
 	private static final long serialVersionUID = 20071220L;
 
 	private File inputFile;
-	private Map<String/*Search Engine Code*/, /*search result*/File> results =
-			new HashMap<String/*Search Engine Code*/, File>();
+	private Map<String/*Search Engine Code*/, /*search results*/List<File>> results =
+			new HashMap<String/*Search Engine Code*/, List<File>>();
 
 	FileSearchResult(final File inputFile) {
 		this.inputFile = inputFile;
 	}
 
 	public FileSearchResult addResult(final String engineCode, final File file) {
-		results.put(engineCode, file);
+		List<File> files = results.get(engineCode);
+		if (files == null) {
+			files = new ArrayList<File>(1);
+			results.put(engineCode, files);
+		}
+		files.add(file);
 		return this;
 	}
 
@@ -33,7 +41,7 @@ final class FileSearchResult implements Serializable {
 		return inputFile;
 	}
 
-	public Map<String/*Search Engine Code*/, File> getResults() {
+	public Map<String/*Search Engine Code*/, List<File>> getResults() {
 		return results;
 	}
 }
@@ -0,0 +1,55 @@
+package edu.mayo.mprc.swift.search.task;
+
+import com.google.common.base.Objects;
+import edu.mayo.mprc.workflow.engine.TaskBase;
+import edu.mayo.mprc.workflow.engine.WorkflowEngine;
+import edu.mayo.mprc.workflow.persistence.TaskState;
+
+import java.io.File;
+
+/**
+ * One shard produced by {@link MgfSplitTask}. Lets the engine searches treat the shard as any other converted input.
+ *
+ * @author Roman Zenka
+ */
+final class MgfShardTask extends TaskBase implements FileProducingTask {
+	private final MgfSplitTask splitTask;
+	private final int index;
+
+	MgfShardTask(final WorkflowEngine engine, final MgfSplitTask splitTask, final int index) {
+		super(engine);
+		this.splitTask = splitTask;
+		this.index = index;
+
+		setName("mgf shard");
+		setDescription("Shard " + (index + 1) + " of " + splitTask.getShardCount() + ": " + getResultingFile().getName());
+	}
+
+	@Override
+	public void run() {
+		// The split task did all the work already
+		setState(TaskState.COMPLETED_SUCCESFULLY);
+	}
+
+	@Override
+	public File getResultingFile() {
+		return splitTask.getShardFile(index);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hashCode(splitTask, index);
+	}
+
+	@Override
+	public boolean equals(final Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (obj == null || getClass() != obj.getClass()) {
+			return false;
+		}
+		final MgfShardTask other = (MgfShardTask) obj;
+		return Objects.equal(this.splitTask, other.splitTask) && this.index == other.index;
+	}
+}
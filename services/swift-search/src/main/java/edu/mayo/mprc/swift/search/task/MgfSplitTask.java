@@ -0,0 +1,135 @@
+package edu.mayo.mprc.swift.search.task;
+
+import com.google.common.base.Objects;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import edu.mayo.mprc.io.mgf.MgfSplitter;
+import edu.mayo.mprc.utilities.FileUtilities;
+import edu.mayo.mprc.workflow.engine.TaskBase;
+import edu.mayo.mprc.workflow.engine.WorkflowEngine;
+import edu.mayo.mprc.workflow.persistence.TaskState;
+import org.apache.log4j.Logger;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Splits a converted .mgf file into shards, so a single large input can be searched by several workers at once.
+ * <p/>
+ * The shards keep their names between runs and are not rewritten as long as they are newer than the .mgf,
+ * so the searches of individual shards keep hitting the work cache. {@link MgfSplitter} renames the shards
+ * into place only once they are all complete, so an existing shard is never a leftover of an interrupted split.
+ * <p/>
+ * Splitting a large .mgf takes a while, so it runs on its own small pool instead of blocking the task dispatch.
+ *
+ * @author Roman Zenka
+ */
+final class MgfSplitTask extends TaskBase {
+	private static final Logger LOGGER = Logger.getLogger(MgfSplitTask.class);
+	private static final String SHARD_FOLDER = "shards";
+	/**
+	 * The split is disk-bound, a couple of concurrent splits per searcher are enough.
+	 */
+	private static final int SPLIT_THREADS = 2;
+	private static final ExecutorService SPLITTING = Executors.newFixedThreadPool(SPLIT_THREADS,
+			new ThreadFactoryBuilder()
+					.setDaemon(true)
+					.setNameFormat("mgf-split-%d")
+					.build());
+
+	private final FileProducingTask mgf;
+	private final List<File> shardFiles;
+	private final boolean fromScratch;
+
+	/**
+	 * @param mgf    Task producing the .mgf file to split. Its output file must already be known.
+	 * @param shards How many shards to produce.
+	 */
+	MgfSplitTask(final WorkflowEngine engine, final FileProducingTask mgf, final int shards, final boolean fromScratch) {
+		super(engine);
+		this.mgf = mgf;
+		this.fromScratch = fromScratch;
+
+		final File mgfFile = mgf.getResultingFile();
+		final File shardFolder = new File(mgfFile.getParentFile(), SHARD_FOLDER);
+		final String title = FileUtilities.stripExtension(mgfFile.getName());
+		shardFiles = new ArrayList<File>(shards);
+		for (int i = 1; i <= shards; i++) {
+			shardFiles.add(new File(shardFolder, title + ".shard" + i + "of" + shards + ".mgf"));
+		}
+
+		setName("mgf splitter");
+		setDescription("Split " + mgfFile.getName() + " into " + shards + " shards");
+	}
+
+	@Override
+	public void run() {
+		final File mgfFile = mgf.getResultingFile();
+		if (!fromScratch && shardsUpToDate(mgfFile)) {
+			LOGGER.debug("Shards of " + mgfFile.getAbsolutePath() + " are up to date");
+			setState(TaskState.COMPLETED_SUCCESFULLY);
+			return;
+		}
+		try {
+			SPLITTING.execute(new Runnable() {
+				@Override
+				public void run() {
+					split(mgfFile);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			setError(e);
+		}
+	}
+
+	private void split(final File mgfFile) {
+		try {
+			new MgfSplitter(mgfFile).split(shardFiles);
+			setState(TaskState.COMPLETED_SUCCESFULLY);
+		} catch (Exception e) {
+			setError(e);
+		}
+	}
+
+	private boolean shardsUpToDate(final File mgfFile) {
+		for (final File shard : shardFiles) {
+			if (!shard.isFile() || shard.lastModified() < mgfFile.lastModified()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public int getShardCount() {
+		return shardFiles.size();
+	}
+
+	public File getShardFile(final int index) {
+		return shardFiles.get(index);
+	}
+
+	public List<File> getShardFiles() {
+		return Collections.unmodifiableList(shardFiles);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hashCode(mgf, shardFiles.size());
+	}
+
+	@Override
+	public boolean equals(final Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (obj == null || getClass() != obj.getClass()) {
+			return false;
+		}
+		final MgfSplitTask other = (MgfSplitTask) obj;
+		return Objects.equal(this.mgf, other.mgf) && this.shardFiles.size() == other.shardFiles.size();
+	}
+}
@@ -110,29 +110,31 @@ class ScafmlDump {
 			for (final FileSearch inputFile : bioSample.getValue()) {
 				// Find search results for given input file.
 				final File inputFilePath = inputFile.getInputFile();
-				final Map<String/*Search engine code*/, File> results =
+				final Map<String/*Search engine code*/, List<File>> results =
 						searchResults.getAllResults(inputFilePath);
 				int i = 0;
-				for (final Map.Entry<String/*Search engine code*/, File> result : results.entrySet()) {
-					final File file = result.getValue();
+				for (final Map.Entry<String/*Search engine code*/, List<File>> result : results.entrySet()) {
 					final String engineCode = result.getKey();
-					// We add the particular search only if it is enabled for given engine
-					if (file != null
-							&& definition.isSearch(engineCode)
-							&& definition.isSearch("SCAFFOLD")) {
-						// Add input file
-						final ScafmlInputFile scafmlInputFile = new ScafmlInputFile();
-						scafmlInputFile.setID(inputFile.getId() + '_' + String.valueOf(i));
-
-						scafmlInputFile.setFile(file);
-
-						try {
-							sb.addInputFile(scafmlInputFile);
-						} catch (MprcException sdpe) {
-							throw new DaemonException(sdpe);
+					// A sharded search produces several files, all of them belong to the same input file
+					for (final File file : result.getValue()) {
+						// We add the particular search only if it is enabled for given engine
+						if (file != null
+								&& definition.isSearch(engineCode)
+								&& definition.isSearch("SCAFFOLD")) {
+							// Add input file
+							final ScafmlInputFile scafmlInputFile = new ScafmlInputFile();
+							scafmlInputFile.setID(inputFile.getId() + '_' + String.valueOf(i));
+
+							scafmlInputFile.setFile(file);
+
+							try {
+								sb.addInputFile(scafmlInputFile);
+							} catch (MprcException sdpe) {
+								throw new DaemonException(sdpe);
+							}
 						}
+						i++;
 					}
-					i++;
 				}
 			}
 		}
@@ -31,8 +31,8 @@ final class SearchResults implements Serializable {
 	/**
 	 * For given input file, find all search results that match it and return them.
 	 */
-	public Map<String/*Search engine code*/, File> getAllResults(final File inputFile) {
-		final Map<String/*Search engine code*/, File> result = new HashMap<String, File>();
+	public Map<String/*Search engine code*/, List<File>> getAllResults(final File inputFile) {
+		final Map<String/*Search engine code*/, List<File>> result = new HashMap<String, List<File>>();
 		for (final FileSearchResult r : results) {
 			if (r.getInputFile().equals(inputFile)) {
 				result.putAll(r.getResults());
@@ -7,6 +7,7 @@ import edu.mayo.mprc.config.Lifecycle;
 import edu.mayo.mprc.config.ResourceConfig;
 import edu.mayo.mprc.daemon.DaemonConnection;
 import edu.mayo.mprc.daemon.DaemonUtilities;
+import edu.mayo.mprc.daemon.SimpleThreadPoolExecutor;
 import edu.mayo.mprc.dbcurator.model.Curation;
 import edu.mayo.mprc.dbcurator.model.CurationDao;
 import edu.mayo.mprc.quameterdb.QuameterDaoHibernate;
@@ -35,6 +36,7 @@ import org.apache.log4j.Logger;
 import java.io.File;
 import java.util.*;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.regex.Pattern;
 
 /**
@@ -55,6 +57,12 @@ public final class SearchRunner implements Runnable, Lifecycle {
 	public static final String MZ_ML = "mzML";
 	public static final ExtractMsnSettings MSCONVERT_MZML = new ExtractMsnSettings(ExtractMsnSettings.MZML_MODE, ExtractMsnSettings.MSCONVERT);
 	public static final ExtractMsnSettings MSCONVERT_MS2 = new ExtractMsnSettings(ExtractMsnSettings.MS2_MODE, ExtractMsnSettings.MSCONVERT);
+
+	/**
+	 * Threads dispatching the tasks of a single search. Each search has its own pool, so a task that does blocking
+	 * work in {@link Task#run()} (which it must not) stalls only its own search.
+	 */
+	private static final int TASK_DISPATCH_THREADS = 2;
 	/**
 	 * Files that have _Pre or _Post after the standard prefix (copath, patient, date) are ignored by QuaMeter
 	 */
@@ -110,6 +118,7 @@ public final class SearchRunner implements Runnable, Lifecycle {
 	private final boolean reportDecoyHits;
 
 	private final WorkflowEngine workflowEngine;
+	private final ThreadPoolExecutor taskDispatch;
 
 	private boolean initializationDone;
 
@@ -172,6 +181,10 @@ public final class SearchRunner implements Runnable, Lifecycle {
 		this.semitrypticQuameter = semitrypticQuameter;
 		workflowEngine = new WorkflowEngine(taskId);
 		workflowEngine.setPriority(priority);
+		taskDispatch = new SimpleThreadPoolExecutor(TASK_DISPATCH_THREADS, "task-dispatch-" + taskId, false);
+		// Idle searches waiting for daemons do not keep any threads around
+		taskDispatch.allowCoreThreadTimeOut(true);
+		workflowEngine.setExecutor(taskDispatch);
 		this.paramsInfo = paramsInfo;
 		this.fromScratch = fromScratch;
 		engines = new SearchEngineList(searchEngines, searchDefinition);
@@ -196,6 +209,7 @@ public final class SearchRunner implements Runnable, Lifecycle {
 			try {
 				workflowEngine.run();
 				if (workflowEngine.isDone()) {
+					taskDispatch.shutdown();
 					reporter.reportSuccess();
 					break;
 				} else if (workflowEngine.isWorkAvailable()) {
@@ -206,6 +220,7 @@ public final class SearchRunner implements Runnable, Lifecycle {
 					break;
 				}
 			} catch (final Exception t) {
+				taskDispatch.shutdown();
 				workflowEngine.reportError(t);
 				reporter.reportFailure(t);
 				break;
@@ -306,11 +321,11 @@ public final class SearchRunner implements Runnable, Lifecycle {
 			// While building these, the Scaffold search entry itself is initialized
 			// The IdpQonvert search is special as well, it is set up to process the results of the myrimatch search
 			if (isNormalEngine(engine) && isEngineEnabled(engine, inputFile, defaultSearchParameters)) {
-				final FileProducingTask search = addEngineSearchTask(engine, inputFile, conversion, searchParameters, publicSearchFiles, null);
+				final List<FileProducingTask> searches = addEngineSearchTasks(engine, inputFile, conversion, searchParameters, publicSearchFiles, null, getShards(engine));
 
-				scaffoldTask = addScaffoldAndQaTasks(scaffoldTask, inputFile, conversion, scaffoldDeployment, engine, search);
+				scaffoldTask = addScaffoldAndQaTasks(scaffoldTask, inputFile, conversion, scaffoldDeployment, engine, searches);
 				if (searchWithIdpQonvert() && myrimatch(engine)) {
-					addIdpQonvertTask(idpQonvert, search, true);
+					addIdpQonvertTask(idpQonvert, searches.get(0), true);
 				}
 			}
 		}
@@ -333,8 +348,8 @@ public final class SearchRunner implements Runnable, Lifecycle {
 				throw new MprcException("The Comet search engine must be available for Quality Control to function");
 			}
 			// Force Comet to produce .pep.xml output for idpqonvert
-			final FileProducingTask cometSearch = addEngineSearchTask(comet, inputFile, mzmlFile, forceSemitrypsin(searchParameters, semitrypticQuameter), publicSearchFiles,
-					CometWorker.PEP_XML);
+			final FileProducingTask cometSearch = addEngineSearchTasks(comet, inputFile, mzmlFile, forceSemitrypsin(searchParameters, semitrypticQuameter), publicSearchFiles,
+					CometWorker.PEP_XML, 1).get(0);
 			final IdpQonvertTask idpQonvertTask = addIdpQonvertTask(idpQonvert, cometSearch, false/* Do not publish the idpDB file, temp only*/);
 			idpQonvertTask.setEmbedSpectrumScanTimes(true);
 			idpQonvertTask.setMaxFDR(QUAMETER_FDR);
@@ -375,10 +390,29 @@ public final class SearchRunner implements Runnable, Lifecycle {
 		return null;
 	}
 
-	private FileProducingTask addEngineSearchTask(final SearchEngine engine, final FileSearch inputFile,
-	                                              final FileProducingTask convertedFile, final SearchEngineParameters searchParameters,
-	                                              final boolean publicSearchFiles,
-	                                              final String forceExtension) {
+	/**
+	 * @return How many shards should the input files be split into for given engine.
+	 */
+	private int getShards(final SearchEngine engine) {
+		// IdpQonvert needs the entire MyriMatch result
+		if (searchWithIdpQonvert() && myrimatch(engine)) {
+			return 1;
+		}
+		return engine.getShards();
+	}
+
+	/**
+	 * Search the converted file with given engine.
+	 *
+	 * @param shards Split the converted file into this many shards, each searched separately.
+	 *               Only .mgf files can be split, other formats are always searched whole.
+	 * @return The tasks producing the search results, one per shard.
+	 */
+	private List<FileProducingTask> addEngineSearchTasks(final SearchEngine engine, final FileSearch inputFile,
+	                                                     final FileProducingTask convertedFile, final SearchEngineParameters searchParameters,
+	                                                     final boolean publicSearchFiles,
+	                                                     final String forceExtension,
+	                                                     final int shards) {
 
 		// Get the parameter string
 		final String param = parameterFiles.getParamString(engine, searchParameters);
@@ -411,25 +445,51 @@ public final class SearchRunner implements Runnable, Lifecycle {
 			converted = convertedFile;
 		}
 
-		final EngineSearchTask engineSearchTask = addEngineSearch(engine,
-				param,
-				inputFile.getInputFile(),
-				outputFolder,
-				converted,
-				database,
-				deploymentResult,
-				publicSearchFiles,
-				forceExtension);
-
-		if (cometSearch && forceExtension == null) {
-			FileProducingTask ms2Task = addRawConversionTask(inputFile, MSCONVERT_MS2, false);
-			final SqtMs2CombinerTask combinerTask = addTask(new SqtMs2CombinerTask(workflowEngine, engineSearchTask, ms2Task));
-			combinerTask.addDependency(engineSearchTask);
-			combinerTask.addDependency(ms2Task);
-			return combinerTask;
+		final List<FileProducingTask> shardTasks = addShardTasks(converted, shards);
+		final List<FileProducingTask> searches = new ArrayList<FileProducingTask>(shardTasks.size());
+		for (final FileProducingTask shard : shardTasks) {
+			final EngineSearchTask engineSearchTask = addEngineSearch(engine,
+					param,
+					shard == converted ? inputFile.getInputFile() : shard.getResultingFile(),
+					outputFolder,
+					shard,
+					database,
+					deploymentResult,
+					publicSearchFiles,
+					forceExtension);
+
+			if (cometSearch && forceExtension == null) {
+				FileProducingTask ms2Task = addRawConversionTask(inputFile, MSCONVERT_MS2, false);
+				final SqtMs2CombinerTask combinerTask = addTask(new SqtMs2CombinerTask(workflowEngine, engineSearchTask, ms2Task));
+				combinerTask.addDependency(engineSearchTask);
+				combinerTask.addDependency(ms2Task);
+				searches.add(combinerTask);
+			} else {
+				searches.add(engineSearchTask);
+			}
 		}
+		return searches;
+	}
 
-		return engineSearchTask;
+	/**
+	 * Split the converted file into given number of shards.
+	 *
+	 * @return Tasks producing the shards, or just the converted file itself if it is not to be split.
+	 */
+	private List<FileProducingTask> addShardTasks(final FileProducingTask converted, final int shards) {
+		if (shards <= 1 || !converted.getResultingFile().getName().toLowerCase(Locale.US).endsWith("." + MGF)) {
+			return Collections.singletonList(converted);
+		}
+		final MgfSplitTask splitTask = addTask(new MgfSplitTask(workflowEngine, converted, shards, isFromScratch()));
+		splitTask.addDependency(converted);
+
+		final List<FileProducingTask> shardTasks = new ArrayList<FileProducingTask>(shards);
+		for (int i = 0; i < shards; i++) {
+			final MgfShardTask shardTask = addTask(new MgfShardTask(workflowEngine, splitTask, i));
+			shardTask.addDependency(splitTask);
+			shardTasks.add(shardTask);
+		}
+		return shardTasks;
 	}
 
 	private IdpQonvertTask addIdpQonvertTask(final SearchEngine idpQonvert, final FileProducingTask search, final boolean publishResult) {
@@ -474,7 +534,7 @@ public final class SearchRunner implements Runnable, Lifecycle {
 	private ScaffoldSpectrumTask addScaffoldAndQaTasks(final ScaffoldSpectrumTask previousScaffoldTask,
 	                                                   final FileSearch inputFile, final FileProducingTask conversion,
 	                                                   final DatabaseDeployment scaffoldDeployment,
-	                                                   final SearchEngine engine, final FileProducingTask search) {
+	                                                   final SearchEngine engine, final List<FileProducingTask> searches) {
 		ScaffoldSpectrumTask scaffoldTask = previousScaffoldTask;
 		final String scaffoldVersion = scaffoldVersion();
 		if (scaffoldVersion != null && scaffoldShouldUseEngine(engine, scaffoldVersion)) {
@@ -482,7 +542,10 @@ public final class SearchRunner implements Runnable, Lifecycle {
 				throw new MprcException("Scaffold search submitted without having Scaffold service enabled.");
 			}
 
-			scaffoldTask = addScaffoldCall(scaffoldVersion, inputFile, search, scaffoldDeployment);
+			// All shards of the input file go to the same Scaffold call
+			for (final FileProducingTask search : searches) {
+				scaffoldTask = addScaffoldCall(scaffoldVersion, inputFile, search, scaffoldDeployment);
+			}
 
 			if (searchDefinition.getQa() != null) {
 				addQaTask(inputFile, scaffoldTask, conversion);
@@ -1057,6 +1120,7 @@ public final class SearchRunner implements Runnable, Lifecycle {
 	@Override
 	public void stop() {
 		if (isRunning()) {
+			taskDispatch.shutdown();
 			running = false;
 		}
 	}
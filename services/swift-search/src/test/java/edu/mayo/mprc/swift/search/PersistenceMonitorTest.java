@@ -0,0 +1,166 @@
+package edu.mayo.mprc.swift.search;
+
+import edu.mayo.mprc.MprcException;
+import edu.mayo.mprc.swift.db.SwiftDao;
+import edu.mayo.mprc.swift.dbmapping.TaskData;
+import edu.mayo.mprc.utilities.progress.ProgressReport;
+import edu.mayo.mprc.workflow.engine.TaskBase;
+import edu.mayo.mprc.workflow.engine.WorkflowEngine;
+import edu.mayo.mprc.workflow.persistence.TaskState;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author Roman Zenka
+ */
+public final class PersistenceMonitorTest {
+	private static final int SEARCH_RUN_ID = 12;
+	private static final int EVENTS_PER_TASK = 50;
+
+	@Test
+	public void shouldCoalesceTaskChanges() {
+		final SwiftDao swiftDao = createDao();
+		final PersistenceMonitor monitor = new PersistenceMonitor(SEARCH_RUN_ID, swiftDao, 0, 1000);
+		final WorkflowEngine engine = new WorkflowEngine("test");
+		final TestTask task1 = new TestTask(engine, "task1");
+		final TestTask task2 = new TestTask(engine, "task2");
+
+		for (int i = 0; i < EVENTS_PER_TASK; i++) {
+			monitor.taskChange(task1);
+			monitor.taskChange(task2);
+		}
+		monitor.updateStatistics(new ProgressReport(2, 0, 0, 2, 0, 0, 0, 0, 0));
+
+		verify(swiftDao, never()).begin();
+		Assert.assertEquals(monitor.getQueueDepth(), 3);
+
+		monitor.flush();
+
+		verify(swiftDao, times(1)).begin();
+		verify(swiftDao, times(1)).commit();
+		verify(swiftDao, times(1)).createTask(eq(SEARCH_RUN_ID), eq("task1"), anyString(), any(TaskState.class));
+		verify(swiftDao, times(1)).createTask(eq(SEARCH_RUN_ID), eq("task2"), anyString(), any(TaskState.class));
+		verify(swiftDao, times(1)).reportSearchRunProgress(eq(SEARCH_RUN_ID), any(ProgressReport.class));
+		Assert.assertEquals(monitor.getQueueDepth(), 0);
+		Assert.assertEquals(monitor.getStatistics().getEventsReceived(), 2 * EVENTS_PER_TASK + 1);
+		Assert.assertEquals(monitor.getStatistics().getWrites(), 3);
+		Assert.assertEquals(monitor.getStatistics().getFlushes(), 1);
+	}
+
+	@Test
+	public void shouldFlushOnCompletion() {
+		final SwiftDao swiftDao = createDao();
+		final PersistenceMonitor monitor = new PersistenceMonitor(SEARCH_RUN_ID, swiftDao, 0, 1000);
+		final TestTask task = new TestTask(new WorkflowEngine("test"), "task");
+
+		monitor.taskChange(task);
+		verify(swiftDao, never()).begin();
+
+		monitor.updateStatistics(new ProgressReport(1, 0, 0, 0, 0, 1, 0, 0, 0));
+		verify(swiftDao, times(1)).commit();
+		Assert.assertEquals(monitor.getQueueDepth(), 0);
+
+		// After completion, the events are written right away
+		monitor.taskChange(task);
+		verify(swiftDao, times(2)).commit();
+	}
+
+	@Test
+	public void shouldFlushOnThreshold() throws InterruptedException {
+		final SwiftDao swiftDao = createDao();
+		final PersistenceMonitor monitor = new PersistenceMonitor(SEARCH_RUN_ID, swiftDao, 0, EVENTS_PER_TASK);
+		final TestTask task = new TestTask(new WorkflowEngine("test"), "task");
+
+		for (int i = 0; i < EVENTS_PER_TASK; i++) {
+			monitor.taskChange(task);
+		}
+		for (int i = 0; i < 100 && monitor.getStatistics().getFlushes() == 0; i++) {
+			Thread.sleep(10);
+		}
+		Assert.assertEquals(monitor.getStatistics().getFlushes(), 1, "The threshold should trigger a flush");
+		Assert.assertEquals(monitor.getQueueDepth(), 0);
+		verify(swiftDao, times(1)).commit();
+	}
+
+	@Test
+	public void shouldStoreSeparatelyWhenBatchFails() {
+		final SwiftDao swiftDao = createDao();
+		doThrow(new MprcException("Failed progress")).when(swiftDao).reportSearchRunProgress(anyInt(), any(ProgressReport.class));
+		final PersistenceMonitor monitor = new PersistenceMonitor(SEARCH_RUN_ID, swiftDao, 0, 1000);
+		final TestTask task = new TestTask(new WorkflowEngine("test"), "task");
+
+		monitor.taskChange(task);
+		monitor.updateStatistics(new ProgressReport(2, 0, 0, 1, 0, 0, 0, 0, 0));
+		try {
+			monitor.flush();
+			Assert.fail("The progress report could not be stored");
+		} catch (MprcException ignore) {
+			// SWALLOWED: expected
+		}
+
+		// Batch, then the task and the report separately
+		verify(swiftDao, times(3)).begin();
+		verify(swiftDao, times(1)).commit();
+		verify(swiftDao, times(2)).rollback();
+		// The task was created twice - the first one was rolled back
+		verify(swiftDao, times(2)).createTask(anyInt(), anyString(), anyString(), any(TaskState.class));
+		Assert.assertEquals(task.getTaskDataId(), Integer.valueOf(2));
+		Assert.assertEquals(monitor.getStatistics().getFailedFlushes(), 1);
+	}
+
+	private static SwiftDao createDao() {
+		final SwiftDao swiftDao = mock(SwiftDao.class);
+		final AtomicInteger ids = new AtomicInteger(0);
+		when(swiftDao.createTask(anyInt(), anyString(), anyString(), any(TaskState.class))).thenAnswer(new Answer<TaskData>() {
+			@Override
+			public TaskData answer(final InvocationOnMock invocation) {
+				final TaskData data = new TaskData();
+				data.setId(ids.incrementAndGet());
+				return data;
+			}
+		});
+		when(swiftDao.getTaskData(anyInt())).thenAnswer(new Answer<TaskData>() {
+			@Override
+			public TaskData answer(final InvocationOnMock invocation) {
+				final TaskData data = new TaskData();
+				data.setId((Integer) invocation.getArguments()[0]);
+				return data;
+			}
+		});
+		return swiftDao;
+	}
+
+	private static final class TestTask extends TaskBase {
+		TestTask(final WorkflowEngine engine, final String name) {
+			super(engine);
+			setName(name);
+			setDescription(name);
+			setState(TaskState.READY);
+		}
+
+		@Override
+		public void run() {
+			setState(TaskState.COMPLETED_SUCCESFULLY);
+		}
+
+		@Override
+		public boolean equals(final Object o) {
+			return this == o;
+		}
+
+		@Override
+		public int hashCode() {
+			return System.identityHashCode(this);
+		}
+	}
+}
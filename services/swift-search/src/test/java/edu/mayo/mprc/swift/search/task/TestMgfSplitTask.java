@@ -0,0 +1,106 @@
+package edu.mayo.mprc.swift.search.task;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import edu.mayo.mprc.utilities.FileUtilities;
+import edu.mayo.mprc.workflow.engine.Resumer;
+import edu.mayo.mprc.workflow.engine.WorkflowEngine;
+import edu.mayo.mprc.workflow.persistence.TaskState;
+import org.mockito.Mockito;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Roman Zenka
+ */
+public final class TestMgfSplitTask {
+	private static final int SPECTRA = 10;
+	private static final int SHARDS = 3;
+
+	@Test
+	public void shouldSplitIntoShards() throws IOException, InterruptedException {
+		final File folder = FileUtilities.createTempFolder();
+		try {
+			final File mgf = new File(folder, "input.mgf");
+			final StringBuilder content = new StringBuilder("COM=test\n");
+			for (int i = 0; i < SPECTRA; i++) {
+				content.append(spectrum(i));
+			}
+			Files.write(content, mgf, Charsets.US_ASCII);
+
+			final MgfSplitTask split = runSplit(mgf);
+			Assert.assertEquals(split.getState(), TaskState.COMPLETED_SUCCESFULLY);
+
+			for (int shard = 0; shard < SHARDS; shard++) {
+				final StringBuilder expected = new StringBuilder("COM=test\n");
+				for (int i = shard; i < SPECTRA; i += SHARDS) {
+					expected.append(spectrum(i));
+				}
+				Assert.assertEquals(Files.toString(split.getShardFile(shard), Charsets.US_ASCII), expected.toString(),
+						"Shard " + (shard + 1) + " content");
+			}
+		} finally {
+			FileUtilities.deleteNow(folder);
+		}
+	}
+
+	@Test
+	public void shouldRewriteStaleShards() throws IOException, InterruptedException {
+		final File folder = FileUtilities.createTempFolder();
+		try {
+			final File mgf = new File(folder, "input.mgf");
+			Files.write("COM=test\n" + spectrum(0) + spectrum(1) + spectrum(2), mgf, Charsets.US_ASCII);
+
+			final MgfSplitTask first = runSplit(mgf);
+			final File shard = first.getShardFile(0);
+			// A shard older than the .mgf is not trusted
+			Files.write("truncated", shard, Charsets.US_ASCII);
+			Assert.assertTrue(shard.setLastModified(mgf.lastModified() - 10000));
+
+			runSplit(mgf);
+			Assert.assertEquals(Files.toString(shard, Charsets.US_ASCII), "COM=test\n" + spectrum(0));
+		} finally {
+			FileUtilities.deleteNow(folder);
+		}
+	}
+
+	private static MgfSplitTask runSplit(final File mgf) throws InterruptedException {
+		final FileProducingTask mgfTask = Mockito.mock(FileProducingTask.class);
+		Mockito.when(mgfTask.getResultingFile()).thenReturn(mgf);
+
+		final WorkflowEngine engine = new WorkflowEngine("split test");
+		final MgfSplitTask split = new MgfSplitTask(engine, mgfTask, SHARDS, false);
+		engine.addTask(split);
+		while (true) {
+			engine.run();
+			if (engine.isDone()) {
+				break;
+			}
+			if (!engine.isWorkAvailable()) {
+				final CountDownLatch latch = new CountDownLatch(1);
+				engine.resumeOnWork(new Resumer() {
+					@Override
+					public void resume() {
+						latch.countDown();
+					}
+				});
+				Assert.assertTrue(latch.await(60, TimeUnit.SECONDS), "The split did not finish in time");
+			}
+		}
+		return split;
+	}
+
+	private static String spectrum(final int scan) {
+		return "BEGIN IONS\n"
+				+ "TITLE=spectrum (input." + scan + "." + scan + ".2.dta)\n"
+				+ "CHARGE=2+\n"
+				+ "PEPMASS=500.5\n"
+				+ "100.1 10.0\n"
+				+ "END IONS\n";
+	}
+}
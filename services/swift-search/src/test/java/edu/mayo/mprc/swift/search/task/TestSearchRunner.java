@@ -129,6 +129,55 @@ public class TestSearchRunner {
 		Assert.assertEquals(runner.getWorkflowEngine().getNumTasks(), expectedNumTasks);
 	}
 
+	/**
+	 * X!Tandem splits each .mgf into three shards. Every shard gets its own search, all of them go to the same Scaffold.
+	 */
+	@Test
+	public void shardedSearchRunner() throws IOException {
+		final Collection<SearchEngine> searchEngines = searchEngines();
+		final int shards = 3;
+		for (final SearchEngine engine : searchEngines) {
+			if ("TANDEM".equals(engine.getCode())) {
+				engine.getConfig().setShards(shards);
+			}
+		}
+
+		final List<FileSearch> inputFiles = Arrays.asList(
+				new FileSearch(raw1, "biosample", "category", "experiment", searchEngineParameters1()),
+				new FileSearch(raw2, "biosample2", "category", "experiment", searchEngineParameters1())
+		);
+
+		final SwiftSearchDefinition definition = defaultSearchDefinition(inputFiles);
+
+		final SearchRunner runner = getSearchRunner(searchEngines, definition);
+
+		final int numEngines = enabledEngines().size();
+		final int tasksPerFile = (numEngines - 1) /* 1 for each engine except Scaffold */
+				+ 1 /* Raw->mgf */
+				+ 1 /* Raw->mzML for comet */
+				+ 1 /* Raw->ms2 for comet */
+				+ 1 /* sqt+ms2 combiner for comet */
+				+ 1 /* RawDump */
+				+ 1 /* msmsEval */
+
+				+ 1 /* mgf split */
+				+ shards /* mgf shards */
+				+ shards - 1 /* Extra X!Tandem searches */;
+
+		final int tasksPerSearch = 0
+				+ 1 /* Fasta DB load */
+				+ 1 /* Search DB load */
+				+ 1 /* QA Task */
+				+ 1 /* Scaffold report */
+
+				+ numEngines /* DB deploys */ - getEnabledNoDeploy()
+				+ 1 /* Scaffold */;
+
+		final int expectedNumTasks = inputFiles.size() * tasksPerFile + tasksPerSearch;
+
+		Assert.assertEquals(runner.getWorkflowEngine().getNumTasks(), expectedNumTasks);
+	}
+
 	@Test
 	public void onlyProvideMgfAndMzxmlRunner() throws IOException {
 		final Collection<SearchEngine> searchEngines = searchEngines();
@@ -42,6 +42,8 @@ public final class XTandemCache extends WorkCache<XTandemWorkPacket> {
 
 					.property(CacheConfig.SERVICE, "X!Tandem Search Engine", "The X!Tandem engine that will do the search. The cache just caches the results.")
 					.reference("tandem", UiBuilder.NONE_TYPE);
+
+			CacheConfig.evictionUi(builder);
 		}
 	}
 }
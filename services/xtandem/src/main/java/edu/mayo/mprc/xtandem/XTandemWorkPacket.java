@@ -1,12 +1,13 @@
 package edu.mayo.mprc.xtandem;
 
 import edu.mayo.mprc.daemon.worker.CoreRequirements;
+import edu.mayo.mprc.daemon.worker.MemoryRequirements;
 import edu.mayo.mprc.daemon.worker.WorkPacket;
 import edu.mayo.mprc.searchengine.EngineWorkPacket;
 
 import java.io.File;
 
-public final class XTandemWorkPacket extends EngineWorkPacket implements CoreRequirements {
+public final class XTandemWorkPacket extends EngineWorkPacket implements CoreRequirements, MemoryRequirements {
 	private static final long serialVersionUID = 20110729;
 
 	public XTandemWorkPacket(final boolean fromScratch) {
@@ -36,5 +37,10 @@ public final class XTandemWorkPacket extends EngineWorkPacket implements CoreReq
 	public int getNumRequiredCores() {
 		return 8;
 	}
+
+	@Override
+	public int getRequiredMemoryMegabytes() {
+		return 4096;
+	}
 }
 
@@ -11,6 +11,8 @@ public final class DaemonModel extends ResourceModel {
 	public static final String DUMP_ERRORS = "dumpErrors";
 	public static final String DUMP_FOLDER_PATH = "dumpFolderPath";
 	public static final String LOG_OUTPUT_FOLDER = "logOutputFolder";
+	public static final String CORES = "cores";
+	public static final String MEMORY = "memory";
 	private static final long serialVersionUID = -3470019100042087509L;
 
 	public DaemonModel() {
@@ -47,7 +47,14 @@ public final class DaemonView extends SimplePanel implements ModuleView {
 						"If daemon runs any of its modules in a SGE setting, the log folder most be accessible from all SGE nodes.").defaultValue("var/log")
 				.property(DaemonModel.DUMP_ERRORS, "Dump errors", "When an error happens, the daemon will dump the original request information that failed. This allows the user to isolate and debug the particular error.")
 				.boolValue().defaultValue("false")
-				.property(DaemonModel.DUMP_FOLDER_PATH, "Dump folder path", "Where should the dump files be stored.").defaultValue("var/tmp/dumps");
+				.property(DaemonModel.DUMP_FOLDER_PATH, "Dump folder path", "Where should the dump files be stored.").defaultValue("var/tmp/dumps")
+				.property(DaemonModel.CORES, "Cores", "How many cores can the requests processed by this daemon use at once. " +
+						"Requests that do not fit wait, higher priority requests go first." +
+						"<p>" +
+						"Use 0 for no limit.").integerValue(0, null).defaultValue("0")
+				.property(DaemonModel.MEMORY, "Memory (MB)", "How many megabytes of memory can the requests processed by this daemon use at once." +
+						"<p>" +
+						"Use 0 for no limit.").integerValue(0, null).defaultValue("0");
 
 		setWidget(propertyList = builder.end());
 
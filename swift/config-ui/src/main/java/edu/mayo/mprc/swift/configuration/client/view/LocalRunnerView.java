@@ -14,6 +14,8 @@ public final class LocalRunnerView extends SimplePanel {
 
 	public static final String THREAD_NUMBER = "Number of Threads";
 	public static final String LOG_OUTPUT_FOLDER = "Log Output Folder";
+	public static final String REUSE_WORKERS = "Reuse Workers";
+	public static final String RECEIVE_BATCH_SIZE = "Receive Batch Size";
 
 
 	public LocalRunnerView(final Context context, final ResourceModel model) {
@@ -21,6 +23,8 @@ public final class LocalRunnerView extends SimplePanel {
 
 		builder.start();
 		builder.property("numThreads", THREAD_NUMBER, "Number of simultaneously executing threads.").integerValue(1, MAX_THREADS).defaultValue("1").required();
+		builder.property("reuseWorkers", REUSE_WORKERS, "Keep one worker per thread and reuse it for all requests, if the worker supports it. Saves the worker setup time for each request.").boolValue().defaultValue("false");
+		builder.property("receiveBatchSize", RECEIVE_BATCH_SIZE, "How many requests to take from the queue at once. Values above 1 save round trips when there are many short requests and several threads.").integerValue(1, MAX_THREADS).defaultValue("1");
 		builder.property("logOutputFolder", LOG_OUTPUT_FOLDER, "Output folder where standard out log file and error out log files are stored.<p>If you do not enter any value, the setting per daemon will be used.");
 		propertyList = builder.end();
 
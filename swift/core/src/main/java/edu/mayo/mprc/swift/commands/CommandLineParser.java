@@ -32,8 +32,8 @@ public final class CommandLineParser {
 				.withRequiredArg().ofType(File.class);
 		parser.accepts("daemon", "Specify the daemon (this describes the environment of the current run) as it was set up during the configuration. When no name is given, the configuration has to contain exactly one daemon, otherwise an error is produced. You can also set environment variable SWIFT_DAEMON to set this value.")
 				.withOptionalArg().ofType(String.class).describedAs("name");
-		parser.accepts("sge", "Process a single work packet and exit. Used for jobs submitted through the Sun Grid Engine (SGE). The file contains all input parameters encoded in XML format.")
-				.withRequiredArg().describedAs("XML file").ofType(String.class);
+		parser.accepts("sge", "Process a single work packet and exit. Used for jobs submitted through the Sun Grid Engine (SGE). The file contains all input parameters encoded in XML format. Grid workers get a folder of such files instead.")
+				.withRequiredArg().describedAs("XML file or folder").ofType(String.class);
 		parser.acceptsAll(Arrays.asList("help", "?"), "Show this help screen");
 		return parser;
 	}
@@ -1,20 +1,22 @@
 package edu.mayo.mprc.swift.commands;
 
-import com.thoughtworks.xstream.XStream;
-import com.thoughtworks.xstream.io.xml.DomDriver;
 import edu.mayo.mprc.MprcException;
 import edu.mayo.mprc.ReleaseInfoCore;
 import edu.mayo.mprc.config.*;
+import edu.mayo.mprc.daemon.AssignedTaskData;
 import edu.mayo.mprc.daemon.DaemonLoggerFactory;
 import edu.mayo.mprc.daemon.DaemonProgress;
 import edu.mayo.mprc.daemon.DaemonProgressMessage;
 import edu.mayo.mprc.daemon.files.FileTokenFactory;
 import edu.mayo.mprc.daemon.files.FileTokenHolder;
+import edu.mayo.mprc.daemon.worker.ReusableWorker;
 import edu.mayo.mprc.daemon.worker.WorkPacket;
 import edu.mayo.mprc.daemon.worker.Worker;
 import edu.mayo.mprc.messaging.Request;
 import edu.mayo.mprc.messaging.ServiceFactory;
+import edu.mayo.mprc.sge.GridScriptFactory;
 import edu.mayo.mprc.sge.SgePacket;
+import edu.mayo.mprc.sge.SgePacketQueue;
 import edu.mayo.mprc.swift.resources.ResourceTable;
 import edu.mayo.mprc.utilities.FileUtilities;
 import edu.mayo.mprc.utilities.log.ParentLog;
@@ -25,11 +27,11 @@ import org.springframework.stereotype.Component;
 
 import javax.annotation.Resource;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.IOException;
 import java.io.Serializable;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * @author Roman Zenka
@@ -38,6 +40,10 @@ import java.net.UnknownHostException;
 public class RunSge implements SwiftCommand {
 	private static final Logger LOGGER = Logger.getLogger(RunSge.class);
 	public static final String COMMAND = "sge";
+	/**
+	 * How often does a grid worker look for new packets when its queue is empty.
+	 */
+	private static final long QUEUE_POLL_MILLIS = 1000;
 
 	private ResourceTable resourceTable;
 	private ServiceFactory serviceFactory;
@@ -54,6 +60,11 @@ public class RunSge implements SwiftCommand {
 	@Override
 	public ExitCode run(final SwiftEnvironment environment) {
 		final String xmlConfigFilePath = environment.getParameters().get(0);
+		final String workerId = System.getProperty(GridScriptFactory.WORKER_ID);
+		if (workerId != null) {
+			return runQueue(new SgePacketQueue(new File(xmlConfigFilePath)), workerId,
+					Integer.getInteger(GridScriptFactory.WORKER_IDLE_SECONDS, 0), environment.getApplicationConfig());
+		}
 		return run(new File(xmlConfigFilePath), environment.getApplicationConfig());
 	}
 
@@ -65,27 +76,94 @@ public class RunSge implements SwiftCommand {
 	public ExitCode run(final File workPacketXmlFile, final ApplicationConfig applicationConfig) {
 		// Wait for the work packet to fully materialize in case it was transferred over a shared filesystem
 		FileUtilities.waitForFileBlocking(workPacketXmlFile);
+		logHostName();
+
+		try {
+			return processPacket(workPacketXmlFile, applicationConfig, null, null) ? ExitCode.Ok : ExitCode.Error;
+		} finally {
+			getServiceFactory().stop();
+		}
+	}
+
+	/**
+	 * Keep processing packets from a queue until there is nothing to do for given amount of time.
+	 * Unlike {@link #run(File, ApplicationConfig)}, the claiming and completion of each packet is reported back, as
+	 * this process does not correspond to a single packet. The workers are created once and reused.
+	 *
+	 * @param queue       Queue to take the packets from.
+	 * @param workerId    Id of this worker, marks the packets it claimed.
+	 * @param idleSeconds How long to wait for more packets once the queue is empty.
+	 */
+	public ExitCode runQueue(final SgePacketQueue queue, final String workerId, final int idleSeconds, final ApplicationConfig applicationConfig) {
+		FileUtilities.waitForFileBlocking(queue.getDirectory());
+		logHostName();
+		LOGGER.info("Grid worker " + workerId + " processing packets from " + queue.getDirectory().getAbsolutePath());
+
+		final Map<String, Worker> workers = new HashMap<String, Worker>();
+		int processed = 0;
+		int failed = 0;
+		try {
+			long idleSince = System.currentTimeMillis();
+			while (true) {
+				final File claimed = queue.claim(workerId);
+				if (claimed == null) {
+					if (System.currentTimeMillis() - idleSince >= idleSeconds * 1000L) {
+						break;
+					}
+					Thread.sleep(QUEUE_POLL_MILLIS);
+					continue;
+				}
+				if (processPacket(claimed, applicationConfig, workers, workerId)) {
+					queue.done(claimed);
+					processed++;
+				} else {
+					LOGGER.warn("Retaining sge packet file: " + queue.failed(claimed).getAbsolutePath());
+					failed++;
+				}
+				idleSince = System.currentTimeMillis();
+			}
+		} catch (final InterruptedException ignore) {
+			// SWALLOWED: we were asked to stop, the unfinished packets are resolved by the GridRunner
+			LOGGER.info("Grid worker " + workerId + " interrupted");
+		} finally {
+			getServiceFactory().stop();
+		}
+
+		LOGGER.info("Grid worker " + workerId + " done. Processed packets: " + processed + ", failed: " + failed);
+		return ExitCode.Ok;
+	}
 
+	private static void logHostName() {
 		try {
 			LOGGER.info("Running grid job in host: " + InetAddress.getLocalHost().getHostName());
 		} catch (final UnknownHostException e) {
 			LOGGER.error("Could not get host name.", e);
 		}
+	}
 
+	/**
+	 * Execute a single work packet.
+	 *
+	 * @param workPacketXmlFile File containing the serialized work packet.
+	 * @param workers           Workers to reuse, by service name. When null, a new worker is created and the
+	 *                          completion is signalized by the end of the process.
+	 * @param workerId          Id of the grid worker that claimed the packet, reported back so the runner can tell
+	 *                          which grid job processes the packet. Null if the packet has its own grid job.
+	 * @return True if the packet was processed successfully.
+	 */
+	private boolean processPacket(final File workPacketXmlFile, final ApplicationConfig applicationConfig, final Map<String, Worker> workers, final String workerId) {
 		Request request = null;
-		FileInputStream fileInputStream = null;
 		SgePacket sgePacket = null;
 		try {
 			LOGGER.debug(ReleaseInfoCore.buildVersion());
 			LOGGER.info("Parsing xml file: " + workPacketXmlFile.getAbsolutePath());
 
-			final XStream xStream = new XStream(new DomDriver());
-
-			fileInputStream = new FileInputStream(workPacketXmlFile);
-
-			sgePacket = (SgePacket) xStream.fromXML(fileInputStream);
+			sgePacket = SgePacketQueue.readPacket(workPacketXmlFile);
 
 			request = getServiceFactory().deserializeRequest(sgePacket.getSerializedRequest());
+			if (workerId != null) {
+				reportProgress(request, new DaemonProgressMessage(DaemonProgress.UserSpecificProgressInfo, new AssignedTaskData(workerId)));
+			}
 
 			//If the work packet is an instance of a FileTokenHolder, set the the FileTokenFactory on it. The FileTokenFactory object
 			//needs to be reset because it is a transient object.
@@ -96,15 +174,18 @@ public class RunSge implements SwiftCommand {
 			}
 			daemonLoggerFactory = new DaemonLoggerFactory(sgePacket.getLogFolder());
 
-			final DependencyResolver dependencies = new DependencyResolver(resourceTable);
-
-			final ResourceConfig config = getConfigForServiceName(applicationConfig, sgePacket.getServiceName());
-			final Worker daemonWorker = (Worker) resourceTable.createSingleton(config, dependencies);
+			final Worker daemonWorker = getWorker(applicationConfig, sgePacket.getServiceName(), workers);
 			final DaemonWorkerProgressReporter progressReporter = new DaemonWorkerProgressReporter(request);
 			final WorkPacket workPacket = (WorkPacket) sgePacket.getWorkPacket();
 			final ParentLog parentLog = daemonLoggerFactory.createLog(workPacket.getTaskId(), progressReporter);
 			progressReporter.setParentLog(parentLog);
 			daemonWorker.processRequest(workPacket, progressReporter);
+			if (workers != null) {
+				if (progressReporter.isFailed()) {
+					return false;
+				}
+				reportProgress(request, new DaemonProgressMessage(DaemonProgress.RequestCompleted));
+			}
 		} catch (final Exception e) {
 			final String errorMessage = "Failed to process work packet " + ((sgePacket == null || sgePacket.getWorkPacket() == null) ? "null" : sgePacket.getWorkPacket().toString());
 			LOGGER.error(errorMessage, e);
@@ -116,21 +197,28 @@ public class RunSge implements SwiftCommand {
 				// SWALLOWED
 			}
 
-			return ExitCode.Error;
-		} finally {
-			if (fileInputStream != null) {
-				try {
-					fileInputStream.close();
-				} catch (final IOException e) {
-					LOGGER.warn("Error closing file input stream.", e);
-					// SWALLOWED
-				}
-			}
-			getServiceFactory().stop();
+			return false;
 		}
 
 		LOGGER.info("Work packet " + sgePacket.getWorkPacket().toString() + " successfully processed.");
-		return ExitCode.Ok;
+		return true;
+	}
+
+	private Worker getWorker(final ApplicationConfig applicationConfig, final String serviceName, final Map<String, Worker> workers) {
+		if (workers != null) {
+			final Worker worker = workers.get(serviceName);
+			if (worker instanceof ReusableWorker) {
+				((ReusableWorker) worker).reset();
+				return worker;
+			}
+		}
+		final DependencyResolver dependencies = new DependencyResolver(resourceTable);
+		final ResourceConfig config = getConfigForServiceName(applicationConfig, serviceName);
+		final Worker worker = (Worker) resourceTable.createSingleton(config, dependencies);
+		if (workers != null) {
+			workers.put(serviceName, worker);
+		}
+		return worker;
 	}
 
 	private ResourceConfig getConfigForServiceName(final ApplicationConfig applicationConfig, final String serviceName) {
@@ -169,6 +257,7 @@ public class RunSge implements SwiftCommand {
 	class DaemonWorkerProgressReporter implements ProgressReporter {
 		private Request request;
 		private ParentLog parentLog;
+		private boolean failed;
 
 		DaemonWorkerProgressReporter(final Request request) {
 			this.request = request;
@@ -213,8 +302,13 @@ public class RunSge implements SwiftCommand {
 			//Do nothing. GridRunner gets notified of completion by SGE.
 		}
 
+		public boolean isFailed() {
+			return failed;
+		}
+
 		@Override
 		public void reportFailure(final Throwable t) {
+			failed = true;
 			try {
 				RunSge.reportProgress(request, t);
 			} catch (final Exception e) {
@@ -1441,6 +1441,50 @@ endReportFile<-function(reportFile) {
       , file=reportFile)
 }
 
+# Generates the images for one line of the input file
+# @return a summary row for the report
+lineToRow <- function(line, decoyRegex, rtcMzOrder, reportDir) {
+  if("RTC.Input.File" %in% names(line)) {
+    rtcFile <- line$RTC.Input.File
+  } else {
+    rtcFile <- NA
+  }
+  # Generate the new image name so it does not have to be specified by caller
+  line$Base.Peak.File 
+  imageGenerator(
+    dataFile = line$Data.File,          
+    msmsEvalDataFile = line$msmsEval.Output,
+    infoFile = line$Raw.Info.File,
+    spectrumFile = line$Raw.Spectra.File,
+    chromatogramFile = line$Chromatogram.File,
+    rtcFile=rtcFile,
+    list(
+      lockmass.file = file.path(reportDir, basename(line$Id.File)),
+      calibration.file = file.path(reportDir, basename(line$Mz.File)),
+      mz.file = file.path(reportDir, basename(line$IdVsMz.File)),
+      source.current.file = file.path(reportDir, basename(line$Source.Current.File)),
+      msmsEval.file = file.path(reportDir, basename(line$msmsEval.Discriminant.File)),
+      pepTol.file = file.path(reportDir, basename(line$Peptide.Tolerance.File)),
+      tic.file = file.path(reportDir, basename(line$TIC.File)),
+      uv.file = file.path(reportDir, basename(line$UV.Data.File)),
+      basepeak.file = file.path(reportDir, basename(line$Base.Peak.File)),
+      rtc.file = ifelse(is.na(rtcFile), NA, file.path(reportDir, basename(line$RTC.Picture.File)))),
+    line$Generate.Files,
+    decoyRegex,
+    rtcMzOrder,
+    reportDir)
+}
+
+# Computes the summary row for the first line of the input file only and saves it using saveRDS
+# The images are generated next to the row file
+# rowFileName - where to save the row
+runRow <- function(inputFile, rowFileName, decoyRegex, rtcMzOrder) {
+  inputDataTab<-read.delim(inputFile, header=TRUE, sep="\t", colClasses="character", fileEncoding="UTF-8")
+  inputDataTab[,'Base.Peak.File'] <- file.path(dirname(inputDataTab[, 'Id.File']), gsub(".calRt.png", ".basePeak.png", x=basename(inputDataTab[, 'Id.File']), fixed=TRUE))
+  row <- lineToRow(inputDataTab[1,], decoyRegex, rtcMzOrder, dirname(rowFileName))
+  saveRDS(row, rowFileName)
+}
+
 # Main function that does all the work
 # inputFile - a file describing all input files and where to put the images
 # reportFileName - path to index.html file that will be generated
@@ -1464,35 +1508,12 @@ run <- function(inputFile, reportFileName, decoyRegex, rtcMzOrder) {
   
   for(i in 1:length(inputDataTab$Data.File)) {
     line <- inputDataTab[i,]
-    if("RTC.Input.File" %in% names(line)) {
-      rtcFile <- line$RTC.Input.File
+    if("Row.File" %in% names(line) && !is.na(line$Row.File) && nchar(line$Row.File)>0 && file.exists(line$Row.File)) {
+      # The row was already computed by a separate run for this file alone
+      row <- readRDS(line$Row.File)
     } else {
-      rtcFile <- NA
+      row <- lineToRow(line, decoyRegex, rtcMzOrder, reportDir)
     }
-    # Generate the new image name so it does not have to be specified by caller
-    line$Base.Peak.File 
-    row <- imageGenerator(
-      dataFile = line$Data.File,          
-      msmsEvalDataFile = line$msmsEval.Output,
-      infoFile = line$Raw.Info.File,
-      spectrumFile = line$Raw.Spectra.File,
-      chromatogramFile = line$Chromatogram.File,
-      rtcFile=rtcFile,
-      list(
-        lockmass.file = file.path(reportDir, basename(line$Id.File)),
-        calibration.file = file.path(reportDir, basename(line$Mz.File)),
-        mz.file = file.path(reportDir, basename(line$IdVsMz.File)),
-        source.current.file = file.path(reportDir, basename(line$Source.Current.File)),
-        msmsEval.file = file.path(reportDir, basename(line$msmsEval.Discriminant.File)),
-        pepTol.file = file.path(reportDir, basename(line$Peptide.Tolerance.File)),
-        tic.file = file.path(reportDir, basename(line$TIC.File)),
-        uv.file = file.path(reportDir, basename(line$UV.Data.File)),
-        basepeak.file = file.path(reportDir, basename(line$Base.Peak.File)),
-        rtc.file = ifelse(is.na(rtcFile), NA, file.path(reportDir, basename(line$RTC.Picture.File)))),
-      line$Generate.Files,
-      decoyRegex,
-      rtcMzOrder,
-      reportDir)
     
     addRowToReportFile(reportFile, row)
     cat(line$Raw.File, 
@@ -1535,7 +1556,12 @@ inputFile<-args[1]
 reportFileName<-args[2]
 decoyRegex<-args[3] # Currently treated just as a plain prefix
 rtcMzOrder<-args[4] # Colon-separated list of m/z values
+mode<-ifelse(length(args)>=5, args[5], "report") # "row" - save the summary row of the first input line into reportFileName
 
-run(inputFile, reportFileName, decoyRegex, rtcMzOrder)
+if(mode=="row") {
+  runRow(inputFile, reportFileName, decoyRegex, rtcMzOrder)
+} else {
+  run(inputFile, reportFileName, decoyRegex, rtcMzOrder)
+}
 
 # vi: set filetype=R expandtab tabstop=4 shiftwidth=4 autoindent smartindent:
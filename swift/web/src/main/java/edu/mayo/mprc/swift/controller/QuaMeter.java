@@ -4,18 +4,23 @@ import com.google.common.collect.Lists;
 import edu.mayo.mprc.MprcException;
 import edu.mayo.mprc.config.ResourceConfig;
 import edu.mayo.mprc.quameterdb.QuameterUi;
+import edu.mayo.mprc.quameterdb.dao.QuameterQuery;
 import edu.mayo.mprc.quameterdb.dao.QuameterResult;
 import edu.mayo.mprc.quameterdb.dao.QuameterTag;
 import edu.mayo.mprc.swift.commands.SwiftEnvironment;
 import edu.mayo.mprc.utilities.StringUtilities;
+import org.joda.time.DateTime;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.ModelMap;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 
 import javax.annotation.Resource;
+import javax.servlet.http.HttpServletResponse;
 import java.io.File;
 import java.io.StringWriter;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 
@@ -66,6 +71,56 @@ public final class QuaMeter {
 		return "quameter/index";
 	}
 
+	/**
+	 * QuaMeter results as one series per instrument, see {@link QuameterUi#writeSeriesJson}.
+	 *
+	 * @param from        Start of the date range (ISO format), optional.
+	 * @param to          End of the date range (ISO format, exclusive), optional.
+	 * @param instruments Instrument names or serial numbers, all instruments if not specified.
+	 * @param metrics     Metric codes such as <c>C-1A</c>, all metrics if not specified.
+	 * @param start       First result to list for each instrument.
+	 * @param count       How many results to list for each instrument, 0 for all.
+	 */
+	@RequestMapping(value = "/quameter/series", method = RequestMethod.GET)
+	public final void series(final HttpServletResponse response,
+	                         @RequestParam(value = "from", required = false) final String from,
+	                         @RequestParam(value = "to", required = false) final String to,
+	                         @RequestParam(value = "instrument", required = false) final String[] instruments,
+	                         @RequestParam(value = "metric", required = false) final String[] metrics,
+	                         @RequestParam(value = "start", required = false, defaultValue = "0") final int start,
+	                         @RequestParam(value = "count", required = false, defaultValue = "0") final int count) {
+		final QuameterUi quameterUi = getQuameterUi();
+		if (quameterUi == null) {
+			throw new MprcException("QuaMeter user interface is not configured");
+		}
+
+		final QuameterQuery query = new QuameterQuery();
+		query.setFrom(from == null ? null : new DateTime(from));
+		query.setTo(to == null ? null : new DateTime(to));
+		if (instruments != null) {
+			query.setInstruments(Arrays.asList(instruments));
+		}
+		if (metrics != null) {
+			final List<QuameterResult.QuameterColumn> columns = Lists.newArrayListWithCapacity(metrics.length);
+			for (final String metric : metrics) {
+				columns.add(QuameterResult.getColumnByName(metric));
+			}
+			query.setColumns(columns);
+		}
+		query.setFirstResult(start);
+		query.setMaxResults(count);
+
+		quameterUi.begin();
+		try {
+			response.setContentType("application/json");
+			quameterUi.writeSeriesJson(response.getWriter(), query);
+			quameterUi.commit();
+		} catch (final Exception e) {
+			quameterUi.rollback();
+			throw new MprcException("Could not list QuaMeter results", e);
+		}
+	}
+
 	@RequestMapping(value = "/quameter/tags", method = RequestMethod.GET)
 	public final String tags(final ModelMap model) {
 		final QuameterUi quameterUi = getQuameterUi();
@@ -68,6 +68,15 @@ public final class JsonWriter {
 		out.print(MessageFormat.format("window.timestamp={0};", Long.toString(date.getTime())));
 	}
 
+	/**
+	 * Appends code that stores the version of the data the client has. The client sends it back
+	 * with the next update request to get only the changes.
+	 */
+	public void setVersion(final long version) {
+		dumpMethod(null, null);
+		out.print(MessageFormat.format("window.version={0};", Long.toString(version)));
+	}
+
 	/**
 	 * Appends code that inserts a search run at given position into the stream.
 	 *
@@ -84,6 +93,16 @@ public final class JsonWriter {
 		dumpMethod(method, parameter.toString());
 	}
 
+	/**
+	 * Same as {@link #processSearchRun} for a search run whose JSON was already produced by {@link #appendSearchRunJson}.
+	 *
+	 * @param method Method to be executed on the searchRun. Can be "insert", "rewrite" or "update".
+	 * @param json   Search run JSON matching the method.
+	 */
+	public void processSearchRunJson(final String method, final String json) {
+		dumpMethod(method, json);
+	}
+
 	/**
 	 * Appends JSON code for search run to given string.
 	 *
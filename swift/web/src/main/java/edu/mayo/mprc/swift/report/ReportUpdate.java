@@ -31,8 +31,9 @@ import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 // TODO: Ideally refactor into RESTful interface - would provide clean access to Swift
 
@@ -49,6 +50,16 @@ public final class ReportUpdate {
 	 * How many milliseconds to wait till qstat considered down.
 	 */
 	private static final int QSTAT_TIMEOUT = 30 * 1000;
+	/**
+	 * Longest time an update request can wait for the search runs to change.
+	 */
+	private static final long MAX_UPDATE_WAIT = 60 * 1000;
+	private static final int SEARCH_RUN_JSON_CAPACITY = 200;
+	/**
+	 * Request parameters that define what search runs the client looks at.
+	 */
+	private static final String[] FEED_KEY_PARAMETERS = {"start", "count", "showHidden", "userfilter", "titlefilter", "instrumentfilter", "commentfilter"};
+	private final SearchRunFeed feed = new SearchRunFeed();
 
 	public ReportUpdate() {
 		int i = 0;
@@ -141,22 +152,28 @@ public final class ReportUpdate {
 			return;
 		}
 
+		final SearchRunFilter searchRunFilter = new SearchRunFilter();
+		searchRunFilter.setStart(req.getParameter("start"));
+		searchRunFilter.setCount(req.getParameter("count"));
+		searchRunFilter.setShowHidden(req.getParameter("showHidden") != null && "true".equals(req.getParameter("showHidden")));
+		searchRunFilter.setUserFilter(req.getParameter("userfilter"));
+		searchRunFilter.setTitleFilter(req.getParameter("titlefilter"));
+		searchRunFilter.setInstrumentFilter(req.getParameter("instrumentfilter"));
+		searchRunFilter.setCommentFilter(req.getParameter("commentfilter"));
+		final String feedKey = getFeedKey(req);
+
+		final long version = parseLongParameter(req, "version");
+		final long wait = Math.min(parseLongParameter(req, "wait"), MAX_UPDATE_WAIT);
+		if ("update".equals(action) && wait > 0) {
+			// Long poll - hold the request until something changes
+			waitForChanges(feedKey, searchRunFilter, version, wait);
+		}
+
 		JsonWriter out = null;
 		try {
 			// All following actions require a search run
 			swiftDao.begin(); // Transaction-per-request
 
-			final String timestamp = req.getParameter("timestamp");
-
-			final SearchRunFilter searchRunFilter = new SearchRunFilter();
-			searchRunFilter.setStart(req.getParameter("start"));
-			searchRunFilter.setCount(req.getParameter("count"));
-			searchRunFilter.setShowHidden(req.getParameter("showHidden") != null && "true".equals(req.getParameter("showHidden")));
-			searchRunFilter.setUserFilter(req.getParameter("userfilter"));
-			searchRunFilter.setTitleFilter(req.getParameter("titlefilter"));
-			searchRunFilter.setInstrumentFilter(req.getParameter("instrumentfilter"));
-			searchRunFilter.setCommentFilter(req.getParameter("commentfilter"));
-
 			final PrintWriter printOut = resp.getWriter();
 			out = new JsonWriter(printOut);
 			resp.setContentType(CONTENT_TYPE);
@@ -164,32 +181,31 @@ public final class ReportUpdate {
 			// No action - clear everything, get fresh copy of data
 			if (action == null || action.isEmpty() || "load".equals(action)) {
 				out.clearAll();
-				printSearchRuns(out, searchRunFilter, "insert");
+				printSearchRuns(out, getSnapshot(feedKey, searchRunFilter), "insert");
 			} else if ("rewrite".equals(action)) {
 				// Rewrite given range, do not erase/modify anything else
-				printSearchRuns(out, searchRunFilter, "rewrite");
+				printSearchRuns(out, getSnapshot(feedKey, searchRunFilter), "rewrite");
 			} else if ("expand".equals(action)) {
 				// Expand - provide detailed task info for one task
 				final int id = Integer.parseInt(req.getParameter("id"));
 				out.rewriteTaskDataList(id, swiftDao.getTaskDataList(id));
 			} else if ("update".equals(action)) {
 				// We print out all new search runs + updates to the ones that changed
-				final Date time = new Date();
-				if (null != timestamp) {
-					time.setTime(Long.parseLong(timestamp));
-				} else {
-					time.setTime(0);
-				}
-				updateSearchRuns(out, searchRunFilter, time);
+				final SearchRunFeed.Snapshot snapshot = getSnapshot(feedKey, searchRunFilter);
+				// When nothing changed (or the client does not wait for changes), refresh the running times as well
+				final boolean includeRunning = wait <= 0 || !snapshot.hasChangesSince(version);
+				final Set<Integer> updatedIds = updateSearchRuns(out, snapshot, version, includeRunning);
 
-				// TODO: Do not output all expanded task lists, only the changed ones
+				// Only the task lists of search runs that were sent can have changed
 				final String expanded = req.getParameter("expanded");
 				if (null != expanded) {
 					final String[] expandedIds = expanded.split(",");
 					for (final String idString : expandedIds) {
 						if (null != idString && !idString.isEmpty()) {
 							final int id = Integer.parseInt(idString);
-							out.rewriteTaskDataList(id, swiftDao.getTaskDataList(id));
+							if (updatedIds.contains(id)) {
+								out.rewriteTaskDataList(id, swiftDao.getTaskDataList(id));
+							}
 						}
 					}
 				}
@@ -205,6 +221,67 @@ public final class ReportUpdate {
 		}
 	}
 
+	/**
+	 * @return Key identifying the window of search runs the client looks at.
+	 */
+	private static String getFeedKey(final HttpServletRequest req) {
+		final StringBuilder key = new StringBuilder(100);
+		for (final String parameter : FEED_KEY_PARAMETERS) {
+			key.append(req.getParameter(parameter)).append('\n');
+		}
+		return key.toString();
+	}
+
+	private static long parseLongParameter(final HttpServletRequest req, final String name) {
+		final String value = req.getParameter(name);
+		if (value == null || value.isEmpty()) {
+			return 0;
+		}
+		try {
+			return Long.parseLong(value);
+		} catch (NumberFormatException ignore) {
+			// SWALLOWED: a client with garbage gets everything, same as a client with no value
+			return 0;
+		}
+	}
+
+	/**
+	 * Blocks until the window changes past given version or the wait time elapses. Each check runs
+	 * in its own short transaction, so no connection is held while waiting.
+	 */
+	private void waitForChanges(final String feedKey, final SearchRunFilter filter, final long version, final long wait) throws ServletException {
+		final long deadline = System.currentTimeMillis() + wait;
+		try {
+			while (true) {
+				final SearchRunFeed.Snapshot snapshot;
+				swiftDao.begin();
+				try {
+					snapshot = getSnapshot(feedKey, filter);
+					swiftDao.commit();
+				} catch (Exception t) {
+					swiftDao.rollback();
+					throw new ServletException(t);
+				}
+				final long remaining = deadline - System.currentTimeMillis();
+				if (snapshot.hasChangesSince(version) || remaining <= 0) {
+					return;
+				}
+				snapshot.awaitChangesSince(version, Math.min(remaining, feed.getRefreshInterval()));
+			}
+		} catch (InterruptedException e) {
+			throw new ServletException("Waiting for search run changes was interrupted", e);
+		}
+	}
+
+	private SearchRunFeed.Snapshot getSnapshot(final String feedKey, final SearchRunFilter filter) {
+		return feed.getSnapshot(feedKey, new SearchRunFeed.Loader() {
+			@Override
+			public List<SearchRunFeed.Row> load() {
+				return loadSearchRuns(filter);
+			}
+		});
+	}
+
 	private WebUi getWebUi() {
 		return getWebUiHolder().getWebUi();
 	}
@@ -274,39 +351,80 @@ public final class ReportUpdate {
 	}
 
 	/**
-	 * Prints search runs in given range to given writer. The search run data is passed as a parameter to a specified
-	 * function, such as "insert", "rewrite" or "update".
+	 * Loads search runs in given range from the database and turns them into JSON for the {@link SearchRunFeed}.
 	 *
-	 * @param out    Where to write the search runs to.
-	 * @param method Method to use on the search runs. "update" will send a command to update search run data, while "insert" will insert new search runs.
 	 * @param filter Filter defining what search runs and how sorted to output.
+	 * @return The search runs in display order.
 	 */
-	private void printSearchRuns(final JsonWriter out, final SearchRunFilter filter, final String method) {
+	private List<SearchRunFeed.Row> loadSearchRuns(final SearchRunFilter filter) {
 		final List<SearchRun> searchRuns = searchDbDao.getSearchRunList(filter, true);
 		searchDbDao.fillInInstrumentSerialNumbers(searchRuns);
 		getWebUi().mapInstrumentSerialNumbers(searchRuns);
 		swiftDao.fillExtraFields(searchRuns);
 
-		final int firstSearchRun = 0;
 		final int lastSearchRun = Math.min(
 				filter.getCount() != null ? Integer.parseInt(filter.getCount()) : 0,
 				searchRuns.size());
 
-		Date newTimestamp = new Date();
-		newTimestamp.setTime(0);
-		for (int i = firstSearchRun; i < lastSearchRun; i++) {
+		final List<SearchRunFeed.Row> rows = new ArrayList<SearchRunFeed.Row>(lastSearchRun);
+		for (int i = 0; i < lastSearchRun; i++) {
 			final SearchRun searchRun = searchRuns.get(i);
 			final ArrayList<ReportInfo> reports = getReportsForSearchRun(searchRun);
-			if (null != searchRun.getStartTimestamp() && searchRun.getStartTimestamp().compareTo(newTimestamp) > 0) {
-				newTimestamp = searchRun.getStartTimestamp();
-			}
-			if (null != searchRun.getEndTimestamp() && searchRun.getEndTimestamp().compareTo(newTimestamp) > 0) {
-				newTimestamp = searchRun.getEndTimestamp();
-			}
+			rows.add(new SearchRunFeed.Row(
+					searchRun.getId(),
+					searchRun.getEndTimestamp() == null,
+					getSignature(searchRun, reports),
+					JsonWriter.appendSearchRunJson(new StringBuilder(SEARCH_RUN_JSON_CAPACITY), i, searchRun, reports, false).toString(),
+					JsonWriter.appendSearchRunJson(new StringBuilder(SEARCH_RUN_JSON_CAPACITY), -1, searchRun, reports, false).toString(),
+					JsonWriter.appendSearchRunJson(new StringBuilder(SEARCH_RUN_JSON_CAPACITY), -1, searchRun, reports, true).toString()));
+		}
+		return rows;
+	}
+
+	/**
+	 * @return All the search run data the client displays, except the running time that changes all the time.
+	 */
+	private static String getSignature(final SearchRun searchRun, final List<ReportInfo> reports) {
+		final StringBuilder signature = new StringBuilder(SEARCH_RUN_JSON_CAPACITY);
+		signature
+				.append(searchRun.getTitle()).append('|')
+				.append(searchRun.getStartTimestamp() == null ? 0 : searchRun.getStartTimestamp().getTime()).append('|')
+				.append(searchRun.getEndTimestamp() == null ? 0 : searchRun.getEndTimestamp().getTime()).append('|')
+				.append(searchRun.getErrorCode()).append('|')
+				.append(searchRun.getErrorMessage()).append('|')
+				.append(searchRun.getNumTasks()).append('|')
+				.append(searchRun.getTasksCompleted()).append('|')
+				.append(searchRun.getTasksFailed()).append('|')
+				.append(searchRun.getTasksWithWarning()).append('|')
+				.append(searchRun.getRunningTasks()).append('|')
+				.append(searchRun.isRunningTooLong()).append('|')
+				.append(searchRun.getHidden()).append('|')
+				.append(searchRun.getInstruments()).append('|')
+				.append(searchRun.isQuameter()).append('|')
+				.append(searchRun.getComment());
+		for (final ReportInfo report : reports) {
+			signature.append('|').append(report.getReportId())
+					.append(':').append(report.getFilePath())
+					.append(':').append(report.isHasAnalysis());
+		}
+		return signature.toString();
+	}
 
-			out.processSearchRun(i, searchRun, reports, method);
+	/**
+	 * Prints all search runs from the snapshot to given writer. The search run data is passed as a parameter to a specified
+	 * function, such as "insert" or "rewrite".
+	 *
+	 * @param out      Where to write the search runs to.
+	 * @param snapshot Current search runs in the window.
+	 * @param method   Method to use on the search runs. "insert" will insert new search runs, "rewrite" will replace existing ones.
+	 */
+	private static void printSearchRuns(final JsonWriter out, final SearchRunFeed.Snapshot snapshot, final String method) {
+		final long version = snapshot.getVersion();
+		for (final SearchRunFeed.Entry entry : snapshot.getEntries()) {
+			final SearchRunFeed.Row row = entry.getRow();
+			out.processSearchRunJson(method, "insert".equals(method) ? row.getInsertJson() : row.getRewriteJson());
 		}
-		out.setTimestamp(newTimestamp);
+		out.setVersion(version);
 	}
 
 	private ArrayList<ReportInfo> getReportsForSearchRun(final SearchRun searchRun) {
@@ -324,36 +442,31 @@ public final class ReportUpdate {
 	}
 
 	/**
-	 * Produces code to update given range of search runs. The update affects only data changed since last timestamp.
-	 * The produced code contains instruction for setting a new timestamp.
+	 * Produces code to update given range of search runs. The update affects only search runs that changed since
+	 * the version the client has. The produced code contains instruction for setting a new version.
 	 *
-	 * @param out       Where to write the search runs to.
-	 * @param timestamp Time when the last update was performed.
-	 * @param filter    Filter defining what search runs and how sorted to output.
+	 * @param out            Where to write the search runs to.
+	 * @param snapshot       Current search runs in the window.
+	 * @param version        Last version the client saw.
+	 * @param includeRunning Send also the search runs that are still running, so their running time gets updated.
+	 * @return Ids of search runs that were sent.
 	 */
-	private void updateSearchRuns(final JsonWriter out, final SearchRunFilter filter, final Date timestamp) {
-		final List<SearchRun> searchRuns = searchDbDao.getSearchRunList(filter, true);
-		swiftDao.fillExtraFields(searchRuns);
-		searchDbDao.fillInInstrumentSerialNumbers(searchRuns);
-		getWebUi().mapInstrumentSerialNumbers(searchRuns);
-		final int firstSearchRun = filter.getStart() != null ? Integer.parseInt(filter.getStart()) : 0;
-		final int lastSearchRun = Math.min(firstSearchRun + (filter.getCount() != null ? Integer.parseInt(filter.getCount()) : searchRuns.size()), searchRuns.size());
-
-		Date newTimestamp = timestamp;
-		for (int i = firstSearchRun; i < lastSearchRun; i++) {
-			final SearchRun searchRun = searchRuns.get(i);
-			final ArrayList<ReportInfo> reports = getReportsForSearchRun(searchRun);
-			if (null != searchRun.getStartTimestamp() && searchRun.getStartTimestamp().compareTo(newTimestamp) > 0) {
-				newTimestamp = searchRun.getStartTimestamp();
-			}
-			if (null != searchRun.getEndTimestamp() && searchRun.getEndTimestamp().compareTo(newTimestamp) > 0) {
-				newTimestamp = searchRun.getEndTimestamp();
+	private static Set<Integer> updateSearchRuns(final JsonWriter out, final SearchRunFeed.Snapshot snapshot, final long version, final boolean includeRunning) {
+		final long newVersion = snapshot.getVersion();
+		final Set<Integer> updatedIds = new HashSet<Integer>();
+		for (final SearchRunFeed.Entry entry : snapshot.getEntries()) {
+			final SearchRunFeed.Row row = entry.getRow();
+			if (entry.isNewerThan(version)) {
+				out.processSearchRunJson("insert", row.getInsertJson());
+			} else if (entry.getVersion() > version || (includeRunning && row.isRunning())) {
+				out.processSearchRunJson("update", row.getUpdateJson());
+			} else {
+				continue;
 			}
-
-			final boolean doInsert = null != searchRun.getStartTimestamp() && searchRun.getStartTimestamp().compareTo(timestamp) > 0;
-			out.processSearchRun(i, searchRun, reports, doInsert ? "insert" : "update");
+			updatedIds.add(row.getId());
 		}
-		out.setTimestamp(newTimestamp);
+		out.setVersion(newVersion);
+		return updatedIds;
 	}
 
 	public SwiftDao getSwiftDao() {
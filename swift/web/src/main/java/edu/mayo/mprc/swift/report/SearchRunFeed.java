@@ -0,0 +1,294 @@
+package edu.mayo.mprc.swift.report;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Change feed for the search status page.
+ * <p/>
+ * Keeps an in-memory snapshot of the search runs for each window (filter + range) the browsers are looking at.
+ * A snapshot is reloaded from the database at most once per {@link #getRefreshInterval()}, no matter how many
+ * browsers poll it. Every search run whose data changed between two reloads gets a new version number, so a client
+ * that tells us the last version it saw gets only the runs that changed since.
+ * <p/>
+ * The searcher runs in a different process and writes directly to the database, so the feed cannot be told
+ * about the changes - it has to notice them by comparing the snapshots.
+ * <p/>
+ * The versions start at the time the feed was created, so a client that saw a version before the web server
+ * restarted does not end up ahead of the feed.
+ *
+ * @author Roman Zenka
+ */
+final class SearchRunFeed {
+	/**
+	 * Default for how often at most to reload one snapshot.
+	 */
+	public static final long DEFAULT_REFRESH_INTERVAL = 2 * 1000;
+	/**
+	 * Snapshots nobody asked for this long get dropped.
+	 */
+	private static final long SNAPSHOT_EXPIRATION = 10 * 60 * 1000;
+
+	private final long refreshInterval;
+	private final AtomicLong version = new AtomicLong(System.currentTimeMillis());
+	private final Map<String, Snapshot> snapshots = new HashMap<String, Snapshot>();
+
+	SearchRunFeed() {
+		this(DEFAULT_REFRESH_INTERVAL);
+	}
+
+	/**
+	 * @param refreshInterval How often at most to reload one snapshot, in milliseconds.
+	 */
+	SearchRunFeed(final long refreshInterval) {
+		this.refreshInterval = refreshInterval;
+	}
+
+	public long getRefreshInterval() {
+		return refreshInterval;
+	}
+
+	/**
+	 * Loads the current state of search runs in one window from the database.
+	 */
+	interface Loader {
+		/**
+		 * @return Search runs in the order they are displayed.
+		 */
+		List<Row> load();
+	}
+
+	/**
+	 * Obtain a snapshot for given window, reloading it if it is older than the refresh interval.
+	 * The loader runs in the caller's thread, so it can use the caller's transaction.
+	 *
+	 * @param key    Identifies the window - all parameters that affect what the loader returns.
+	 * @param loader Loads the window data from the database.
+	 * @return Snapshot of the window.
+	 */
+	Snapshot getSnapshot(final String key, final Loader loader) {
+		final Snapshot snapshot;
+		final long now = System.currentTimeMillis();
+		synchronized (snapshots) {
+			removeExpiredSnapshots(now);
+			Snapshot existing = snapshots.get(key);
+			if (existing == null) {
+				existing = new Snapshot();
+				snapshots.put(key, existing);
+			}
+			snapshot = existing;
+			snapshot.lastAccess = now;
+		}
+		snapshot.refresh(loader, now);
+		return snapshot;
+	}
+
+	private void removeExpiredSnapshots(final long now) {
+		final Iterator<Snapshot> iterator = snapshots.values().iterator();
+		while (iterator.hasNext()) {
+			if (now - iterator.next().lastAccess > SNAPSHOT_EXPIRATION) {
+				iterator.remove();
+			}
+		}
+	}
+
+	/**
+	 * @return How many windows are currently kept in memory.
+	 */
+	int getSnapshotCount() {
+		synchronized (snapshots) {
+			return snapshots.size();
+		}
+	}
+
+	/**
+	 * One search run as produced by the {@link Loader}.
+	 */
+	static final class Row {
+		private final int id;
+		private final boolean running;
+		private final String signature;
+		private final String insertJson;
+		private final String rewriteJson;
+		private final String updateJson;
+
+		/**
+		 * @param id          Search run id.
+		 * @param running     True if the search run did not finish yet. The running time of such search runs keeps
+		 *                    changing without the signature changing.
+		 * @param signature   All the data that make a difference to the client, except the running time.
+		 *                    When the signature changes, the search run is considered changed.
+		 * @param insertJson  Full JSON of the search run, including its position.
+		 * @param rewriteJson Full JSON of the search run.
+		 * @param updateJson  JSON of the data that change during the lifetime of the search run.
+		 */
+		Row(final int id, final boolean running, final String signature, final String insertJson, final String rewriteJson, final String updateJson) {
+			this.id = id;
+			this.running = running;
+			this.signature = signature;
+			this.insertJson = insertJson;
+			this.rewriteJson = rewriteJson;
+			this.updateJson = updateJson;
+		}
+
+		public int getId() {
+			return id;
+		}
+
+		public boolean isRunning() {
+			return running;
+		}
+
+		public String getInsertJson() {
+			return insertJson;
+		}
+
+		public String getRewriteJson() {
+			return rewriteJson;
+		}
+
+		public String getUpdateJson() {
+			return updateJson;
+		}
+	}
+
+	/**
+	 * A search run within a snapshot, with the version in which it last changed.
+	 */
+	static final class Entry {
+		private final Row row;
+		private final long version;
+		private final long firstVersion;
+
+		Entry(final Row row, final long version, final long firstVersion) {
+			this.row = row;
+			this.version = version;
+			this.firstVersion = firstVersion;
+		}
+
+		public Row getRow() {
+			return row;
+		}
+
+		/**
+		 * @return Version in which the search run last changed.
+		 */
+		public long getVersion() {
+			return version;
+		}
+
+		/**
+		 * @param clientVersion Last version the client saw.
+		 * @return True if the client does not know about this search run at all.
+		 */
+		public boolean isNewerThan(final long clientVersion) {
+			return firstVersion > clientVersion;
+		}
+	}
+
+	/**
+	 * State of one window.
+	 */
+	final class Snapshot {
+		/**
+		 * Time of last reload, 0 if the snapshot was never loaded.
+		 */
+		private long loaded;
+		private long lastAccess;
+		private long snapshotVersion;
+		private List<Entry> entries = Collections.emptyList();
+
+		/**
+		 * Reload the snapshot unless it is fresh enough. Threads asking for the same snapshot while it reloads
+		 * wait for the reload to finish instead of querying the database themselves.
+		 */
+		private synchronized void refresh(final Loader loader, final long now) {
+			if (loaded != 0 && now - loaded < refreshInterval) {
+				return;
+			}
+			final List<Row> rows = loader.load();
+			final boolean initial = loaded == 0;
+			final Map<Integer, Entry> previous = new HashMap<Integer, Entry>(entries.size());
+			for (final Entry entry : entries) {
+				previous.put(entry.getRow().getId(), entry);
+			}
+			final List<Entry> newEntries = new ArrayList<Entry>(rows.size());
+			long newVersion = snapshotVersion;
+			for (final Row row : rows) {
+				final Entry old = previous.get(row.getId());
+				if (old != null && old.getRow().signature.equals(row.signature)) {
+					// Keep the version, take the fresh JSON (running time)
+					newEntries.add(new Entry(row, old.getVersion(), old.firstVersion));
+				} else {
+					final long rowVersion = version.incrementAndGet();
+					// The runs from the initial load are known to every client that got a version from this feed
+					newEntries.add(new Entry(row, rowVersion, initial ? 0 : (old == null ? rowVersion : old.firstVersion)));
+					newVersion = rowVersion;
+				}
+			}
+			if (initial) {
+				newVersion = version.incrementAndGet();
+			}
+			entries = Collections.unmodifiableList(newEntries);
+			loaded = System.currentTimeMillis();
+			if (newVersion != snapshotVersion) {
+				snapshotVersion = newVersion;
+				notifyAll();
+			}
+		}
+
+		/**
+		 * @return The newest version of the data in this snapshot. Send to the client to be passed back with the next poll.
+		 */
+		public synchronized long getVersion() {
+			return snapshotVersion;
+		}
+
+		/**
+		 * @return All search runs in the window, in display order.
+		 */
+		public synchronized List<Entry> getEntries() {
+			return entries;
+		}
+
+		/**
+		 * @param clientVersion Last version the client saw.
+		 * @return Search runs that changed since given version, in display order.
+		 */
+		public synchronized List<Entry> getChangesSince(final long clientVersion) {
+			final List<Entry> changes = new ArrayList<Entry>();
+			for (final Entry entry : entries) {
+				if (entry.getVersion() > clientVersion) {
+					changes.add(entry);
+				}
+			}
+			return changes;
+		}
+
+		/**
+		 * @param clientVersion Last version the client saw.
+		 * @return True if anything changed since given version.
+		 */
+		public synchronized boolean hasChangesSince(final long clientVersion) {
+			return snapshotVersion > clientVersion;
+		}
+
+		/**
+		 * Wait until the snapshot changes past given version, or the timeout elapses.
+		 * Someone else has to keep refreshing the snapshot, see {@link #refresh}.
+		 *
+		 * @param clientVersion Last version the client saw.
+		 * @param timeout       Maximum time to wait in milliseconds.
+		 */
+		public synchronized void awaitChangesSince(final long clientVersion, final long timeout) throws InterruptedException {
+			if (timeout > 0 && snapshotVersion <= clientVersion) {
+				wait(timeout);
+			}
+		}
+	}
+}
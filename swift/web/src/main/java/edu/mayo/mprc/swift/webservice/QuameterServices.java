@@ -2,6 +2,7 @@ package edu.mayo.mprc.swift.webservice;
 
 import com.google.common.collect.Lists;
 import edu.mayo.mprc.MprcException;
+import edu.mayo.mprc.config.RunningApplicationContext;
 import edu.mayo.mprc.quameterdb.QuameterUi;
 import edu.mayo.mprc.quameterdb.dao.QuameterAnnotation;
 import edu.mayo.mprc.quameterdb.dao.QuameterDao;
@@ -38,6 +39,9 @@ public final class QuameterServices {
 	@Resource(name = "webUiHolder")
 	private WebUiHolder webUiHolder;
 
+	@Resource(name = "swiftEnvironment")
+	private RunningApplicationContext runningApplicationContext;
+
 	@RequestMapping(value = "/service/quameter-hide/{quameterResultId}", method = RequestMethod.POST)
 	@ResponseBody
 	public void hideQuameterResult(@PathVariable final int quameterResultId, @RequestParam final String reason) {
@@ -49,6 +53,7 @@ public final class QuameterServices {
 			quameterDao.rollback();
 			throw new MprcException("Could not hide quameter result " + quameterResultId, e);
 		}
+		resultsChanged();
 	}
 
 	@RequestMapping(value = "/service/quameter-unhide/{quameterResultId}", method = RequestMethod.POST)
@@ -61,6 +66,7 @@ public final class QuameterServices {
 			quameterDao.rollback();
 			throw new MprcException("Could not un-hide quameter result " + quameterResultId, e);
 		}
+		resultsChanged();
 		return "redirect:/quameter/unhide";
 	}
 
@@ -133,6 +139,16 @@ public final class QuameterServices {
 		}
 	}
 
+	/**
+	 * The QuaMeter user interface caches the results, make it drop the ones we changed.
+	 */
+	private void resultsChanged() {
+		final QuameterUi.Config config = runningApplicationContext.getSingletonConfig(QuameterUi.Config.class);
+		if (config != null) {
+			((QuameterUi) runningApplicationContext.createResource(config)).resultsChanged();
+		}
+	}
+
 	private void writeHeader(final CsvWriter writer, final List<QuameterProteinGroup> protGrps) throws IOException {
 		// Predefined column names
 		final List<String> myHeader = Lists.newArrayList("QID", "Start Time", "Path", "Duration (min)", "Category", "Instrument", "Search parameters ID", "SearchRun ID");
@@ -187,8 +187,12 @@
             evt.stopPropagation();
         }
 
-        function ajaxRequest(action) {
-            $.ajax({
+        function ajaxRequest(action, wait) {
+            if (action == 'load') {
+                loadCount++;
+            }
+            var requestLoadCount = loadCount;
+            return $.ajax({
                 "url": "/report/reportupdate",
                 "type": "GET",
                 "data": {
@@ -196,23 +200,39 @@
                     start: firstEntry,
                     count: listedEntries,
                     expanded: displayer.listExpandedItems(),
-                    timestamp: window.timestamp,
+                    version: window.version,
+                    wait: wait,
                     userfilter: user.getRequestString(),
                     titlefilter: title.getRequestString(),
                     instrumentfilter: instrument.getRequestString(),
                     commentfilter: actions.getRequestString(),
                     showHidden: showHidden
                 },
-                "dataType": "html"
+                "dataType": "html",
+                "timeout": updateDelay * 2
             }).done(function (data) {
-                eval(data);
+                // An update that was waiting while the filters changed belongs to the old listing
+                if (action != 'update' || requestLoadCount == loadCount) {
+                    eval(data);
+                }
             })
         }
 
-        var timestamp = 0;
+        window.version = 0;
+        var loadCount = 0;
 
-        var periodicalUpdate;
+        // The server holds an update request for up to this long, answering as soon as something changes
         var updateDelay = 60 * 1000;
+        // Pause between two update requests, longer after a failure
+        var pollDelay = 1000;
+        function pollUpdates() {
+            ajaxRequest('update', updateDelay).done(function () {
+                setTimeout(pollUpdates, pollDelay);
+            }).fail(function () {
+                setTimeout(pollUpdates, updateDelay);
+            });
+        }
+
         var queries = getQueryString();
         var listedEntries = queries['count'] == null ? 100 : queries['count'];
         var firstEntry = queries['start'] == null ? 0 : queries['start'];
@@ -241,11 +261,9 @@
             instrument.loadFromCookies();
             actions.loadFromCookies();
 
-            ajaxRequest('load');
-
-            var periodicalUpdate = setInterval(function (pe) {
-                ajaxRequest('update');
-            }, updateDelay);
+            ajaxRequest('load').always(function () {
+                setTimeout(pollUpdates, pollDelay);
+            });
 
         });
     </script>
@@ -0,0 +1,123 @@
+package edu.mayo.mprc.swift.report;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author Roman Zenka
+ */
+public final class SearchRunFeedTest {
+	private static final String KEY = "window";
+
+	@Test
+	public void shouldLoadOncePerInterval() {
+		final SearchRunFeed feed = new SearchRunFeed(60 * 1000);
+		final TestLoader loader = new TestLoader();
+		loader.rows.add(row(1, "a", false));
+
+		final SearchRunFeed.Snapshot snapshot = feed.getSnapshot(KEY, loader);
+		for (int i = 0; i < 10; i++) {
+			Assert.assertSame(feed.getSnapshot(KEY, loader), snapshot);
+		}
+		Assert.assertEquals(loader.loads, 1, "Polls within the refresh interval must not touch the database");
+		Assert.assertEquals(snapshot.getEntries().size(), 1);
+		Assert.assertEquals(feed.getSnapshotCount(), 1);
+	}
+
+	@Test
+	public void shouldReportOnlyChanges() {
+		final SearchRunFeed feed = new SearchRunFeed(0);
+		final TestLoader loader = new TestLoader();
+		loader.rows.add(row(1, "a", false));
+		loader.rows.add(row(2, "b", true));
+
+		final long loadVersion = feed.getSnapshot(KEY, loader).getVersion();
+
+		// Nothing changed
+		SearchRunFeed.Snapshot snapshot = feed.getSnapshot(KEY, loader);
+		Assert.assertFalse(snapshot.hasChangesSince(loadVersion));
+		Assert.assertTrue(snapshot.getChangesSince(loadVersion).isEmpty());
+
+		// Search run 2 progressed, search run 3 appeared
+		loader.rows.clear();
+		loader.rows.add(row(3, "c", true));
+		loader.rows.add(row(1, "a", false));
+		loader.rows.add(row(2, "b-more-tasks-done", true));
+		snapshot = feed.getSnapshot(KEY, loader);
+		Assert.assertTrue(snapshot.hasChangesSince(loadVersion));
+
+		final List<SearchRunFeed.Entry> changes = snapshot.getChangesSince(loadVersion);
+		Assert.assertEquals(changes.size(), 2);
+		Assert.assertEquals(changes.get(0).getRow().getId(), 3);
+		Assert.assertTrue(changes.get(0).isNewerThan(loadVersion), "Search run 3 is new to the client");
+		Assert.assertEquals(changes.get(1).getRow().getId(), 2);
+		Assert.assertFalse(changes.get(1).isNewerThan(loadVersion), "The client already knows search run 2");
+
+		// A client that saw the latest version gets nothing
+		Assert.assertTrue(snapshot.getChangesSince(snapshot.getVersion()).isEmpty());
+	}
+
+	@Test
+	public void shouldKeepVersionsAcrossWindows() {
+		final SearchRunFeed feed = new SearchRunFeed(0);
+		final TestLoader loader1 = new TestLoader();
+		loader1.rows.add(row(1, "a", false));
+		final TestLoader loader2 = new TestLoader();
+		loader2.rows.add(row(2, "b", false));
+
+		final long version1 = feed.getSnapshot("first", loader1).getVersion();
+		final long version2 = feed.getSnapshot("second", loader2).getVersion();
+		Assert.assertTrue(version2 > version1, "Versions increase across all windows");
+		Assert.assertEquals(feed.getSnapshotCount(), 2);
+	}
+
+	@Test
+	public void shouldWakeUpWaitingClient() throws InterruptedException {
+		final SearchRunFeed feed = new SearchRunFeed(0);
+		final TestLoader loader = new TestLoader();
+		loader.rows.add(row(1, "a", true));
+		final SearchRunFeed.Snapshot snapshot = feed.getSnapshot(KEY, loader);
+		final long version = snapshot.getVersion();
+
+		final Thread changer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					Thread.sleep(100);
+				} catch (InterruptedException ignore) {
+					// SWALLOWED: the test will fail on timeout
+				}
+				synchronized (loader) {
+					loader.rows.clear();
+					loader.rows.add(row(1, "a-finished", false));
+				}
+				feed.getSnapshot(KEY, loader);
+			}
+		}, "changer");
+		final long start = System.currentTimeMillis();
+		changer.start();
+		snapshot.awaitChangesSince(version, 10 * 1000);
+		changer.join();
+
+		Assert.assertTrue(System.currentTimeMillis() - start < 10 * 1000, "The waiting client must be woken up by the change");
+		Assert.assertTrue(snapshot.hasChangesSince(version));
+	}
+
+	private static SearchRunFeed.Row row(final int id, final String data, final boolean running) {
+		return new SearchRunFeed.Row(id, running, data, "{\"_\":0,\"id\":" + id + "}", "{\"id\":" + id + "}", "{\"id\":" + id + "}");
+	}
+
+	private static final class TestLoader implements SearchRunFeed.Loader {
+		private final List<SearchRunFeed.Row> rows = new ArrayList<SearchRunFeed.Row>();
+		private int loads;
+
+		@Override
+		public synchronized List<SearchRunFeed.Row> load() {
+			loads++;
+			return new ArrayList<SearchRunFeed.Row>(rows);
+		}
+	}
+}